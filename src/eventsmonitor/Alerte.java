@@ -0,0 +1,76 @@
+package eventsmonitor;
+
+import org.joda.time.DateTime;
+
+/**
+ * Classe décrivant une alerte déclenchée par une règle d'alerte. Les objets de
+ * cette classe ne changent pas une fois construits.
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class Alerte {
+
+    /**
+     * Nom de la règle ayant déclenché l'alerte
+     */
+    private final String nom;
+
+    /**
+     * Description de l'alerte au moment de son déclenchement
+     */
+    private final String description;
+
+    /**
+     * Date de la mesure ayant déclenché l'alerte
+     */
+    private final DateTime dateDeDeclenchement;
+
+    /**
+     * Constructeur principal
+     *
+     * @param nom nom de la règle ayant déclenché l'alerte
+     * @param description description de l'alerte
+     * @param dateDeDeclenchement date de la mesure ayant déclenché l'alerte
+     */
+    public Alerte(String nom, String description, DateTime dateDeDeclenchement) {
+        this.nom = nom;
+        this.description = description;
+        this.dateDeDeclenchement = dateDeDeclenchement;
+    }
+
+    /**
+     * @return le nom de la règle ayant déclenché l'alerte
+     */
+    public String getNom() {
+        return nom;
+    }
+
+    /**
+     * @return la description de l'alerte au moment de son déclenchement
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return la date de la mesure ayant déclenché l'alerte
+     */
+    public DateTime getDateDeDeclenchement() {
+        return dateDeDeclenchement;
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "Alerte:{"
+                + "nom:" + nom
+                + ", description:" + description
+                + ", dateDeDeclenchement:" + dateDeDeclenchement
+                + "}";
+    }
+}
@@ -0,0 +1,91 @@
+package eventsmonitor;
+
+/**
+ * Classe décrivant l'écart entre le débit d'un type d'événement et son débit
+ * habituel au même moment de la semaine. Les objets de cette classe ne
+ * changent pas une fois construits.
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class Anomalie {
+
+    /**
+     * Type d'événement concerné
+     */
+    private final String typeDEvenement;
+
+    /**
+     * Débit mesuré en événements par minute
+     */
+    private final double debit;
+
+    /**
+     * Débit habituel en événements par minute
+     */
+    private final double debitAttendu;
+
+    /**
+     * Ecart au débit habituel, en nombre d'écarts-types
+     */
+    private final double score;
+
+    /**
+     * Constructeur principal
+     *
+     * @param typeDEvenement type d'événement concerné
+     * @param debit débit mesuré en événements par minute
+     * @param debitAttendu débit habituel en événements par minute
+     * @param score écart au débit habituel, en nombre d'écarts-types
+     */
+    public Anomalie(String typeDEvenement, double debit, double debitAttendu, double score) {
+        this.typeDEvenement = typeDEvenement;
+        this.debit = debit;
+        this.debitAttendu = debitAttendu;
+        this.score = score;
+    }
+
+    /**
+     * @return le type d'événement concerné
+     */
+    public String getTypeDEvenement() {
+        return typeDEvenement;
+    }
+
+    /**
+     * @return le débit mesuré en événements par minute
+     */
+    public double getDebit() {
+        return debit;
+    }
+
+    /**
+     * @return le débit habituel en événements par minute
+     */
+    public double getDebitAttendu() {
+        return debitAttendu;
+    }
+
+    /**
+     * @return l'écart au débit habituel, en nombre d'écarts-types : positif
+     * pour un excès, négatif pour un manque
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "Anomalie:{"
+                + "typeDEvenement:" + typeDEvenement
+                + ", debit:" + debit
+                + ", debitAttendu:" + debitAttendu
+                + ", score:" + score
+                + "}";
+    }
+}
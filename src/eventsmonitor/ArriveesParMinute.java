@@ -0,0 +1,246 @@
+package eventsmonitor;
+
+import static eventsmonitor.SondeDernierEvenement.CHAMP_DATE;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.Document;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+/**
+ * Classe décrivant le nombre d'événements arrivés par minute sur les
+ * dernières heures, gardé dans un tampon circulaire d'une case par minute.
+ * <p>
+ * L'historique est lu une seule fois, à la première mesure, par une
+ * agrégation regroupant les événements récents par minute de sentDate. Ensuite
+ * chaque mesure n'ajoute à la minute courante que l'augmentation du nombre
+ * d'événements depuis la mesure précédente : la collection n'est plus jamais
+ * relue pour tenir l'historique à jour.</p>
+ * <p>
+ * Les minutes de l'historique sont celles du texte de sentDate, interprétées
+ * dans le fuseau horaire du dernier événement.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class ArriveesParMinute {
+
+    /**
+     * Nombre de minutes gardées par défaut : 4 heures
+     */
+    public static final int MINUTES_PAR_DEFAUT = 240;
+
+    /**
+     * Longueur du préfixe de sentDate désignant la minute : yyyy-MM-ddTHH:mm
+     */
+    private static final int LONGUEUR_MINUTE = 16;
+
+    /**
+     * Format de ce préfixe
+     */
+    private static final DateTimeFormatter FORMAT_MINUTE = DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm");
+
+    /**
+     * Pour lire le fuseau horaire du dernier événement
+     */
+    private static final DateTimeFormatter FORMAT_ISO = ISODateTimeFormat.dateTimeParser().withOffsetParsed();
+
+    /**
+     * Collection des événements
+     */
+    private final CollectionDEvenements collection;
+
+    /**
+     * Nombre d'événements arrivés pour chaque minute gardée
+     */
+    private final long[] comptes;
+
+    /**
+     * Numéro de la minute la plus récente (minutes depuis le 1er janvier
+     * 1970), -1 si aucune
+     */
+    private long minuteRecente = -1;
+
+    /**
+     * Nombre d'événements lors de la mesure précédente, -1 si aucune
+     */
+    private long nombrePrecedent = -1;
+
+    /**
+     * Indique si l'historique a été lu
+     */
+    private boolean charge = false;
+
+    /**
+     * debugMode : fonctionnement du programme en mode debug (true/false).
+     * Valeur par défaut : false.
+     */
+    private static boolean debugMode = false;
+
+    /**
+     * Constructeur principal
+     *
+     * @param collection collection des événements
+     * @param minutes nombre de minutes gardées
+     * @param debugMode fonctionnement du programme en mode debug
+     */
+    public ArriveesParMinute(CollectionDEvenements collection, int minutes, boolean debugMode) {
+        this.collection = collection;
+        this.comptes = new long[minutes];
+        ArriveesParMinute.debugMode = debugMode;
+    }
+
+    /**
+     * Prend en compte une nouvelle mesure. La première lit l'historique dans
+     * la collection.
+     *
+     * @param listeDeMesures nouvelle mesure
+     */
+    public synchronized void mettreAJour(ListeDeMesures listeDeMesures) {
+        long minute;
+
+        minute = listeDeMesures.getDateDeLaMesure().getMillis() / 60000;
+        if (!charge) {
+            charge = true;
+            avancer(minute);
+            try {
+                charger(minute);
+            } catch (RuntimeException exception) {
+                Logger.getLogger(ArriveesParMinute.class.getName()).log(Level.WARNING,
+                        "Historique des arrivées illisible", exception);
+            }
+        } else if (nombrePrecedent >= 0) {
+            ajouter(minute, Math.max(0, listeDeMesures.getNombreDEvenements() - nombrePrecedent));
+        }
+        nombrePrecedent = listeDeMesures.getNombreDEvenements();
+    }
+
+    /**
+     * Lit l'historique des arrivées.
+     * <p>
+     * Requête à construire : db.events.aggregate({$match:{sentDate:{$gte:
+     * "yyyy-MM-ddTHH:mm"}}}, {$group:{_id:{$substr:["$sentDate", 0, 16]},
+     * count:{$sum:1}}})</p>
+     *
+     * @param minute minute de la mesure
+     */
+    private void charger(long minute) {
+        Object dernier;
+        DateTimeFormatter format;
+        List<Document> groupes;
+
+        dernier = new SondeDernierEvenement(collection).rechercherValeur();
+        if (!(dernier instanceof String)) {
+            if (dernier != null) {
+                System.out.println("Date des événements non textuelle, historique des arrivées non lu");
+            }
+            return;
+        }
+        format = FORMAT_MINUTE.withZone(zoneDe((String) dernier));
+        groupes = collection.agreger(Arrays.asList(
+                new Document("$match", new Document(CHAMP_DATE,
+                        new Document("$gte", format.print((minute - comptes.length + 1) * 60000)))),
+                new Document("$group", new Document("_id",
+                        new Document("$substr", Arrays.asList("$" + CHAMP_DATE, 0, LONGUEUR_MINUTE)))
+                        .append("count", new Document("$sum", 1)))));
+        for (Document groupe : groupes) {
+            try {
+                ajouter(format.parseMillis(String.valueOf(groupe.get("_id"))) / 60000,
+                        ((Number) groupe.get("count")).longValue());
+            } catch (IllegalArgumentException exception) {
+                if (debugMode) {
+                    System.out.println("Minute illisible : " + groupe.get("_id"));
+                }
+            }
+        }
+        if (debugMode) {
+            System.out.println("Historique des arrivées : " + groupes.size() + " minute(s) lue(s)");
+        }
+    }
+
+    /**
+     * @param date date au format ISO 8601
+     * @return le fuseau horaire de la date, UTC si elle est illisible
+     */
+    private static DateTimeZone zoneDe(String date) {
+        try {
+            return FORMAT_ISO.parseDateTime(date).getZone();
+        } catch (IllegalArgumentException exception) {
+            return DateTimeZone.UTC;
+        }
+    }
+
+    /**
+     * Ajoute des arrivées à une minute.
+     *
+     * @param minute numéro de la minute
+     * @param nombre nombre d'événements arrivés
+     */
+    private void ajouter(long minute, long nombre) {
+        avancer(minute);
+        if (minute > minuteRecente - comptes.length) {
+            comptes[(int) (minute % comptes.length)] += nombre;
+        }
+    }
+
+    /**
+     * Fait de la minute indiquée la plus récente si elle est postérieure,
+     * les minutes sautées sont remises à zéro.
+     *
+     * @param minute numéro de la minute
+     */
+    private void avancer(long minute) {
+        long m;
+
+        if (minuteRecente < 0) {
+            minuteRecente = minute;
+            return;
+        }
+        for (m = Math.max(minuteRecente + 1, minute - comptes.length + 1); m <= minute; m++) {
+            comptes[(int) (m % comptes.length)] = 0;
+        }
+        minuteRecente = Math.max(minuteRecente, minute);
+    }
+
+    /**
+     * Copie les arrivées de la plus ancienne à la plus récente minute.
+     *
+     * @param destination tableau recevant les arrivées, de longueur
+     * getMinutes()
+     * @return le numéro de la minute la plus récente, -1 si aucune
+     */
+    public synchronized long copier(long[] destination) {
+        int i;
+
+        for (i = 0; i < comptes.length; i++) {
+            destination[i] = (minuteRecente < 0) ? 0
+                    : comptes[(int) ((minuteRecente - comptes.length + 1 + i) % comptes.length)];
+        }
+        return minuteRecente;
+    }
+
+    /**
+     * @return le nombre de minutes gardées
+     */
+    public int getMinutes() {
+        return comptes.length;
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public synchronized String toString() {
+        return "ArriveesParMinute:{"
+                + "minutes:" + comptes.length
+                + ", minuteRecente:" + minuteRecente
+                + ", charge:" + charge
+                + "}";
+    }
+}
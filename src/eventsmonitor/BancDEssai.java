@@ -0,0 +1,478 @@
+package eventsmonitor;
+
+import com.mongodb.MongoClient;
+import com.mongodb.client.MongoDatabase;
+import java.awt.EventQueue;
+import java.awt.GraphicsEnvironment;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.management.ManagementFactory;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import org.bson.Document;
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+import utils.ApplicationProperties;
+import utils.DBServer;
+
+/**
+ * Programme comparant les moteurs de mesures : durée de chaque mesure, octets
+ * alloués par le thread de mesure et travail demandé au serveur (clés et
+ * documents examinés, commandes reçues, lus dans serverStatus). Il mesure
+ * aussi le coût de construction d'une mesure avec des tableaux de texte et
+ * avec des tables de comptages, de sa publication par le contrôleur et de sa
+ * réception par le tableau de suivi. Les résultats sont écrits au format CSV
+ * ou JSON sur la sortie standard, pour être comparés d'une version à
+ * l'autre.
+ * <p>
+ * Usage : java eventsmonitor.BancDEssai [-dbserver db | -memoire n [-status
+ * n] [-types n]] [-iterations n] [-echauffement n] [-json]</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.05
+ */
+public class BancDEssai {
+
+    /**
+     * Nombre de mesures faites par défaut avant de chronométrer
+     */
+    private static final int ECHAUFFEMENT = 2;
+
+    /**
+     * Nombre de status différents générés par défaut
+     */
+    private static final int NOMBRE_DE_STATUS = 5;
+
+    /**
+     * Nombre de types d'événements différents générés par défaut
+     */
+    private static final int NOMBRE_DE_TYPES = 30;
+
+    /**
+     * Pour formater les nombres comme les versions précédentes
+     */
+    private static final DecimalFormat decimalFormat = new DecimalFormat("#,##0");
+
+    /**
+     * Pour lire les octets alloués par un thread
+     */
+    private static final java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    /**
+     * Base de données mesurée, null pour une collection en mémoire
+     */
+    private final MongoDatabase mongoDatabase;
+
+    /**
+     * Collection des événements
+     */
+    private final CollectionDEvenements collection;
+
+    /**
+     * Nombre de mesures chronométrées par moteur
+     */
+    private final int iterations;
+
+    /**
+     * Nombre de mesures faites avant de chronométrer
+     */
+    private final int echauffement;
+
+    /**
+     * Résultats au format JSON plutôt que CSV
+     */
+    private final boolean json;
+
+    /**
+     * Description de la collection, reprise dans chaque résultat : nombre
+     * d'événements, de status et de types d'événements
+     */
+    private long[] description = {0, 0, 0};
+
+    /**
+     * Nombre de résultats déjà écrits
+     */
+    private int nombreDeResultats = 0;
+
+    /**
+     * Constructeur principal
+     *
+     * @param mongoDatabase base de données mesurée, null pour une collection
+     * en mémoire
+     * @param collection collection des événements
+     * @param iterations nombre de mesures chronométrées par moteur
+     */
+    public BancDEssai(MongoDatabase mongoDatabase, CollectionDEvenements collection, int iterations) {
+        this(mongoDatabase, collection, iterations, ECHAUFFEMENT, false);
+    }
+
+    /**
+     * Constructeur précisant l'échauffement et le format des résultats
+     *
+     * @param mongoDatabase base de données mesurée, null pour une collection
+     * en mémoire
+     * @param collection collection des événements
+     * @param iterations nombre de mesures chronométrées par moteur
+     * @param echauffement nombre de mesures faites avant de chronométrer
+     * @param json résultats au format JSON plutôt que CSV
+     */
+    public BancDEssai(MongoDatabase mongoDatabase, CollectionDEvenements collection, int iterations,
+            int echauffement, boolean json) {
+        this.mongoDatabase = mongoDatabase;
+        this.collection = collection;
+        this.iterations = iterations;
+        this.echauffement = echauffement;
+        this.json = json;
+    }
+
+    /**
+     * Compare les moteurs et affiche les résultats.
+     */
+    public void comparer() {
+        final Map<String, Long> status;
+        final Map<String, Long> evenements;
+
+        status = ListeDeMesures.grouperPar(collection, "status");
+        evenements = ListeDeMesures.grouperPar(collection, "eventType");
+        description = new long[]{collection.compter(), status.size(), evenements.size()};
+
+        if (json) {
+            System.out.println("[");
+        } else {
+            System.out.println("cas;iterations;moyenne_ms;min_ms;max_ms;octets;clesExaminees;documentsExamines;commandes"
+                    + ";evenements;status;types");
+        }
+        essayer("quatreRequetes", new MoteurComplet(collection, false));
+        essayer("quatreRequetesParalleles", new MoteurComplet(collection, MoteurComplet.creerExecuteur(4), false));
+        essayer("facette", new MoteurFacette(collection, false));
+        essayer("echantillon", new MoteurEchantillon(collection, MoteurComplet.creerExecuteur(4),
+                (int) Math.max(1, Math.min(10000, description[0] / 100)), Integer.MAX_VALUE, false));
+        essayer("delta", new MoteurDelta(collection, "_id", 120, false));
+
+        essayer("mesureEnTexte", new Runnable() {
+            @Override
+            public void run() {
+                construireMesureEnTexte(status, evenements);
+            }
+        });
+        essayer("mesureTypee", new Runnable() {
+            @Override
+            public void run() {
+                new ListeDeMesures(0, null, status, evenements, false);
+            }
+        });
+        essayerPublication(status, evenements);
+        if (json) {
+            System.out.println("]");
+        }
+    }
+
+    /**
+     * Chronomètre la publication d'une mesure par le contrôleur, d'abord vers
+     * un écouteur vide, puis vers un tableau de suivi si un affichage est
+     * disponible. Pour le tableau de suivi, chaque publication attend que le
+     * thread de l'interface graphique ait affiché la mesure : le temps
+     * mesuré comprend l'application de la mesure aux tables.
+     *
+     * @param status nombre d'événements par status
+     * @param evenements nombre d'événements par type d'événement
+     */
+    private void essayerPublication(Map<String, Long> status, Map<String, Long> evenements) {
+        final Controleur controleur;
+        final ListeDeMesures[] mesures;
+        final int[] rang = {0};
+        final Runnable publication;
+        TableauDeSuivi tableauDeSuivi;
+
+        controleur = new Controleur(new MoteurComplet(collection, false), false);
+        mesures = new ListeDeMesures[]{
+            new ListeDeMesures(description[0], null, status, evenements, false),
+            new ListeDeMesures(description[0], null, status, evenements, false)};
+        publication = new Runnable() {
+            @Override
+            public void run() {
+                controleur.setListeDeMesures(mesures[rang[0]++ % 2]);
+            }
+        };
+        controleur.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+            }
+        });
+        essayer("publication", publication);
+
+        if (GraphicsEnvironment.isHeadless()) {
+            System.err.println("propertyChange non essayé : pas d'affichage disponible");
+            return;
+        }
+        tableauDeSuivi = new TableauDeSuivi(false);
+        controleur.addPropertyChangeListener(tableauDeSuivi);
+        essayer("propertyChange", new Runnable() {
+            @Override
+            public void run() {
+                publication.run();
+                // L'affichage est déjà dans la file du thread graphique : la
+                // tâche vide passe après lui.
+                try {
+                    EventQueue.invokeAndWait(new Runnable() {
+                        @Override
+                        public void run() {
+                        }
+                    });
+                } catch (InterruptedException | InvocationTargetException exception) {
+                    throw new IllegalStateException("Affichage interrompu", exception);
+                }
+            }
+        });
+        tableauDeSuivi.dispose();
+    }
+
+    /**
+     * Chronomètre un moteur de mesures.
+     *
+     * @param cas nom du cas d'essai
+     * @param moteur moteur à essayer
+     */
+    private void essayer(String cas, final MoteurDeMesures moteur) {
+        essayer(cas, new Runnable() {
+            @Override
+            public void run() {
+                moteur.mesurer();
+            }
+        });
+        moteur.arreter();
+    }
+
+    /**
+     * Chronomètre une tâche. Les octets alloués sont ceux du thread appelant
+     * seulement : le travail confié à d'autres threads n'y figure pas.
+     *
+     * @param cas nom du cas d'essai
+     * @param tache tâche à essayer
+     */
+    private void essayer(String cas, Runnable tache) {
+        long[] avant;
+        long[] apres;
+        long octetsAvant;
+        long octets;
+        long debut;
+        long duree;
+        long total = 0;
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        int i;
+
+        for (i = 0; i < echauffement; i++) {
+            tache.run();
+        }
+        avant = lireTravailDuServeur();
+        octetsAvant = lireOctetsAlloues();
+        for (i = 0; i < iterations; i++) {
+            debut = System.nanoTime();
+            tache.run();
+            duree = System.nanoTime() - debut;
+            total += duree;
+            min = Math.min(min, duree);
+            max = Math.max(max, duree);
+        }
+        octets = (octetsAvant < 0) ? -1 : (lireOctetsAlloues() - octetsAvant) / iterations;
+        apres = lireTravailDuServeur();
+        if (json) {
+            System.out.println(String.format(Locale.ROOT, "%s{\"cas\":\"%s\",\"iterations\":%d,"
+                    + "\"moyenne_ms\":%.3f,\"min_ms\":%.3f,\"max_ms\":%.3f,\"octets\":%d,"
+                    + "\"clesExaminees\":%d,\"documentsExamines\":%d,\"commandes\":%d,"
+                    + "\"evenements\":%d,\"status\":%d,\"types\":%d}",
+                    (nombreDeResultats == 0) ? "" : ",", cas, iterations,
+                    total / 1e6 / iterations, min / 1e6, max / 1e6, octets,
+                    (apres[0] - avant[0]) / iterations, (apres[1] - avant[1]) / iterations,
+                    (apres[2] - avant[2]) / iterations, description[0], description[1], description[2]));
+        } else {
+            System.out.println(String.format(Locale.ROOT, "%s;%d;%.3f;%.3f;%.3f;%d;%d;%d;%d;%d;%d;%d", cas, iterations,
+                    total / 1e6 / iterations, min / 1e6, max / 1e6, octets,
+                    (apres[0] - avant[0]) / iterations, (apres[1] - avant[1]) / iterations,
+                    (apres[2] - avant[2]) / iterations, description[0], description[1], description[2]));
+        }
+        nombreDeResultats++;
+    }
+
+    /**
+     * @return les octets alloués par le thread courant depuis son démarrage,
+     * -1 si la JVM ne sait pas les compter
+     */
+    private static long lireOctetsAlloues() {
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported()) {
+            return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * Construit une mesure comme le faisaient les versions précédentes :
+     * copie des comptages et tableaux de texte des plus grands comptages mis en
+     * forme dans le thread de mesure. Sert de référence à mesureTypee.
+     *
+     * @param status nombre d'événements par status
+     * @param evenements nombre d'événements par type d'événement
+     * @return les tableaux des status et des événements
+     */
+    private static String[][][] construireMesureEnTexte(Map<String, Long> status, Map<String, Long> evenements) {
+        Collections.unmodifiableMap(new LinkedHashMap<>(status));
+        Collections.unmodifiableMap(new LinkedHashMap<>(evenements));
+        return new String[][][]{
+            construireTableauEnTexte(status, EventsMonitor.MAX_STATUS),
+            construireTableauEnTexte(evenements, EventsMonitor.MAX_EVENTS)};
+    }
+
+    /**
+     * @param comptages nombre d'événements par valeur
+     * @param max nombre maximum de rangées
+     * @return le tableau à deux colonnes : valeur, quantité mise en forme
+     */
+    private static String[][] construireTableauEnTexte(Map<String, Long> comptages, int max) {
+        List<Map.Entry<String, Long>> rangees;
+        String tableau[][];
+        int i;
+
+        rangees = new ArrayList<>(comptages.entrySet());
+        Collections.sort(rangees, new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare(Map.Entry<String, Long> rangee1, Map.Entry<String, Long> rangee2) {
+                return Long.compare(rangee2.getValue(), rangee1.getValue());
+            }
+        });
+        tableau = new String[max][2];
+        for (i = 0; i < max; i++) {
+            tableau[i][0] = (i < rangees.size()) ? rangees.get(i).getKey() : "";
+            tableau[i][1] = (i < rangees.size()) ? decimalFormat.format(rangees.get(i).getValue()) : "";
+        }
+        return tableau;
+    }
+
+    /**
+     * Lit les compteurs de travail du serveur. Les valeurs ne sont
+     * significatives que si le serveur n'a pas d'autre activité.
+     *
+     * @return clés examinées, documents examinés et commandes reçues depuis le
+     * démarrage du serveur, zéros pour une collection en mémoire
+     */
+    private long[] lireTravailDuServeur() {
+        Document statut;
+        Document executeur;
+        Document compteurs;
+
+        if (mongoDatabase == null) {
+            return new long[]{0, 0, 0};
+        }
+        statut = mongoDatabase.runCommand(new Document("serverStatus", 1));
+        executeur = (Document) ((Document) statut.get("metrics")).get("queryExecutor");
+        compteurs = (Document) statut.get("opcounters");
+        return new long[]{
+            ((Number) executeur.get("scanned")).longValue(),
+            ((Number) executeur.get("scannedObjects")).longValue(),
+            ((Number) compteurs.get("command")).longValue() + ((Number) compteurs.get("query")).longValue()
+        };
+    }
+
+    /**
+     * Génère une collection en mémoire : 5 status et 30 types d'événements
+     * de fréquences décroissantes, dates sur les 30 derniers jours.
+     *
+     * @param nombre nombre d'événements à générer
+     * @return la collection générée
+     */
+    static CollectionEnMemoire genererCollection(int nombre) {
+        return genererCollection(nombre, NOMBRE_DE_STATUS, NOMBRE_DE_TYPES);
+    }
+
+    /**
+     * Génère une collection en mémoire : status et types d'événements de
+     * fréquences décroissant exponentiellement, dates sur les 30 derniers
+     * jours.
+     *
+     * @param nombre nombre d'événements à générer
+     * @param nombreDeStatus nombre de status différents au plus
+     * @param nombreDeTypes nombre de types d'événements différents au plus
+     * @return la collection générée
+     */
+    static CollectionEnMemoire genererCollection(int nombre, int nombreDeStatus, int nombreDeTypes) {
+        CollectionEnMemoire collectionEnMemoire = new CollectionEnMemoire();
+        DateTimeFormatter format = ISODateTimeFormat.dateTime();
+        Random hasard = new Random(0);
+        long maintenant = new DateTime().getMillis();
+        int i;
+
+        for (i = 0; i < nombre; i++) {
+            collectionEnMemoire.inserer(new Document("_id", (long) i)
+                    .append("status", "status-" + Math.min(nombreDeStatus - 1,
+                            (int) (-nombreDeStatus / 5.0 * Math.log(hasard.nextDouble()))))
+                    .append("eventType", "eventType-" + Math.min(nombreDeTypes - 1,
+                            (int) (-nombreDeTypes / 10.0 * Math.log(hasard.nextDouble()))))
+                    .append("sentDate", format.print(maintenant - (long) (hasard.nextDouble() * 30 * 86400000L))));
+        }
+        return collectionEnMemoire;
+    }
+
+    /**
+     * @param args the command line arguments
+     * @throws Exception en cas d'erreur
+     */
+    public static void main(String[] args) throws Exception {
+        String dbServerType = null;
+        int nombreEnMemoire = 100000;
+        int nombreDeStatus = NOMBRE_DE_STATUS;
+        int nombreDeTypes = NOMBRE_DE_TYPES;
+        int iterations = 10;
+        int echauffement = ECHAUFFEMENT;
+        boolean json = false;
+        DBServer dbServer;
+        MongoClient mongoClient = null;
+        MongoDatabase mongoDatabase = null;
+        CollectionDEvenements collection;
+        int i;
+
+        for (i = 0; i < args.length; i++) {
+            if (args[i].equals("-dbserver") && i + 1 < args.length) {
+                dbServerType = args[++i];
+            } else if (args[i].equals("-memoire") && i + 1 < args.length) {
+                nombreEnMemoire = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-status") && i + 1 < args.length) {
+                nombreDeStatus = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-types") && i + 1 < args.length) {
+                nombreDeTypes = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-iterations") && i + 1 < args.length) {
+                iterations = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-echauffement") && i + 1 < args.length) {
+                echauffement = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-json")) {
+                json = true;
+            } else {
+                System.out.println("Usage : java eventsmonitor.BancDEssai [-dbserver db | -memoire n [-status n]"
+                        + " [-types n]] [-iterations n] [-echauffement n] [-json]");
+                return;
+            }
+        }
+
+        if (dbServerType != null) {
+            dbServer = new DBServer(dbServerType, new ApplicationProperties("EventsMonitor.prop"));
+            mongoClient = new MongoClient(dbServer.getIpAddress(), (int) dbServer.getPortNumber());
+            mongoDatabase = mongoClient.getDatabase(dbServer.getDbName());
+            collection = new CollectionMongo(mongoDatabase.getCollection(EventsMonitor.COLLECTION_EVENEMENTS));
+        } else {
+            collection = genererCollection(nombreEnMemoire, nombreDeStatus, nombreDeTypes);
+        }
+        new BancDEssai(mongoDatabase, collection, iterations, echauffement, json).comparer();
+        if (mongoClient != null) {
+            mongoClient.close();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package eventsmonitor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classe décrivant le temps accordé à un top de mesure d'un serveur.
+ * <p>
+ * Le contrôleur ouvre le budget au début du top et le ferme à la fin. Entre
+ * les deux, chaque requête se voit accorder le plus petit de son délai
+ * maximum et du temps restant, transmis au serveur (maxTimeMS) qui
+ * l'interrompt au-delà ; une requête lancée quand le budget est épuisé est
+ * refusée. Le budget est partagé par les threads d'une même mesure.</p>
+ * <p>
+ * Une fois le top fermé, les requêtes qui seraient encore lancées pour lui
+ * (restes d'un top abandonné) sont refusées : elles ne retombent pas sur
+ * leur seul délai maximum pour retarder le top suivant. Avant le premier
+ * top, les requêtes n'ont que leur délai maximum.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.02
+ */
+public class BudgetDuTop {
+
+    /**
+     * Temps accordé à un top en millisecondes
+     */
+    private final long budget;
+
+    /**
+     * Instant (System.nanoTime) de fin du top en cours, 0 avant le premier
+     * top
+     */
+    private volatile long echeance = 0;
+
+    /**
+     * Vrai entre la fin d'un top et le début du suivant
+     */
+    private volatile boolean ferme = false;
+
+    /**
+     * Constructeur principal
+     *
+     * @param budget temps accordé à un top en millisecondes
+     */
+    public BudgetDuTop(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Ouvre le budget au début d'un top.
+     */
+    public void ouvrir() {
+        echeance = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget);
+        ferme = false;
+    }
+
+    /**
+     * Ferme le budget à la fin d'un top : les requêtes lancées ensuite pour
+     * ce top sont refusées.
+     */
+    public void fermer() {
+        ferme = true;
+    }
+
+    /**
+     * @param delaiDeRequete délai maximum d'une requête en millisecondes, 0
+     * si aucun
+     * @return le temps accordé à une requête en millisecondes, 0 si aucune
+     * limite
+     * @throws DepassementDeBudgetException si le budget du top est épuisé ou
+     * si le top est terminé
+     */
+    public long accorder(long delaiDeRequete) {
+        long fin = echeance;
+        long restant;
+
+        if (ferme) {
+            throw new DepassementDeBudgetException("Top terminé, requête refusée");
+        } else if (fin == 0) {
+            return delaiDeRequete;
+        }
+        restant = TimeUnit.NANOSECONDS.toMillis(fin - System.nanoTime());
+        if (restant <= 0) {
+            throw new DepassementDeBudgetException("Budget du top de " + budget + " ms épuisé");
+        }
+        return (delaiDeRequete > 0) ? Math.min(delaiDeRequete, restant) : restant;
+    }
+
+    /**
+     * @return le temps accordé à un top en millisecondes
+     */
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "BudgetDuTop:{"
+                + "budget:" + budget
+                + "}";
+    }
+}
@@ -0,0 +1,170 @@
+package eventsmonitor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Classe décrivant le chronométrage des étapes d'une mesure : chaque requête,
+ * la mesure complète, sa publication aux écouteurs et son affichage.
+ * <p>
+ * Les durées sont rangées en microsecondes dans un histogramme de taille fixe
+ * par étape, portant sur les 5 dernières minutes. Un enregistrement ne coûte
+ * que quelques opérations sur des tableaux, il peut être fait à chaque
+ * requête.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.02
+ */
+public class Chronometrage {
+
+    /**
+     * Etape : comptage des événements
+     */
+    public static final String COMPTAGE = "comptage";
+
+    /**
+     * Etape : lecture du nombre estimé d'événements
+     */
+    public static final String ESTIMATION = "estimation";
+
+    /**
+     * Etape : recherche du dernier événement
+     */
+    public static final String DERNIER_EVENEMENT = "dernier événement";
+
+    /**
+     * Etape : regroupement par status
+     */
+    public static final String STATUS = "status";
+
+    /**
+     * Etape : regroupement par type d'événement
+     */
+    public static final String EVENT_TYPE = "eventType";
+
+    /**
+     * Etape : regroupement d'un échantillon aléatoire
+     */
+    public static final String ECHANTILLON = "échantillon";
+
+    /**
+     * Etape : mesure complète par le moteur
+     */
+    public static final String MESURE = "mesure";
+
+    /**
+     * Etape : publication de la mesure aux écouteurs
+     */
+    public static final String PUBLICATION = "publication";
+
+    /**
+     * Etape : écriture de la mesure dans le journal
+     */
+    public static final String JOURNAL = "journal";
+
+    /**
+     * Etape : comparaison des débits à la référence saisonnière
+     */
+    public static final String SAISONS = "saisons";
+
+    /**
+     * Etape : évaluation des règles d'alerte sur la mesure
+     */
+    public static final String ALERTES = "alertes";
+
+    /**
+     * Etape : affichage de la mesure dans le tableau de suivi
+     */
+    public static final String AFFICHAGE = "affichage";
+
+    /**
+     * Etape : top complet de l'ordonnanceur, suivis compris
+     */
+    public static final String TOP = "top";
+
+    /**
+     * Nombre de tranches d'une minute gardées
+     */
+    private static final int MINUTES = 5;
+
+    /**
+     * Histogramme des durées de chaque étape, dans l'ordre de première
+     * apparition
+     */
+    private final Map<String, HistogrammeDeLatences> etapes = new LinkedHashMap<>();
+
+    /**
+     * Constructeur principal. Les étapes d'une mesure sont créées d'avance
+     * pour être toujours affichées dans le même ordre.
+     */
+    public Chronometrage() {
+        for (String etape : new String[]{COMPTAGE, DERNIER_EVENEMENT, STATUS, EVENT_TYPE,
+            MESURE, PUBLICATION, AFFICHAGE, TOP}) {
+            etapes.put(etape, new HistogrammeDeLatences(MINUTES, 60000));
+        }
+    }
+
+    /**
+     * Enregistre la durée d'une étape.
+     *
+     * @param etape nom de l'étape
+     * @param debut début de l'étape, lu par System.nanoTime()
+     */
+    public void enregistrer(String etape, long debut) {
+        long duree;
+        HistogrammeDeLatences histogramme;
+
+        duree = (System.nanoTime() - debut) / 1000;
+        synchronized (this) {
+            histogramme = etapes.get(etape);
+            if (histogramme == null) {
+                histogramme = new HistogrammeDeLatences(MINUTES, 60000);
+                etapes.put(etape, histogramme);
+            }
+            histogramme.ajouter(duree, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * @return la répartition des durées en microsecondes de chaque étape
+     * chronométrée au moins une fois, dans l'ordre des étapes
+     */
+    public synchronized Map<String, Latences> resumer() {
+        Map<String, Latences> resume = new LinkedHashMap<>();
+        long[] quantiles = new long[Latences.QUANTILES.length];
+        long instant;
+        long nombre;
+
+        instant = System.currentTimeMillis();
+        for (Map.Entry<String, HistogrammeDeLatences> etape : etapes.entrySet()) {
+            nombre = etape.getValue().getNombre(instant);
+            if (nombre > 0) {
+                etape.getValue().quantiles(Latences.QUANTILES, instant, quantiles);
+                resume.put(etape.getKey(), new Latences(nombre, quantiles, etape.getValue().getMax(instant)));
+            }
+        }
+        return resume;
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        StringBuilder texte = new StringBuilder("Chronometrage:{");
+        String separateur = "";
+
+        for (Map.Entry<String, Latences> etape : resumer().entrySet()) {
+            texte.append(separateur).append(etape.getKey()).append(":{")
+                    .append("n:").append(etape.getValue().getNombre())
+                    .append(", p50:").append(etape.getValue().getP50())
+                    .append("µs, p99:").append(etape.getValue().getP99())
+                    .append("µs, max:").append(etape.getValue().getMax())
+                    .append("µs}");
+            separateur = ", ";
+        }
+        return texte.append('}').toString();
+    }
+}
@@ -0,0 +1,308 @@
+package eventsmonitor;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.ReadPreference;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.MongoDatabase;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import utils.ApplicationProperties;
+import utils.DBServer;
+import utils.DBServerException;
+
+/**
+ * Classe décrivant un serveur de base de données suivi : sa connexion, son
+ * moteur de mesures, son contrôleur et son ordonnanceur. Chaque serveur suivi
+ * a ses propres mesures et son propre historique ; l'horloge et les threads de
+ * mesure sont partagés entre tous les serveurs.
+ *
+ * @author Thierry Baribaud
+ * @version 0.10
+ */
+public class Cible {
+
+    /**
+     * Type de serveur de base de données : prod, pre-prod, dev, ...
+     */
+    private final String nom;
+
+    /**
+     * Paramètres de suivi du serveur
+     */
+    private final ParametresDeSuivi parametresDeSuivi;
+
+    /**
+     * Connexion au serveur de base de données
+     */
+    private final MongoClient mongoClient;
+
+    /**
+     * Contrôleur des mesures
+     */
+    private final Controleur controleur;
+
+    /**
+     * Ordonnanceur des mesures
+     */
+    private final Ordonnanceur ordonnanceur;
+
+    /**
+     * Comptage estimé des événements, null si les événements sont toujours
+     * comptés exactement
+     */
+    private ComptageEstime comptageEstime = null;
+
+    /**
+     * Temps accordé à chaque top de mesure
+     */
+    private final BudgetDuTop budget;
+
+    /**
+     * debugMode : fonctionnement du programme en mode debug (true/false).
+     * Valeur par défaut : false.
+     */
+    private static boolean debugMode = false;
+
+    /**
+     * Constructeur principal
+     *
+     * @param nom type de serveur de base de données
+     * @param applicationProperties paramètres de l'application
+     * @param nombreDeConnexions nombre maximum de connexions à ce serveur
+     * @param horloge horloge partagée des ordonnanceurs
+     * @param executant threads de mesure partagés
+     * @param debugMode fonctionnement du programme en mode debug
+     * @throws utils.DBServerException en cas d'erreur avec le serveur de base
+     * de données.
+     */
+    public Cible(String nom, ApplicationProperties applicationProperties, int nombreDeConnexions,
+            ScheduledExecutorService horloge, ExecutorService executant, boolean debugMode) throws DBServerException {
+        DBServer dbServer;
+        MongoDatabase mongoDatabase;
+        CollectionDEvenements collection;
+        MoteurDeMesures moteurDeMesures;
+        Chronometrage chronometrage;
+        ReadPreference lecture;
+        int tailleDuPool;
+
+        this.nom = nom;
+        Cible.debugMode = debugMode;
+
+        System.out.println("Lecture des paramètres du serveur de base de données " + nom + " ...");
+        dbServer = new DBServer(nom, applicationProperties);
+        if (debugMode) {
+            System.out.println(dbServer);
+        }
+        parametresDeSuivi = new ParametresDeSuivi(nom, applicationProperties);
+        if (parametresDeSuivi.getNombreDeThreads() > nombreDeConnexions) {
+            System.out.println("Nombre de threads ramené à " + nombreDeConnexions + " pour " + nom
+                    + " (connexions.max)");
+            parametresDeSuivi.setNombreDeThreads(nombreDeConnexions);
+        }
+        if (debugMode) {
+            System.out.println(parametresDeSuivi);
+        }
+        lecture = ReadPreference.valueOf(parametresDeSuivi.getLecture());
+        tailleDuPool = Math.min(nombreDeConnexions, parametresDeSuivi.getNombreDeThreads() + 1);
+        budget = new BudgetDuTop(parametresDeSuivi.getBudgetDuTop());
+        System.out.println("Ouverture de la connexion au serveur de base de données : " + dbServer.getName()
+                + ", " + tailleDuPool + " connexion(s) au plus, lecture " + lecture.getName()
+                + ", " + parametresDeSuivi.getBudgetDuTop() + " ms par top");
+        mongoClient = new MongoClient(new ServerAddress(dbServer.getIpAddress(), (int) dbServer.getPortNumber()),
+                MongoClientOptions.builder()
+                .readPreference(lecture)
+                .connectionsPerHost(tailleDuPool)
+                .maxWaitTime(parametresDeSuivi.getBudgetDuTop())
+                .socketTimeout(parametresDeSuivi.getDelaiDeSocket())
+                .serverSelectionTimeout(parametresDeSuivi.getDelaiDeSelection())
+                .build());
+
+        System.out.println("Connexion à la base de données : " + dbServer.getDbName());
+        mongoDatabase = mongoClient.getDatabase(dbServer.getDbName());
+
+        collection = new CollectionMongo(mongoDatabase, parametresDeSuivi.getCollection(),
+                parametresDeSuivi.getDelaiDeRequete(), budget);
+        chronometrage = new Chronometrage();
+        moteurDeMesures = creerMoteurDeMesures(mongoDatabase, new CollectionChronometree(collection, chronometrage));
+        if (!parametresDeSuivi.getIndicateurs().isEmpty()) {
+            moteurDeMesures = new MoteurCatalogue(moteurDeMesures, parametresDeSuivi.getIndicateurs(),
+                    ouvrirCollections(mongoDatabase, chronometrage), debugMode);
+        }
+        System.out.println("Moteur de mesures de " + nom + " : " + moteurDeMesures);
+
+        controleur = new Controleur(moteurDeMesures,
+                new HistoriqueDeMesures(parametresDeSuivi.getCapaciteHistorique()), debugMode);
+        controleur.setChronometrage(chronometrage);
+        controleur.setBudget(budget);
+        controleur.setComptageEstime(comptageEstime);
+        if (!parametresDeSuivi.getRepertoireDuJournal().isEmpty()) {
+            controleur.setJournal(new JournalDeMesures(new File(parametresDeSuivi.getRepertoireDuJournal(), nom),
+                    parametresDeSuivi.getTailleSegment() << 20, parametresDeSuivi.getHeuresParSegment() * 3600000L,
+                    debugMode));
+        }
+        if (!parametresDeSuivi.getFichierDesSaisons().isEmpty()) {
+            controleur.setSaisons(new ReferenceSaisonniere(new File(parametresDeSuivi.getFichierDesSaisons()),
+                    parametresDeSuivi.getMinutesParTranche(), parametresDeSuivi.getSeuilDAnomalie(),
+                    parametresDeSuivi.getSemainesDApprentissage(), debugMode));
+        }
+        if (!parametresDeSuivi.getRegles().isEmpty()) {
+            controleur.setAlertes(new MoteurDAlertes(nom, parametresDeSuivi.getRegles(),
+                    parametresDeSuivi.getFichierDAlertes().isEmpty()
+                    ? null : new File(parametresDeSuivi.getFichierDAlertes()),
+                    parametresDeSuivi.getCommandeDAlerte().isEmpty() ? null : parametresDeSuivi.getCommandeDAlerte(),
+                    debugMode));
+        }
+        controleur.setArrivees(new ArriveesParMinute(new CollectionChronometree(collection, chronometrage, "arrivées"),
+                parametresDeSuivi.getMinutesDArrivees(), debugMode));
+        controleur.setLatences(new SuiviDesLatences(new CollectionChronometree(collection, chronometrage, "retards"),
+                parametresDeSuivi.getMinutesDeRetards(), debugMode));
+        ordonnanceur = new Ordonnanceur(controleur, parametresDeSuivi.getTempo(), horloge, executant, debugMode);
+    }
+
+    /**
+     * Crée le moteur de mesures demandé dans les paramètres de suivi. Le
+     * moteur incrémental nécessite un replica set, à défaut le moteur complet
+     * est utilisé. Les moteurs complet et echantillon lisent le nombre estimé
+     * d'événements si une période de comptage exact est donnée.
+     *
+     * @param mongoDatabase connexion à la base de données
+     * @param collection collection des événements
+     * @return le moteur de mesures
+     */
+    private MoteurDeMesures creerMoteurDeMesures(MongoDatabase mongoDatabase, CollectionDEvenements collection) {
+        FluxOplog fluxOplog;
+
+        try {
+            new SondeDernierEvenement(collection).verifierIndex();
+        } catch (RuntimeException exception) {
+            Logger.getLogger(Cible.class.getName()).log(Level.WARNING,
+                    "Vérification des index impossible sur " + nom, exception);
+        }
+        if (ParametresDeSuivi.MOTEUR_INCREMENTAL.equals(parametresDeSuivi.getMoteur())) {
+            fluxOplog = new FluxOplog(mongoClient.getDatabase("local"),
+                    mongoDatabase.getName() + "." + parametresDeSuivi.getCollection(), debugMode);
+            if (fluxOplog.estDisponible()) {
+                return new MoteurIncremental(collection, fluxOplog,
+                        parametresDeSuivi.getPeriodeDeResynchronisation(), debugMode);
+            }
+            System.out.println("Oplog indisponible, utilisation du moteur complet");
+        } else if (ParametresDeSuivi.MOTEUR_DELTA.equals(parametresDeSuivi.getMoteur())) {
+            return new MoteurDelta(collection, parametresDeSuivi.getChampDeMarque(),
+                    parametresDeSuivi.getPeriodeDeReconciliation(), debugMode);
+        } else if (ParametresDeSuivi.MOTEUR_FACETTE.equals(parametresDeSuivi.getMoteur())) {
+            return new MoteurFacette(collection, debugMode);
+        } else if (ParametresDeSuivi.MOTEUR_ECHANTILLON.equals(parametresDeSuivi.getMoteur())) {
+            return new MoteurEchantillon(estimerLeComptage(collection),
+                    MoteurComplet.creerExecuteur(parametresDeSuivi.getNombreDeThreads()),
+                    parametresDeSuivi.getTailleDEchantillon(), parametresDeSuivi.getPeriodeDeRepartitionExacte(),
+                    debugMode);
+        } else if (!ParametresDeSuivi.MOTEUR_COMPLET.equals(parametresDeSuivi.getMoteur())) {
+            System.out.println("Moteur inconnu : " + parametresDeSuivi.getMoteur()
+                    + ", utilisation du moteur complet");
+        }
+        return new MoteurComplet(estimerLeComptage(collection),
+                MoteurComplet.creerExecuteur(parametresDeSuivi.getNombreDeThreads()), debugMode);
+    }
+
+    /**
+     * Enveloppe la collection dans un comptage estimé si une période de
+     * comptage exact est donnée.
+     *
+     * @param collection collection des événements
+     * @return la collection à compter
+     */
+    private CollectionDEvenements estimerLeComptage(CollectionDEvenements collection) {
+        if (parametresDeSuivi.getPeriodeDeComptageExact() > 0) {
+            comptageEstime = new ComptageEstime(collection, parametresDeSuivi.getPeriodeDeComptageExact(),
+                    debugMode);
+            return comptageEstime;
+        }
+        return collection;
+    }
+
+    /**
+     * @param mongoDatabase connexion à la base de données
+     * @param chronometrage chronométrage des requêtes
+     * @return les collections interrogées par les indicateurs du catalogue,
+     * par nom
+     */
+    private Map<String, CollectionDEvenements> ouvrirCollections(MongoDatabase mongoDatabase,
+            Chronometrage chronometrage) {
+        Map<String, CollectionDEvenements> collections = new HashMap<>();
+
+        for (Indicateur indicateur : parametresDeSuivi.getIndicateurs()) {
+            if (!collections.containsKey(indicateur.getCollection())) {
+                collections.put(indicateur.getCollection(),
+                        new CollectionChronometree(
+                                new CollectionMongo(mongoDatabase, indicateur.getCollection(),
+                                        parametresDeSuivi.getDelaiDeRequete(), budget),
+                                chronometrage, "catalogue " + indicateur.getCollection()));
+            }
+        }
+        return collections;
+    }
+
+    /**
+     * Démarre les mesures.
+     */
+    public void demarrer() {
+        ordonnanceur.demarrer();
+    }
+
+    /**
+     * Arrête les mesures et ferme la connexion au serveur.
+     */
+    public void arreter() {
+        ordonnanceur.arreter();
+        controleur.arreter();
+        mongoClient.close();
+    }
+
+    /**
+     * @return le type de serveur de base de données
+     */
+    public String getNom() {
+        return nom;
+    }
+
+    /**
+     * @return les paramètres de suivi du serveur
+     */
+    public ParametresDeSuivi getParametresDeSuivi() {
+        return parametresDeSuivi;
+    }
+
+    /**
+     * @return le contrôleur des mesures
+     */
+    public Controleur getControleur() {
+        return controleur;
+    }
+
+    /**
+     * @return l'ordonnanceur des mesures
+     */
+    public Ordonnanceur getOrdonnanceur() {
+        return ordonnanceur;
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "Cible:{"
+                + "nom:" + nom
+                + ", parametresDeSuivi:" + parametresDeSuivi
+                + ", ordonnanceur:" + ordonnanceur
+                + "}";
+    }
+}
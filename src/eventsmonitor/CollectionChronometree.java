@@ -0,0 +1,149 @@
+package eventsmonitor;
+
+import static eventsmonitor.SondeDernierEvenement.CHAMP_DATE;
+import java.util.List;
+import org.bson.Document;
+
+/**
+ * Classe décrivant une collection d'événements dont chaque requête est
+ * chronométrée. Elle enveloppe la collection utilisée par un moteur de
+ * mesures sans que le moteur ait à changer.
+ * <p>
+ * Sans étiquette, l'étape est déduite de la requête : comptage, recherche du
+ * dernier événement, regroupement par le champ du $group, agrégation
+ * $facet ou échantillon $sample. Avec une étiquette, toutes les requêtes sont rangées sous elle.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.03
+ */
+public class CollectionChronometree implements CollectionDEvenements {
+
+    /**
+     * Collection interrogée
+     */
+    private final CollectionDEvenements collection;
+
+    /**
+     * Chronométrage recevant les durées
+     */
+    private final Chronometrage chronometrage;
+
+    /**
+     * Etape sous laquelle ranger toutes les requêtes, null pour la déduire de
+     * chaque requête
+     */
+    private final String etiquette;
+
+    /**
+     * Constructeur principal
+     *
+     * @param collection collection interrogée
+     * @param chronometrage chronométrage recevant les durées
+     */
+    public CollectionChronometree(CollectionDEvenements collection, Chronometrage chronometrage) {
+        this(collection, chronometrage, null);
+    }
+
+    /**
+     * Constructeur rangeant toutes les requêtes sous une même étape
+     *
+     * @param collection collection interrogée
+     * @param chronometrage chronométrage recevant les durées
+     * @param etiquette étape sous laquelle ranger les requêtes
+     */
+    public CollectionChronometree(CollectionDEvenements collection, Chronometrage chronometrage, String etiquette) {
+        this.collection = collection;
+        this.chronometrage = chronometrage;
+        this.etiquette = etiquette;
+    }
+
+    @Override
+    public long compter() {
+        long debut = System.nanoTime();
+
+        try {
+            return collection.compter();
+        } finally {
+            chronometrage.enregistrer((etiquette == null) ? Chronometrage.COMPTAGE : etiquette, debut);
+        }
+    }
+
+    @Override
+    public long estimer() {
+        long debut = System.nanoTime();
+
+        try {
+            return collection.estimer();
+        } finally {
+            chronometrage.enregistrer((etiquette == null) ? Chronometrage.ESTIMATION : etiquette, debut);
+        }
+    }
+
+    @Override
+    public Document premier(Document filtre, Document projection, Document tri) {
+        long debut = System.nanoTime();
+
+        try {
+            return collection.premier(filtre, projection, tri);
+        } finally {
+            chronometrage.enregistrer((etiquette != null) ? etiquette
+                    : (tri != null && tri.containsKey(CHAMP_DATE)) ? Chronometrage.DERNIER_EVENEMENT
+                    : "lecture", debut);
+        }
+    }
+
+    @Override
+    public List<Document> agreger(List<Document> pipeline) {
+        long debut = System.nanoTime();
+
+        try {
+            return collection.agreger(pipeline);
+        } finally {
+            chronometrage.enregistrer((etiquette == null) ? etape(pipeline) : etiquette, debut);
+        }
+    }
+
+    @Override
+    public List<Document> listerIndex() {
+        return collection.listerIndex();
+    }
+
+    /**
+     * @param pipeline étapes d'une agrégation
+     * @return l'étape chronométrée correspondante : le champ de regroupement,
+     * "facette", "échantillon" ou "agrégation"
+     */
+    private static String etape(List<Document> pipeline) {
+        Object groupe;
+        Object cle;
+
+        for (Document etape : pipeline) {
+            if (etape.containsKey("$facet")) {
+                return "facette";
+            } else if (etape.containsKey("$sample")) {
+                return Chronometrage.ECHANTILLON;
+            }
+            groupe = etape.get("$group");
+            if (groupe instanceof Document) {
+                cle = ((Document) groupe).get("_id");
+                if (cle instanceof String && ((String) cle).startsWith("$")) {
+                    return ((String) cle).substring(1);
+                }
+            }
+        }
+        return "agrégation";
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "CollectionChronometree:{"
+                + "collection:" + collection
+                + ((etiquette == null) ? "" : ", etiquette:" + etiquette)
+                + "}";
+    }
+}
@@ -0,0 +1,49 @@
+package eventsmonitor;
+
+import java.util.List;
+import org.bson.Document;
+
+/**
+ * Interface décrivant les opérations faites sur la collection des événements
+ * pour établir une liste de mesures. Elle permet de remplacer la base MongoDb
+ * par une collection en mémoire.
+ *
+ * @author Thierry Baribaud
+ * @version 0.02
+ */
+public interface CollectionDEvenements {
+
+    /**
+     * @return le nombre exact de documents de la collection
+     */
+    public long compter();
+
+    /**
+     * @return le nombre approximatif de documents de la collection, lu dans
+     * ses métadonnées sans parcourir les documents
+     */
+    public long estimer();
+
+    /**
+     * Retourne le premier document correspondant à une recherche.
+     *
+     * @param filtre filtre de la recherche, null pour tous les documents
+     * @param projection champs à retourner, null pour tous les champs
+     * @param tri ordre de tri, null pour l'ordre naturel
+     * @return le premier document trouvé, null si aucun
+     */
+    public Document premier(Document filtre, Document projection, Document tri);
+
+    /**
+     * Exécute un pipeline d'agrégation.
+     *
+     * @param pipeline étapes de l'agrégation
+     * @return les documents produits par l'agrégation
+     */
+    public List<Document> agreger(List<Document> pipeline);
+
+    /**
+     * @return la description des index de la collection
+     */
+    public List<Document> listerIndex();
+}
@@ -0,0 +1,971 @@
+package eventsmonitor;
+
+import static eventsmonitor.SondeDernierEvenement.CHAMP_DATE;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import org.bson.Document;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+/**
+ * Classe décrivant une collection d'événements gardée en mémoire par
+ * colonnes, pour les essais à l'échelle de la production : un événement
+ * n'occupe que 24 octets (_id, sentDate, status et eventType codés), soit
+ * quelques dizaines de millions d'événements dans un tas de 1 à 2 Go.
+ * <p>
+ * Seuls les champs lus par EventsMonitor sont gardés. Les _id sont des
+ * entiers croissants, les sentDate sont restituées au format ISO 8601 dans le
+ * fuseau horaire de la collection. Les requêtes faites par les moteurs de
+ * mesures sont calculées directement sur les colonnes :</p>
+ * <ul>
+ * <li>comptage et recherche du premier ou du dernier événement,</li>
+ * <li>$match sur _id, sentDate, status ou eventType,</li>
+ * <li>$group sur status et/ou eventType avec $sum, $max et $min de _id ou
+ * sentDate,</li>
+ * <li>$sort sur _id, $limit, $sample et $facet.</li>
+ * </ul>
+ * Toute autre requête est confiée à l'interprète de CollectionEnMemoire sur
+ * les documents reconstitués, ce qui reste juste mais coûteux.
+ * <p>
+ * Les lignes déjà insérées ne changent jamais : une requête travaille sur un
+ * instantané pris sans bloquer les insertions. Le nombre de lignes sert de
+ * position aux changements signalés aux écouteurs.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.03
+ */
+public class CollectionEnColonnes implements CollectionDEvenements, SourceDeChangements {
+
+    /**
+     * Champ identifiant
+     */
+    private static final String CHAMP_ID = "_id";
+
+    /**
+     * Champ status
+     */
+    private static final String CHAMP_STATUS = "status";
+
+    /**
+     * Champ type d'événement
+     */
+    private static final String CHAMP_TYPE = "eventType";
+
+    /**
+     * Capacité par défaut
+     */
+    private static final int CAPACITE_PAR_DEFAUT = 1 << 16;
+
+    /**
+     * Nombre maximum de groupes calculés sur les colonnes
+     */
+    private static final int GROUPES_MAX = 1 << 20;
+
+    /**
+     * Pour restituer les sentDate
+     */
+    private final DateTimeFormatter format;
+
+    /**
+     * Pour lire les dates des filtres
+     */
+    private final DateTimeFormatter lecture;
+
+    /**
+     * Colonne des _id, croissants
+     */
+    private long[] ids;
+
+    /**
+     * Colonne des sentDate en millisecondes
+     */
+    private long[] dates;
+
+    /**
+     * Colonne des codes de status
+     */
+    private int[] status;
+
+    /**
+     * Colonne des codes de types d'événements
+     */
+    private int[] types;
+
+    /**
+     * Nombre d'événements
+     */
+    private int taille = 0;
+
+    /**
+     * Ligne de la plus grande sentDate, -1 si la collection est vide
+     */
+    private int ligneDerniereDate = -1;
+
+    /**
+     * Codes des status
+     */
+    private final Dictionnaire dictionnaireStatus = new Dictionnaire();
+
+    /**
+     * Codes des types d'événements
+     */
+    private final Dictionnaire dictionnaireTypes = new Dictionnaire();
+
+    /**
+     * Ecouteurs des changements
+     */
+    private final List<EcouteurDeChangements> ecouteurs = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructeur principal
+     *
+     * @param capacite nombre d'événements prévu, pour éviter les
+     * agrandissements
+     * @param zone fuseau horaire des sentDate
+     */
+    public CollectionEnColonnes(int capacite, DateTimeZone zone) {
+        capacite = Math.max(16, capacite);
+        ids = new long[capacite];
+        dates = new long[capacite];
+        status = new int[capacite];
+        types = new int[capacite];
+        format = ISODateTimeFormat.dateTime().withZone(zone);
+        lecture = ISODateTimeFormat.dateTimeParser().withZone(zone);
+    }
+
+    /**
+     * Constructeur utilisant le fuseau horaire local
+     */
+    public CollectionEnColonnes() {
+        this(CAPACITE_PAR_DEFAUT, DateTimeZone.getDefault());
+    }
+
+    /**
+     * Ajoute un événement à la collection et le signale aux écouteurs.
+     *
+     * @param id identifiant, supérieur à celui du dernier événement
+     * @param date sentDate en millisecondes
+     * @param unStatus status de l'événement
+     * @param eventType type de l'événement
+     */
+    public void inserer(long id, long date, String unStatus, String eventType) {
+        int ligne;
+        Document document = null;
+
+        synchronized (this) {
+            if (taille > 0 && id <= ids[taille - 1]) {
+                throw new IllegalArgumentException("_id non croissant : " + id);
+            }
+            if (taille == ids.length) {
+                agrandir();
+            }
+            ligne = taille;
+            ids[ligne] = id;
+            dates[ligne] = date;
+            status[ligne] = dictionnaireStatus.coder(unStatus);
+            types[ligne] = dictionnaireTypes.coder(eventType);
+            if (ligneDerniereDate < 0 || date >= dates[ligneDerniereDate]) {
+                ligneDerniereDate = ligne;
+            }
+            taille++;
+            if (!ecouteurs.isEmpty()) {
+                document = new Document(CHAMP_ID, id).append(CHAMP_STATUS, unStatus)
+                        .append(CHAMP_TYPE, eventType).append(CHAMP_DATE, format.print(date));
+            }
+        }
+        if (document != null) {
+            for (EcouteurDeChangements ecouteur : ecouteurs) {
+                ecouteur.documentInsere(document, ligne + 1);
+            }
+        }
+    }
+
+    /**
+     * Double la capacité des colonnes. Les instantanés déjà pris gardent les
+     * anciennes colonnes, qui restent justes pour leurs lignes.
+     */
+    private void agrandir() {
+        int capacite;
+
+        capacite = (int) Math.min(Integer.MAX_VALUE - 8, 2L * ids.length);
+        ids = Arrays.copyOf(ids, capacite);
+        dates = Arrays.copyOf(dates, capacite);
+        status = Arrays.copyOf(status, capacite);
+        types = Arrays.copyOf(types, capacite);
+    }
+
+    /**
+     * @return un instantané de la collection, utilisable sans verrou
+     */
+    private synchronized Instantane instantane() {
+        return new Instantane(this);
+    }
+
+    @Override
+    public synchronized long compter() {
+        return taille;
+    }
+
+    /**
+     * @return le nombre exact de documents, connu sans parcours
+     */
+    @Override
+    public long estimer() {
+        return compter();
+    }
+
+    @Override
+    public Document premier(Document filtre, Document projection, Document tri) {
+        Instantane instantane;
+        List<Document> documents;
+        int ligne = -1;
+
+        instantane = instantane();
+        if (instantane.taille == 0) {
+            return null;
+        }
+        if (filtre == null || filtre.isEmpty()) {
+            if (tri == null || tri.isEmpty() || tri.equals(new Document(CHAMP_ID, 1))) {
+                ligne = 0;
+            } else if (tri.equals(new Document(CHAMP_ID, -1))) {
+                ligne = instantane.taille - 1;
+            } else if (tri.equals(new Document(CHAMP_DATE, -1))) {
+                ligne = instantane.ligneDerniereDate;
+            }
+        }
+        if (ligne >= 0) {
+            return (projection == null) ? instantane.versDocument(ligne)
+                    : CollectionEnMemoire.projeter(instantane.versDocument(ligne), projection);
+        }
+        documents = instantane.versDocuments(new Selection(0, instantane.taille));
+        if (filtre != null) {
+            documents = CollectionEnMemoire.filtrer(documents, filtre);
+        }
+        if (tri != null) {
+            Collections.sort(documents, CollectionEnMemoire.comparateur(tri));
+        }
+        if (documents.isEmpty()) {
+            return null;
+        }
+        return (projection == null) ? documents.get(0) : CollectionEnMemoire.projeter(documents.get(0), projection);
+    }
+
+    @Override
+    public List<Document> agreger(List<Document> pipeline) {
+        Instantane instantane;
+
+        instantane = instantane();
+        return executer(instantane, new Selection(0, instantane.taille), pipeline);
+    }
+
+    /**
+     * Les colonnes permettent de trouver directement les plus petits et plus
+     * grands _id et la plus grande sentDate.
+     *
+     * @return la description des index de la collection
+     */
+    @Override
+    public List<Document> listerIndex() {
+        return Arrays.asList(
+                new Document("v", 1).append("key", new Document(CHAMP_ID, 1)).append("name", "_id_"),
+                new Document("v", 1).append("key", new Document(CHAMP_DATE, -1)).append("name", "sentDate_-1"));
+    }
+
+    /**
+     * Exécute un pipeline sur une sélection de lignes. Les étapes sont
+     * calculées sur les colonnes tant que c'est possible, puis sur les
+     * documents reconstitués.
+     *
+     * @param instantane instantané de la collection
+     * @param selection lignes en entrée du pipeline
+     * @param pipeline étapes de l'agrégation
+     * @return les documents produits par l'agrégation
+     */
+    private List<Document> executer(Instantane instantane, Selection selection, List<Document> pipeline) {
+        List<Document> documents = null;
+        Selection suivante;
+        String operateur;
+        Object parametre;
+
+        for (Document etape : pipeline) {
+            if (documents != null) {
+                documents = CollectionEnMemoire.executer(documents, etape);
+                continue;
+            }
+            operateur = etape.keySet().iterator().next();
+            parametre = etape.get(operateur);
+            suivante = null;
+            switch (operateur) {
+                case "$match":
+                    suivante = filtrer(instantane, selection, (Document) parametre);
+                    break;
+                case "$sort":
+                    if (new Document(CHAMP_ID, 1).equals(parametre)) {
+                        suivante = selection;
+                    }
+                    break;
+                case "$limit":
+                    suivante = selection.limiter(((Number) parametre).intValue());
+                    break;
+                case "$sample":
+                    suivante = selection.echantillonner(((Number) ((Document) parametre).get("size")).intValue());
+                    break;
+                case "$group":
+                    documents = grouper(instantane, selection, (Document) parametre);
+                    break;
+                case "$facet":
+                    documents = Collections.singletonList(facetter(instantane, selection, (Document) parametre));
+                    break;
+                default:
+                    break;
+            }
+            if (suivante != null) {
+                selection = suivante;
+            } else if (documents == null) {
+                documents = CollectionEnMemoire.executer(instantane.versDocuments(selection), etape);
+            }
+        }
+        return (documents == null) ? instantane.versDocuments(selection) : documents;
+    }
+
+    /**
+     * Exécute chaque sous-pipeline de l'étape $facet sur la même sélection.
+     *
+     * @param instantane instantané de la collection
+     * @param selection lignes en entrée de l'étape
+     * @param facettes sous-pipelines nommés
+     * @return un document portant le résultat de chaque sous-pipeline
+     */
+    @SuppressWarnings("unchecked")
+    private Document facetter(Instantane instantane, Selection selection, Document facettes) {
+        Document resultat = new Document();
+
+        for (Map.Entry<String, Object> facette : facettes.entrySet()) {
+            resultat.put(facette.getKey(), executer(instantane, selection, (List<Document>) facette.getValue()));
+        }
+        return resultat;
+    }
+
+    /**
+     * Filtre une sélection sur les colonnes.
+     *
+     * @param instantane instantané de la collection
+     * @param selection lignes à filtrer
+     * @param filtre filtre à appliquer
+     * @return les lignes retenues, null si le filtre ne peut être calculé sur
+     * les colonnes
+     */
+    private Selection filtrer(Instantane instantane, Selection selection, Document filtre) {
+        Object condition;
+
+        for (Map.Entry<String, Object> champ : filtre.entrySet()) {
+            condition = champ.getValue();
+            if (CHAMP_ID.equals(champ.getKey())) {
+                selection = filtrerLongs(instantane.ids, selection, condition, false);
+            } else if (CHAMP_DATE.equals(champ.getKey())) {
+                selection = filtrerLongs(instantane.dates, selection, condition, true);
+            } else if (CHAMP_STATUS.equals(champ.getKey()) && condition instanceof String) {
+                selection = filtrerCodes(instantane.status, selection, instantane.nomsStatus, (String) condition);
+            } else if (CHAMP_TYPE.equals(champ.getKey()) && condition instanceof String) {
+                selection = filtrerCodes(instantane.types, selection, instantane.nomsTypes, (String) condition);
+            } else {
+                return null;
+            }
+            if (selection == null) {
+                return null;
+            }
+        }
+        return selection;
+    }
+
+    /**
+     * Filtre une sélection sur une colonne d'entiers longs. Sur les _id,
+     * croissants, une sélection contiguë est réduite par dichotomie.
+     *
+     * @param colonne colonne filtrée
+     * @param selection lignes à filtrer
+     * @param condition valeur ou opérateurs $gt, $gte, $lt, $lte
+     * @param estUneDate true si la colonne porte des dates
+     * @return les lignes retenues, null si la condition n'est pas supportée
+     */
+    private Selection filtrerLongs(long[] colonne, Selection selection, Object condition, boolean estUneDate) {
+        long min = Long.MIN_VALUE;
+        long max = Long.MAX_VALUE;
+        Long reference;
+        Document operateurs;
+        int bas;
+        int haut;
+
+        if (condition instanceof Document) {
+            operateurs = (Document) condition;
+            for (Map.Entry<String, Object> operateur : operateurs.entrySet()) {
+                reference = versLong(operateur.getValue(), estUneDate);
+                if (reference == null) {
+                    return null;
+                }
+                switch (operateur.getKey()) {
+                    case "$gt":
+                        min = Math.max(min, reference + 1);
+                        break;
+                    case "$gte":
+                        min = Math.max(min, reference);
+                        break;
+                    case "$lt":
+                        max = Math.min(max, reference - 1);
+                        break;
+                    case "$lte":
+                        max = Math.min(max, reference);
+                        break;
+                    default:
+                        return null;
+                }
+            }
+        } else {
+            reference = versLong(condition, estUneDate);
+            if (reference == null) {
+                return null;
+            }
+            min = reference;
+            max = reference;
+        }
+        if (!estUneDate && selection.lignes == null) {
+            bas = chercher(colonne, selection.debut, selection.fin, min);
+            haut = (max == Long.MAX_VALUE) ? selection.fin : chercher(colonne, selection.debut, selection.fin, max + 1);
+            return new Selection(bas, Math.max(bas, haut));
+        }
+        return selection.garder(colonne, min, max);
+    }
+
+    /**
+     * @param colonne colonne croissante
+     * @param debut première ligne cherchée
+     * @param fin ligne suivant la dernière ligne cherchée
+     * @param valeur valeur cherchée
+     * @return la première ligne dont la valeur est au moins égale à la valeur
+     * cherchée, fin si aucune
+     */
+    private static int chercher(long[] colonne, int debut, int fin, long valeur) {
+        int milieu;
+
+        while (debut < fin) {
+            milieu = (debut + fin) >>> 1;
+            if (colonne[milieu] < valeur) {
+                debut = milieu + 1;
+            } else {
+                fin = milieu;
+            }
+        }
+        return debut;
+    }
+
+    /**
+     * Filtre une sélection sur une colonne de codes.
+     *
+     * @param colonne colonne filtrée
+     * @param selection lignes à filtrer
+     * @param noms valeur de chaque code
+     * @param valeur valeur cherchée
+     * @return les lignes retenues
+     */
+    private static Selection filtrerCodes(int[] colonne, Selection selection, String[] noms, String valeur) {
+        int code;
+
+        code = Arrays.asList(noms).indexOf(valeur);
+        return selection.garder(colonne, code);
+    }
+
+    /**
+     * @param valeur valeur d'un filtre
+     * @param estUneDate true pour une date
+     * @return la valeur en entier long (millisecondes pour une date), null si
+     * elle ne peut être convertie
+     */
+    private Long versLong(Object valeur, boolean estUneDate) {
+        if (estUneDate && valeur instanceof Date) {
+            return ((Date) valeur).getTime();
+        } else if (estUneDate && valeur instanceof String) {
+            try {
+                return lecture.parseMillis((String) valeur);
+            } catch (IllegalArgumentException exception) {
+                return null;
+            }
+        } else if (!estUneDate && valeur instanceof Number) {
+            return ((Number) valeur).longValue();
+        }
+        return null;
+    }
+
+    /**
+     * Regroupe une sélection sur les colonnes.
+     *
+     * @param instantane instantané de la collection
+     * @param selection lignes à regrouper
+     * @param groupe définition du regroupement
+     * @return les groupes, null si le regroupement ne peut être calculé sur
+     * les colonnes
+     */
+    private List<Document> grouper(Instantane instantane, Selection selection, Document groupe) {
+        Object cle;
+        List<String> nomsDesCles = new ArrayList<>();
+        List<String> champsDesCles = new ArrayList<>();
+        List<Map.Entry<String, Object>> accumulateurs = new ArrayList<>();
+        long nombreDeGroupes = 1;
+        long[] comptes;
+        int[][] extremes;
+        boolean[] estUnMax;
+        long[][] colonnesDesExtremes;
+        long[] constantes;
+        int[] multiplicateurs;
+        int[] cardinalites;
+        int[][] colonnesDesCles;
+        List<Document> resultat;
+        Document document;
+        Document identifiant;
+        String champ;
+        String operateur;
+        Object argument;
+        int ligne;
+        int g;
+        int i;
+        int k;
+
+        cle = groupe.get(CHAMP_ID);
+        if (cle instanceof String) {
+            nomsDesCles.add(null);
+            champsDesCles.add((String) cle);
+        } else if (cle instanceof Document) {
+            for (Map.Entry<String, Object> partie : ((Document) cle).entrySet()) {
+                if (!(partie.getValue() instanceof String)) {
+                    return null;
+                }
+                nomsDesCles.add(partie.getKey());
+                champsDesCles.add((String) partie.getValue());
+            }
+        } else if (cle != null) {
+            return null;
+        }
+        colonnesDesCles = new int[champsDesCles.size()][];
+        multiplicateurs = new int[champsDesCles.size()];
+        cardinalites = new int[champsDesCles.size()];
+        for (i = 0; i < champsDesCles.size(); i++) {
+            if (("$" + CHAMP_STATUS).equals(champsDesCles.get(i))) {
+                colonnesDesCles[i] = instantane.status;
+                cardinalites[i] = Math.max(1, instantane.nomsStatus.length);
+            } else if (("$" + CHAMP_TYPE).equals(champsDesCles.get(i))) {
+                colonnesDesCles[i] = instantane.types;
+                cardinalites[i] = Math.max(1, instantane.nomsTypes.length);
+            } else {
+                return null;
+            }
+            multiplicateurs[i] = (int) nombreDeGroupes;
+            nombreDeGroupes *= cardinalites[i];
+            if (nombreDeGroupes > GROUPES_MAX) {
+                return null;
+            }
+        }
+
+        for (Map.Entry<String, Object> champDuGroupe : groupe.entrySet()) {
+            if (!CHAMP_ID.equals(champDuGroupe.getKey())) {
+                if (!(champDuGroupe.getValue() instanceof Document)
+                        || ((Document) champDuGroupe.getValue()).size() != 1) {
+                    return null;
+                }
+                accumulateurs.add(champDuGroupe);
+            }
+        }
+        constantes = new long[accumulateurs.size()];
+        colonnesDesExtremes = new long[accumulateurs.size()][];
+        estUnMax = new boolean[accumulateurs.size()];
+        for (k = 0; k < accumulateurs.size(); k++) {
+            operateur = ((Document) accumulateurs.get(k).getValue()).keySet().iterator().next();
+            argument = ((Document) accumulateurs.get(k).getValue()).get(operateur);
+            if ("$sum".equals(operateur) && argument instanceof Number) {
+                constantes[k] = ((Number) argument).longValue();
+            } else if (("$max".equals(operateur) || "$min".equals(operateur)) && argument instanceof String) {
+                estUnMax[k] = "$max".equals(operateur);
+                if (("$" + CHAMP_ID).equals(argument)) {
+                    colonnesDesExtremes[k] = instantane.ids;
+                } else if (("$" + CHAMP_DATE).equals(argument)) {
+                    colonnesDesExtremes[k] = instantane.dates;
+                } else {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+        }
+
+        comptes = new long[(int) nombreDeGroupes];
+        extremes = new int[accumulateurs.size()][];
+        for (k = 0; k < accumulateurs.size(); k++) {
+            if (colonnesDesExtremes[k] != null) {
+                extremes[k] = new int[(int) nombreDeGroupes];
+                Arrays.fill(extremes[k], -1);
+            }
+        }
+        for (i = 0; i < selection.taille(); i++) {
+            ligne = selection.ligne(i);
+            g = 0;
+            for (k = 0; k < colonnesDesCles.length; k++) {
+                g += colonnesDesCles[k][ligne] * multiplicateurs[k];
+            }
+            comptes[g]++;
+            for (k = 0; k < extremes.length; k++) {
+                if (extremes[k] != null && (extremes[k][g] < 0
+                        || (estUnMax[k] ? colonnesDesExtremes[k][ligne] > colonnesDesExtremes[k][extremes[k][g]]
+                                : colonnesDesExtremes[k][ligne] < colonnesDesExtremes[k][extremes[k][g]]))) {
+                    extremes[k][g] = ligne;
+                }
+            }
+        }
+
+        resultat = new ArrayList<>();
+        for (g = 0; g < comptes.length; g++) {
+            if (comptes[g] == 0) {
+                continue;
+            }
+            if (colonnesDesCles.length == 0) {
+                document = new Document(CHAMP_ID, null);
+            } else if (nomsDesCles.get(0) == null) {
+                document = new Document(CHAMP_ID, instantane.valeurDeCle(colonnesDesCles[0], g));
+            } else {
+                identifiant = new Document();
+                for (k = 0; k < colonnesDesCles.length; k++) {
+                    identifiant.append(nomsDesCles.get(k), instantane.valeurDeCle(colonnesDesCles[k],
+                            g / multiplicateurs[k] % cardinalites[k]));
+                }
+                document = new Document(CHAMP_ID, identifiant);
+            }
+            for (k = 0; k < accumulateurs.size(); k++) {
+                champ = accumulateurs.get(k).getKey();
+                if (colonnesDesExtremes[k] == null) {
+                    document.append(champ, comptes[g] * constantes[k]);
+                } else if (colonnesDesExtremes[k] == instantane.ids) {
+                    document.append(champ, instantane.ids[extremes[k][g]]);
+                } else {
+                    document.append(champ, format.print(instantane.dates[extremes[k][g]]));
+                }
+            }
+            resultat.add(document);
+        }
+        return resultat;
+    }
+
+    @Override
+    public void demarrer(EcouteurDeChangements ecouteur) {
+        ecouteurs.add(ecouteur);
+    }
+
+    @Override
+    public synchronized long position() {
+        return taille;
+    }
+
+    @Override
+    public void arreter() {
+        ecouteurs.clear();
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public synchronized String toString() {
+        return "CollectionEnColonnes:{"
+                + "taille:" + taille
+                + ", status:" + dictionnaireStatus.noms.size()
+                + ", types:" + dictionnaireTypes.noms.size()
+                + "}";
+    }
+
+    /**
+     * Classe décrivant les colonnes et les dictionnaires à un instant donné.
+     */
+    private class Instantane {
+
+        /**
+         * Colonne des _id
+         */
+        private final long[] ids;
+
+        /**
+         * Colonne des sentDate
+         */
+        private final long[] dates;
+
+        /**
+         * Colonne des codes de status
+         */
+        private final int[] status;
+
+        /**
+         * Colonne des codes de types d'événements
+         */
+        private final int[] types;
+
+        /**
+         * Nombre de lignes
+         */
+        private final int taille;
+
+        /**
+         * Ligne de la plus grande sentDate
+         */
+        private final int ligneDerniereDate;
+
+        /**
+         * Valeur de chaque code de status
+         */
+        private final String[] nomsStatus;
+
+        /**
+         * Valeur de chaque code de type d'événement
+         */
+        private final String[] nomsTypes;
+
+        /**
+         * Constructeur principal, à appeler sous le verrou de la collection
+         *
+         * @param collection collection à copier
+         */
+        private Instantane(CollectionEnColonnes collection) {
+            ids = collection.ids;
+            dates = collection.dates;
+            status = collection.status;
+            types = collection.types;
+            taille = collection.taille;
+            ligneDerniereDate = collection.ligneDerniereDate;
+            nomsStatus = collection.dictionnaireStatus.noms.toArray(new String[0]);
+            nomsTypes = collection.dictionnaireTypes.noms.toArray(new String[0]);
+        }
+
+        /**
+         * @param colonne colonne de codes
+         * @param code code
+         * @return la valeur du code
+         */
+        private String valeurDeCle(int[] colonne, int code) {
+            return (colonne == status) ? nomsStatus[code] : nomsTypes[code];
+        }
+
+        /**
+         * @param ligne numéro de ligne
+         * @return le document reconstitué
+         */
+        private Document versDocument(int ligne) {
+            return new Document(CHAMP_ID, ids[ligne])
+                    .append(CHAMP_STATUS, nomsStatus[status[ligne]])
+                    .append(CHAMP_TYPE, nomsTypes[types[ligne]])
+                    .append(CHAMP_DATE, format.print(dates[ligne]));
+        }
+
+        /**
+         * @param selection lignes à reconstituer
+         * @return les documents reconstitués
+         */
+        private List<Document> versDocuments(Selection selection) {
+            List<Document> documents = new ArrayList<>(selection.taille());
+            int i;
+
+            for (i = 0; i < selection.taille(); i++) {
+                documents.add(versDocument(selection.ligne(i)));
+            }
+            return documents;
+        }
+    }
+
+    /**
+     * Classe décrivant une sélection de lignes, dans l'ordre croissant :
+     * contiguë, ou énumérée après un filtre.
+     */
+    private static class Selection {
+
+        /**
+         * Première ligne d'une sélection contiguë
+         */
+        private final int debut;
+
+        /**
+         * Ligne suivant la dernière ligne d'une sélection contiguë
+         */
+        private final int fin;
+
+        /**
+         * Lignes d'une sélection énumérée, null pour une sélection contiguë
+         */
+        private final int[] lignes;
+
+        /**
+         * Constructeur d'une sélection contiguë
+         *
+         * @param debut première ligne
+         * @param fin ligne suivant la dernière ligne
+         */
+        private Selection(int debut, int fin) {
+            this.debut = debut;
+            this.fin = fin;
+            this.lignes = null;
+        }
+
+        /**
+         * Constructeur d'une sélection énumérée
+         *
+         * @param lignes lignes retenues
+         */
+        private Selection(int[] lignes) {
+            this.debut = 0;
+            this.fin = lignes.length;
+            this.lignes = lignes;
+        }
+
+        /**
+         * @return le nombre de lignes
+         */
+        private int taille() {
+            return fin - debut;
+        }
+
+        /**
+         * @param i rang dans la sélection
+         * @return le numéro de ligne
+         */
+        private int ligne(int i) {
+            return (lignes == null) ? debut + i : lignes[i];
+        }
+
+        /**
+         * @param limite nombre maximum de lignes
+         * @return les premières lignes de la sélection
+         */
+        private Selection limiter(int limite) {
+            if (limite >= taille()) {
+                return this;
+            }
+            return (lignes == null) ? new Selection(debut, debut + limite)
+                    : new Selection(Arrays.copyOf(lignes, limite));
+        }
+
+        /**
+         * Tire des lignes au hasard, sans remise (algorithme de Floyd) : le
+         * coût ne dépend que du nombre de lignes tirées.
+         *
+         * @param nombre nombre de lignes à tirer
+         * @return les lignes tirées, dans l'ordre de la collection
+         */
+        private Selection echantillonner(int nombre) {
+            Set<Integer> rangs;
+            int[] retenues;
+            int rang;
+            int i;
+
+            if (nombre >= taille()) {
+                return this;
+            }
+            rangs = new HashSet<>(2 * nombre);
+            for (i = taille() - nombre; i < taille(); i++) {
+                rang = ThreadLocalRandom.current().nextInt(i + 1);
+                if (!rangs.add(rang)) {
+                    rangs.add(i);
+                }
+            }
+            retenues = new int[nombre];
+            i = 0;
+            for (int tire : rangs) {
+                retenues[i++] = ligne(tire);
+            }
+            Arrays.sort(retenues);
+            return new Selection(retenues);
+        }
+
+        /**
+         * @param colonne colonne filtrée
+         * @param min plus petite valeur retenue
+         * @param max plus grande valeur retenue
+         * @return les lignes dont la valeur est comprise entre min et max
+         */
+        private Selection garder(long[] colonne, long min, long max) {
+            int[] retenues = new int[Math.min(taille(), 1024)];
+            int nombre = 0;
+            int ligne;
+            int i;
+
+            for (i = 0; i < taille(); i++) {
+                ligne = ligne(i);
+                if (colonne[ligne] >= min && colonne[ligne] <= max) {
+                    if (nombre == retenues.length) {
+                        retenues = Arrays.copyOf(retenues, 2 * nombre);
+                    }
+                    retenues[nombre++] = ligne;
+                }
+            }
+            return new Selection(Arrays.copyOf(retenues, nombre));
+        }
+
+        /**
+         * @param colonne colonne filtrée
+         * @param code code retenu
+         * @return les lignes portant ce code
+         */
+        private Selection garder(int[] colonne, int code) {
+            int[] retenues = new int[Math.min(taille(), 1024)];
+            int nombre = 0;
+            int ligne;
+            int i;
+
+            for (i = 0; i < taille() && code >= 0; i++) {
+                ligne = ligne(i);
+                if (colonne[ligne] == code) {
+                    if (nombre == retenues.length) {
+                        retenues = Arrays.copyOf(retenues, 2 * nombre);
+                    }
+                    retenues[nombre++] = ligne;
+                }
+            }
+            return new Selection(Arrays.copyOf(retenues, nombre));
+        }
+    }
+
+    /**
+     * Classe décrivant le codage des valeurs d'un champ en entiers.
+     */
+    private static class Dictionnaire {
+
+        /**
+         * Code de chaque valeur
+         */
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        /**
+         * Valeur de chaque code
+         */
+        private final List<String> noms = new ArrayList<>();
+
+        /**
+         * @param valeur valeur à coder
+         * @return son code, créé s'il n'existe pas
+         */
+        private int coder(String valeur) {
+            Integer code;
+
+            code = codes.get(valeur);
+            if (code == null) {
+                code = noms.size();
+                codes.put(valeur, code);
+                noms.add(valeur);
+            }
+            return code;
+        }
+    }
+}
@@ -0,0 +1,517 @@
+package eventsmonitor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import org.bson.Document;
+
+/**
+ * Classe décrivant une collection d'événements gardée en mémoire. Elle tient
+ * lieu de base MongoDb pour les essais et sait interpréter le sous-ensemble
+ * des requêtes utilisé par EventsMonitor :
+ * <ul>
+ * <li>filtres d'égalité et opérateurs $gt, $gte, $lt, $lte, $ne,</li>
+ * <li>étapes $match, $group ($sum, $max, $min), $sort, $limit, $sample,
+ * $project et $facet,</li>
+ * <li>expression $substr.</li>
+ * </ul>
+ * Chaque insertion est signalée aux écouteurs enregistrés, avec son rang
+ * comme position.
+ *
+ * @author Thierry Baribaud
+ * @version 0.05
+ */
+public class CollectionEnMemoire implements CollectionDEvenements, SourceDeChangements {
+
+    /**
+     * Documents de la collection
+     */
+    private final List<Document> documents = new ArrayList<>();
+
+    /**
+     * Ecouteurs des changements
+     */
+    private final List<EcouteurDeChangements> ecouteurs = new CopyOnWriteArrayList<>();
+
+    /**
+     * Position du dernier changement
+     */
+    private long position = 0;
+
+    /**
+     * Ajoute un document à la collection et le signale aux écouteurs.
+     *
+     * @param document document à ajouter
+     */
+    public void inserer(Document document) {
+        long positionDeLInsertion;
+
+        synchronized (this) {
+            documents.add(document);
+            positionDeLInsertion = ++position;
+        }
+        for (EcouteurDeChangements ecouteur : ecouteurs) {
+            ecouteur.documentInsere(document, positionDeLInsertion);
+        }
+    }
+
+    /**
+     * Vide la collection. Les écouteurs sont invités à se resynchroniser.
+     */
+    public void vider() {
+        synchronized (this) {
+            documents.clear();
+            position++;
+        }
+        for (EcouteurDeChangements ecouteur : ecouteurs) {
+            ecouteur.resynchronisationNecessaire();
+        }
+    }
+
+    @Override
+    public synchronized long compter() {
+        return documents.size();
+    }
+
+    /**
+     * @return le nombre exact de documents, connu sans parcours
+     */
+    @Override
+    public long estimer() {
+        return compter();
+    }
+
+    @Override
+    public synchronized Document premier(Document filtre, Document projection, Document tri) {
+        List<Document> resultat;
+
+        resultat = new ArrayList<>(documents);
+        if (filtre != null) {
+            resultat = filtrer(resultat, filtre);
+        }
+        if (tri != null) {
+            Collections.sort(resultat, comparateur(tri));
+        }
+        if (resultat.isEmpty()) {
+            return null;
+        }
+        return (projection == null) ? resultat.get(0) : projeter(resultat.get(0), projection);
+    }
+
+    @Override
+    public List<Document> agreger(List<Document> pipeline) {
+        List<Document> resultat;
+
+        synchronized (this) {
+            resultat = new ArrayList<>(documents);
+        }
+        for (Document etape : pipeline) {
+            resultat = executer(resultat, etape);
+        }
+        return resultat;
+    }
+
+    /**
+     * Une collection en mémoire est parcourue en entier, elle n'a que l'index
+     * implicite sur _id.
+     *
+     * @return la description des index de la collection
+     */
+    @Override
+    public List<Document> listerIndex() {
+        return Collections.singletonList(new Document("v", 1)
+                .append("key", new Document("_id", 1)).append("name", "_id_"));
+    }
+
+    /**
+     * Exécute une étape d'agrégation.
+     *
+     * @param entree documents en entrée de l'étape
+     * @param etape étape à exécuter
+     * @return les documents en sortie de l'étape
+     */
+    static List<Document> executer(List<Document> entree, Document etape) {
+        List<Document> sortie;
+        String operateur;
+        Object parametre;
+        int limite;
+
+        operateur = etape.keySet().iterator().next();
+        parametre = etape.get(operateur);
+        switch (operateur) {
+            case "$match":
+                return filtrer(entree, (Document) parametre);
+            case "$group":
+                return grouper(entree, (Document) parametre);
+            case "$sort":
+                sortie = new ArrayList<>(entree);
+                Collections.sort(sortie, comparateur((Document) parametre));
+                return sortie;
+            case "$limit":
+                limite = ((Number) parametre).intValue();
+                return new ArrayList<>(entree.subList(0, Math.min(limite, entree.size())));
+            case "$sample":
+                return echantillonner(entree, ((Number) ((Document) parametre).get("size")).intValue());
+            case "$facet":
+                return Collections.singletonList(facetter(entree, (Document) parametre));
+            case "$project":
+                sortie = new ArrayList<>(entree.size());
+                for (Document document : entree) {
+                    sortie.add(projeter(document, (Document) parametre));
+                }
+                return sortie;
+            default:
+                throw new UnsupportedOperationException("Etape non supportée : " + operateur);
+        }
+    }
+
+    /**
+     * Tire des documents au hasard, sans remise, selon l'étape $sample.
+     *
+     * @param entree documents en entrée de l'étape
+     * @param taille nombre de documents à tirer
+     * @return les documents tirés, tous si l'entrée n'en compte pas plus
+     */
+    private static List<Document> echantillonner(List<Document> entree, int taille) {
+        List<Document> sortie;
+        int i;
+
+        sortie = new ArrayList<>(entree);
+        if (taille >= sortie.size()) {
+            Collections.shuffle(sortie, ThreadLocalRandom.current());
+            return sortie;
+        }
+        for (i = 0; i < taille; i++) {
+            Collections.swap(sortie, i, i + ThreadLocalRandom.current().nextInt(sortie.size() - i));
+        }
+        return new ArrayList<>(sortie.subList(0, taille));
+    }
+
+    /**
+     * Exécute chaque sous-pipeline de l'étape $facet sur les mêmes documents.
+     *
+     * @param entree documents en entrée de l'étape
+     * @param facettes sous-pipelines nommés
+     * @return un document portant le résultat de chaque sous-pipeline
+     */
+    @SuppressWarnings("unchecked")
+    private static Document facetter(List<Document> entree, Document facettes) {
+        Document resultat = new Document();
+        List<Document> sortie;
+
+        for (Map.Entry<String, Object> facette : facettes.entrySet()) {
+            sortie = entree;
+            for (Document etape : (List<Document>) facette.getValue()) {
+                sortie = executer(sortie, etape);
+            }
+            resultat.put(facette.getKey(), sortie);
+        }
+        return resultat;
+    }
+
+    /**
+     * Filtre une liste de documents.
+     *
+     * @param entree documents à filtrer
+     * @param filtre filtre à appliquer
+     * @return les documents correspondant au filtre
+     */
+    static List<Document> filtrer(List<Document> entree, Document filtre) {
+        List<Document> sortie = new ArrayList<>();
+
+        for (Document document : entree) {
+            if (correspond(document, filtre)) {
+                sortie.add(document);
+            }
+        }
+        return sortie;
+    }
+
+    /**
+     * @param document document à tester
+     * @param filtre filtre à appliquer
+     * @return true si le document correspond au filtre
+     */
+    static boolean correspond(Document document, Document filtre) {
+        Object valeur;
+        Object condition;
+        Document operateurs;
+
+        for (Map.Entry<String, Object> critere : filtre.entrySet()) {
+            valeur = document.get(critere.getKey());
+            condition = critere.getValue();
+            if (condition instanceof Document && estOperateur((Document) condition)) {
+                operateurs = (Document) condition;
+                for (Map.Entry<String, Object> operateur : operateurs.entrySet()) {
+                    if (!verifie(valeur, operateur.getKey(), operateur.getValue())) {
+                        return false;
+                    }
+                }
+            } else if (comparer(valeur, condition) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param condition condition d'un filtre
+     * @return true si la condition est exprimée avec des opérateurs
+     */
+    private static boolean estOperateur(Document condition) {
+        return !condition.isEmpty() && condition.keySet().iterator().next().startsWith("$");
+    }
+
+    /**
+     * @param valeur valeur du champ
+     * @param operateur opérateur de comparaison
+     * @param reference valeur de référence
+     * @return true si la comparaison est vérifiée
+     */
+    private static boolean verifie(Object valeur, String operateur, Object reference) {
+        switch (operateur) {
+            case "$gt":
+                return valeur != null && comparer(valeur, reference) > 0;
+            case "$gte":
+                return valeur != null && comparer(valeur, reference) >= 0;
+            case "$lt":
+                return valeur != null && comparer(valeur, reference) < 0;
+            case "$lte":
+                return valeur != null && comparer(valeur, reference) <= 0;
+            case "$ne":
+                return comparer(valeur, reference) != 0;
+            default:
+                throw new UnsupportedOperationException("Opérateur non supporté : " + operateur);
+        }
+    }
+
+    /**
+     * Regroupe les documents selon l'étape $group.
+     *
+     * @param entree documents à regrouper
+     * @param groupe définition du regroupement
+     * @return un document par groupe
+     */
+    private static List<Document> grouper(List<Document> entree, Document groupe) {
+        Map<Object, Document> groupes = new LinkedHashMap<>();
+        Object cle;
+        Document resultat;
+        Document accumulateur;
+        String operateur;
+
+        for (Document document : entree) {
+            cle = evaluer(document, groupe.get("_id"));
+            resultat = groupes.get(cle);
+            if (resultat == null) {
+                resultat = new Document("_id", cle);
+                groupes.put(cle, resultat);
+            }
+            for (Map.Entry<String, Object> champ : groupe.entrySet()) {
+                if (!"_id".equals(champ.getKey())) {
+                    accumulateur = (Document) champ.getValue();
+                    operateur = accumulateur.keySet().iterator().next();
+                    accumuler(resultat, champ.getKey(), operateur,
+                            evaluer(document, accumulateur.get(operateur)));
+                }
+            }
+        }
+        return new ArrayList<>(groupes.values());
+    }
+
+    /**
+     * Applique un accumulateur de l'étape $group.
+     *
+     * @param resultat document du groupe
+     * @param champ champ recevant le résultat
+     * @param operateur opérateur d'accumulation
+     * @param valeur valeur à accumuler
+     */
+    private static void accumuler(Document resultat, String champ, String operateur, Object valeur) {
+        Object courant;
+
+        courant = resultat.get(champ);
+        switch (operateur) {
+            case "$sum":
+                resultat.put(champ, ((courant == null) ? 0L : (Long) courant)
+                        + ((valeur instanceof Number) ? ((Number) valeur).longValue() : 0L));
+                break;
+            case "$max":
+                if (valeur != null && (courant == null || comparer(valeur, courant) > 0)) {
+                    resultat.put(champ, valeur);
+                } else if (!resultat.containsKey(champ)) {
+                    resultat.put(champ, null);
+                }
+                break;
+            case "$min":
+                if (valeur != null && (courant == null || comparer(valeur, courant) < 0)) {
+                    resultat.put(champ, valeur);
+                } else if (!resultat.containsKey(champ)) {
+                    resultat.put(champ, null);
+                }
+                break;
+            default:
+                throw new UnsupportedOperationException("Accumulateur non supporté : " + operateur);
+        }
+    }
+
+    /**
+     * Evalue une expression : "$champ" désigne un champ du document, un
+     * document est évalué champ par champ, toute autre valeur est une
+     * constante.
+     *
+     * @param document document de référence
+     * @param expression expression à évaluer
+     * @return la valeur de l'expression
+     */
+    static Object evaluer(Document document, Object expression) {
+        Document resultat;
+
+        if (expression instanceof String && ((String) expression).startsWith("$")) {
+            return document.get(((String) expression).substring(1));
+        } else if (expression instanceof Document && ((Document) expression).containsKey("$substr")) {
+            return extraire(document, (List<?>) ((Document) expression).get("$substr"));
+        } else if (expression instanceof Document) {
+            resultat = new Document();
+            for (Map.Entry<String, Object> champ : ((Document) expression).entrySet()) {
+                resultat.put(champ.getKey(), evaluer(document, champ.getValue()));
+            }
+            return resultat;
+        }
+        return expression;
+    }
+
+    /**
+     * Evalue l'opérateur $substr : [chaîne, début, longueur].
+     *
+     * @param document document évalué
+     * @param arguments arguments de l'opérateur
+     * @return la sous-chaîne, vide si la valeur n'est pas une chaîne
+     */
+    private static String extraire(Document document, List<?> arguments) {
+        Object valeur;
+        int debut;
+        int longueur;
+
+        valeur = evaluer(document, arguments.get(0));
+        if (!(valeur instanceof String)) {
+            return "";
+        }
+        debut = Math.min(((Number) arguments.get(1)).intValue(), ((String) valeur).length());
+        longueur = ((Number) arguments.get(2)).intValue();
+        return ((String) valeur).substring(debut,
+                (longueur < 0) ? ((String) valeur).length() : Math.min(((String) valeur).length(), debut + longueur));
+    }
+
+    /**
+     * Ne garde que les champs demandés d'un document.
+     *
+     * @param document document d'origine
+     * @param projection champs à garder
+     * @return le document réduit
+     */
+    static Document projeter(Document document, Document projection) {
+        Document resultat = new Document();
+        Object inclusion;
+
+        if (!Boolean.FALSE.equals(estInclus(projection.get("_id")))) {
+            resultat.put("_id", document.get("_id"));
+        }
+        for (Map.Entry<String, Object> champ : projection.entrySet()) {
+            inclusion = estInclus(champ.getValue());
+            if (!"_id".equals(champ.getKey()) && Boolean.TRUE.equals(inclusion)) {
+                resultat.put(champ.getKey(), document.get(champ.getKey()));
+            }
+        }
+        return resultat;
+    }
+
+    /**
+     * @param valeur valeur d'un champ de projection
+     * @return true/false si le champ est inclus/exclu, null si non précisé
+     */
+    private static Boolean estInclus(Object valeur) {
+        if (valeur instanceof Number) {
+            return ((Number) valeur).intValue() != 0;
+        } else if (valeur instanceof Boolean) {
+            return (Boolean) valeur;
+        }
+        return null;
+    }
+
+    /**
+     * @param tri ordre de tri au format MongoDb
+     * @return le comparateur correspondant
+     */
+    static Comparator<Document> comparateur(final Document tri) {
+        return new Comparator<Document>() {
+            @Override
+            public int compare(Document document1, Document document2) {
+                int resultat;
+
+                for (Map.Entry<String, Object> champ : tri.entrySet()) {
+                    resultat = comparer(document1.get(champ.getKey()), document2.get(champ.getKey()));
+                    if (resultat != 0) {
+                        return (((Number) champ.getValue()).intValue() < 0) ? -resultat : resultat;
+                    }
+                }
+                return 0;
+            }
+        };
+    }
+
+    /**
+     * Compare deux valeurs à la manière de MongoDb : null est plus petit que
+     * tout, les nombres sont comparés entre eux quel que soit leur type.
+     *
+     * @param valeur1 première valeur
+     * @param valeur2 seconde valeur
+     * @return un entier négatif, nul ou positif
+     */
+    @SuppressWarnings("unchecked")
+    static int comparer(Object valeur1, Object valeur2) {
+        if (valeur1 == null || valeur2 == null) {
+            return (valeur1 == null) ? ((valeur2 == null) ? 0 : -1) : 1;
+        } else if (valeur1 instanceof Number && valeur2 instanceof Number) {
+            return Double.compare(((Number) valeur1).doubleValue(), ((Number) valeur2).doubleValue());
+        } else if (valeur1 instanceof Date && valeur2 instanceof Date) {
+            return ((Date) valeur1).compareTo((Date) valeur2);
+        } else if (valeur1 instanceof Comparable && valeur1.getClass().equals(valeur2.getClass())) {
+            return ((Comparable<Object>) valeur1).compareTo(valeur2);
+        }
+        return valeur1.toString().compareTo(valeur2.toString());
+    }
+
+    @Override
+    public void demarrer(EcouteurDeChangements ecouteur) {
+        ecouteurs.add(ecouteur);
+    }
+
+    @Override
+    public synchronized long position() {
+        return position;
+    }
+
+    @Override
+    public void arreter() {
+        ecouteurs.clear();
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public synchronized String toString() {
+        return "CollectionEnMemoire:{"
+                + "nombreDeDocuments:" + documents.size()
+                + ", nombreDEcouteurs:" + ecouteurs.size()
+                + "}";
+    }
+}
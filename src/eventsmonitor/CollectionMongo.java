@@ -0,0 +1,178 @@
+package eventsmonitor;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.CountOptions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.bson.Document;
+
+/**
+ * Classe décrivant une collection d'événements stockée dans une base MongoDb.
+ * <p>
+ * Chaque requête peut être limitée dans le temps : le serveur l'interrompt
+ * (maxTimeMS) au-delà de son délai maximum ou du temps restant au top en
+ * cours.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.03
+ */
+public class CollectionMongo implements CollectionDEvenements {
+
+    /**
+     * Collection MongoDb sous-jacente
+     */
+    private final MongoCollection<Document> collection;
+
+    /**
+     * Base de données de la collection, null si elle n'est pas connue
+     */
+    private final MongoDatabase mongoDatabase;
+
+    /**
+     * Délai maximum d'une requête en millisecondes, 0 si aucun
+     */
+    private final long delaiDeRequete;
+
+    /**
+     * Budget du top de mesure, null si les requêtes n'ont que leur délai
+     * maximum
+     */
+    private final BudgetDuTop budget;
+
+    /**
+     * Constructeur principal
+     *
+     * @param collection collection MongoDb sous-jacente
+     */
+    public CollectionMongo(MongoCollection<Document> collection) {
+        this.collection = collection;
+        this.mongoDatabase = null;
+        this.delaiDeRequete = 0;
+        this.budget = null;
+    }
+
+    /**
+     * Constructeur donnant accès aux statistiques de la collection
+     *
+     * @param mongoDatabase connexion à la base de données
+     * @param nom nom de la collection
+     */
+    public CollectionMongo(MongoDatabase mongoDatabase, String nom) {
+        this(mongoDatabase, nom, 0, null);
+    }
+
+    /**
+     * Constructeur limitant la durée des requêtes
+     *
+     * @param mongoDatabase connexion à la base de données
+     * @param nom nom de la collection
+     * @param delaiDeRequete délai maximum d'une requête en millisecondes, 0 si
+     * aucun
+     * @param budget budget du top de mesure, null si aucun
+     */
+    public CollectionMongo(MongoDatabase mongoDatabase, String nom, long delaiDeRequete, BudgetDuTop budget) {
+        this.collection = mongoDatabase.getCollection(nom);
+        this.mongoDatabase = mongoDatabase;
+        this.delaiDeRequete = delaiDeRequete;
+        this.budget = budget;
+    }
+
+    /**
+     * @return le temps accordé à la prochaine requête en millisecondes, 0 si
+     * aucune limite
+     * @throws DepassementDeBudgetException si le budget du top est épuisé
+     */
+    private long delai() {
+        return (budget == null) ? delaiDeRequete : budget.accorder(delaiDeRequete);
+    }
+
+    @Override
+    public long compter() {
+        long delai = delai();
+
+        if (delai == 0) {
+            return collection.count();
+        }
+        return collection.count(new Document(), new CountOptions().maxTime(delai, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Lit le nombre de documents dans les statistiques de la collection
+     * (commande collStats). Sans accès à la base de données, le nombre exact
+     * est retourné.
+     *
+     * @return le nombre approximatif de documents de la collection
+     */
+    @Override
+    public long estimer() {
+        Document commande;
+        long delai;
+
+        if (mongoDatabase == null) {
+            return compter();
+        }
+        delai = delai();
+        commande = new Document("collStats", collection.getNamespace().getCollectionName());
+        if (delai > 0) {
+            commande.append("maxTimeMS", delai);
+        }
+        return ((Number) mongoDatabase.runCommand(commande, mongoDatabase.getReadPreference())
+                .get("count")).longValue();
+    }
+
+    @Override
+    public Document premier(Document filtre, Document projection, Document tri) {
+        FindIterable<Document> recherche;
+        long delai = delai();
+
+        recherche = (filtre == null) ? collection.find() : collection.find(filtre);
+        if (delai > 0) {
+            recherche = recherche.maxTime(delai, TimeUnit.MILLISECONDS);
+        }
+        if (projection != null) {
+            recherche = recherche.projection(projection);
+        }
+        if (tri != null) {
+            recherche = recherche.sort(tri);
+        }
+        return recherche.limit(1).first();
+    }
+
+    @Override
+    public List<Document> agreger(List<Document> pipeline) {
+        long delai = delai();
+
+        if (delai == 0) {
+            return collection.aggregate(pipeline).into(new ArrayList<Document>());
+        }
+        return collection.aggregate(pipeline).maxTime(delai, TimeUnit.MILLISECONDS).into(new ArrayList<Document>());
+    }
+
+    @Override
+    public List<Document> listerIndex() {
+        return collection.listIndexes().into(new ArrayList<Document>());
+    }
+
+    /**
+     * @return la collection MongoDb sous-jacente
+     */
+    public MongoCollection<Document> getCollection() {
+        return collection;
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "CollectionMongo:{"
+                + "collection:" + collection.getNamespace()
+                + ", delaiDeRequete:" + delaiDeRequete
+                + "}";
+    }
+}
@@ -0,0 +1,145 @@
+package eventsmonitor;
+
+import java.util.List;
+import org.bson.Document;
+import org.joda.time.DateTime;
+
+/**
+ * Classe décrivant une collection d'événements dont le comptage lit le nombre
+ * estimé dans les métadonnées de la collection au lieu de compter les
+ * documents. Le nombre exact n'est compté que toutes les n mesures, ou à la
+ * demande, et comparé au nombre estimé lu au même moment. Le nombre estimé
+ * est corrigé de l'écart mesuré lors de cette comparaison : le passage d'un
+ * nombre exact à un nombre estimé ne fait pas de saut, que les débits, les
+ * arrivées par minute et les règles d'alerte prendraient pour des arrivées
+ * ou des suppressions.
+ * <p>
+ * Les autres requêtes sont transmises telles quelles à la collection
+ * enveloppée.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.02
+ */
+public class ComptageEstime implements CollectionDEvenements {
+
+    /**
+     * Collection interrogée
+     */
+    private final CollectionDEvenements collection;
+
+    /**
+     * Nombre de comptages entre deux comptages exacts
+     */
+    private final int periode;
+
+    /**
+     * Nombre de comptages faits
+     */
+    private long nombreDeComptages = 0;
+
+    /**
+     * Vrai si le prochain comptage doit être exact
+     */
+    private volatile boolean comptageExactDemande = false;
+
+    /**
+     * Etat du dernier comptage
+     */
+    private volatile EtatDuComptage etat = new EtatDuComptage(false, 0, 0, null);
+
+    /**
+     * debugMode : fonctionnement du programme en mode debug (true/false).
+     * Valeur par défaut : false.
+     */
+    private static boolean debugMode = false;
+
+    /**
+     * Constructeur principal
+     *
+     * @param collection collection interrogée
+     * @param periode nombre de comptages entre deux comptages exacts
+     * @param debugMode fonctionnement du programme en mode debug
+     */
+    public ComptageEstime(CollectionDEvenements collection, int periode, boolean debugMode) {
+        this.collection = collection;
+        this.periode = Math.max(1, periode);
+        ComptageEstime.debugMode = debugMode;
+    }
+
+    /**
+     * Retourne le nombre estimé d'événements corrigé du dernier écart mesuré,
+     * ou le nombre exact au premier comptage, toutes les n mesures et quand
+     * il a été demandé.
+     *
+     * @return le nombre d'événements
+     */
+    @Override
+    public synchronized long compter() {
+        long nombreExact;
+        long nombreEstime;
+        EtatDuComptage precedent;
+
+        precedent = etat;
+        if (comptageExactDemande || nombreDeComptages++ % periode == 0) {
+            comptageExactDemande = false;
+            nombreExact = collection.compter();
+            nombreEstime = collection.estimer();
+            etat = new EtatDuComptage(true, nombreExact, nombreEstime, new DateTime());
+            if (debugMode) {
+                System.out.println("Comptage exact : " + etat);
+            }
+            return nombreExact;
+        }
+        nombreEstime = collection.estimer();
+        etat = new EtatDuComptage(false, precedent.getNombreExact(), precedent.getNombreEstime(),
+                precedent.getDateDeComparaison());
+        return Math.max(0, nombreEstime - precedent.getDerive());
+    }
+
+    @Override
+    public long estimer() {
+        return collection.estimer();
+    }
+
+    /**
+     * Demande que le prochain comptage soit exact.
+     */
+    public void demanderComptageExact() {
+        comptageExactDemande = true;
+    }
+
+    /**
+     * @return l'état du dernier comptage
+     */
+    public EtatDuComptage getEtat() {
+        return etat;
+    }
+
+    @Override
+    public Document premier(Document filtre, Document projection, Document tri) {
+        return collection.premier(filtre, projection, tri);
+    }
+
+    @Override
+    public List<Document> agreger(List<Document> pipeline) {
+        return collection.agreger(pipeline);
+    }
+
+    @Override
+    public List<Document> listerIndex() {
+        return collection.listerIndex();
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "ComptageEstime:{"
+                + "collection:" + collection
+                + ", periode:" + periode
+                + "}";
+    }
+}
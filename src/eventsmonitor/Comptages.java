@@ -0,0 +1,126 @@
+package eventsmonitor;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.joda.time.DateTime;
+
+/**
+ * Classe décrivant les comptages courants de la collection des événements :
+ * nombre total, nombre par status, nombre par type d'événement et date du
+ * dernier événement. Elle est utilisée par les moteurs qui tiennent les
+ * comptages à jour au lieu de les recalculer.
+ *
+ * @author Thierry Baribaud
+ * @version 0.02
+ */
+public class Comptages {
+
+    /**
+     * Nombre d'événements en base
+     */
+    private long nombreDEvenements = 0;
+
+    /**
+     * Nombre d'événements par status
+     */
+    private final Map<String, Long> status = new HashMap<>();
+
+    /**
+     * Nombre d'événements par type d'événement
+     */
+    private final Map<String, Long> evenements = new HashMap<>();
+
+    /**
+     * Date de réception du dernier événement
+     */
+    private DateTime dateDernierEvenement = null;
+
+    /**
+     * Recharge tous les comptages depuis la collection.
+     *
+     * @param collection collection des événements
+     */
+    public void charger(CollectionDEvenements collection) {
+        nombreDEvenements = collection.compter();
+        dateDernierEvenement = ListeDeMesures.rechercherDateDernierEvenement(collection);
+        status.clear();
+        status.putAll(ListeDeMesures.grouperPar(collection, "status"));
+        evenements.clear();
+        evenements.putAll(ListeDeMesures.grouperPar(collection, "eventType"));
+    }
+
+    /**
+     * Remet tous les comptages à zéro.
+     */
+    public void vider() {
+        nombreDEvenements = 0;
+        dateDernierEvenement = null;
+        status.clear();
+        evenements.clear();
+    }
+
+    /**
+     * Ajoute des événements aux comptages.
+     *
+     * @param statut status des événements
+     * @param typeDEvenement type des événements
+     * @param nombre nombre d'événements à ajouter
+     * @param dateEvenement date du plus récent des événements ajoutés
+     */
+    public void ajouter(String statut, String typeDEvenement, long nombre, DateTime dateEvenement) {
+        nombreDEvenements += nombre;
+        ajouter(status, statut, nombre);
+        ajouter(evenements, typeDEvenement, nombre);
+        if (dateEvenement != null && (dateDernierEvenement == null || dateEvenement.isAfter(dateDernierEvenement))) {
+            dateDernierEvenement = dateEvenement;
+        }
+    }
+
+    /**
+     * @param comptages comptages à mettre à jour
+     * @param cle clé à augmenter
+     * @param nombre valeur à ajouter
+     */
+    private static void ajouter(Map<String, Long> comptages, String cle, long nombre) {
+        Long valeur = comptages.get(cle);
+
+        comptages.put(cle, (valeur == null) ? nombre : valeur + nombre);
+    }
+
+    /**
+     * @param debugMode fonctionnement du programme en mode debug
+     * @return une liste de mesures construite à partir des comptages courants
+     */
+    public ListeDeMesures versListeDeMesures(boolean debugMode) {
+        return new ListeDeMesures(nombreDEvenements, dateDernierEvenement, status, evenements, debugMode);
+    }
+
+    /**
+     * @return le nombre d'événements en base
+     */
+    public long getNombreDEvenements() {
+        return nombreDEvenements;
+    }
+
+    /**
+     * @return la date de réception du dernier événement
+     */
+    public DateTime getDateDernierEvenement() {
+        return dateDernierEvenement;
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "Comptages:{"
+                + "nombreDEvenements:" + nombreDEvenements
+                + ", dateDernierEvenement:" + dateDernierEvenement
+                + ", status:" + status
+                + ", evenements:" + evenements
+                + "}";
+    }
+}
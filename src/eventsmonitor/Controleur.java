@@ -1,10 +1,14 @@
 package eventsmonitor;
 
+import com.mongodb.MongoExecutionTimeoutException;
+import com.mongodb.MongoSocketReadTimeoutException;
+import com.mongodb.MongoTimeoutException;
 import com.mongodb.client.MongoDatabase;
+import static eventsmonitor.EventsMonitor.COLLECTION_EVENEMENTS;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.io.IOException;
 import java.io.Serializable;
-import static java.lang.Thread.sleep;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -12,19 +16,26 @@ import java.util.logging.Logger;
  * Classe décrivant un controleur
  *
  * @author Thierry Baribaud
- * @version 0.04
+ * @version 0.13
  */
 public class Controleur implements Serializable, Runnable {
 
+    /**
+     * Nombre de mesures gardées par défaut dans l'historique : 24 heures à
+     * raison d'une mesure toutes les 5 secondes
+     */
+    public static final int CAPACITE_HISTORIQUE = 17280;
+
     /**
      * Suivi des changements sur le controleur
      */
     private PropertyChangeSupport changeSupport = new PropertyChangeSupport(this);
 
     /**
-     * Connexion à la base de données
+     * Moteur produisant les listes de mesures, null si les mesures viennent
+     * d'ailleurs (rejeu)
      */
-    private MongoDatabase mongoDatabase;
+    private MoteurDeMesures moteurDeMesures;
 
     /**
      * Nom du controleur
@@ -41,6 +52,63 @@ public class Controleur implements Serializable, Runnable {
      */
     private ListeDeMesures listeDeMesures = null;
 
+    /**
+     * Historique des dernières mesures
+     */
+    private final HistoriqueDeMesures historique;
+
+    /**
+     * Calcul des débits d'arrivée des événements
+     */
+    private final DebitsDEvenements debits = new DebitsDEvenements();
+
+    /**
+     * Arrivées d'événements par minute, null si elles ne sont pas suivies
+     */
+    private ArriveesParMinute arrivees = null;
+
+    /**
+     * Suivi des retards des événements, null s'ils ne sont pas suivis
+     */
+    private SuiviDesLatences latences = null;
+
+    /**
+     * Comptage estimé des événements, null si les événements sont toujours
+     * comptés exactement
+     */
+    private ComptageEstime comptageEstime = null;
+
+    /**
+     * Journal des mesures sur le disque, null si les mesures ne sont pas
+     * journalisées
+     */
+    private JournalDeMesures journal = null;
+
+    /**
+     * Règles d'alerte évaluées sur chaque mesure, null s'il n'y en a pas
+     */
+    private MoteurDAlertes alertes = null;
+
+    /**
+     * Débits habituels des types d'événement, null s'ils ne sont pas appris
+     */
+    private ReferenceSaisonniere saisons = null;
+
+    /**
+     * Temps accordé à chaque top, null s'il n'est pas limité
+     */
+    private BudgetDuTop budget = null;
+
+    /**
+     * Nombre de tops abandonnés faute de temps
+     */
+    private volatile long nombreDeTopsAbandonnes = 0;
+
+    /**
+     * Chronométrage des étapes des mesures
+     */
+    private Chronometrage chronometrage = new Chronometrage();
+
     /**
      * Tableau des status
      */
@@ -59,10 +127,43 @@ public class Controleur implements Serializable, Runnable {
      * @param debugMode fonctionnement du programme en mode debug
      */
     public Controleur(MongoDatabase mongoDatabase, boolean debugMode) {
-        this.mongoDatabase = mongoDatabase;
+        this(new MoteurComplet(new CollectionMongo(mongoDatabase.getCollection(COLLECTION_EVENEMENTS)), debugMode), debugMode);
+    }
+
+    /**
+     * Constructeur utilisant un moteur de mesures
+     *
+     * @param moteurDeMesures moteur produisant les listes de mesures
+     * @param debugMode fonctionnement du programme en mode debug
+     */
+    public Controleur(MoteurDeMesures moteurDeMesures, boolean debugMode) {
+        this(moteurDeMesures, new HistoriqueDeMesures(CAPACITE_HISTORIQUE), debugMode);
+    }
+
+    /**
+     * Constructeur utilisant un moteur de mesures et un historique
+     *
+     * @param moteurDeMesures moteur produisant les listes de mesures
+     * @param historique historique des dernières mesures
+     * @param debugMode fonctionnement du programme en mode debug
+     */
+    public Controleur(MoteurDeMesures moteurDeMesures, HistoriqueDeMesures historique, boolean debugMode) {
+        this.moteurDeMesures = moteurDeMesures;
+        this.historique = historique;
         Controleur.debugMode = debugMode;
     }
 
+    /**
+     * Constructeur sans moteur de mesures, les mesures étant fournies par
+     * publier(), par exemple lors d'un rejeu
+     *
+     * @param historique historique des dernières mesures
+     * @param debugMode fonctionnement du programme en mode debug
+     */
+    public Controleur(HistoriqueDeMesures historique, boolean debugMode) {
+        this(null, historique, debugMode);
+    }
+
     /**
      * @return le nom du controleur
      */
@@ -132,25 +233,229 @@ public class Controleur implements Serializable, Runnable {
                 + "}";
     }
 
+    /**
+     * Fait une mesure. Appelée à chaque top de l'ordonnanceur. Si le temps
+     * accordé au top est dépassé, la mesure est abandonnée et la mesure
+     * précédente est republiée, marquée périmée.
+     */
     @Override
     public void run() {
-        long i = 0;
-
-        while (true) {
-            i++;
-            setNombreDeMesures(i);
-            setListeDeMesures(new ListeDeMesures(this.mongoDatabase, debugMode));
-            if (debugMode) {
-                System.out.println("Mesure no " + getNombreDeMesures() + ", " + getListeDeMesures());
+        ListeDeMesures mesure;
+        long debutDuTop;
+        long debut;
+
+        debutDuTop = System.nanoTime();
+        debut = debutDuTop;
+        if (budget != null) {
+            budget.ouvrir();
+        }
+        try {
+            try {
+                mesure = moteurDeMesures.mesurer();
+            } catch (DepassementDeBudgetException | MongoExecutionTimeoutException | MongoSocketReadTimeoutException
+                    | MongoTimeoutException exception) {
+                abandonner(exception, debutDuTop);
+                return;
             }
+            mesure.setDureeDeLaMesure((System.nanoTime() - debut) / 1000000);
+            chronometrage.enregistrer(Chronometrage.MESURE, debut);
+            if (comptageEstime != null) {
+                mesure.setEtatDuComptage(comptageEstime.getEtat());
+            }
+            publier(mesure);
+        } finally {
+            if (budget != null) {
+                budget.fermer();
+            }
+        }
+        chronometrage.enregistrer(Chronometrage.TOP, debutDuTop);
+        if (debugMode) {
+            System.out.println("Mesure no " + getNombreDeMesures() + ", " + getListeDeMesures());
+            System.out.println(chronometrage);
+        }
+    }
+
+    /**
+     * Abandonne le top en cours et republie la mesure précédente, marquée
+     * périmée, sans la redonner aux suivis ni au journal.
+     *
+     * @param exception cause de l'abandon
+     * @param debutDuTop début du top, lu par System.nanoTime()
+     */
+    private void abandonner(RuntimeException exception, long debutDuTop) {
+        ListeDeMesures precedente;
+
+        nombreDeTopsAbandonnes++;
+        Logger.getLogger(Controleur.class.getName()).log(Level.WARNING, "Top abandonné après "
+                + (System.nanoTime() - debutDuTop) / 1000000 + " ms : " + exception.getMessage());
+        precedente = getListeDeMesures();
+        if (precedente != null && !precedente.isPerimee()) {
+            setListeDeMesures(precedente.copierPerimee());
+        }
+    }
+
+    /**
+     * Tient les suivis à jour avec une mesure, la journalise et la publie aux
+     * écouteurs.
+     *
+     * @param mesure mesure faite par le moteur ou relue dans un journal
+     */
+    public void publier(ListeDeMesures mesure) {
+        long debut;
+
+        historique.ajouter(mesure);
+        debits.mettreAJour(mesure);
+        if (arrivees != null) {
+            arrivees.mettreAJour(mesure);
+        }
+        if (latences != null) {
+            latences.mettreAJour(mesure);
+        }
+        if (saisons != null) {
+            debut = System.nanoTime();
+            saisons.mettreAJour(mesure);
+            chronometrage.enregistrer(Chronometrage.SAISONS, debut);
+        }
+        if (alertes != null) {
+            debut = System.nanoTime();
+            alertes.evaluer(mesure);
+            chronometrage.enregistrer(Chronometrage.ALERTES, debut);
+        }
+        if (journal != null) {
+            debut = System.nanoTime();
+            try {
+                journal.ecrire(mesure);
+            } catch (IOException exception) {
+                Logger.getLogger(Controleur.class.getName()).log(Level.WARNING,
+                        "Ecriture impossible dans le journal " + journal.getFichier(), exception);
+            }
+            chronometrage.enregistrer(Chronometrage.JOURNAL, debut);
+        }
+        setNombreDeMesures(getNombreDeMesures() + 1);
+        debut = System.nanoTime();
+        setListeDeMesures(mesure);
+        chronometrage.enregistrer(Chronometrage.PUBLICATION, debut);
+    }
+
+    /**
+     * Arrête le moteur de mesures.
+     */
+    public void arreter() {
+        if (moteurDeMesures != null) {
+            moteurDeMesures.arreter();
+        }
+        if (journal != null) {
+            journal.fermer();
+        }
+        if (saisons != null) {
             try {
-                sleep((long) 5000);
-            } catch (InterruptedException ex) {
-                Logger.getLogger(Controleur.class.getName()).log(Level.SEVERE, null, ex);
+                saisons.enregistrer();
+            } catch (IOException exception) {
+                Logger.getLogger(Controleur.class.getName()).log(Level.WARNING,
+                        "Enregistrement impossible de la référence saisonnière", exception);
             }
         }
     }
 
+    /**
+     * @return les arrivées d'événements par minute, null si elles ne sont pas
+     * suivies
+     */
+    public ArriveesParMinute getArrivees() {
+        return arrivees;
+    }
+
+    /**
+     * @param arrivees définit les arrivées d'événements par minute à tenir à
+     * jour à chaque mesure
+     */
+    public void setArrivees(ArriveesParMinute arrivees) {
+        this.arrivees = arrivees;
+    }
+
+    /**
+     * @param latences définit le suivi des retards des événements à tenir à
+     * jour à chaque mesure
+     */
+    public void setLatences(SuiviDesLatences latences) {
+        this.latences = latences;
+    }
+
+    /**
+     * @return le comptage estimé des événements, null si les événements sont
+     * toujours comptés exactement
+     */
+    public ComptageEstime getComptageEstime() {
+        return comptageEstime;
+    }
+
+    /**
+     * @param comptageEstime définit le comptage estimé des événements utilisé
+     * par le moteur de mesures
+     */
+    public void setComptageEstime(ComptageEstime comptageEstime) {
+        this.comptageEstime = comptageEstime;
+    }
+
+    /**
+     * @param journal définit le journal où écrire chaque mesure
+     */
+    public void setJournal(JournalDeMesures journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * @param alertes définit les règles d'alerte à évaluer sur chaque mesure
+     */
+    public void setAlertes(MoteurDAlertes alertes) {
+        this.alertes = alertes;
+    }
+
+    /**
+     * @param saisons définit les débits habituels des types d'événement à
+     * apprendre et à comparer à chaque mesure
+     */
+    public void setSaisons(ReferenceSaisonniere saisons) {
+        this.saisons = saisons;
+    }
+
+    /**
+     * @param budget définit le temps accordé à chaque top, partagé avec les
+     * collections interrogées par le moteur de mesures
+     */
+    public void setBudget(BudgetDuTop budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * @return le nombre de tops abandonnés faute de temps
+     */
+    public long getNombreDeTopsAbandonnes() {
+        return nombreDeTopsAbandonnes;
+    }
+
+    /**
+     * @return le chronométrage des étapes des mesures
+     */
+    public Chronometrage getChronometrage() {
+        return chronometrage;
+    }
+
+    /**
+     * @param chronometrage définit le chronométrage des étapes des mesures,
+     * partagé avec les requêtes du moteur
+     */
+    public void setChronometrage(Chronometrage chronometrage) {
+        this.chronometrage = chronometrage;
+    }
+
+    /**
+     * @return l'historique des dernières mesures
+     */
+    public HistoriqueDeMesures getHistorique() {
+        return historique;
+    }
+
     /**
      * @return la liste des mesures
      */
@@ -0,0 +1,193 @@
+package eventsmonitor;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Classe calculant le débit d'arrivée des événements (en événements par
+ * seconde) pour le nombre total, chaque status et chaque type d'événement.
+ * <p>
+ * Le débit instantané est tiré de l'écart entre deux mesures successives, sans
+ * requête supplémentaire. Il est lissé par des moyennes mobiles
+ * exponentielles sur 1, 5 et 15 minutes, à la manière de la charge d'un
+ * système Unix : à chaque mesure, moyenne += (1 - exp(-dt/T)) * (débit -
+ * moyenne). Une série qui apparaît ne donne un débit qu'à partir de la mesure
+ * suivante ; une baisse d'un comptage (suppression, réconciliation) compte
+ * pour un débit nul.</p>
+ * <p>
+ * Quand les regroupements d'une mesure sont estimés sur un échantillon,
+ * l'écart entre deux estimations n'est que du bruit d'échantillonnage : les
+ * débits par status et par type d'événement du dernier regroupement exact
+ * sont repris tels quels. Chaque série retient l'instant de sa dernière
+ * valeur, le débit suivant couvre donc tout l'intervalle depuis ce
+ * regroupement exact.</p>
+ * <p>
+ * Une série absente des regroupements exacts pendant trois fois la plus
+ * longue constante de temps est oubliée : les status et types d'événement
+ * disparus n'occupent pas la mémoire indéfiniment. Si elle réapparaît, elle
+ * est traitée comme une nouvelle série.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.03
+ */
+public class DebitsDEvenements {
+
+    /**
+     * Constantes de temps des moyennes mobiles en secondes : 1, 5 et 15
+     * minutes
+     */
+    public static final int[] CONSTANTES_DE_TEMPS = {60, 300, 900};
+
+    /**
+     * Durée sans valeur après laquelle une série est oubliée en
+     * millisecondes : trois fois la plus longue constante de temps
+     */
+    private static final long DELAI_D_OUBLI = 3000L * CONSTANTES_DE_TEMPS[CONSTANTES_DE_TEMPS.length - 1];
+
+    /**
+     * Etat du calcul pour chaque série
+     */
+    private final Map<String, Etat> etats = new HashMap<>();
+
+    /**
+     * Horodatage de la mesure précédente en millisecondes, -1 avant la
+     * première mesure
+     */
+    private long instantPrecedent = -1;
+
+    /**
+     * Débits par status et par type d'événement calculés lors du dernier
+     * regroupement exact
+     */
+    private Map<String, double[]> debitsDesRegroupements = Collections.emptyMap();
+
+    /**
+     * Etat du calcul pour une série
+     */
+    private static class Etat {
+
+        /**
+         * Valeur de la série lors de la mesure précédente
+         */
+        private long valeurPrecedente;
+
+        /**
+         * Horodatage de la valeur précédente en millisecondes
+         */
+        private long instantPrecedent;
+
+        /**
+         * Moyennes mobiles, une par constante de temps, null tant qu'aucun
+         * débit n'a été calculé
+         */
+        private double[] moyennes = null;
+    }
+
+    /**
+     * Met à jour les débits avec une nouvelle mesure et les attache à
+     * celle-ci.
+     *
+     * @param listeDeMesures nouvelle mesure
+     */
+    public synchronized void mettreAJour(ListeDeMesures listeDeMesures) {
+        Map<String, double[]> debits;
+        TableDeComptages status;
+        TableDeComptages evenements;
+        long instant;
+        int i;
+
+        instant = listeDeMesures.getDateDeLaMesure().getMillis();
+        if (instantPrecedent >= 0 && instant <= instantPrecedent) {
+            return;
+        }
+        instantPrecedent = instant;
+        if (listeDeMesures.getRepartitionEstimee() != null) {
+            debits = new HashMap<>(debitsDesRegroupements);
+        } else {
+            debits = new HashMap<>();
+            status = listeDeMesures.getStatus();
+            for (i = 0; i < status.getTaille(); i++) {
+                calculer(HistoriqueDeMesures.serieStatus(status.getCle(i)), status.getQuantite(i), instant, debits);
+            }
+            evenements = listeDeMesures.getEvenements();
+            for (i = 0; i < evenements.getTaille(); i++) {
+                calculer(HistoriqueDeMesures.serieEvenement(evenements.getCle(i)), evenements.getQuantite(i),
+                        instant, debits);
+            }
+            debitsDesRegroupements = new HashMap<>(debits);
+            oublier(instant);
+        }
+        calculer(HistoriqueDeMesures.SERIE_TOTAL, listeDeMesures.getNombreDEvenements(), instant, debits);
+        listeDeMesures.setDebits(Collections.unmodifiableMap(debits));
+    }
+
+    /**
+     * Oublie les séries sans valeur depuis plus de DELAI_D_OUBLI.
+     *
+     * @param instant horodatage de la mesure en millisecondes
+     */
+    private void oublier(long instant) {
+        Iterator<Etat> iterateur;
+
+        iterateur = etats.values().iterator();
+        while (iterateur.hasNext()) {
+            if (instant - iterateur.next().instantPrecedent > DELAI_D_OUBLI) {
+                iterateur.remove();
+            }
+        }
+    }
+
+    /**
+     * Met à jour les moyennes mobiles d'une série.
+     *
+     * @param serie nom de la série
+     * @param valeur nouvelle valeur de la série
+     * @param instant horodatage de la nouvelle valeur en millisecondes
+     * @param debits débits calculés, complétés avec ceux de la série
+     */
+    private void calculer(String serie, long valeur, long instant, Map<String, double[]> debits) {
+        Etat etat;
+        double duree;
+        double debit;
+        int i;
+
+        etat = etats.get(serie);
+        if (etat == null) {
+            etat = new Etat();
+            etat.valeurPrecedente = valeur;
+            etat.instantPrecedent = instant;
+            etats.put(serie, etat);
+            return;
+        }
+        duree = (instant - etat.instantPrecedent) / 1000.0;
+        debit = Math.max(0, (valeur - etat.valeurPrecedente) / duree);
+        etat.valeurPrecedente = valeur;
+        etat.instantPrecedent = instant;
+        if (etat.moyennes == null) {
+            etat.moyennes = new double[CONSTANTES_DE_TEMPS.length];
+            for (i = 0; i < CONSTANTES_DE_TEMPS.length; i++) {
+                etat.moyennes[i] = debit;
+            }
+        } else {
+            for (i = 0; i < CONSTANTES_DE_TEMPS.length; i++) {
+                etat.moyennes[i] += (1 - Math.exp(-duree / CONSTANTES_DE_TEMPS[i])) * (debit - etat.moyennes[i]);
+            }
+        }
+        debits.put(serie, etat.moyennes.clone());
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public synchronized String toString() {
+        return "DebitsDEvenements:{"
+                + "nombreDeSeries:" + etats.size()
+                + ", instantPrecedent:" + instantPrecedent
+                + "}";
+    }
+}
@@ -0,0 +1,21 @@
+package eventsmonitor;
+
+/**
+ * Classe qui définit une exception lancée quand une requête est refusée parce
+ * que le budget du top de mesure est épuisé.
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class DepassementDeBudgetException extends RuntimeException {
+
+    /**
+     * Constructs an instance of <code>DepassementDeBudgetException</code> with
+     * the specified detail message.
+     *
+     * @param msg the detail message.
+     */
+    public DepassementDeBudgetException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,38 @@
+package eventsmonitor;
+
+import org.bson.Document;
+
+/**
+ * Interface décrivant un écouteur des changements survenant sur la collection
+ * des événements.
+ *
+ * @author Thierry Baribaud
+ * @version 0.02
+ */
+public interface EcouteurDeChangements {
+
+    /**
+     * Signale l'insertion d'un document dans la collection.
+     *
+     * @param document document inséré
+     * @param position position de l'insertion dans la source (voir
+     * SourceDeChangements.position)
+     */
+    public void documentInsere(Document document, long position);
+
+    /**
+     * Signale la mise à jour ou la suppression d'un document. Le changement
+     * n'indique pas les valeurs retirées : les comptages devront être
+     * recalculés, sans urgence.
+     *
+     * @param position position du changement dans la source
+     */
+    public void documentModifie(long position);
+
+    /**
+     * Signale un changement qui ne peut être suivi de façon incrémentale
+     * (collection vidée, perte du flux, ...). Les comptages doivent être
+     * recalculés au plus tôt.
+     */
+    public void resynchronisationNecessaire();
+}
@@ -0,0 +1,102 @@
+package eventsmonitor;
+
+import org.joda.time.DateTime;
+
+/**
+ * Classe décrivant la nature du nombre d'événements d'une mesure, exact ou
+ * estimé, et l'écart entre les deux nombres la dernière fois qu'ils ont été
+ * comparés. Les objets de cette classe ne changent pas une fois construits.
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class EtatDuComptage {
+
+    /**
+     * Vrai si le nombre d'événements de la mesure est exact
+     */
+    private final boolean exact;
+
+    /**
+     * Nombre exact lors de la dernière comparaison
+     */
+    private final long nombreExact;
+
+    /**
+     * Nombre estimé lors de la dernière comparaison
+     */
+    private final long nombreEstime;
+
+    /**
+     * Date de la dernière comparaison, null si aucune n'a été faite
+     */
+    private final DateTime dateDeComparaison;
+
+    /**
+     * Constructeur principal
+     *
+     * @param exact vrai si le nombre d'événements de la mesure est exact
+     * @param nombreExact nombre exact lors de la dernière comparaison
+     * @param nombreEstime nombre estimé lors de la dernière comparaison
+     * @param dateDeComparaison date de la dernière comparaison, null si aucune
+     */
+    public EtatDuComptage(boolean exact, long nombreExact, long nombreEstime, DateTime dateDeComparaison) {
+        this.exact = exact;
+        this.nombreExact = nombreExact;
+        this.nombreEstime = nombreEstime;
+        this.dateDeComparaison = dateDeComparaison;
+    }
+
+    /**
+     * @return vrai si le nombre d'événements de la mesure est exact, faux
+     * s'il est estimé
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * @return le nombre exact lors de la dernière comparaison
+     */
+    public long getNombreExact() {
+        return nombreExact;
+    }
+
+    /**
+     * @return le nombre estimé lors de la dernière comparaison
+     */
+    public long getNombreEstime() {
+        return nombreEstime;
+    }
+
+    /**
+     * @return l'écart entre le nombre estimé et le nombre exact lors de la
+     * dernière comparaison
+     */
+    public long getDerive() {
+        return nombreEstime - nombreExact;
+    }
+
+    /**
+     * @return la date de la dernière comparaison, null si aucune n'a été
+     * faite
+     */
+    public DateTime getDateDeComparaison() {
+        return dateDeComparaison;
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "EtatDuComptage:{"
+                + "exact:" + exact
+                + ", nombreExact:" + nombreExact
+                + ", nombreEstime:" + nombreEstime
+                + ", dateDeComparaison:" + dateDeComparaison
+                + "}";
+    }
+}
@@ -1,18 +1,23 @@
 package eventsmonitor;
 
-import com.mongodb.MongoClient;
-import com.mongodb.client.MongoDatabase;
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import javax.swing.JFrame;
+import javax.swing.JTabbedPane;
+import javax.swing.WindowConstants;
 import utils.ApplicationProperties;
-import utils.DBServer;
 import utils.DBServerException;
 
 /**
- * Programme Java permettant de surveiller l'activité d'une base de données
- * MongoDb
+ * Programme Java permettant de surveiller l'activité d'une ou plusieurs bases
+ * de données MongoDb
  *
  * @author Thierry Baribaud
- * @version 0.05
+ * @version 0.09
  */
 public class EventsMonitor {
     
@@ -27,10 +32,16 @@ public class EventsMonitor {
     public final static int MAX_EVENTS = 30;
 
     /**
-     * dbServerType : prod pour le serveur de production, pre-prod pour le
-     * serveur de pré-production. Valeur par défaut : pre-prod.
+     * Nom de la collection des événements
      */
-    private String dbServerType = "pre-prod";
+    public final static String COLLECTION_EVENEMENTS = "events";
+
+    /**
+     * dbServerTypes : serveurs à suivre, prod pour le serveur de production,
+     * pre-prod pour le serveur de pré-production, dev ou mysql. Valeur par
+     * défaut : pre-prod.
+     */
+    private List<String> dbServerTypes;
 
     /**
      * debugMode : fonctionnement du programme en mode debug (true/false).
@@ -44,6 +55,12 @@ public class EventsMonitor {
      */
     private static boolean testMode = false;
 
+    /**
+     * headlessMode : fonctionnement du programme sans interface graphique, les
+     * mesures sont publiées en HTTP (true/false). Valeur par défaut : false.
+     */
+    private static boolean headlessMode = false;
+
     /**
      * Constructeur de la classe EventsMonitor
      *
@@ -56,60 +73,195 @@ public class EventsMonitor {
      */
     public EventsMonitor(String[] args) throws GetArgsException, IOException, DBServerException {
         ApplicationProperties applicationProperties;
-        DBServer dbServer;
         GetArgs getArgs;
-        MongoClient mongoClient;
-        MongoDatabase mongoDatabase;
-        Thread faireDesMesures;
-        TableauDeSuivi tableauDeSuivi;
-        Controleur controleur;
+        int nombreDeConnexions;
+        final ScheduledExecutorService horloge;
+        final ExecutorService executant;
+        final List<Cible> cibles;
+        final ServeurDeMetriques serveurDeMetriques;
 
         System.out.println("Création d'une instance de EventsMonitor ...");
 
         System.out.println("Analyse des arguments de la ligne de commande ...");
         getArgs = new GetArgs(args);
-        setDbServerType(getArgs.getDbServerType());
+        setDbServerTypes(getArgs.getDbServerTypes());
         setDebugMode(getArgs.getDebugMode());
         setTestMode(getArgs.getTestMode());
+        setHeadlessMode(getArgs.getHeadlessMode());
+
+        if (getArgs.getFichierDeRejeu() != null) {
+            rejouer(getArgs.getFichierDeRejeu(), getArgs.getVitesse());
+            return;
+        }
 
         System.out.println("Lecture des paramètres d'exécution ...");
         applicationProperties = new ApplicationProperties("EventsMonitor.prop");
 
-        System.out.println("Lecture des paramètres du serveur de base de données ...");
-        dbServer = new DBServer(getDbServerType(), applicationProperties);
-        if (debugMode) {
-            System.out.println(dbServer);
+        nombreDeConnexions = Math.max(1,
+                ParametresDeSuivi.lireBudgetDeConnexions(applicationProperties) / getDbServerTypes().size());
+        horloge = Ordonnanceur.creerHorloge();
+        executant = Ordonnanceur.creerExecutant(getDbServerTypes().size());
+        cibles = creerCibles(applicationProperties, nombreDeConnexions, horloge, executant);
+
+        if (headlessMode) {
+            serveurDeMetriques = new ServeurDeMetriques(cibles.get(0).getParametresDeSuivi().getPortHttp(), debugMode);
+            for (Cible cible : cibles) {
+                serveurDeMetriques.ajouter(cible.getNom(), cible.getControleur());
+            }
+            serveurDeMetriques.demarrer();
+            System.out.println("Mesures publiées sur http://localhost:"
+                    + cibles.get(0).getParametresDeSuivi().getPortHttp() + "/metrics");
+        } else {
+            serveurDeMetriques = null;
+            afficherTableauxDeSuivi(cibles);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                for (Cible cible : cibles) {
+                    cible.arreter();
+                }
+                horloge.shutdownNow();
+                executant.shutdownNow();
+                if (serveurDeMetriques != null) {
+                    serveurDeMetriques.arreter();
+                }
+            }
+        });
+        for (Cible cible : cibles) {
+            cible.demarrer();
+        }
+    }
+
+    /**
+     * Rejoue un journal de mesures dans un tableau de suivi, ou sans
+     * affichage en mode headless, sans connexion à une base de données.
+     *
+     * @param fichier segment ou répertoire du journal
+     * @param vitesse facteur d'accélération, 0 pour aller aussi vite que
+     * possible
+     * @throws java.io.IOException si le journal est introuvable
+     */
+    private void rejouer(String fichier, double vitesse) throws IOException {
+        final Controleur controleur;
+        final TableauDeSuivi tableauDeSuivi;
+
+        System.out.println("Rejeu du journal " + fichier
+                + ((vitesse > 0) ? ", vitesse x" + vitesse : ", aussi vite que possible") + " ...");
+        controleur = new Controleur(new HistoriqueDeMesures(Controleur.CAPACITE_HISTORIQUE), debugMode);
+        controleur.setArrivees(new ArriveesParMinute(new CollectionEnMemoire(),
+                ArriveesParMinute.MINUTES_PAR_DEFAUT, debugMode));
+        if (!headlessMode) {
+            tableauDeSuivi = creerTableauDeSuivi(controleur, null);
+            tableauDeSuivi.setTitle(tableauDeSuivi.getTitle() + " - rejeu de " + fichier);
+            java.awt.EventQueue.invokeLater(new Runnable() {
+                public void run() {
+                    tableauDeSuivi.setVisible(true);
+                }
+            });
         }
-        System.out.println("Ouverture de la connexion au serveur de base de données : " + dbServer.getName());
-        mongoClient = new MongoClient(dbServer.getIpAddress(), (int) dbServer.getPortNumber());
+        new Thread(new Rejeu(new LecteurDeJournal(new File(fichier), debugMode), controleur, vitesse, debugMode),
+                "Rejeu").start();
+    }
 
-        System.out.println("Connexion à la base de données : " + dbServer.getDbName());
-        mongoDatabase = mongoClient.getDatabase(dbServer.getDbName());
+    /**
+     * Prépare le suivi de chaque serveur demandé. Un serveur dont la
+     * préparation échoue est ignoré s'il en reste d'autres à suivre.
+     *
+     * @param applicationProperties paramètres de l'application
+     * @param nombreDeConnexions nombre maximum de connexions par serveur
+     * @param horloge horloge partagée des ordonnanceurs
+     * @param executant threads de mesure partagés
+     * @return les serveurs suivis
+     * @throws utils.DBServerException si aucun serveur ne peut être suivi
+     */
+    private List<Cible> creerCibles(ApplicationProperties applicationProperties, int nombreDeConnexions,
+            ScheduledExecutorService horloge, ExecutorService executant) throws DBServerException {
+        List<Cible> cibles = new ArrayList<>();
+        DBServerException erreur = null;
 
-        tableauDeSuivi = new TableauDeSuivi(debugMode);
-        controleur = new Controleur(mongoDatabase, debugMode);
-        controleur.addPropertyChangeListener(tableauDeSuivi);
-        faireDesMesures = new Thread(controleur);
+        for (String dbServerType : getDbServerTypes()) {
+            try {
+                cibles.add(new Cible(dbServerType, applicationProperties, nombreDeConnexions,
+                        horloge, executant, debugMode));
+            } catch (DBServerException | RuntimeException exception) {
+                System.out.println("Suivi impossible du serveur " + dbServerType + " : " + exception);
+                if (getDbServerTypes().size() == 1) {
+                    throw exception;
+                }
+                erreur = new DBServerException("Suivi impossible du serveur " + dbServerType + " : " + exception);
+            }
+        }
+        if (cibles.isEmpty()) {
+            throw erreur;
+        }
+        return cibles;
+    }
+
+    /**
+     * Affiche le tableau de suivi des mesures de chaque serveur suivi, dans
+     * un onglet par serveur s'il y en a plusieurs.
+     *
+     * @param cibles serveurs suivis
+     */
+    private void afficherTableauxDeSuivi(List<Cible> cibles) {
+        final JFrame fenetre;
+        JTabbedPane onglets;
+        TableauDeSuivi tableauDeSuivi;
+
+        if (cibles.size() == 1) {
+            tableauDeSuivi = creerTableauDeSuivi(cibles.get(0).getControleur(), cibles.get(0).getOrdonnanceur());
+            tableauDeSuivi.setTitle(tableauDeSuivi.getTitle() + " - " + cibles.get(0).getNom());
+            fenetre = tableauDeSuivi;
+        } else {
+            fenetre = new JFrame("Events Monitor");
+            fenetre.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+            onglets = new JTabbedPane();
+            for (Cible cible : cibles) {
+                tableauDeSuivi = creerTableauDeSuivi(cible.getControleur(), cible.getOrdonnanceur());
+                onglets.addTab(cible.getNom(), tableauDeSuivi.getPanneau());
+                fenetre.setIconImage(tableauDeSuivi.getIconImage());
+            }
+            fenetre.getContentPane().add(onglets);
+            fenetre.pack();
+        }
         java.awt.EventQueue.invokeLater(new Runnable() {
             public void run() {
-                tableauDeSuivi.setVisible(true);
+                fenetre.setVisible(true);
             }
         });
-        faireDesMesures.start();
     }
 
     /**
-     * @param dbServerType définit le serveur de base de données
+     * @param controleur contrôleur des mesures d'un serveur ou d'un rejeu
+     * @param ordonnanceur ordonnanceur des mesures, null pour un rejeu
+     * @return le tableau de suivi des mesures, à l'écoute du contrôleur et
+     * pilotant l'ordonnanceur
+     */
+    private TableauDeSuivi creerTableauDeSuivi(Controleur controleur, Ordonnanceur ordonnanceur) {
+        TableauDeSuivi tableauDeSuivi;
+
+        tableauDeSuivi = new TableauDeSuivi(debugMode);
+        controleur.addPropertyChangeListener(tableauDeSuivi);
+        tableauDeSuivi.setOrdonnanceur(ordonnanceur);
+        tableauDeSuivi.setArrivees(controleur.getArrivees());
+        tableauDeSuivi.setChronometrage(controleur.getChronometrage());
+        tableauDeSuivi.setComptageEstime(controleur.getComptageEstime());
+        return tableauDeSuivi;
+    }
+
+    /**
+     * @param dbServerTypes définit les serveurs de base de données à suivre
      */
-    private void setDbServerType(String dbServerType) {
-        this.dbServerType = dbServerType;
+    private void setDbServerTypes(List<String> dbServerTypes) {
+        this.dbServerTypes = dbServerTypes;
     }
 
     /**
-     * @return dbServerType le serveur de base de données
+     * @return dbServerTypes les serveurs de base de données à suivre
      */
-    private String getDbServerType() {
-        return (dbServerType);
+    private List<String> getDbServerTypes() {
+        return (dbServerTypes);
     }
 
     /**
@@ -148,6 +300,22 @@ public class EventsMonitor {
         this.testMode = testMode;
     }
 
+    /**
+     * @param headlessMode : fonctionnement du programme sans interface
+     * graphique (true/false).
+     */
+    public void setHeadlessMode(boolean headlessMode) {
+        this.headlessMode = headlessMode;
+    }
+
+    /**
+     * @return headlessMode : retourne le mode de fonctionnement sans interface
+     * graphique.
+     */
+    public boolean getHeadlessMode() {
+        return (headlessMode);
+    }
+
     /**
      * @return debugMode : retourne le mode de fonctionnement debug.
      */
@@ -170,7 +338,7 @@ public class EventsMonitor {
     @Override
     public String toString() {
         return "EventsMonitor:{"
-                + "dbServer=" + getDbServerType()
+                + "dbServers=" + getDbServerTypes()
                 + "}";
     }
 
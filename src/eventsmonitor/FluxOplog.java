@@ -0,0 +1,276 @@
+package eventsmonitor;
+
+import com.mongodb.CursorType;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import static java.lang.Thread.sleep;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+
+/**
+ * Classe décrivant une source de changements lisant l'oplog d'un replica set
+ * MongoDb. Les insertions sont transmises document par document, les mises à
+ * jour et suppressions sont signalées sans leur contenu et les commandes
+ * visant la collection suivie (suppression, renommage, conversion en
+ * collection plafonnée, suppression de la base) demandent une
+ * resynchronisation. Ces commandes sont journalisées sous l'espace de noms
+ * base.$cmd, lu aussi. La position d'un changement est son horodatage dans
+ * l'oplog.
+ *
+ * @author Thierry Baribaud
+ * @version 0.03
+ */
+public class FluxOplog implements SourceDeChangements, Runnable {
+
+    /**
+     * Délai avant de rouvrir le curseur après une erreur (en ms)
+     */
+    private static final long DELAI_DE_REPRISE = 5000;
+
+    /**
+     * Oplog du replica set
+     */
+    private final MongoCollection<Document> oplog;
+
+    /**
+     * Espace de noms suivi, de la forme base.collection
+     */
+    private final String espaceDeNoms;
+
+    /**
+     * Espace de noms des commandes de la base, de la forme base.$cmd
+     */
+    private final String espaceDesCommandes;
+
+    /**
+     * Horodatage de la dernière entrée lue dans l'oplog
+     */
+    private BsonTimestamp dernierHorodatage = null;
+
+    /**
+     * Ecouteur des changements
+     */
+    private EcouteurDeChangements ecouteur;
+
+    /**
+     * Curseur en cours de lecture
+     */
+    private volatile MongoCursor<Document> curseur = null;
+
+    /**
+     * Indique si la lecture de l'oplog est en cours
+     */
+    private volatile boolean actif = false;
+
+    /**
+     * debugMode : fonctionnement du programme en mode debug (true/false).
+     * Valeur par défaut : false.
+     */
+    private static boolean debugMode = false;
+
+    /**
+     * Constructeur principal
+     *
+     * @param local base de données "local" du serveur
+     * @param espaceDeNoms espace de noms suivi, de la forme base.collection
+     * @param debugMode fonctionnement du programme en mode debug
+     */
+    public FluxOplog(MongoDatabase local, String espaceDeNoms, boolean debugMode) {
+        this.oplog = local.getCollection("oplog.rs");
+        this.espaceDeNoms = espaceDeNoms;
+        this.espaceDesCommandes = espaceDeNoms.substring(0, espaceDeNoms.indexOf('.')) + ".$cmd";
+        FluxOplog.debugMode = debugMode;
+    }
+
+    /**
+     * Vérifie que l'oplog existe (serveur membre d'un replica set) et retient
+     * sa dernière entrée comme point de départ.
+     *
+     * @return true si l'oplog peut être suivi
+     */
+    public boolean estDisponible() {
+        BsonTimestamp horodatage;
+
+        try {
+            horodatage = lireDernierHorodatage();
+        } catch (MongoException exception) {
+            Logger.getLogger(FluxOplog.class.getName()).log(Level.WARNING, "Oplog illisible", exception);
+            return false;
+        }
+        if (horodatage == null) {
+            return false;
+        }
+        dernierHorodatage = horodatage;
+        return true;
+    }
+
+    /**
+     * @return l'horodatage de la dernière entrée de l'oplog, null si l'oplog
+     * est vide
+     */
+    private BsonTimestamp lireDernierHorodatage() {
+        Document derniereEntree;
+
+        derniereEntree = oplog.find().sort(new Document("$natural", -1)).limit(1).first();
+        return (derniereEntree == null) ? null : (BsonTimestamp) derniereEntree.get("ts");
+    }
+
+    /**
+     * Convertit un horodatage de l'oplog en position : secondes sur les 32
+     * bits de poids fort, rang dans la seconde sur les 32 bits de poids
+     * faible.
+     *
+     * @param horodatage horodatage de l'oplog
+     * @return la position correspondante
+     */
+    static long position(BsonTimestamp horodatage) {
+        return ((long) horodatage.getTime() << 32) | (horodatage.getInc() & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Lit la dernière entrée de l'oplog, toutes collections confondues.
+     *
+     * @return la position du dernier changement
+     */
+    @Override
+    public long position() {
+        BsonTimestamp horodatage;
+
+        horodatage = lireDernierHorodatage();
+        return (horodatage == null) ? Long.MIN_VALUE : position(horodatage);
+    }
+
+    @Override
+    public void demarrer(EcouteurDeChangements ecouteur) {
+        Thread lecture;
+
+        this.ecouteur = ecouteur;
+        if (dernierHorodatage == null && !estDisponible()) {
+            Logger.getLogger(FluxOplog.class.getName()).log(Level.SEVERE, "Oplog indisponible");
+            ecouteur.resynchronisationNecessaire();
+            return;
+        }
+        actif = true;
+        lecture = new Thread(this, "FluxOplog");
+        lecture.setDaemon(true);
+        lecture.start();
+    }
+
+    @Override
+    public void arreter() {
+        MongoCursor<Document> curseurCourant = curseur;
+
+        actif = false;
+        if (curseurCourant != null) {
+            curseurCourant.close();
+        }
+    }
+
+    @Override
+    public void run() {
+        MongoCursor<Document> curseurCourant;
+        Document filtre;
+        Document entree;
+
+        while (actif) {
+            filtre = new Document("$or", Arrays.asList(new Document("ns", espaceDeNoms), new Document("ns", espaceDesCommandes)))
+                    .append("ts", new Document("$gt", dernierHorodatage));
+            try {
+                curseurCourant = oplog.find(filtre)
+                        .cursorType(CursorType.TailableAwait)
+                        .oplogReplay(true)
+                        .noCursorTimeout(true)
+                        .iterator();
+                curseur = curseurCourant;
+                try {
+                    while (actif && curseurCourant.hasNext()) {
+                        entree = curseurCourant.next();
+                        dernierHorodatage = (BsonTimestamp) entree.get("ts");
+                        traiter(entree, espaceDeNoms, ecouteur);
+                    }
+                } finally {
+                    curseurCourant.close();
+                }
+            } catch (MongoException exception) {
+                if (actif) {
+                    Logger.getLogger(FluxOplog.class.getName()).log(Level.WARNING, "Lecture de l'oplog interrompue", exception);
+                    ecouteur.resynchronisationNecessaire();
+                    try {
+                        sleep(DELAI_DE_REPRISE);
+                    } catch (InterruptedException ex) {
+                        Logger.getLogger(FluxOplog.class.getName()).log(Level.SEVERE, null, ex);
+                        actif = false;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Transmet une entrée de l'oplog à l'écouteur.
+     *
+     * @param entree entrée de l'oplog
+     * @param espaceDeNoms espace de noms suivi, de la forme base.collection
+     * @param ecouteur écouteur des changements
+     */
+    static void traiter(Document entree, String espaceDeNoms, EcouteurDeChangements ecouteur) {
+        String operation;
+        long position;
+
+        operation = entree.getString("op");
+        position = position((BsonTimestamp) entree.get("ts"));
+        if (debugMode) {
+            System.out.println("oplog : " + operation + " " + entree.get("ts"));
+        }
+        if ("i".equals(operation)) {
+            ecouteur.documentInsere((Document) entree.get("o"), position);
+        } else if ("u".equals(operation) || "d".equals(operation)) {
+            ecouteur.documentModifie(position);
+        } else if ("c".equals(operation) && concerne((Document) entree.get("o"), espaceDeNoms)) {
+            ecouteur.resynchronisationNecessaire();
+        }
+    }
+
+    /**
+     * Indique si une commande de l'oplog modifie la collection suivie sans
+     * passer par des insertions, mises à jour ou suppressions de documents.
+     *
+     * @param commande commande, champ "o" de l'entrée de l'oplog
+     * @param espaceDeNoms espace de noms suivi, de la forme base.collection
+     * @return true si la commande vise la collection suivie
+     */
+    static boolean concerne(Document commande, String espaceDeNoms) {
+        String collection;
+
+        if (commande == null) {
+            return false;
+        }
+        collection = espaceDeNoms.substring(espaceDeNoms.indexOf('.') + 1);
+        return commande.containsKey("dropDatabase")
+                || collection.equals(commande.get("drop"))
+                || collection.equals(commande.get("convertToCapped"))
+                || collection.equals(commande.get("emptycapped"))
+                || espaceDeNoms.equals(commande.get("renameCollection"))
+                || espaceDeNoms.equals(commande.get("to"));
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "FluxOplog:{"
+                + "espaceDeNoms:" + espaceDeNoms
+                + ", espaceDesCommandes:" + espaceDesCommandes
+                + ", dernierHorodatage:" + dernierHorodatage
+                + ", actif:" + actif
+                + "}";
+    }
+}
@@ -0,0 +1,322 @@
+package eventsmonitor;
+
+import static eventsmonitor.SondeDernierEvenement.CHAMP_DATE;
+import java.util.Arrays;
+import java.util.Random;
+import org.bson.Document;
+import org.joda.time.format.DateTimeFormatter;
+
+/**
+ * Classe décrivant un générateur d'événements synthétiques ayant les champs
+ * lus par EventsMonitor : _id croissant, status, eventType et sentDate.
+ * <p>
+ * Les status et types d'événements suivent une loi de Zipf : quelques valeurs
+ * très fréquentes et une longue traîne de valeurs rares. Les arrivées suivent
+ * un processus de Poisson dont le débit change de régime : normal, rafale
+ * (débit multiplié) ou calme (débit divisé par 20), chaque régime durant un
+ * temps tiré au hasard. Avec la même graine, la même suite d'événements est
+ * produite.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.02
+ */
+public class GenerateurDEvenements {
+
+    /**
+     * Régime normal
+     */
+    public static final int NORMAL = 0;
+
+    /**
+     * Régime de rafale
+     */
+    public static final int RAFALE = 1;
+
+    /**
+     * Régime calme
+     */
+    public static final int CALME = 2;
+
+    /**
+     * Exposant de la loi de Zipf
+     */
+    private static final double EXPOSANT_ZIPF = 1.1;
+
+    /**
+     * Durée moyenne de chaque régime en secondes
+     */
+    private static final double[] DUREES_MOYENNES = {600, 30, 300};
+
+    /**
+     * Probabilité de passer du régime normal à une rafale plutôt qu'au calme
+     */
+    private static final double PROBABILITE_RAFALE = 0.3;
+
+    /**
+     * Facteur du débit en régime calme
+     */
+    private static final double FACTEUR_CALME = 0.05;
+
+    /**
+     * Tirages au hasard
+     */
+    private final Random hasard;
+
+    /**
+     * Probabilités cumulées des status
+     */
+    private final double[] cumulStatus;
+
+    /**
+     * Probabilités cumulées des types d'événements
+     */
+    private final double[] cumulTypes;
+
+    /**
+     * Noms des status
+     */
+    private final String[] nomsStatus;
+
+    /**
+     * Noms des types d'événements
+     */
+    private final String[] nomsTypes;
+
+    /**
+     * Facteur du débit de chaque régime
+     */
+    private final double[] facteurs;
+
+    /**
+     * Débit moyen en régime normal, en événements par seconde
+     */
+    private final double debit;
+
+    /**
+     * Régime courant
+     */
+    private int regime = NORMAL;
+
+    /**
+     * Fin du régime courant en millisecondes
+     */
+    private double finDuRegime;
+
+    /**
+     * Date du dernier événement en millisecondes
+     */
+    private double instant;
+
+    /**
+     * _id du dernier événement
+     */
+    private long id = 0;
+
+    /**
+     * Status du dernier événement
+     */
+    private String status;
+
+    /**
+     * Type du dernier événement
+     */
+    private String eventType;
+
+    /**
+     * Constructeur principal
+     *
+     * @param graine graine des tirages au hasard
+     * @param nombreDeStatus nombre de status différents
+     * @param nombreDeTypes nombre de types d'événements différents
+     * @param debit débit moyen en régime normal, en événements par seconde
+     * @param facteurRafale facteur du débit en rafale
+     * @param debut date de départ en millisecondes
+     */
+    public GenerateurDEvenements(long graine, int nombreDeStatus, int nombreDeTypes, double debit,
+            double facteurRafale, long debut) {
+        this.hasard = new Random(graine);
+        this.cumulStatus = cumulerZipf(nombreDeStatus);
+        this.cumulTypes = cumulerZipf(nombreDeTypes);
+        this.nomsStatus = nommer("status-", nombreDeStatus);
+        this.nomsTypes = nommer("eventType-", nombreDeTypes);
+        this.facteurs = new double[]{1, facteurRafale, FACTEUR_CALME};
+        this.debit = debit;
+        this.instant = debut;
+        this.finDuRegime = debut + tirerDuree(NORMAL);
+    }
+
+    /**
+     * @param nombre nombre de valeurs
+     * @return les probabilités cumulées d'une loi de Zipf sur ces valeurs
+     */
+    private static double[] cumulerZipf(int nombre) {
+        double[] cumul = new double[nombre];
+        double total = 0;
+        int i;
+
+        for (i = 0; i < nombre; i++) {
+            total += 1 / Math.pow(i + 1, EXPOSANT_ZIPF);
+            cumul[i] = total;
+        }
+        for (i = 0; i < nombre; i++) {
+            cumul[i] /= total;
+        }
+        return cumul;
+    }
+
+    /**
+     * @param prefixe préfixe des noms
+     * @param nombre nombre de noms
+     * @return les noms, du plus fréquent au plus rare
+     */
+    private static String[] nommer(String prefixe, int nombre) {
+        String[] noms = new String[nombre];
+        int i;
+
+        for (i = 0; i < nombre; i++) {
+            noms[i] = prefixe + i;
+        }
+        return noms;
+    }
+
+    /**
+     * Produit l'événement suivant.
+     */
+    public void avancer() {
+        double attente;
+
+        attente = tirerAttente();
+        while (instant + attente > finDuRegime) {
+            instant = finDuRegime;
+            changerDeRegime();
+            attente = tirerAttente();
+        }
+        instant += attente;
+        id++;
+        status = nomsStatus[tirer(cumulStatus)];
+        eventType = nomsTypes[tirer(cumulTypes)];
+    }
+
+    /**
+     * @return l'attente avant le prochain événement dans le régime courant, en
+     * millisecondes
+     */
+    private double tirerAttente() {
+        return -Math.log(1 - hasard.nextDouble()) * 1000 / (debit * facteurs[regime]);
+    }
+
+    /**
+     * @param unRegime régime
+     * @return une durée de ce régime en millisecondes
+     */
+    private double tirerDuree(int unRegime) {
+        return -Math.log(1 - hasard.nextDouble()) * 1000 * DUREES_MOYENNES[unRegime];
+    }
+
+    /**
+     * Passe au régime suivant : après une rafale ou un calme, retour au
+     * régime normal ; après le régime normal, rafale ou calme.
+     */
+    private void changerDeRegime() {
+        if (regime != NORMAL) {
+            regime = NORMAL;
+        } else {
+            regime = (hasard.nextDouble() < PROBABILITE_RAFALE) ? RAFALE : CALME;
+        }
+        finDuRegime += tirerDuree(regime);
+    }
+
+    /**
+     * @param cumul probabilités cumulées
+     * @return une valeur tirée selon ces probabilités
+     */
+    private int tirer(double[] cumul) {
+        int i;
+
+        i = Arrays.binarySearch(cumul, hasard.nextDouble());
+        return Math.min(cumul.length - 1, (i < 0) ? -i - 1 : i);
+    }
+
+    /**
+     * Recale le générateur sur une date, par exemple l'heure courante pour
+     * produire des événements en temps réel après un historique.
+     *
+     * @param date nouvelle date en millisecondes
+     */
+    public void recaler(long date) {
+        finDuRegime += date - instant;
+        instant = date;
+    }
+
+    /**
+     * Fait partir les _id après une valeur, pour compléter une collection qui
+     * contient déjà des événements.
+     *
+     * @param id _id du dernier événement existant
+     */
+    public void continuerApres(long id) {
+        this.id = id;
+    }
+
+    /**
+     * @return le _id du dernier événement
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return la sentDate du dernier événement en millisecondes
+     */
+    public long getDate() {
+        return (long) instant;
+    }
+
+    /**
+     * @return le status du dernier événement
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * @return le type du dernier événement
+     */
+    public String getEventType() {
+        return eventType;
+    }
+
+    /**
+     * @return le régime courant : NORMAL, RAFALE ou CALME
+     */
+    public int getRegime() {
+        return regime;
+    }
+
+    /**
+     * @param format format des sentDate
+     * @return le dernier événement sous forme de document
+     */
+    public Document versDocument(DateTimeFormatter format) {
+        return new Document("_id", id)
+                .append("status", status)
+                .append("eventType", eventType)
+                .append(CHAMP_DATE, format.print(getDate()));
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "GenerateurDEvenements:{"
+                + "debit:" + debit
+                + ", status:" + nomsStatus.length
+                + ", types:" + nomsTypes.length
+                + ", regime:" + regime
+                + ", id:" + id
+                + "}";
+    }
+}
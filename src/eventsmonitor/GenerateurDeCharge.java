@@ -0,0 +1,326 @@
+package eventsmonitor;
+
+import com.mongodb.MongoClient;
+import com.mongodb.client.MongoCollection;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.bson.Document;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+/**
+ * Programme générant une charge d'événements synthétiques pour les essais
+ * d'endurance et les comparaisons de moteurs de mesures, sans la base de
+ * production.
+ * <p>
+ * Il écrit d'abord un historique de n événements se terminant à l'heure
+ * courante, dans une collection en colonnes en mémoire ou dans la collection
+ * events d'un serveur MongoDb local. Une collection MongoDb non vide ou un
+ * serveur distant ne sont utilisés qu'avec -force ; les _id générés partent
+ * alors après le plus grand _id numérique de la collection. Si une durée est
+ * donnée, il continue
+ * ensuite à produire des événements en temps réel pendant qu'un contrôleur
+ * les mesure, et écrit une ligne CSV par mesure puis le chronométrage des
+ * étapes.</p>
+ * <p>
+ * Usage : java eventsmonitor.GenerateurDeCharge [-nombre n] [-debit n]
+ * [-rafale f] [-status n] [-types n] [-graine n] [-mongo hote:port/base]
+ * [-force] [-moteur complet|delta|facette|echantillon|incremental] [-tempo s]
+ * [-duree s] [-d]</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.03
+ */
+public class GenerateurDeCharge {
+
+    /**
+     * Nombre de documents écrits d'un coup dans MongoDb
+     */
+    private static final int LOT = 1000;
+
+    /**
+     * Pour écrire les sentDate
+     */
+    private static final DateTimeFormatter format = ISODateTimeFormat.dateTime();
+
+    /**
+     * debugMode : fonctionnement du programme en mode debug (true/false).
+     * Valeur par défaut : false.
+     */
+    private static boolean debugMode = false;
+
+    /**
+     * Interface décrivant la destination des événements générés.
+     */
+    private interface Destination {
+
+        /**
+         * @param generateur générateur dont le dernier événement est à écrire
+         */
+        void ajouter(GenerateurDEvenements generateur);
+
+        /**
+         * Ecrit les événements en attente.
+         */
+        void vider();
+    }
+
+    /**
+     * @param args the command line arguments
+     * @throws Exception en cas d'erreur
+     */
+    public static void main(String[] args) throws Exception {
+        long nombre = 1000000;
+        double debit = 50;
+        double facteurRafale = 20;
+        int nombreDeStatus = 8;
+        int nombreDeTypes = 60;
+        long graine = 0;
+        String mongo = null;
+        boolean forcer = false;
+        String moteur = ParametresDeSuivi.MOTEUR_COMPLET;
+        int tempo = 5;
+        int duree = 0;
+        GenerateurDEvenements generateur;
+        Destination destination;
+        CollectionEnColonnes colonnes = null;
+        MongoClient mongoClient = null;
+        final MongoCollection<Document> collectionMongo;
+        String hote;
+        long nombreAvant;
+        Document dernier;
+        CollectionDEvenements collection;
+        long maintenant;
+        long debut;
+        long i;
+        int j;
+
+        for (j = 0; j < args.length; j++) {
+            if (args[j].equals("-nombre") && j + 1 < args.length) {
+                nombre = Long.parseLong(args[++j]);
+            } else if (args[j].equals("-debit") && j + 1 < args.length) {
+                debit = Double.parseDouble(args[++j]);
+            } else if (args[j].equals("-rafale") && j + 1 < args.length) {
+                facteurRafale = Double.parseDouble(args[++j]);
+            } else if (args[j].equals("-status") && j + 1 < args.length) {
+                nombreDeStatus = Integer.parseInt(args[++j]);
+            } else if (args[j].equals("-types") && j + 1 < args.length) {
+                nombreDeTypes = Integer.parseInt(args[++j]);
+            } else if (args[j].equals("-graine") && j + 1 < args.length) {
+                graine = Long.parseLong(args[++j]);
+            } else if (args[j].equals("-mongo") && j + 1 < args.length) {
+                mongo = args[++j];
+            } else if (args[j].equals("-force")) {
+                forcer = true;
+            } else if (args[j].equals("-moteur") && j + 1 < args.length) {
+                moteur = args[++j];
+            } else if (args[j].equals("-tempo") && j + 1 < args.length) {
+                tempo = Integer.parseInt(args[++j]);
+            } else if (args[j].equals("-duree") && j + 1 < args.length) {
+                duree = Integer.parseInt(args[++j]);
+            } else if (args[j].equals("-d")) {
+                debugMode = true;
+            } else {
+                System.out.println("Usage : java eventsmonitor.GenerateurDeCharge [-nombre n] [-debit n] [-rafale f]"
+                        + " [-status n] [-types n] [-graine n] [-mongo hote:port/base] [-force]"
+                        + " [-moteur complet|delta|facette|echantillon|incremental] [-tempo s] [-duree s] [-d]");
+                return;
+            }
+        }
+
+        maintenant = System.currentTimeMillis();
+        generateur = new GenerateurDEvenements(graine, nombreDeStatus, nombreDeTypes, debit, facteurRafale,
+                maintenant - (long) (nombre / debit * 1000));
+        if (mongo == null) {
+            colonnes = new CollectionEnColonnes((int) Math.min(Integer.MAX_VALUE - 8, nombre + nombre / 8),
+                    DateTimeZone.getDefault());
+            destination = versColonnes(colonnes);
+            collection = colonnes;
+            collectionMongo = null;
+        } else {
+            hote = mongo.substring(0, mongo.indexOf(':'));
+            if (!forcer && !estLocal(hote)) {
+                System.out.println("Serveur " + hote + " non local, génération refusée (-force pour passer outre)");
+                return;
+            }
+            mongoClient = new MongoClient(hote,
+                    Integer.parseInt(mongo.substring(mongo.indexOf(':') + 1, mongo.indexOf('/'))));
+            collectionMongo = mongoClient.getDatabase(mongo.substring(mongo.indexOf('/') + 1))
+                    .getCollection(EventsMonitor.COLLECTION_EVENEMENTS);
+            nombreAvant = collectionMongo.count();
+            System.out.println("Collection " + collectionMongo.getNamespace() + " : "
+                    + nombreAvant + " événement(s) avant génération");
+            if (nombreAvant > 0) {
+                if (!forcer) {
+                    System.out.println("Collection non vide, génération refusée (-force pour la compléter)");
+                    mongoClient.close();
+                    return;
+                }
+                dernier = collectionMongo.find(new Document("_id", new Document("$lte", Long.MAX_VALUE)))
+                        .sort(new Document("_id", -1)).limit(1).first();
+                if (dernier != null) {
+                    generateur.continuerApres(((Number) dernier.get("_id")).longValue());
+                }
+                System.out.println("Génération à partir du _id " + (generateur.getId() + 1));
+            }
+            collectionMongo.createIndex(new Document(SondeDernierEvenement.CHAMP_DATE, -1));
+            destination = versMongo(collectionMongo);
+            collection = new CollectionMongo(collectionMongo);
+        }
+
+        System.out.println("Génération de " + nombre + " événement(s) : " + generateur);
+        debut = System.nanoTime();
+        for (i = 0; i < nombre; i++) {
+            generateur.avancer();
+            destination.ajouter(generateur);
+        }
+        destination.vider();
+        System.gc();
+        System.out.println(String.format(Locale.ROOT, "%d événement(s) écrit(s) en %.1f s, mémoire utilisée : %d Mo",
+                nombre, (System.nanoTime() - debut) / 1e9,
+                (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) >> 20));
+
+        if (duree > 0) {
+            soumettre(generateur, destination, collection, colonnes, moteur, tempo, duree);
+        }
+        if (mongoClient != null) {
+            mongoClient.close();
+        }
+    }
+
+    /**
+     * Produit des événements en temps réel pendant qu'un contrôleur les
+     * mesure.
+     *
+     * @param generateur générateur d'événements
+     * @param destination destination des événements
+     * @param collection collection mesurée
+     * @param colonnes collection en mémoire, null pour MongoDb
+     * @param nomDuMoteur moteur de mesures à utiliser
+     * @param tempo période des mesures en secondes
+     * @param duree durée de l'essai en secondes
+     * @throws InterruptedException en cas d'interruption
+     */
+    private static void soumettre(final GenerateurDEvenements generateur, Destination destination,
+            CollectionDEvenements collection, CollectionEnColonnes colonnes, String nomDuMoteur, int tempo, int duree)
+            throws InterruptedException {
+        Chronometrage chronometrage = new Chronometrage();
+        CollectionDEvenements collectionChronometree;
+        MoteurDeMesures moteur;
+        Controleur controleur;
+        Ordonnanceur ordonnanceur;
+        long fin;
+        long attente;
+
+        collectionChronometree = new CollectionChronometree(collection, chronometrage);
+        if (ParametresDeSuivi.MOTEUR_DELTA.equals(nomDuMoteur)) {
+            moteur = new MoteurDelta(collectionChronometree, "_id", 120, debugMode);
+        } else if (ParametresDeSuivi.MOTEUR_FACETTE.equals(nomDuMoteur)) {
+            moteur = new MoteurFacette(collectionChronometree, debugMode);
+        } else if (ParametresDeSuivi.MOTEUR_ECHANTILLON.equals(nomDuMoteur)) {
+            moteur = new MoteurEchantillon(collectionChronometree, null, 10000, 60, debugMode);
+        } else if (ParametresDeSuivi.MOTEUR_INCREMENTAL.equals(nomDuMoteur) && colonnes != null) {
+            moteur = new MoteurIncremental(collectionChronometree, colonnes, debugMode);
+        } else {
+            if (!ParametresDeSuivi.MOTEUR_COMPLET.equals(nomDuMoteur)) {
+                System.out.println("Moteur " + nomDuMoteur + " indisponible ici, utilisation du moteur complet");
+            }
+            moteur = new MoteurComplet(collectionChronometree, debugMode);
+        }
+        controleur = new Controleur(moteur, debugMode);
+        controleur.setChronometrage(chronometrage);
+        controleur.setLatences(new SuiviDesLatences(new CollectionChronometree(collection, chronometrage, "retards"),
+                SuiviDesLatences.MINUTES_PAR_DEFAUT, debugMode));
+        controleur.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                ListeDeMesures mesure = (ListeDeMesures) evt.getNewValue();
+
+                System.out.println(String.format(Locale.ROOT, "%s;%d;%d;%d;%d",
+                        mesure.getDateDeLaMesure(), mesure.getNombreDEvenements(), mesure.getDureeDeLaMesure(),
+                        (mesure.getLatences() == null) ? 0 : mesure.getLatences().getP99(),
+                        generateur.getRegime()));
+            }
+        });
+
+        System.out.println("Essai de " + duree + " s avec " + moteur);
+        System.out.println("date;evenements;duree_ms;retard_p99_ms;regime");
+        generateur.recaler(System.currentTimeMillis());
+        ordonnanceur = new Ordonnanceur(controleur, tempo, debugMode);
+        ordonnanceur.demarrer();
+        fin = System.currentTimeMillis() + duree * 1000L;
+        while (true) {
+            generateur.avancer();
+            attente = generateur.getDate() - System.currentTimeMillis();
+            if (generateur.getDate() > fin) {
+                break;
+            }
+            if (attente > 0) {
+                destination.vider();
+                Thread.sleep(attente);
+            }
+            destination.ajouter(generateur);
+        }
+        destination.vider();
+        ordonnanceur.arreter();
+        controleur.arreter();
+        System.out.println(chronometrage);
+    }
+
+    /**
+     * @param colonnes collection en mémoire
+     * @return la destination écrivant dans cette collection
+     */
+    private static Destination versColonnes(final CollectionEnColonnes colonnes) {
+        return new Destination() {
+            @Override
+            public void ajouter(GenerateurDEvenements generateur) {
+                colonnes.inserer(generateur.getId(), generateur.getDate(), generateur.getStatus(),
+                        generateur.getEventType());
+            }
+
+            @Override
+            public void vider() {
+            }
+        };
+    }
+
+    /**
+     * @param hote nom ou adresse du serveur
+     * @return true si le serveur est la machine locale
+     */
+    private static boolean estLocal(String hote) {
+        return "localhost".equalsIgnoreCase(hote) || hote.startsWith("127.")
+                || "::1".equals(hote) || "[::1]".equals(hote);
+    }
+
+    /**
+     * @param collection collection MongoDb
+     * @return la destination écrivant dans cette collection par lots
+     */
+    private static Destination versMongo(final MongoCollection<Document> collection) {
+        return new Destination() {
+            private final List<Document> lot = new ArrayList<>(LOT);
+
+            @Override
+            public void ajouter(GenerateurDEvenements generateur) {
+                lot.add(generateur.versDocument(format));
+                if (lot.size() == LOT) {
+                    vider();
+                }
+            }
+
+            @Override
+            public void vider() {
+                if (!lot.isEmpty()) {
+                    collection.insertMany(new ArrayList<>(lot));
+                    lot.clear();
+                }
+            }
+        };
+    }
+}
@@ -1,21 +1,30 @@
 package eventsmonitor;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Cette classe sert à vérifier et à récupérer les arguments passés en ligne de
  * commande au programme EventsMonitor.
  *
  * @author Thierry Baribaud
- * @version 0.02
+ * @version 0.05
  */
 public class GetArgs {
 
     /**
-     * dbServerType : prod pour le serveur de production, pre-prod pour le
-     * serveur de pré-production. Valeur par défaut : pre-prod.
+     * Types de serveur de base de données reconnus
      */
-    private String dbServerType = "pre-prod";
+    public static final List<String> TYPES_DE_SERVEUR = Arrays.asList("prod", "pre-prod", "dev", "mysql");
+
+    /**
+     * dbServerTypes : serveurs à suivre, prod pour le serveur de production,
+     * pre-prod pour le serveur de pré-production, dev ou mysql. Valeur par
+     * défaut : pre-prod.
+     */
+    private final List<String> dbServerTypes = new ArrayList<>();
 
     /**
      * debugMode : fonctionnement du programme en mode debug (true/false).
@@ -29,6 +38,24 @@ public class GetArgs {
      */
     private boolean testMode = false;
 
+    /**
+     * headlessMode : fonctionnement du programme sans interface graphique, les
+     * mesures sont publiées en HTTP (true/false). Valeur par défaut : false.
+     */
+    private boolean headlessMode = false;
+
+    /**
+     * fichierDeRejeu : journal de mesures à rejouer au lieu de suivre des
+     * serveurs. Valeur par défaut : aucun.
+     */
+    private String fichierDeRejeu = null;
+
+    /**
+     * vitesse : facteur d'accélération du rejeu, 0 pour aller aussi vite que
+     * possible. Valeur par défaut : 1, temps réel.
+     */
+    private double vitesse = 1;
+
     /**
      * @return debugMode : retourne le mode de fonctionnement debug.
      */
@@ -43,6 +70,51 @@ public class GetArgs {
         return (testMode);
     }
 
+    /**
+     * @return headlessMode : retourne le mode de fonctionnement sans interface
+     * graphique.
+     */
+    public boolean getHeadlessMode() {
+        return (headlessMode);
+    }
+
+    /**
+     * @param headlessMode : fonctionnement du programme sans interface
+     * graphique (true/false).
+     */
+    public void setHeadlessMode(boolean headlessMode) {
+        this.headlessMode = headlessMode;
+    }
+
+    /**
+     * @return le journal de mesures à rejouer, null s'il n'y en a pas
+     */
+    public String getFichierDeRejeu() {
+        return fichierDeRejeu;
+    }
+
+    /**
+     * @param fichierDeRejeu définit le journal de mesures à rejouer
+     */
+    public void setFichierDeRejeu(String fichierDeRejeu) {
+        this.fichierDeRejeu = fichierDeRejeu;
+    }
+
+    /**
+     * @return le facteur d'accélération du rejeu, 0 pour aller aussi vite
+     * que possible
+     */
+    public double getVitesse() {
+        return vitesse;
+    }
+
+    /**
+     * @param vitesse définit le facteur d'accélération du rejeu
+     */
+    public void setVitesse(double vitesse) {
+        this.vitesse = vitesse;
+    }
+
     /**
      * @param debugMode : fonctionnement du programme en mode debug
      * (true/false).
@@ -79,10 +151,14 @@ public class GetArgs {
             ip1 = i + 1;
             if (args[i].equals("-dbserver")) {
                 if (ip1 < n) {
-                    if (args[ip1].equals("pre-prod") || args[ip1].equals("prod")) {
-                        setDbServerType(args[ip1]);
-                    } else {
-                        throw new GetArgsException("Mauvaise base de données : " + args[ip1]);
+                    for (String dbServerType : args[ip1].split(",")) {
+                        if (TYPES_DE_SERVEUR.contains(dbServerType)) {
+                            if (!dbServerTypes.contains(dbServerType)) {
+                                dbServerTypes.add(dbServerType);
+                            }
+                        } else {
+                            throw new GetArgsException("Mauvaise base de données : " + dbServerType);
+                        }
                     }
                     i = ip1;
                 } else {
@@ -92,33 +168,64 @@ public class GetArgs {
                 setDebugMode(true);
             } else if (args[i].equals("-t")) {
                 setTestMode(true);
+            } else if (args[i].equals("-headless")) {
+                setHeadlessMode(true);
+            } else if (args[i].equals("-replay")) {
+                if (ip1 < n) {
+                    setFichierDeRejeu(args[ip1]);
+                    i = ip1;
+                } else {
+                    throw new GetArgsException("Journal à rejouer non défini");
+                }
+            } else if (args[i].equals("-vitesse")) {
+                if (ip1 < n) {
+                    if (args[ip1].equals("max")) {
+                        setVitesse(0);
+                    } else {
+                        try {
+                            setVitesse(Double.parseDouble(args[ip1]));
+                        } catch (NumberFormatException exception) {
+                            throw new GetArgsException("Mauvaise vitesse : " + args[ip1]);
+                        }
+                        if (getVitesse() <= 0) {
+                            throw new GetArgsException("Mauvaise vitesse : " + args[ip1]);
+                        }
+                    }
+                    i = ip1;
+                } else {
+                    throw new GetArgsException("Vitesse non définie");
+                }
             } else {
                 throw new GetArgsException("Mauvais argument : " + args[i]);
             }
             i++;
         }
+        if (dbServerTypes.isEmpty()) {
+            dbServerTypes.add("pre-prod");
+        }
     }
 
     /**
      * Affiche le mode d'utilisation du programme.
      */
     public static void usage() {
-        System.out.println("Usage : java EventsMonitor [-dbserver prod|pre-prod]"
-                + " [-d] [-t]");
+        System.out.println("Usage : java EventsMonitor [-dbserver prod|pre-prod|dev|mysql[,...]]"
+                + " [-headless] [-d] [-t]");
+        System.out.println("        java EventsMonitor -replay journal [-vitesse n|max] [-headless] [-d]");
     }
 
     /**
-     * @return le serveur de base de données de destination
+     * @return le premier serveur de base de données à suivre
      */
     public String getDbServerType() {
-        return dbServerType;
+        return dbServerTypes.get(0);
     }
 
     /**
-     * @param dbServerType définit le serveur de base de données de destination
+     * @return les serveurs de base de données à suivre
      */
-    public void setDbServerType(String dbServerType) {
-        this.dbServerType = dbServerType;
+    public List<String> getDbServerTypes() {
+        return dbServerTypes;
     }
 
     /**
@@ -129,9 +236,12 @@ public class GetArgs {
     @Override
     public String toString() {
         return "GetArg: {"
-                + ", dbServerType:" + getDbServerType()
+                + ", dbServerTypes:" + getDbServerTypes()
                 + ", debugMode:" + getDebugMode()
                 + ", testMode:" + getTestMode()
+                + ", headlessMode:" + getHeadlessMode()
+                + ", fichierDeRejeu:" + getFichierDeRejeu()
+                + ", vitesse:" + getVitesse()
                 + "}";
     }
 }
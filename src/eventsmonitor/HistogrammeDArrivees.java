@@ -0,0 +1,138 @@
+package eventsmonitor;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.text.DecimalFormat;
+import javax.swing.JComponent;
+
+/**
+ * Classe décrivant le panneau affichant les arrivées d'événements par minute,
+ * une barre par minute, la plus récente à droite.
+ * <p>
+ * Tant que la minute et l'échelle ne changent pas, une mise à jour ne redessine
+ * que la barre de la minute courante et la légende. A utiliser dans le thread
+ * de l'interface graphique.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class HistogrammeDArrivees extends JComponent {
+
+    /**
+     * Hauteur réservée à la légende
+     */
+    private static final int HAUTEUR_LEGENDE = 16;
+
+    /**
+     * Couleur des barres
+     */
+    private static final Color COULEUR_BARRE = new Color(70, 130, 180);
+
+    /**
+     * Pour formater les nombres
+     */
+    private final DecimalFormat decimalFormat = new DecimalFormat("#,##0");
+
+    /**
+     * Arrivées affichées, de la plus ancienne à la plus récente minute
+     */
+    private long[] valeurs = new long[0];
+
+    /**
+     * Numéro de la minute la plus récente affichée, -1 si aucune
+     */
+    private long minuteRecente = -1;
+
+    /**
+     * Plus grand nombre d'arrivées affiché, sert d'échelle
+     */
+    private long max = 0;
+
+    /**
+     * Largeur de la légende au dernier dessin
+     */
+    private int largeurLegende = 0;
+
+    /**
+     * Constructeur principal
+     */
+    public HistogrammeDArrivees() {
+        setPreferredSize(new Dimension(0, 90));
+        setOpaque(true);
+        setBackground(Color.WHITE);
+    }
+
+    /**
+     * Met à jour les arrivées affichées.
+     *
+     * @param arrivees arrivées par minute
+     */
+    public void mettreAJour(ArriveesParMinute arrivees) {
+        long minute;
+        long nouveauMax = 0;
+
+        if (valeurs.length != arrivees.getMinutes()) {
+            valeurs = new long[arrivees.getMinutes()];
+        }
+        minute = arrivees.copier(valeurs);
+        for (long valeur : valeurs) {
+            nouveauMax = Math.max(nouveauMax, valeur);
+        }
+        if (minute == minuteRecente && nouveauMax == max && valeurs.length > 0) {
+            repaint(0, 0, largeurLegende, HAUTEUR_LEGENDE);
+            repaint(colonne(valeurs.length - 1), 0, getWidth() - colonne(valeurs.length - 1), getHeight());
+        } else {
+            minuteRecente = minute;
+            max = nouveauMax;
+            repaint();
+        }
+    }
+
+    /**
+     * @param i rang de la minute, 0 pour la plus ancienne
+     * @return l'abscisse gauche de la barre de cette minute
+     */
+    private int colonne(int i) {
+        return (int) ((long) i * getWidth() / Math.max(1, valeurs.length));
+    }
+
+    @Override
+    protected void paintComponent(Graphics graphics) {
+        int hauteurUtile;
+        int hauteur;
+        int x;
+        int i;
+        String legende;
+        FontMetrics metriques;
+        Rectangle zone;
+
+        zone = graphics.getClipBounds();
+        if (zone == null) {
+            zone = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        graphics.setColor(getBackground());
+        graphics.fillRect(zone.x, zone.y, zone.width, zone.height);
+        hauteurUtile = getHeight() - HAUTEUR_LEGENDE;
+        graphics.setColor(COULEUR_BARRE);
+        for (i = 0; i < valeurs.length; i++) {
+            x = colonne(i);
+            if (colonne(i + 1) < zone.x || x > zone.x + zone.width) {
+                continue;
+            }
+            if (max > 0 && valeurs[i] > 0) {
+                hauteur = (int) Math.max(1, valeurs[i] * hauteurUtile / max);
+                graphics.fillRect(x, getHeight() - hauteur, Math.max(1, colonne(i + 1) - x - 1), hauteur);
+            }
+        }
+        legende = "Arrivées par minute sur " + valeurs.length / 60 + " h : "
+                + ((valeurs.length == 0) ? "" : decimalFormat.format(valeurs[valeurs.length - 1]))
+                + " (max " + decimalFormat.format(max) + ")";
+        metriques = graphics.getFontMetrics();
+        largeurLegende = Math.max(largeurLegende, metriques.stringWidth(legende) + 8);
+        graphics.setColor(Color.DARK_GRAY);
+        graphics.drawString(legende, 4, metriques.getAscent());
+    }
+}
@@ -0,0 +1,229 @@
+package eventsmonitor;
+
+import java.util.Arrays;
+
+/**
+ * Classe décrivant un histogramme de durées entières (millisecondes ou
+ * microsecondes), de taille fixe, à la manière d'un HdrHistogram : les
+ * valeurs sont rangées dans des cases dont la largeur double à chaque
+ * puissance de 2, avec 32 cases par puissance, soit une précision d'environ
+ * 3 %.
+ * <p>
+ * L'histogramme ne porte que sur une fenêtre glissante : il est découpé en
+ * tranches de temps, la plus ancienne étant remise à zéro quand une nouvelle
+ * commence. Aucune allocation n'est faite après la construction.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.02
+ */
+public class HistogrammeDeLatences {
+
+    /**
+     * Nombre de bits de précision par puissance de 2
+     */
+    private static final int BITS_DE_PRECISION = 5;
+
+    /**
+     * Nombre de cases par puissance de 2
+     */
+    private static final int DEMI_ECHELON = 1 << BITS_DE_PRECISION;
+
+    /**
+     * Plus grand décalage, les valeurs au-delà de 2^40 sont rangées dans
+     * la dernière case
+     */
+    private static final int DECALAGE_MAX = 40 - BITS_DE_PRECISION;
+
+    /**
+     * Nombre de cases d'une tranche
+     */
+    private static final int NOMBRE_DE_CASES = 2 * DEMI_ECHELON + DECALAGE_MAX * DEMI_ECHELON;
+
+    /**
+     * Nombre de valeurs par case, pour chaque tranche
+     */
+    private final long[][] cases;
+
+    /**
+     * Plus grande valeur de chaque tranche
+     */
+    private final long[] max;
+
+    /**
+     * Nombre de valeurs de chaque tranche
+     */
+    private final long[] nombres;
+
+    /**
+     * Numéro de la période de chaque tranche, -1 si elle est vide
+     */
+    private final long[] periodes;
+
+    /**
+     * Durée d'une tranche en millisecondes
+     */
+    private final long dureeTranche;
+
+    /**
+     * Constructeur principal
+     *
+     * @param nombreDeTranches nombre de tranches de la fenêtre glissante
+     * @param dureeTranche durée d'une tranche en millisecondes
+     */
+    public HistogrammeDeLatences(int nombreDeTranches, long dureeTranche) {
+        this.cases = new long[nombreDeTranches][NOMBRE_DE_CASES];
+        this.max = new long[nombreDeTranches];
+        this.nombres = new long[nombreDeTranches];
+        this.periodes = new long[nombreDeTranches];
+        this.dureeTranche = dureeTranche;
+        Arrays.fill(periodes, -1);
+    }
+
+    /**
+     * Ajoute une durée.
+     *
+     * @param latence durée, ramenée à 0 si elle est négative
+     * @param instant instant de l'observation en millisecondes
+     */
+    public void ajouter(long latence, long instant) {
+        int tranche;
+
+        latence = Math.max(0, latence);
+        tranche = tranche(instant);
+        cases[tranche][indice(latence)]++;
+        nombres[tranche]++;
+        max[tranche] = Math.max(max[tranche], latence);
+    }
+
+    /**
+     * @param instant instant en millisecondes
+     * @return la tranche de cet instant, remise à zéro si elle portait sur une
+     * période plus ancienne
+     */
+    private int tranche(long instant) {
+        long periode;
+        int tranche;
+
+        periode = instant / dureeTranche;
+        tranche = (int) (periode % cases.length);
+        if (periodes[tranche] != periode) {
+            Arrays.fill(cases[tranche], 0);
+            max[tranche] = 0;
+            nombres[tranche] = 0;
+            periodes[tranche] = periode;
+        }
+        return tranche;
+    }
+
+    /**
+     * @param tranche numéro de tranche
+     * @param instant instant de la lecture en millisecondes
+     * @return true si la tranche fait partie de la fenêtre se terminant à cet
+     * instant
+     */
+    private boolean estDansLaFenetre(int tranche, long instant) {
+        return periodes[tranche] >= 0 && periodes[tranche] > instant / dureeTranche - cases.length;
+    }
+
+    /**
+     * @param instant instant de la lecture en millisecondes
+     * @return le nombre de durées de la fenêtre
+     */
+    public long getNombre(long instant) {
+        long nombre = 0;
+        int t;
+
+        for (t = 0; t < cases.length; t++) {
+            if (estDansLaFenetre(t, instant)) {
+                nombre += nombres[t];
+            }
+        }
+        return nombre;
+    }
+
+    /**
+     * @param instant instant de la lecture en millisecondes
+     * @return la plus grande durée de la fenêtre, 0 si elle est vide
+     */
+    public long getMax(long instant) {
+        long resultat = 0;
+        int t;
+
+        for (t = 0; t < cases.length; t++) {
+            if (estDansLaFenetre(t, instant)) {
+                resultat = Math.max(resultat, max[t]);
+            }
+        }
+        return resultat;
+    }
+
+    /**
+     * Calcule plusieurs quantiles de la fenêtre en un seul parcours.
+     *
+     * @param quantiles quantiles demandés, croissants, entre 0 et 1
+     * @param instant instant de la lecture en millisecondes
+     * @param resultats durées correspondantes, 0 si la
+     * fenêtre est vide
+     */
+    public void quantiles(double[] quantiles, long instant, long[] resultats) {
+        long total;
+        long cumul = 0;
+        long rang;
+        int q = 0;
+        int i;
+        int t;
+
+        total = getNombre(instant);
+        Arrays.fill(resultats, 0);
+        if (total == 0) {
+            return;
+        }
+        for (i = 0; i < NOMBRE_DE_CASES && q < quantiles.length; i++) {
+            for (t = 0; t < cases.length; t++) {
+                if (estDansLaFenetre(t, instant)) {
+                    cumul += cases[t][i];
+                }
+            }
+            while (q < quantiles.length) {
+                rang = Math.max(1, (long) Math.ceil(quantiles[q] * total));
+                if (cumul < rang) {
+                    break;
+                }
+                resultats[q++] = Math.min(valeur(i), getMax(instant));
+            }
+        }
+    }
+
+    /**
+     * @param latence durée positive
+     * @return l'indice de sa case
+     */
+    static int indice(long latence) {
+        int decalage;
+
+        if (latence < 2 * DEMI_ECHELON) {
+            return (int) latence;
+        }
+        decalage = Math.min(DECALAGE_MAX, 63 - Long.numberOfLeadingZeros(latence) - BITS_DE_PRECISION);
+        if (latence >>> decalage >= 2 * DEMI_ECHELON) {
+            return NOMBRE_DE_CASES - 1;
+        }
+        return (int) (2 * DEMI_ECHELON + (decalage - 1) * DEMI_ECHELON + ((latence >>> decalage) - DEMI_ECHELON));
+    }
+
+    /**
+     * @param indice indice d'une case
+     * @return la plus grande durée rangée dans cette case
+     */
+    static long valeur(int indice) {
+        int decalage;
+        long base;
+
+        if (indice < 2 * DEMI_ECHELON) {
+            return indice;
+        }
+        decalage = (indice - 2 * DEMI_ECHELON) / DEMI_ECHELON + 1;
+        base = (indice - 2 * DEMI_ECHELON) % DEMI_ECHELON + DEMI_ECHELON;
+        return ((base + 1) << decalage) - 1;
+    }
+}
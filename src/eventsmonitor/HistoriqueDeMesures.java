@@ -0,0 +1,371 @@
+package eventsmonitor;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Classe décrivant l'historique des dernières mesures, gardé dans un tampon
+ * circulaire de taille fixe.
+ * <p>
+ * Les valeurs sont rangées en colonnes de types primitifs : une colonne
+ * d'horodatages et une colonne par série (nombre total d'événements, nombre
+ * par status, nombre par type d'événement). Chaque série reçoit un indice la
+ * première fois qu'elle apparaît et sa colonne est allouée une seule fois :
+ * la mémoire utilisée ne croît plus une fois le tampon plein, quelle que soit
+ * la durée de fonctionnement. Quand les MAX_SERIES numéros sont pris, une
+ * nouvelle série reprend le numéro et la colonne d'une série absente de
+ * toutes les mesures gardées. Chaque série occupe 8 octets par mesure gardée,
+ * soit 135 Ko avec la capacité par défaut de 17280 mesures ; au pire, avec
+ * MAX_SERIES séries, un historique occupe environ 70 Mo par serveur suivi.
+ * Réduire la capacité réduit cette mémoire dans la même proportion.</p>
+ * <p>
+ * Une série absente d'une mesure (valeur non regroupée, série ignorée) n'a
+ * pas de valeur pour cette mesure : les lectures prennent la valeur présente
+ * la plus proche au lieu de compter zéro. Une variation pouvant être
+ * négative, une lecture impossible retourne INCONNU, qui vaut
+ * Long.MIN_VALUE.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.03
+ */
+public class HistoriqueDeMesures {
+
+    /**
+     * Série du nombre total d'événements
+     */
+    public static final String SERIE_TOTAL = "total";
+
+    /**
+     * Valeur retournée quand l'historique ne permet pas de répondre
+     */
+    public static final long INCONNU = Long.MIN_VALUE;
+
+    /**
+     * Nombre maximum de séries suivies
+     */
+    public static final int MAX_SERIES = 512;
+
+    /**
+     * Marque d'une série absente d'une mesure
+     */
+    private static final long ABSENTE = Long.MIN_VALUE;
+
+    /**
+     * Nombre de mesures gardées
+     */
+    private final int capacite;
+
+    /**
+     * Horodatage de chaque mesure en millisecondes
+     */
+    private final long[] horodatages;
+
+    /**
+     * Valeurs de chaque série, indexées par le numéro de la série
+     */
+    private final long[][] colonnes = new long[MAX_SERIES][];
+
+    /**
+     * Numéro de chaque série
+     */
+    private final Map<String, Integer> numeros = new HashMap<>();
+
+    /**
+     * Nom de chaque série, indexé par le numéro de la série
+     */
+    private final String[] noms = new String[MAX_SERIES];
+
+    /**
+     * Rang, depuis le début, de la dernière mesure où chaque série est
+     * présente
+     */
+    private final long[] dernieresPresences = new long[MAX_SERIES];
+
+    /**
+     * Nombre de colonnes allouées
+     */
+    private int nombreDeColonnes = 0;
+
+    /**
+     * Nombre de mesures ajoutées depuis le début
+     */
+    private long nombreDAjouts = 0;
+
+    /**
+     * Emplacement de la mesure la plus ancienne
+     */
+    private int debut = 0;
+
+    /**
+     * Nombre de mesures présentes
+     */
+    private int taille = 0;
+
+    /**
+     * Nombre de séries ignorées faute de place
+     */
+    private long nombreDeSeriesIgnorees = 0;
+
+    /**
+     * Constructeur principal
+     *
+     * @param capacite nombre de mesures gardées
+     */
+    public HistoriqueDeMesures(int capacite) {
+        this.capacite = capacite;
+        this.horodatages = new long[capacite];
+        numeroter(SERIE_TOTAL);
+    }
+
+    /**
+     * @param status valeur du status
+     * @return le nom de la série du nombre d'événements ayant ce status
+     */
+    public static String serieStatus(String status) {
+        return "status:" + status;
+    }
+
+    /**
+     * @param typeDEvenement type d'événement
+     * @return le nom de la série du nombre d'événements de ce type
+     */
+    public static String serieEvenement(String typeDEvenement) {
+        return "eventType:" + typeDEvenement;
+    }
+
+    /**
+     * Ajoute une mesure à l'historique, en remplaçant la plus ancienne si le
+     * tampon est plein.
+     *
+     * @param listeDeMesures mesure à ajouter
+     */
+    public synchronized void ajouter(ListeDeMesures listeDeMesures) {
+        int emplacement;
+        int i;
+
+        if (taille < capacite) {
+            emplacement = (debut + taille) % capacite;
+            taille++;
+        } else {
+            emplacement = debut;
+            debut = (debut + 1) % capacite;
+        }
+        nombreDAjouts++;
+        horodatages[emplacement] = listeDeMesures.getDateDeLaMesure().getMillis();
+        for (i = 0; i < nombreDeColonnes; i++) {
+            colonnes[i][emplacement] = ABSENTE;
+        }
+        colonnes[0][emplacement] = listeDeMesures.getNombreDEvenements();
+        dernieresPresences[0] = nombreDAjouts;
+        ranger(listeDeMesures.getStatus(), true, emplacement);
+        ranger(listeDeMesures.getEvenements(), false, emplacement);
+    }
+
+    /**
+     * @param comptages nombre d'événements par valeur
+     * @param status true pour des status, false pour des types d'événement
+     * @param emplacement emplacement de la mesure
+     */
+    private void ranger(TableDeComptages comptages, boolean status, int emplacement) {
+        int numero;
+        int i;
+
+        for (i = 0; i < comptages.getTaille(); i++) {
+            numero = numeroter(status ? serieStatus(comptages.getCle(i)) : serieEvenement(comptages.getCle(i)));
+            if (numero >= 0) {
+                colonnes[numero][emplacement] = comptages.getQuantite(i);
+                dernieresPresences[numero] = nombreDAjouts;
+            }
+        }
+    }
+
+    /**
+     * @param serie nom de la série
+     * @return le numéro de la série, attribué s'il y a lieu, -1 s'il n'y a
+     * plus de place
+     */
+    private int numeroter(String serie) {
+        Integer numero = numeros.get(serie);
+
+        if (numero == null) {
+            if (nombreDeColonnes < MAX_SERIES) {
+                numero = nombreDeColonnes++;
+                colonnes[numero] = new long[capacite];
+                Arrays.fill(colonnes[numero], ABSENTE);
+            } else {
+                numero = liberer();
+                if (numero < 0) {
+                    nombreDeSeriesIgnorees++;
+                    return -1;
+                }
+            }
+            numeros.put(serie, numero);
+            noms[numero] = serie;
+        }
+        return numero;
+    }
+
+    /**
+     * Libère le numéro d'une série absente de toutes les mesures gardées. La
+     * colonne d'une telle série ne contient que des marques d'absence et peut
+     * être reprise telle quelle.
+     *
+     * @return le numéro libéré, -1 s'il n'y en a pas
+     */
+    private int liberer() {
+        int numero;
+
+        for (numero = 1; numero < nombreDeColonnes; numero++) {
+            if (dernieresPresences[numero] <= nombreDAjouts - taille) {
+                numeros.remove(noms[numero]);
+                noms[numero] = null;
+                return numero;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param rang rang de la mesure, 0 pour la plus ancienne
+     * @return l'emplacement de la mesure dans le tampon
+     */
+    private int emplacement(int rang) {
+        return (debut + rang) % capacite;
+    }
+
+    /**
+     * @param instant instant en millisecondes
+     * @return le rang de la dernière mesure faite au plus tard à l'instant
+     * donné, -1 s'il n'y en a pas
+     */
+    private int rangA(long instant) {
+        int bas = 0;
+        int haut = taille - 1;
+        int milieu;
+        int resultat = -1;
+
+        while (bas <= haut) {
+            milieu = (bas + haut) >>> 1;
+            if (horodatages[emplacement(milieu)] <= instant) {
+                resultat = milieu;
+                bas = milieu + 1;
+            } else {
+                haut = milieu - 1;
+            }
+        }
+        return resultat;
+    }
+
+    /**
+     * @param colonne colonne de la série
+     * @param rang rang de départ
+     * @return le rang de la dernière mesure où la série est présente, au plus
+     * tard au rang donné, -1 s'il n'y en a pas
+     */
+    private int presenteAvant(long[] colonne, int rang) {
+        while (rang >= 0 && colonne[emplacement(rang)] == ABSENTE) {
+            rang--;
+        }
+        return rang;
+    }
+
+    /**
+     * @param serie nom de la série
+     * @param instant instant en millisecondes
+     * @return la valeur de la série lors de la dernière mesure faite au plus
+     * tard à l'instant donné où elle est présente, INCONNU si elle n'est pas
+     * dans l'historique
+     */
+    public synchronized long valeurA(String serie, long instant) {
+        Integer numero = numeros.get(serie);
+        int rang;
+
+        if (numero == null) {
+            return INCONNU;
+        }
+        rang = presenteAvant(colonnes[numero], rangA(instant));
+        return (rang < 0) ? INCONNU : colonnes[numero][emplacement(rang)];
+    }
+
+    /**
+     * @param serie nom de la série
+     * @param fenetre durée de la fenêtre en millisecondes
+     * @return la variation de la série entre la dernière mesure et la mesure
+     * faite une fenêtre plus tôt (ou la plus ancienne si l'historique est plus
+     * court), en ne retenant que les mesures où la série est présente,
+     * INCONNU si l'historique ne permet pas de répondre
+     */
+    public synchronized long deltaSur(String serie, long fenetre) {
+        Integer numero = numeros.get(serie);
+        long[] colonne;
+        int fin;
+        int rang;
+
+        if (numero == null || taille < 2) {
+            return INCONNU;
+        }
+        colonne = colonnes[numero];
+        fin = presenteAvant(colonne, taille - 1);
+        rang = Math.max(0, rangA(horodatages[emplacement(taille - 1)] - fenetre));
+        while (rang < fin && colonne[emplacement(rang)] == ABSENTE) {
+            rang++;
+        }
+        if (fin < 0 || rang > fin) {
+            return INCONNU;
+        }
+        return colonne[emplacement(fin)] - colonne[emplacement(rang)];
+    }
+
+    /**
+     * @return le nombre de mesures présentes dans l'historique
+     */
+    public synchronized int getTaille() {
+        return taille;
+    }
+
+    /**
+     * @return le nombre de mesures gardées au maximum
+     */
+    public int getCapacite() {
+        return capacite;
+    }
+
+    /**
+     * @return l'horodatage de la mesure la plus ancienne, INCONNU si
+     * l'historique est vide
+     */
+    public synchronized long getPremierHorodatage() {
+        return (taille == 0) ? INCONNU : horodatages[debut];
+    }
+
+    /**
+     * @return l'horodatage de la mesure la plus récente, INCONNU si
+     * l'historique est vide
+     */
+    public synchronized long getDernierHorodatage() {
+        return (taille == 0) ? INCONNU : horodatages[emplacement(taille - 1)];
+    }
+
+    /**
+     * @return le nom des séries suivies
+     */
+    public synchronized String[] getSeries() {
+        return Arrays.copyOf(noms, nombreDeColonnes);
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public synchronized String toString() {
+        return "HistoriqueDeMesures:{"
+                + "capacite:" + capacite
+                + ", taille:" + taille
+                + ", nombreDeSeries:" + numeros.size()
+                + ", nombreDeSeriesIgnorees:" + nombreDeSeriesIgnorees
+                + "}";
+    }
+}
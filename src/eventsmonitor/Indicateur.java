@@ -0,0 +1,197 @@
+package eventsmonitor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import org.bson.Document;
+
+/**
+ * Classe décrivant un indicateur du catalogue : nombre de documents d'une
+ * collection par valeur d'un champ, éventuellement filtrés, limité aux
+ * valeurs les plus fréquentes.
+ * <p>
+ * Les indicateurs sont déclarés dans EventsMonitor.prop, ou dans un fichier
+ * à part désigné par le paramètre catalogue.fichier, par exemple :</p>
+ * <pre>
+ * prod.dbserver.catalogue=ouverts,agences
+ * prod.dbserver.catalogue.ouverts.collection=tickets
+ * prod.dbserver.catalogue.ouverts.champ=status
+ * prod.dbserver.catalogue.ouverts.filtre={"closed": false}
+ * prod.dbserver.catalogue.ouverts.max=10
+ * </pre>
+ * <p>
+ * Les étapes d'agrégation sont construites une seule fois, à la création de
+ * l'indicateur.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class Indicateur {
+
+    /**
+     * Nombre de valeurs gardées par défaut
+     */
+    public static final int MAX_PAR_DEFAUT = 10;
+
+    /**
+     * Nom de l'indicateur
+     */
+    private final String nom;
+
+    /**
+     * Collection interrogée
+     */
+    private final String collection;
+
+    /**
+     * Champ de regroupement
+     */
+    private final String champ;
+
+    /**
+     * Filtre appliqué aux documents, vide si aucun
+     */
+    private final Document filtre;
+
+    /**
+     * Nombre de valeurs gardées, les plus fréquentes
+     */
+    private final int max;
+
+    /**
+     * Etapes d'agrégation calculant l'indicateur
+     */
+    private final List<Document> etapes;
+
+    /**
+     * Constructeur principal
+     *
+     * @param nom nom de l'indicateur
+     * @param collection collection interrogée
+     * @param champ champ de regroupement
+     * @param filtre filtre appliqué aux documents, vide si aucun
+     * @param max nombre de valeurs gardées, les plus fréquentes
+     */
+    public Indicateur(String nom, String collection, String champ, Document filtre, int max) {
+        List<Document> lesEtapes = new ArrayList<>();
+
+        this.nom = nom;
+        this.collection = collection;
+        this.champ = champ;
+        this.filtre = filtre;
+        this.max = max;
+
+        if (!filtre.isEmpty()) {
+            lesEtapes.add(new Document("$match", filtre));
+        }
+        lesEtapes.add(new Document("$group", new Document("_id", "$" + champ).append("count", new Document("$sum", 1))));
+        lesEtapes.add(new Document("$sort", new Document("count", -1)));
+        lesEtapes.add(new Document("$limit", max));
+        this.etapes = Collections.unmodifiableList(lesEtapes);
+    }
+
+    /**
+     * Lit les indicateurs déclarés pour un serveur de base de données.
+     *
+     * @param proprietes paramètres où chercher les indicateurs
+     * @param prefixe préfixe des clés, par exemple prod.dbserver.
+     * @param collectionParDefaut collection interrogée si elle n'est pas
+     * précisée
+     * @return les indicateurs, dans l'ordre de déclaration
+     * @throws IllegalArgumentException si un indicateur est mal décrit
+     */
+    public static List<Indicateur> lire(Properties proprietes, String prefixe, String collectionParDefaut) {
+        List<Indicateur> indicateurs = new ArrayList<>();
+        String noms;
+        String cle;
+        String champ;
+        String filtre;
+        String max;
+
+        noms = proprietes.getProperty(prefixe + "catalogue");
+        if (noms == null || noms.trim().isEmpty()) {
+            return indicateurs;
+        }
+        for (String nom : noms.split(",")) {
+            nom = nom.trim();
+            cle = prefixe + "catalogue." + nom + ".";
+            champ = proprietes.getProperty(cle + "champ");
+            if (champ == null || champ.trim().isEmpty()) {
+                throw new IllegalArgumentException("Champ de regroupement non défini : " + cle + "champ");
+            }
+            filtre = proprietes.getProperty(cle + "filtre");
+            max = proprietes.getProperty(cle + "max");
+            try {
+                indicateurs.add(new Indicateur(nom,
+                        proprietes.getProperty(cle + "collection", collectionParDefaut).trim(),
+                        champ.trim(),
+                        (filtre == null || filtre.trim().isEmpty()) ? new Document() : Document.parse(filtre),
+                        (max == null) ? MAX_PAR_DEFAUT : Integer.parseInt(max.trim())));
+            } catch (RuntimeException exception) {
+                throw new IllegalArgumentException("Indicateur " + nom + " mal décrit : " + exception.getMessage(),
+                        exception);
+            }
+        }
+        return indicateurs;
+    }
+
+    /**
+     * @return le nom de l'indicateur
+     */
+    public String getNom() {
+        return nom;
+    }
+
+    /**
+     * @return la collection interrogée
+     */
+    public String getCollection() {
+        return collection;
+    }
+
+    /**
+     * @return le champ de regroupement
+     */
+    public String getChamp() {
+        return champ;
+    }
+
+    /**
+     * @return le filtre appliqué aux documents, vide si aucun
+     */
+    public Document getFiltre() {
+        return filtre;
+    }
+
+    /**
+     * @return le nombre de valeurs gardées
+     */
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * @return les étapes d'agrégation calculant l'indicateur, à ne pas
+     * modifier
+     */
+    public List<Document> getEtapes() {
+        return etapes;
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "Indicateur:{"
+                + "nom:" + nom
+                + ", collection:" + collection
+                + ", champ:" + champ
+                + ", filtre:" + filtre
+                + ", max:" + max
+                + "}";
+    }
+}
@@ -0,0 +1,467 @@
+package eventsmonitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+/**
+ * Classe décrivant le journal binaire des mesures, écrit sur le disque local
+ * pour les garder après l'arrêt du programme.
+ * <p>
+ * Le journal est découpé en segments de taille fixe, alloués d'avance et
+ * projetés en mémoire. Un segment commence par un en-tête de 64 octets :
+ * nombre magique, version, date de création, fin des données, nombre de
+ * mesures et date de la dernière mesure. Il est suivi d'enregistrements :</p>
+ * <ul>
+ * <li>une définition donne le nom d'un nouveau status ou type d'événement,
+ * désigné ensuite par son numéro d'ordre dans le segment ;</li>
+ * <li>une mesure donne, en entiers de longueur variable, l'écart de date avec
+ * la mesure précédente, l'écart du nombre d'événements, l'âge du dernier
+ * événement, la durée de la mesure, puis pour les status et les types
+ * d'événements les seules quantités qui ont changé, sous forme d'écart.</li>
+ * </ul>
+ * <p>
+ * Une mesure tient ainsi en quelques dizaines d'octets et son écriture ne
+ * fait aucune allocation une fois les noms connus. Un nouveau segment est
+ * commencé quand le segment courant est plein ou trop ancien ; chaque segment
+ * se lit seul. Voir LecteurDeJournal.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class JournalDeMesures {
+
+    /**
+     * Nombre magique en tête de chaque segment : "EVMJ"
+     */
+    static final int MAGIQUE = 0x45564D4A;
+
+    /**
+     * Version du format des segments
+     */
+    static final short VERSION = 1;
+
+    /**
+     * Taille de l'en-tête d'un segment en octets
+     */
+    static final int TAILLE_ENTETE = 64;
+
+    /**
+     * Position dans l'en-tête de la date de création
+     */
+    static final int POSITION_CREATION = 8;
+
+    /**
+     * Position dans l'en-tête de la fin des données
+     */
+    static final int POSITION_FIN = 16;
+
+    /**
+     * Position dans l'en-tête du nombre de mesures
+     */
+    static final int POSITION_NOMBRE = 20;
+
+    /**
+     * Position dans l'en-tête de la date de la dernière mesure
+     */
+    static final int POSITION_DERNIERE_MESURE = 24;
+
+    /**
+     * Enregistrement définissant un nom
+     */
+    static final byte DEFINITION = 1;
+
+    /**
+     * Enregistrement d'une mesure
+     */
+    static final byte MESURE = 2;
+
+    /**
+     * Champ des status
+     */
+    static final int STATUS = 0;
+
+    /**
+     * Champ des types d'événements
+     */
+    static final int EVENEMENTS = 1;
+
+    /**
+     * Extension des fichiers de segments
+     */
+    static final String EXTENSION = ".journal";
+
+    /**
+     * Pour nommer les segments d'après leur date de création
+     */
+    private static final DateTimeFormatter formatNom = DateTimeFormat.forPattern("yyyyMMdd-HHmmss");
+
+    /**
+     * Répertoire des segments
+     */
+    private final File repertoire;
+
+    /**
+     * Taille d'un segment en octets
+     */
+    private final int tailleSegment;
+
+    /**
+     * Age maximum d'un segment en millisecondes
+     */
+    private final long ageMaximum;
+
+    /**
+     * Noms et dernières quantités des status et des types d'événements du
+     * segment courant
+     */
+    private final Dictionnaire[] dictionnaires = {new Dictionnaire(), new Dictionnaire()};
+
+    /**
+     * Segment courant projeté en mémoire, null si aucun n'est ouvert
+     */
+    private MappedByteBuffer segment = null;
+
+    /**
+     * Fichier du segment courant
+     */
+    private File fichier = null;
+
+    /**
+     * Date de création du segment courant en millisecondes
+     */
+    private long dateDeCreation;
+
+    /**
+     * Date de la mesure précédente en millisecondes
+     */
+    private long datePrecedente;
+
+    /**
+     * Nombre d'événements de la mesure précédente
+     */
+    private long nombrePrecedent;
+
+    /**
+     * Nombre de mesures du segment courant
+     */
+    private int nombreDeMesures;
+
+    /**
+     * debugMode : fonctionnement du programme en mode debug (true/false).
+     * Valeur par défaut : false.
+     */
+    private static boolean debugMode = false;
+
+    /**
+     * Constructeur principal
+     *
+     * @param repertoire répertoire des segments, créé au besoin
+     * @param tailleSegment taille d'un segment en octets
+     * @param ageMaximum age maximum d'un segment en millisecondes
+     * @param debugMode fonctionnement du programme en mode debug
+     */
+    public JournalDeMesures(File repertoire, int tailleSegment, long ageMaximum, boolean debugMode) {
+        this.repertoire = repertoire;
+        this.tailleSegment = Math.max(TAILLE_ENTETE + 4096, tailleSegment);
+        this.ageMaximum = ageMaximum;
+        JournalDeMesures.debugMode = debugMode;
+    }
+
+    /**
+     * Ajoute une mesure au journal, en commençant un nouveau segment si le
+     * segment courant est plein ou trop ancien.
+     *
+     * @param mesure mesure à ajouter
+     * @throws IOException en cas d'erreur sur le fichier du segment
+     */
+    public synchronized void ecrire(ListeDeMesures mesure) throws IOException {
+        long date;
+        int fin;
+
+        date = mesure.getDateDeLaMesure().getMillis();
+        if (segment == null || date - dateDeCreation >= ageMaximum) {
+            ouvrirSegment(date);
+        }
+        fin = segment.position();
+        try {
+            ecrireMesure(mesure, date);
+        } catch (BufferOverflowException plein) {
+            segment.position(fin);
+            ouvrirSegment(date);
+            try {
+                ecrireMesure(mesure, date);
+            } catch (BufferOverflowException exception) {
+                throw new IOException("Mesure trop grande pour un segment de " + tailleSegment + " octets",
+                        exception);
+            }
+        }
+    }
+
+    /**
+     * Ecrit une mesure à la suite du segment courant puis met l'en-tête à
+     * jour.
+     *
+     * @param mesure mesure à écrire
+     * @param date date de la mesure en millisecondes
+     */
+    private void ecrireMesure(ListeDeMesures mesure, long date) {
+        int changementsStatus;
+        int changementsEvenements;
+
+        changementsStatus = definir(STATUS, mesure.getStatus());
+        changementsEvenements = definir(EVENEMENTS, mesure.getEvenements());
+        segment.put(MESURE);
+        ecrireEntier(zigzag(date - datePrecedente));
+        ecrireEntier(zigzag(mesure.getNombreDEvenements() - nombrePrecedent));
+        ecrireEntier((mesure.getDateDernierEvenement() == null) ? 0
+                : zigzag(date - mesure.getDateDernierEvenement().getMillis()) + 1);
+        ecrireEntier(Math.max(0, mesure.getDureeDeLaMesure()));
+        ecrireEntier(changementsStatus);
+        ecrireChangements(dictionnaires[STATUS], mesure.getStatus());
+        ecrireEntier(changementsEvenements);
+        ecrireChangements(dictionnaires[EVENEMENTS], mesure.getEvenements());
+
+        datePrecedente = date;
+        nombrePrecedent = mesure.getNombreDEvenements();
+        nombreDeMesures++;
+        segment.putInt(POSITION_FIN, segment.position());
+        segment.putInt(POSITION_NOMBRE, nombreDeMesures);
+        segment.putLong(POSITION_DERNIERE_MESURE, date);
+    }
+
+    /**
+     * Ecrit la définition des noms inconnus d'une table de comptages et
+     * compte les quantités qui ont changé depuis la mesure précédente.
+     *
+     * @param champ champ de la table : STATUS ou EVENEMENTS
+     * @param comptages table de comptages
+     * @return le nombre de quantités à écrire
+     */
+    private int definir(int champ, TableDeComptages comptages) {
+        Dictionnaire dictionnaire = dictionnaires[champ];
+        Integer code;
+        byte[] octets;
+        int changements = 0;
+        int i;
+
+        dictionnaire.mesure++;
+        for (i = 0; i < comptages.getTaille(); i++) {
+            code = dictionnaire.codes.get(comptages.getCle(i));
+            if (code == null) {
+                code = dictionnaire.ajouter(comptages.getCle(i));
+                octets = comptages.getCle(i).getBytes(StandardCharsets.UTF_8);
+                segment.put(DEFINITION);
+                segment.put((byte) champ);
+                ecrireEntier(octets.length);
+                segment.put(octets);
+            }
+            dictionnaire.vus[code] = dictionnaire.mesure;
+            if (dictionnaire.quantites[code] != comptages.getQuantite(i)) {
+                changements++;
+            }
+        }
+        for (i = 0; i < dictionnaire.taille; i++) {
+            if (dictionnaire.vus[i] != dictionnaire.mesure && dictionnaire.quantites[i] != 0) {
+                changements++;
+            }
+        }
+        return changements;
+    }
+
+    /**
+     * Ecrit les quantités qui ont changé depuis la mesure précédente, une
+     * valeur disparue étant ramenée à 0.
+     *
+     * @param dictionnaire dictionnaire du champ
+     * @param comptages table de comptages
+     */
+    private void ecrireChangements(Dictionnaire dictionnaire, TableDeComptages comptages) {
+        int code;
+        int i;
+
+        for (i = 0; i < comptages.getTaille(); i++) {
+            code = dictionnaire.codes.get(comptages.getCle(i));
+            if (dictionnaire.quantites[code] != comptages.getQuantite(i)) {
+                ecrireEntier(code);
+                ecrireEntier(zigzag(comptages.getQuantite(i) - dictionnaire.quantites[code]));
+                dictionnaire.quantites[code] = comptages.getQuantite(i);
+            }
+        }
+        for (i = 0; i < dictionnaire.taille; i++) {
+            if (dictionnaire.vus[i] != dictionnaire.mesure && dictionnaire.quantites[i] != 0) {
+                ecrireEntier(i);
+                ecrireEntier(zigzag(-dictionnaire.quantites[i]));
+                dictionnaire.quantites[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Ecrit un entier positif sur 1 à 10 octets, 7 bits par octet.
+     *
+     * @param valeur entier à écrire
+     */
+    private void ecrireEntier(long valeur) {
+        while ((valeur & ~0x7FL) != 0) {
+            segment.put((byte) ((valeur & 0x7F) | 0x80));
+            valeur >>>= 7;
+        }
+        segment.put((byte) valeur);
+    }
+
+    /**
+     * @param valeur entier signé
+     * @return l'entier positif correspondant, petit si la valeur est proche
+     * de 0
+     */
+    static long zigzag(long valeur) {
+        return (valeur << 1) ^ (valeur >> 63);
+    }
+
+    /**
+     * @param valeur entier positif produit par zigzag()
+     * @return l'entier signé d'origine
+     */
+    static long dezigzag(long valeur) {
+        return (valeur >>> 1) ^ -(valeur & 1);
+    }
+
+    /**
+     * Termine le segment courant et en commence un nouveau, alloué à sa
+     * taille définitive.
+     *
+     * @param date date de création du segment en millisecondes
+     * @throws IOException en cas d'erreur sur le fichier du segment
+     */
+    private void ouvrirSegment(long date) throws IOException {
+        int suffixe = 0;
+
+        fermer();
+        if (!repertoire.isDirectory() && !repertoire.mkdirs()) {
+            throw new IOException("Impossible de créer le répertoire " + repertoire);
+        }
+        fichier = new File(repertoire, "mesures-" + formatNom.print(date) + EXTENSION);
+        while (fichier.exists()) {
+            fichier = new File(repertoire, "mesures-" + formatNom.print(date) + "-" + (++suffixe) + EXTENSION);
+        }
+        try (RandomAccessFile acces = new RandomAccessFile(fichier, "rw")) {
+            acces.setLength(tailleSegment);
+            segment = acces.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, tailleSegment);
+        }
+        segment.putInt(MAGIQUE).putShort(VERSION).putShort((short) 0);
+        segment.putLong(POSITION_CREATION, date);
+        segment.putInt(POSITION_FIN, TAILLE_ENTETE);
+        segment.putInt(POSITION_NOMBRE, 0);
+        segment.putLong(POSITION_DERNIERE_MESURE, date);
+        segment.position(TAILLE_ENTETE);
+        dictionnaires[STATUS].vider();
+        dictionnaires[EVENEMENTS].vider();
+        dateDeCreation = date;
+        datePrecedente = date;
+        nombrePrecedent = 0;
+        nombreDeMesures = 0;
+        if (debugMode) {
+            System.out.println("Nouveau segment du journal : " + fichier);
+        }
+    }
+
+    /**
+     * Ecrit sur le disque le segment courant et le ferme. La mesure suivante
+     * commencera un nouveau segment.
+     */
+    public synchronized void fermer() {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+        }
+    }
+
+    /**
+     * @return le fichier du segment courant, null si aucun n'a été ouvert
+     */
+    public synchronized File getFichier() {
+        return fichier;
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public synchronized String toString() {
+        return "JournalDeMesures:{"
+                + "repertoire:" + repertoire
+                + ", tailleSegment:" + tailleSegment
+                + ", ageMaximum:" + ageMaximum
+                + ", fichier:" + fichier
+                + ", nombreDeMesures:" + nombreDeMesures
+                + "}";
+    }
+
+    /**
+     * Classe décrivant les noms d'un champ connus dans le segment courant et
+     * leur quantité à la dernière mesure.
+     */
+    private static class Dictionnaire {
+
+        /**
+         * Code de chaque nom
+         */
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        /**
+         * Quantité de chaque code à la dernière mesure
+         */
+        private long[] quantites = new long[64];
+
+        /**
+         * Numéro de la dernière mesure où chaque code était présent
+         */
+        private int[] vus = new int[64];
+
+        /**
+         * Nombre de codes
+         */
+        private int taille = 0;
+
+        /**
+         * Numéro de la mesure courante
+         */
+        private int mesure = 0;
+
+        /**
+         * @param nom nom à ajouter
+         * @return son code
+         */
+        private int ajouter(String nom) {
+            if (taille == quantites.length) {
+                quantites = Arrays.copyOf(quantites, 2 * taille);
+                vus = Arrays.copyOf(vus, 2 * taille);
+            }
+            codes.put(nom, taille);
+            quantites[taille] = 0;
+            vus[taille] = 0;
+            return taille++;
+        }
+
+        /**
+         * Oublie tous les noms, au début d'un segment.
+         */
+        private void vider() {
+            codes.clear();
+            taille = 0;
+            mesure = 0;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package eventsmonitor;
+
+import java.io.Serializable;
+
+/**
+ * Classe décrivant la répartition d'une série de durées : retards des
+ * événements reçus récemment, écart entre la mesure qui les a vus arriver et
+ * leur sentDate, en millisecondes, ou durées des étapes d'une mesure, en
+ * microsecondes.
+ *
+ * @author Thierry Baribaud
+ * @version 0.02
+ */
+public class Latences implements Serializable {
+
+    /**
+     * Quantiles publiés : médiane, 95e et 99e centiles
+     */
+    public static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+    /**
+     * Nombre de valeurs prises en compte
+     */
+    private final long nombre;
+
+    /**
+     * Valeurs correspondant aux quantiles publiés
+     */
+    private final long[] quantiles;
+
+    /**
+     * Plus grande valeur
+     */
+    private final long max;
+
+    /**
+     * Constructeur principal
+     *
+     * @param nombre nombre de valeurs prises en compte
+     * @param quantiles valeurs correspondant aux quantiles publiés
+     * @param max plus grande valeur
+     */
+    public Latences(long nombre, long[] quantiles, long max) {
+        this.nombre = nombre;
+        this.quantiles = quantiles.clone();
+        this.max = max;
+    }
+
+    /**
+     * @return le nombre de valeurs prises en compte
+     */
+    public long getNombre() {
+        return nombre;
+    }
+
+    /**
+     * @return la valeur médiane
+     */
+    public long getP50() {
+        return quantiles[0];
+    }
+
+    /**
+     * @return le 95e centile
+     */
+    public long getP95() {
+        return quantiles[1];
+    }
+
+    /**
+     * @return le 99e centile
+     */
+    public long getP99() {
+        return quantiles[2];
+    }
+
+    /**
+     * @param i rang du quantile dans QUANTILES
+     * @return la valeur correspondante
+     */
+    public long getQuantile(int i) {
+        return quantiles[i];
+    }
+
+    /**
+     * @return la plus grande valeur
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "Latences:{"
+                + "nombre:" + nombre
+                + ", p50:" + getP50()
+                + ", p95:" + getP95()
+                + ", p99:" + getP99()
+                + ", max:" + max
+                + "}";
+    }
+}
@@ -0,0 +1,316 @@
+package eventsmonitor;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.joda.time.DateTime;
+
+/**
+ * Classe décrivant la lecture d'un journal de mesures écrit par
+ * JournalDeMesures, mesure après mesure, sans le charger en entier.
+ * <p>
+ * Les segments d'un répertoire sont lus dans l'ordre de leur date de
+ * création, lue dans leur en-tête, puis du numéro ajouté à leur nom quand
+ * plusieurs segments sont créés dans la même seconde.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.02
+ */
+public class LecteurDeJournal {
+
+    /**
+     * Segments restant à lire, dans l'ordre chronologique
+     */
+    private final List<File> fichiers = new ArrayList<>();
+
+    /**
+     * Segment en cours de lecture, null si aucun
+     */
+    private MappedByteBuffer segment = null;
+
+    /**
+     * Fin des données du segment en cours de lecture
+     */
+    private int fin;
+
+    /**
+     * Noms des status puis des types d'événements du segment en cours
+     */
+    private final List<List<String>> noms = new ArrayList<>();
+
+    /**
+     * Quantités des status puis des types d'événements à la dernière mesure lue
+     */
+    private final long[][] quantites = new long[2][];
+
+    /**
+     * Date de la dernière mesure lue en millisecondes
+     */
+    private long datePrecedente;
+
+    /**
+     * Nombre d'événements de la dernière mesure lue
+     */
+    private long nombrePrecedent;
+
+    /**
+     * debugMode : fonctionnement du programme en mode debug (true/false).
+     * Valeur par défaut : false.
+     */
+    private static boolean debugMode = false;
+
+    /**
+     * Constructeur principal
+     *
+     * @param chemin segment à lire, ou répertoire dont les segments sont lus
+     * dans l'ordre chronologique
+     * @param debugMode fonctionnement du programme en mode debug
+     * @throws IOException si le chemin n'existe pas
+     */
+    public LecteurDeJournal(File chemin, boolean debugMode) throws IOException {
+        File[] segments;
+
+        LecteurDeJournal.debugMode = debugMode;
+        if (chemin.isDirectory()) {
+            segments = chemin.listFiles(new FileFilter() {
+                @Override
+                public boolean accept(File fichier) {
+                    return fichier.isFile() && fichier.getName().endsWith(JournalDeMesures.EXTENSION);
+                }
+            });
+            fichiers.addAll(Arrays.asList(segments));
+            ranger(fichiers);
+        } else if (chemin.isFile()) {
+            fichiers.add(chemin);
+        } else {
+            throw new IOException("Journal introuvable : " + chemin);
+        }
+        noms.add(new ArrayList<String>());
+        noms.add(new ArrayList<String>());
+    }
+
+    /**
+     * Range des segments dans l'ordre chronologique.
+     *
+     * @param segments segments à ranger
+     * @throws IOException si un segment ne peut être ouvert
+     */
+    private static void ranger(List<File> segments) throws IOException {
+        final Map<File, long[]> cles = new HashMap<>();
+
+        for (File segment : segments) {
+            cles.put(segment, new long[]{lireDateDeCreation(segment), numero(segment)});
+        }
+        Collections.sort(segments, new Comparator<File>() {
+            @Override
+            public int compare(File segment1, File segment2) {
+                long[] cle1 = cles.get(segment1);
+                long[] cle2 = cles.get(segment2);
+                int ordre;
+
+                ordre = Long.compare(cle1[0], cle2[0]);
+                if (ordre == 0) {
+                    ordre = Long.compare(cle1[1], cle2[1]);
+                }
+                return (ordre == 0) ? segment1.compareTo(segment2) : ordre;
+            }
+        });
+    }
+
+    /**
+     * @param segment fichier du segment
+     * @return la date de création du segment en millisecondes, lue dans son
+     * en-tête ; Long.MAX_VALUE si l'en-tête est incomplet
+     * @throws IOException si le segment ne peut être ouvert
+     */
+    private static long lireDateDeCreation(File segment) throws IOException {
+        try (RandomAccessFile acces = new RandomAccessFile(segment, "r")) {
+            if (acces.length() < JournalDeMesures.TAILLE_ENTETE) {
+                return Long.MAX_VALUE;
+            }
+            acces.seek(JournalDeMesures.POSITION_CREATION);
+            return acces.readLong();
+        }
+    }
+
+    /**
+     * @param segment fichier du segment, nommé
+     * mesures-aaaaMMjj-HHmmss[-n].journal
+     * @return le numéro n ajouté au nom du segment, 0 s'il n'y en a pas
+     */
+    static int numero(File segment) {
+        String nom;
+        String[] parties;
+
+        nom = segment.getName();
+        if (nom.endsWith(JournalDeMesures.EXTENSION)) {
+            nom = nom.substring(0, nom.length() - JournalDeMesures.EXTENSION.length());
+        }
+        parties = nom.split("-");
+        if (parties.length < 4) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(parties[parties.length - 1]);
+        } catch (NumberFormatException exception) {
+            return 0;
+        }
+    }
+
+    /**
+     * Lit la mesure suivante du journal.
+     *
+     * @return la mesure suivante, null à la fin du journal
+     * @throws IOException si un segment est illisible
+     */
+    public ListeDeMesures suivante() throws IOException {
+        byte type;
+        int champ;
+        byte[] octets;
+
+        while (segment == null || segment.position() >= fin) {
+            if (fichiers.isEmpty()) {
+                return null;
+            }
+            ouvrir(fichiers.remove(0));
+        }
+        while (segment.position() < fin) {
+            type = segment.get();
+            if (type == JournalDeMesures.DEFINITION) {
+                champ = segment.get();
+                octets = new byte[(int) lireEntier()];
+                segment.get(octets);
+                noms.get(champ).add(new String(octets, StandardCharsets.UTF_8).intern());
+                if (quantites[champ].length < noms.get(champ).size()) {
+                    quantites[champ] = Arrays.copyOf(quantites[champ], 2 * quantites[champ].length);
+                }
+            } else if (type == JournalDeMesures.MESURE) {
+                return lireMesure();
+            } else {
+                throw new IOException("Enregistrement inconnu " + type + " à la position "
+                        + (segment.position() - 1));
+            }
+        }
+        return suivante();
+    }
+
+    /**
+     * @return la mesure décrite par l'enregistrement courant
+     */
+    private ListeDeMesures lireMesure() {
+        ListeDeMesures mesure;
+        long date;
+        long nombre;
+        long age;
+        long duree;
+        DateTime dateDernierEvenement;
+        Map<String, Long> status;
+        Map<String, Long> evenements;
+
+        date = datePrecedente + JournalDeMesures.dezigzag(lireEntier());
+        nombre = nombrePrecedent + JournalDeMesures.dezigzag(lireEntier());
+        age = lireEntier();
+        dateDernierEvenement = (age == 0) ? null : new DateTime(date - JournalDeMesures.dezigzag(age - 1));
+        duree = lireEntier();
+        status = lireQuantites(JournalDeMesures.STATUS);
+        evenements = lireQuantites(JournalDeMesures.EVENEMENTS);
+        datePrecedente = date;
+        nombrePrecedent = nombre;
+
+        mesure = new ListeDeMesures(nombre, dateDernierEvenement, status, evenements, debugMode);
+        mesure.setDateDeLaMesure(new DateTime(date));
+        mesure.setDureeDeLaMesure(duree);
+        return mesure;
+    }
+
+    /**
+     * @param champ champ lu : STATUS ou EVENEMENTS
+     * @return les quantités non nulles du champ après application des
+     * changements lus
+     */
+    private Map<String, Long> lireQuantites(int champ) {
+        Map<String, Long> comptages = new HashMap<>();
+        long changements;
+        int code;
+        int i;
+
+        changements = lireEntier();
+        for (i = 0; i < changements; i++) {
+            code = (int) lireEntier();
+            quantites[champ][code] += JournalDeMesures.dezigzag(lireEntier());
+        }
+        for (i = 0; i < noms.get(champ).size(); i++) {
+            if (quantites[champ][i] != 0) {
+                comptages.put(noms.get(champ).get(i), quantites[champ][i]);
+            }
+        }
+        return comptages;
+    }
+
+    /**
+     * @return l'entier positif écrit sur 1 à 10 octets à la position courante
+     */
+    private long lireEntier() {
+        long valeur = 0;
+        int decalage = 0;
+        byte octet;
+
+        do {
+            octet = segment.get();
+            valeur |= (long) (octet & 0x7F) << decalage;
+            decalage += 7;
+        } while ((octet & 0x80) != 0);
+        return valeur;
+    }
+
+    /**
+     * Ouvre un segment et vérifie son en-tête.
+     *
+     * @param fichier fichier du segment
+     * @throws IOException si le segment est illisible
+     */
+    private void ouvrir(File fichier) throws IOException {
+        try (RandomAccessFile acces = new RandomAccessFile(fichier, "r")) {
+            segment = acces.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, acces.length());
+        }
+        if (segment.limit() < JournalDeMesures.TAILLE_ENTETE || segment.getInt(0) != JournalDeMesures.MAGIQUE
+                || segment.getShort(4) != JournalDeMesures.VERSION) {
+            throw new IOException("Segment de journal illisible : " + fichier);
+        }
+        fin = Math.min(segment.limit(), segment.getInt(JournalDeMesures.POSITION_FIN));
+        segment.position(JournalDeMesures.TAILLE_ENTETE);
+        noms.get(JournalDeMesures.STATUS).clear();
+        noms.get(JournalDeMesures.EVENEMENTS).clear();
+        quantites[JournalDeMesures.STATUS] = new long[64];
+        quantites[JournalDeMesures.EVENEMENTS] = new long[64];
+        datePrecedente = segment.getLong(JournalDeMesures.POSITION_CREATION);
+        nombrePrecedent = 0;
+        if (debugMode) {
+            System.out.println("Lecture du segment " + fichier + ", "
+                    + segment.getInt(JournalDeMesures.POSITION_NOMBRE) + " mesure(s)");
+        }
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "LecteurDeJournal:{"
+                + "segmentsRestants:" + fichiers.size()
+                + "}";
+    }
+}
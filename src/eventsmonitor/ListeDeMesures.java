@@ -1,18 +1,15 @@
 package eventsmonitor;
 
-import bkgpi2a.Event;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.mongodb.BasicDBObject;
-import com.mongodb.client.AggregateIterable;
-import com.mongodb.client.MongoCollection;
-import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
-import static eventsmonitor.EventsMonitor.MAX_EVENTS;
-import static eventsmonitor.EventsMonitor.MAX_STATUS;
-import java.io.IOException;
+import static eventsmonitor.EventsMonitor.COLLECTION_EVENEMENTS;
 import java.io.Serializable;
-import java.text.DecimalFormat;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.bson.Document;
@@ -24,14 +21,19 @@ import org.joda.time.format.ISODateTimeFormat;
  * Classe décrivant une liste de mesures faites à un instant t.
  *
  * @author Thierry Baribaud
- * @version 0.05
+ * @version 0.14
  */
 public class ListeDeMesures implements Serializable {
 
     /**
-     * Pour formater les nombres
+     * Agrégations de regroupement par champ, construites une seule fois
      */
-    private static final DecimalFormat decimalFormat = new DecimalFormat("#,##0");
+    private static final Map<String, List<Document>> regroupements = new ConcurrentHashMap<>();
+
+    /**
+     * Pour lire les dates au format ISO 8601
+     */
+    private static final DateTimeFormatter format = ISODateTimeFormat.dateTimeParser();
     
     /**
      * Nombre d'événements en base à l'instant t
@@ -49,14 +51,65 @@ public class ListeDeMesures implements Serializable {
     private DateTime dateDernierEvenement;
 
     /**
-     * Tableau des status
+     * Durée de la mesure en millisecondes
+     */
+    private long dureeDeLaMesure = 0;
+
+    /**
+     * Nombre d'événements par status
+     */
+    private final TableDeComptages status;
+
+    /**
+     * Nombre d'événements par type d'événement
+     */
+    private final TableDeComptages evenements;
+
+    /**
+     * Débits lissés sur 1, 5 et 15 minutes en événements par seconde, par
+     * série de l'historique
+     */
+    private Map<String, double[]> debits = Collections.emptyMap();
+
+    /**
+     * Nombre de documents par valeur, pour chaque indicateur du catalogue
+     */
+    private Map<String, TableDeComptages> indicateurs = Collections.emptyMap();
+
+    /**
+     * Répartition des retards des événements reçus récemment, null si elle
+     * n'est pas suivie
+     */
+    private Latences latences = null;
+
+    /**
+     * Nature du nombre d'événements, null s'il est toujours compté exactement
+     */
+    private EtatDuComptage etatDuComptage = null;
+
+    /**
+     * Intervalles de confiance des regroupements par status et par type
+     * d'événement s'ils sont estimés sur un échantillon, null s'ils sont
+     * exacts
      */
-    private String tableauStatus[][];
+    private RepartitionEstimee repartitionEstimee = null;
 
     /**
-     * Tableau des événements
+     * Alertes en cours à la date de la mesure
      */
-    private String tableauEvenements[][];
+    private List<Alerte> alertes = Collections.emptyList();
+
+    /**
+     * Types d'événement dont le débit s'écarte de leur débit habituel à ce
+     * moment de la semaine
+     */
+    private List<Anomalie> anomalies = Collections.emptyList();
+
+    /**
+     * Vrai si la mesure est une mesure précédente republiée parce que le top
+     * en cours a été abandonné
+     */
+    private boolean perimee = false;
 
     /**
      * debugMode : fonctionnement du programme en mode debug (true/false).
@@ -68,88 +121,117 @@ public class ListeDeMesures implements Serializable {
      * Constructeur principal
      *
      * @param mongoDatabase connexion à la base de données
+     * @param debugMode fonctionnement du programme en mode debug
      */
     public ListeDeMesures(MongoDatabase mongoDatabase, boolean debugMode) {
-        MongoCollection<Document> collection;
-        ObjectMapper objectMapper;
-        MongoCursor<Document> cursor;
-        BasicDBObject orderBy;
-        BasicDBObject groupBy;
-        Event event;
-        DateTimeFormatter format = ISODateTimeFormat.dateTimeParser();
-        int i;
-        int j;
-        boolean boucle;
-        Document doc;
-
-        collection = mongoDatabase.getCollection("events");
-        setNombreDEvenements(collection.count());
+        this(new CollectionMongo(mongoDatabase.getCollection(COLLECTION_EVENEMENTS)), debugMode);
+    }
+
+    /**
+     * Constructeur mesurant une collection d'événements
+     *
+     * @param collection collection des événements
+     * @param debugMode fonctionnement du programme en mode debug
+     */
+    public ListeDeMesures(CollectionDEvenements collection, boolean debugMode) {
+        this(collection.compter(), rechercherDateDernierEvenement(collection),
+                grouperPar(collection, "status"), grouperPar(collection, "eventType"), debugMode);
+    }
+
+    /**
+     * Constructeur à partir de comptages déjà établis
+     *
+     * @param nombreDEvenements nombre d'événements en base à l'instant t
+     * @param dateDernierEvenement date de réception du dernier événement
+     * @param status nombre d'événements par status
+     * @param evenements nombre d'événements par type d'événement
+     * @param debugMode fonctionnement du programme en mode debug
+     */
+    public ListeDeMesures(long nombreDEvenements, DateTime dateDernierEvenement,
+            Map<String, Long> status, Map<String, Long> evenements, boolean debugMode) {
+        this(nombreDEvenements, dateDernierEvenement,
+                TableDeComptages.depuis(status), TableDeComptages.depuis(evenements), debugMode);
+    }
+
+    /**
+     * Constructeur à partir de tables de comptages
+     *
+     * @param nombreDEvenements nombre d'événements en base à l'instant t
+     * @param dateDernierEvenement date de réception du dernier événement
+     * @param status nombre d'événements par status
+     * @param evenements nombre d'événements par type d'événement
+     * @param debugMode fonctionnement du programme en mode debug
+     */
+    public ListeDeMesures(long nombreDEvenements, DateTime dateDernierEvenement,
+            TableDeComptages status, TableDeComptages evenements, boolean debugMode) {
+        setNombreDEvenements(nombreDEvenements);
         setDateDeLaMesure(new DateTime());
+        setDateDernierEvenement(dateDernierEvenement);
 
-        this.debugMode = debugMode;
-        objectMapper = new ObjectMapper();
+        ListeDeMesures.debugMode = debugMode;
 
-        orderBy = new BasicDBObject("sentDate", -1);
-        cursor = collection.find().sort(orderBy).iterator();
-        if (cursor.hasNext()) {
-            try {
-                event = objectMapper.readValue(cursor.next().toJson(), Event.class);
-                setDateDernierEvenement(format.parseDateTime(event.getSentDate()));
-            } catch (IOException ex) {
-                Logger.getLogger(ListeDeMesures.class.getName()).log(Level.SEVERE, null, ex);
-            }
-        }
+        this.status = status;
+        if (ListeDeMesures.debugMode) System.out.println(status);
 
-        // Requête à construire : db.events.aggregate({$group:{"_id":"$status", count: {$sum:1}}},{$sort:{count:-1}})
-        AggregateIterable<Document> outputStatus = collection.aggregate(Arrays.asList(
-                new Document("$group", new Document("_id", "$status").append("count", new Document("$sum", 1))),
-                new Document("$sort", new Document("count", -1))
-        ));
-
-        tableauStatus = new String[MAX_STATUS][2];
-        i = 0;
-        boucle = true;
-        cursor = outputStatus.iterator();
-        while (cursor.hasNext() && boucle) {
-            doc = cursor.next();
-//            System.out.println(doc.get("_id").getClass() + ", " + doc.get("count").getClass());
-            tableauStatus[i][0] = doc.get("_id").toString();
-//            tableauStatus[i][1] = doc.get("count").toString();
-            tableauStatus[i][1] = decimalFormat.format(doc.get("count"));
-            i++;
-            boucle = (i < MAX_STATUS);
-        }
-        for (j = i; j < MAX_STATUS; j++) {
-            tableauStatus[j][0] = "";
-            tableauStatus[j][1] = "";
+        this.evenements = evenements;
+        if (ListeDeMesures.debugMode) System.out.println(evenements);
+    }
+
+    /**
+     * Recherche la date de réception du dernier événement.
+     *
+     * @param collection collection des événements
+     * @return la date du dernier événement, null si la collection est vide
+     */
+    static DateTime rechercherDateDernierEvenement(CollectionDEvenements collection) {
+        return new SondeDernierEvenement(collection).rechercher();
+    }
+
+    /**
+     * Compte les événements selon la valeur d'un champ.
+     * <p>
+     * Requête à construire : db.events.aggregate({$group:{"_id":"$champ",
+     * count: {$sum:1}}},{$sort:{count:-1}})</p>
+     *
+     * @param collection collection des événements
+     * @param champ champ de regroupement
+     * @return le nombre d'événements par valeur, du plus grand au plus petit
+     */
+    static Map<String, Long> grouperPar(CollectionDEvenements collection, String champ) {
+        Map<String, Long> comptages = new LinkedHashMap<>();
+        List<Document> pipeline;
+
+        pipeline = regroupements.get(champ);
+        if (pipeline == null) {
+            pipeline = Collections.unmodifiableList(Arrays.asList(
+                    new Document("$group", new Document("_id", "$" + champ).append("count", new Document("$sum", 1))),
+                    new Document("$sort", new Document("count", -1))));
+            regroupements.putIfAbsent(champ, pipeline);
         }
-        if (this.debugMode) System.out.println(Arrays.deepToString(tableauStatus));
-
-        // Requête à construire : db.events.aggregate({$group:{"_id":"$eventType", count: {$sum:1}}},{$sort:{count:-1}})
-        AggregateIterable<Document> outputEvenements = collection.aggregate(Arrays.asList(
-                new Document("$group", new Document("_id", "$eventType").append("count", new Document("$sum", 1))),
-                new Document("$sort", new Document("count", -1))
-        ));
-
-        tableauEvenements = new String[MAX_EVENTS][2];
-        i = 0;
-        boucle = true;
-        cursor = outputEvenements.iterator();
-        while (cursor.hasNext() && boucle) {
-            doc = cursor.next();
+        for (Document doc : collection.agreger(pipeline)) {
 //            System.out.println(doc.get("_id").getClass() + ", " + doc.get("count").getClass());
-            tableauEvenements[i][0] = doc.get("_id").toString();
-//            tableauEvenements[i][1] = doc.get("count").toString();
-            tableauEvenements[i][1] = decimalFormat.format(doc.get("count"));
-            i++;
-            boucle = (i < MAX_EVENTS);
-        }
-        for (j = i; j < MAX_EVENTS; j++) {
-            tableauEvenements[j][0] = "";
-            tableauEvenements[j][1] = "";
+            comptages.put(String.valueOf(doc.get("_id")), ((Number) doc.get("count")).longValue());
         }
-        if (this.debugMode) System.out.println(Arrays.deepToString(tableauEvenements));
+        return comptages;
+    }
 
+    /**
+     * Convertit la valeur d'un champ sentDate en date.
+     *
+     * @param valeur date au format ISO 8601 ou date MongoDb
+     * @return la date convertie, null si la valeur est absente ou illisible
+     */
+    static DateTime convertirDate(Object valeur) {
+        if (valeur instanceof Date) {
+            return new DateTime(valeur);
+        } else if (valeur instanceof String) {
+            try {
+                return format.parseDateTime((String) valeur);
+            } catch (IllegalArgumentException ex) {
+                Logger.getLogger(ListeDeMesures.class.getName()).log(Level.WARNING, "Date illisible : " + valeur, ex);
+            }
+        }
+        return null;
     }
 
     /**
@@ -198,49 +280,169 @@ public class ListeDeMesures implements Serializable {
     }
 
     /**
-     * @return le tableau des status
+     * @return la durée de la mesure en millisecondes
+     */
+    public long getDureeDeLaMesure() {
+        return dureeDeLaMesure;
+    }
+
+    /**
+     * @param dureeDeLaMesure définit la durée de la mesure en millisecondes
+     */
+    public void setDureeDeLaMesure(long dureeDeLaMesure) {
+        this.dureeDeLaMesure = dureeDeLaMesure;
+    }
+
+    /**
+     * @return le nombre d'événements par status
+     */
+    public TableDeComptages getStatus() {
+        return status;
+    }
+
+    /**
+     * @return le nombre d'événements par type d'événement
+     */
+    public TableDeComptages getEvenements() {
+        return evenements;
+    }
+
+    /**
+     * @param serie nom de la série (voir HistoriqueDeMesures)
+     * @return les débits lissés sur 1, 5 et 15 minutes en événements par
+     * seconde, null s'ils ne sont pas encore connus
+     */
+    public double[] getDebit(String serie) {
+        return debits.get(serie);
+    }
+
+    /**
+     * @param debits définit les débits lissés par série
+     */
+    public void setDebits(Map<String, double[]> debits) {
+        this.debits = debits;
+    }
+
+    /**
+     * @return le nombre de documents par valeur, pour chaque indicateur du
+     * catalogue
      */
-    public String[][] getTableauStatus() {
-        return tableauStatus;
+    public Map<String, TableDeComptages> getIndicateurs() {
+        return indicateurs;
     }
 
     /**
-     * @param i indice de rangée
-     * @param j indice de colonne
-     * @return un élement du tableau des status
+     * @param indicateurs définit les mesures des indicateurs du catalogue
      */
-    public String getTableauStatus(int i, int j) {
-        return tableauStatus[i][j];
+    public void setIndicateurs(Map<String, TableDeComptages> indicateurs) {
+        this.indicateurs = indicateurs;
     }
 
     /**
-     * @param tableauStatus définit le tableau des status
+     * @return la répartition des retards des événements reçus récemment, null
+     * si elle n'est pas suivie
      */
-    public void setTableauStatus(String[][] tableauStatus) {
-        this.tableauStatus = tableauStatus;
+    public Latences getLatences() {
+        return latences;
     }
 
     /**
-     * @return le tableau des événements
+     * @param latences définit la répartition des retards des événements reçus
+     * récemment
      */
-    public String[][] getTableauEvenements() {
-        return tableauEvenements;
+    public void setLatences(Latences latences) {
+        this.latences = latences;
     }
 
     /**
-     * @param tableauEvenements définit le tableau des événements
+     * @return la nature du nombre d'événements, exact ou estimé, null s'il
+     * est toujours compté exactement
      */
-    public void setTableauEvenements(String[][] tableauEvenements) {
-        this.tableauEvenements = tableauEvenements;
+    public EtatDuComptage getEtatDuComptage() {
+        return etatDuComptage;
     }
 
     /**
-     * @param i indice de rangée
-     * @param j indice de colonne
-     * @return un élément du tableau des événéments
+     * @param etatDuComptage définit la nature du nombre d'événements
      */
-    public String getTableauEvenements(int i, int j) {
-        return tableauEvenements[i][j];
+    public void setEtatDuComptage(EtatDuComptage etatDuComptage) {
+        this.etatDuComptage = etatDuComptage;
+    }
+
+    /**
+     * @return les intervalles de confiance des regroupements par status et
+     * par type d'événement s'ils sont estimés sur un échantillon, null s'ils
+     * sont exacts
+     */
+    public RepartitionEstimee getRepartitionEstimee() {
+        return repartitionEstimee;
+    }
+
+    /**
+     * @param repartitionEstimee définit les intervalles de confiance des
+     * regroupements estimés sur un échantillon
+     */
+    public void setRepartitionEstimee(RepartitionEstimee repartitionEstimee) {
+        this.repartitionEstimee = repartitionEstimee;
+    }
+
+    /**
+     * @return les alertes en cours à la date de la mesure
+     */
+    public List<Alerte> getAlertes() {
+        return alertes;
+    }
+
+    /**
+     * @param alertes définit les alertes en cours à la date de la mesure
+     */
+    public void setAlertes(List<Alerte> alertes) {
+        this.alertes = alertes;
+    }
+
+    /**
+     * @return les types d'événement dont le débit s'écarte de leur débit
+     * habituel à ce moment de la semaine
+     */
+    public List<Anomalie> getAnomalies() {
+        return anomalies;
+    }
+
+    /**
+     * @param anomalies définit les types d'événement dont le débit s'écarte
+     * de leur débit habituel
+     */
+    public void setAnomalies(List<Anomalie> anomalies) {
+        this.anomalies = anomalies;
+    }
+
+    /**
+     * @return vrai si la mesure est une mesure précédente republiée parce que
+     * le top en cours a été abandonné
+     */
+    public boolean isPerimee() {
+        return perimee;
+    }
+
+    /**
+     * @return une copie de la mesure marquée périmée, la mesure elle-même
+     * n'étant pas modifiée
+     */
+    public ListeDeMesures copierPerimee() {
+        ListeDeMesures copie;
+
+        copie = new ListeDeMesures(nombreDEvenements, dateDernierEvenement, status, evenements, debugMode);
+        copie.setDateDeLaMesure(getDateDeLaMesure());
+        copie.setDureeDeLaMesure(dureeDeLaMesure);
+        copie.setDebits(debits);
+        copie.setIndicateurs(indicateurs);
+        copie.setLatences(latences);
+        copie.setEtatDuComptage(etatDuComptage);
+        copie.setRepartitionEstimee(repartitionEstimee);
+        copie.setAlertes(alertes);
+        copie.setAnomalies(anomalies);
+        copie.perimee = true;
+        return copie;
     }
 
     /**
@@ -254,8 +456,8 @@ public class ListeDeMesures implements Serializable {
                 + "nombreDEvenements:" + getNombreDEvenements()
                 + ", dateDeLaMesure:" + getDateDeLaMesure()
                 + ", dateDernierEvenement:" + getDateDernierEvenement()
-                + ", tableauStatus:" + Arrays.toString(getTableauStatus())
-                + ", tableauEvenements:" + Arrays.toString(getTableauEvenements())
+                + ", status:" + getStatus()
+                + ", evenements:" + getEvenements()
                 + "}";
     }
 
@@ -0,0 +1,165 @@
+package eventsmonitor;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Classe décrivant le modèle d'un tableau de comptages : une rangée par
+ * valeur (status ou type d'événement) avec sa quantité et ses débits lissés
+ * sur 1, 5 et 15 minutes. Quand les quantités sont estimées sur un
+ * échantillon, une colonne donne l'intervalle de confiance de chacune, dont
+ * les bornes sont formatées par RenduIntervalle.
+ * <p>
+ * Le contenu est remplacé d'un bloc à chaque mesure et un seul événement est
+ * émis vers le tableau. Le modèle doit être manipulé dans le thread de
+ * l'interface graphique (EDT).</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.03
+ */
+public class ModeleDeComptages extends AbstractTableModel {
+
+    /**
+     * Titre des colonnes de débits
+     */
+    private static final String[] TITRES_DEBITS = {"1 min (/s)", "5 min (/s)", "15 min (/s)"};
+
+    /**
+     * Titre de la première colonne
+     */
+    private final String titreCle;
+
+    /**
+     * Valeur de chaque rangée
+     */
+    private String[] cles = new String[0];
+
+    /**
+     * Quantité de chaque rangée
+     */
+    private long[] quantites = new long[0];
+
+    /**
+     * Débits lissés de chaque rangée, null si inconnus
+     */
+    private double[][] debits = new double[0][];
+
+    /**
+     * Bornes basse et haute de l'intervalle de confiance à 95 % de chaque
+     * rangée, null si les quantités sont exactes
+     */
+    private long[][] intervalles = null;
+
+    /**
+     * Constructeur principal
+     *
+     * @param titreCle titre de la première colonne
+     */
+    public ModeleDeComptages(String titreCle) {
+        this.titreCle = titreCle;
+    }
+
+    /**
+     * Remplace tout le contenu du modèle.
+     *
+     * @param cles valeur de chaque rangée
+     * @param quantites quantité de chaque rangée
+     * @param debits débits lissés de chaque rangée, null si inconnus
+     */
+    public void remplacer(String[] cles, long[] quantites, double[][] debits) {
+        remplacer(cles, quantites, debits, null);
+    }
+
+    /**
+     * Remplace tout le contenu du modèle, avec des quantités estimées ou non.
+     *
+     * @param cles valeur de chaque rangée
+     * @param quantites quantité de chaque rangée
+     * @param debits débits lissés de chaque rangée, null si inconnus
+     * @param intervalles bornes basse et haute de l'intervalle de confiance à
+     * 95 % de chaque rangée, null si les quantités sont exactes
+     */
+    public void remplacer(String[] cles, long[] quantites, double[][] debits, long[][] intervalles) {
+        int nombreAvant = this.cles.length;
+        boolean estimeesAvant = (this.intervalles != null);
+
+        this.cles = cles;
+        this.quantites = quantites;
+        this.debits = debits;
+        this.intervalles = intervalles;
+        if (estimeesAvant != (intervalles != null)) {
+            fireTableStructureChanged();
+        } else if (cles.length == nombreAvant) {
+            if (nombreAvant > 0) {
+                fireTableRowsUpdated(0, nombreAvant - 1);
+            }
+        } else {
+            fireTableDataChanged();
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return cles.length;
+    }
+
+    /**
+     * @return le numéro de la première colonne de débits
+     */
+    private int premiereColonneDeDebit() {
+        return (intervalles == null) ? 2 : 3;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return premiereColonneDeDebit() + TITRES_DEBITS.length;
+    }
+
+    @Override
+    public String getColumnName(int colonne) {
+        if (colonne == 0) {
+            return titreCle;
+        } else if (colonne == 1) {
+            return (intervalles == null) ? "Quantité" : "Quantité estimée";
+        } else if (colonne < premiereColonneDeDebit()) {
+            return "Intervalle à 95 %";
+        }
+        return TITRES_DEBITS[colonne - premiereColonneDeDebit()];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int colonne) {
+        if (colonne == 0) {
+            return String.class;
+        } else if (colonne == 1) {
+            return Long.class;
+        } else if (colonne < premiereColonneDeDebit()) {
+            return long[].class;
+        }
+        return Double.class;
+    }
+
+    @Override
+    public Object getValueAt(int rangee, int colonne) {
+        if (colonne == 0) {
+            return cles[rangee];
+        } else if (colonne == 1) {
+            return quantites[rangee];
+        } else if (colonne < premiereColonneDeDebit()) {
+            return intervalles[rangee];
+        }
+        return (debits[rangee] == null) ? null : debits[rangee][colonne - premiereColonneDeDebit()];
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "ModeleDeComptages:{"
+                + "titreCle:" + titreCle
+                + ", nombreDeRangees:" + cles.length
+                + "}";
+    }
+}
@@ -0,0 +1,103 @@
+package eventsmonitor;
+
+import java.util.Map;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Classe décrivant le modèle du tableau de diagnostics : une rangée par étape
+ * chronométrée avec le nombre de passages et la répartition des durées en
+ * millisecondes sur les dernières minutes. Le modèle doit être manipulé dans
+ * le thread de l'interface graphique (EDT).
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class ModeleDeDiagnostics extends AbstractTableModel {
+
+    /**
+     * Titre des colonnes
+     */
+    private static final String[] TITRES = {"Etape", "Nombre", "Médiane (ms)", "p95 (ms)", "p99 (ms)", "Max (ms)"};
+
+    /**
+     * Nom de chaque étape
+     */
+    private String[] etapes = new String[0];
+
+    /**
+     * Répartition des durées en microsecondes de chaque étape
+     */
+    private Latences[] durees = new Latences[0];
+
+    /**
+     * Remplace tout le contenu du modèle.
+     *
+     * @param resume répartition des durées en microsecondes par étape
+     */
+    public void remplacer(Map<String, Latences> resume) {
+        int nombreAvant = etapes.length;
+
+        etapes = resume.keySet().toArray(new String[resume.size()]);
+        durees = resume.values().toArray(new Latences[resume.size()]);
+        if (etapes.length == nombreAvant) {
+            if (nombreAvant > 0) {
+                fireTableRowsUpdated(0, nombreAvant - 1);
+            }
+        } else {
+            fireTableDataChanged();
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return etapes.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return TITRES.length;
+    }
+
+    @Override
+    public String getColumnName(int colonne) {
+        return TITRES[colonne];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int colonne) {
+        switch (colonne) {
+            case 0:
+                return String.class;
+            case 1:
+                return Long.class;
+            default:
+                return Double.class;
+        }
+    }
+
+    @Override
+    public Object getValueAt(int rangee, int colonne) {
+        switch (colonne) {
+            case 0:
+                return etapes[rangee];
+            case 1:
+                return durees[rangee].getNombre();
+            case 5:
+                return durees[rangee].getMax() / 1000.0;
+            default:
+                return durees[rangee].getQuantile(colonne - 2) / 1000.0;
+        }
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "ModeleDeDiagnostics:{"
+                + "nombreDeRangees:" + etapes.length
+                + "}";
+    }
+}
@@ -0,0 +1,212 @@
+package eventsmonitor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.Document;
+
+/**
+ * Classe décrivant un moteur de mesures complétant les mesures d'un autre
+ * moteur avec les indicateurs du catalogue.
+ * <p>
+ * Les indicateurs portant sur la même collection sont calculés en un seul
+ * aller-retour : une agrégation $facet avec une facette par indicateur
+ * (MongoDb 3.4 ou supérieur). Un indicateur seul sur sa collection est
+ * calculé par une agrégation simple. Les agrégations sont construites une
+ * seule fois, à la création du moteur, et réutilisées à chaque mesure.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class MoteurCatalogue implements MoteurDeMesures {
+
+    /**
+     * Moteur faisant les mesures de la collection des événements
+     */
+    private final MoteurDeMesures moteur;
+
+    /**
+     * Agrégations à lancer, une par collection
+     */
+    private final List<Requete> requetes = new ArrayList<>();
+
+    /**
+     * debugMode : fonctionnement du programme en mode debug (true/false).
+     * Valeur par défaut : false.
+     */
+    private static boolean debugMode = false;
+
+    /**
+     * Constructeur principal
+     *
+     * @param moteur moteur faisant les mesures de la collection des événements
+     * @param indicateurs indicateurs du catalogue
+     * @param collections collections interrogées, par nom
+     * @param debugMode fonctionnement du programme en mode debug
+     */
+    public MoteurCatalogue(MoteurDeMesures moteur, List<Indicateur> indicateurs,
+            Map<String, CollectionDEvenements> collections, boolean debugMode) {
+        Map<String, List<Indicateur>> parCollection = new LinkedHashMap<>();
+        List<Indicateur> liste;
+
+        this.moteur = moteur;
+        MoteurCatalogue.debugMode = debugMode;
+
+        for (Indicateur indicateur : indicateurs) {
+            liste = parCollection.get(indicateur.getCollection());
+            if (liste == null) {
+                liste = new ArrayList<>();
+                parCollection.put(indicateur.getCollection(), liste);
+            }
+            liste.add(indicateur);
+        }
+        for (Map.Entry<String, List<Indicateur>> entree : parCollection.entrySet()) {
+            requetes.add(new Requete(collections.get(entree.getKey()), entree.getValue()));
+        }
+    }
+
+    @Override
+    public ListeDeMesures mesurer() {
+        ListeDeMesures listeDeMesures;
+        Map<String, TableDeComptages> indicateurs = new LinkedHashMap<>();
+
+        listeDeMesures = moteur.mesurer();
+        for (Requete requete : requetes) {
+            try {
+                requete.executer(indicateurs);
+            } catch (RuntimeException exception) {
+                Logger.getLogger(MoteurCatalogue.class.getName()).log(Level.WARNING,
+                        "Indicateurs " + requete.noms() + " non mesurés", exception);
+            }
+        }
+        if (debugMode) {
+            System.out.println("Indicateurs : " + indicateurs);
+        }
+        listeDeMesures.setIndicateurs(Collections.unmodifiableMap(indicateurs));
+        return listeDeMesures;
+    }
+
+    @Override
+    public void arreter() {
+        moteur.arreter();
+    }
+
+    /**
+     * @param groupes résultat d'un regroupement
+     * @return le nombre de documents par valeur
+     */
+    private static TableDeComptages versTable(List<Document> groupes) {
+        Map<String, Long> comptages = new LinkedHashMap<>();
+
+        if (groupes != null) {
+            for (Document doc : groupes) {
+                comptages.put(String.valueOf(doc.get("_id")), ((Number) doc.get("count")).longValue());
+            }
+        }
+        return TableDeComptages.depuis(comptages);
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "MoteurCatalogue:{"
+                + "moteur:" + moteur
+                + ", requetes:" + requetes
+                + "}";
+    }
+
+    /**
+     * Classe décrivant l'agrégation calculant les indicateurs d'une
+     * collection.
+     */
+    private static class Requete {
+
+        /**
+         * Collection interrogée
+         */
+        private final CollectionDEvenements collection;
+
+        /**
+         * Indicateurs calculés
+         */
+        private final List<Indicateur> indicateurs;
+
+        /**
+         * Agrégation, construite une seule fois
+         */
+        private final List<Document> pipeline;
+
+        /**
+         * Constructeur principal
+         *
+         * @param collection collection interrogée
+         * @param indicateurs indicateurs portant sur cette collection
+         */
+        private Requete(CollectionDEvenements collection, List<Indicateur> indicateurs) {
+            Document facettes;
+            int i;
+
+            this.collection = collection;
+            this.indicateurs = indicateurs;
+            if (indicateurs.size() == 1) {
+                pipeline = indicateurs.get(0).getEtapes();
+            } else {
+                facettes = new Document();
+                for (i = 0; i < indicateurs.size(); i++) {
+                    facettes.append("f" + i, indicateurs.get(i).getEtapes());
+                }
+                pipeline = Collections.singletonList(new Document("$facet", facettes));
+            }
+        }
+
+        /**
+         * Lance l'agrégation.
+         *
+         * @param resultats tables de comptages par indicateur, complétées
+         */
+        @SuppressWarnings("unchecked")
+        private void executer(Map<String, TableDeComptages> resultats) {
+            List<Document> resultat;
+            Document facettes;
+            int i;
+
+            resultat = collection.agreger(pipeline);
+            if (indicateurs.size() == 1) {
+                resultats.put(indicateurs.get(0).getNom(), versTable(resultat));
+            } else {
+                facettes = resultat.isEmpty() ? new Document() : resultat.get(0);
+                for (i = 0; i < indicateurs.size(); i++) {
+                    resultats.put(indicateurs.get(i).getNom(), versTable((List<Document>) facettes.get("f" + i)));
+                }
+            }
+        }
+
+        /**
+         * @return les noms des indicateurs calculés
+         */
+        private List<String> noms() {
+            List<String> noms = new ArrayList<>();
+
+            for (Indicateur indicateur : indicateurs) {
+                noms.add(indicateur.getNom());
+            }
+            return noms;
+        }
+
+        @Override
+        public String toString() {
+            return "Requete:{"
+                    + "indicateurs:" + noms()
+                    + ", pipeline:" + pipeline
+                    + "}";
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package eventsmonitor;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.joda.time.DateTime;
+
+/**
+ * Classe décrivant un moteur qui recalcule toutes les mesures sur l'ensemble
+ * de la collection à chaque fois.
+ * <p>
+ * Avec un exécuteur, les quatre requêtes indépendantes (nombre d'événements,
+ * dernier événement, regroupements par status et par type d'événement) sont
+ * lancées en même temps : la durée d'une mesure est celle de la requête la
+ * plus lente et non plus la somme des quatre.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.03
+ */
+public class MoteurComplet implements MoteurDeMesures {
+
+    /**
+     * Collection des événements
+     */
+    private final CollectionDEvenements collection;
+
+    /**
+     * Exécuteur des requêtes, null pour les lancer l'une après l'autre
+     */
+    private final ExecutorService executeur;
+
+    /**
+     * debugMode : fonctionnement du programme en mode debug (true/false).
+     * Valeur par défaut : false.
+     */
+    private static boolean debugMode = false;
+
+    /**
+     * Constructeur principal
+     *
+     * @param collection collection des événements
+     * @param debugMode fonctionnement du programme en mode debug
+     */
+    public MoteurComplet(CollectionDEvenements collection, boolean debugMode) {
+        this(collection, null, debugMode);
+    }
+
+    /**
+     * Constructeur lançant les requêtes en parallèle
+     *
+     * @param collection collection des événements
+     * @param executeur exécuteur des requêtes, null pour les lancer l'une
+     * après l'autre
+     * @param debugMode fonctionnement du programme en mode debug
+     */
+    public MoteurComplet(CollectionDEvenements collection, ExecutorService executeur, boolean debugMode) {
+        this.collection = collection;
+        this.executeur = executeur;
+        MoteurComplet.debugMode = debugMode;
+    }
+
+    /**
+     * Crée un exécuteur de taille bornée dont les threads n'empêchent pas
+     * l'arrêt du programme.
+     *
+     * @param nombreDeThreads nombre de requêtes lancées en même temps
+     * @return l'exécuteur, null s'il n'y a qu'un seul thread
+     */
+    public static ExecutorService creerExecuteur(int nombreDeThreads) {
+        if (nombreDeThreads <= 1) {
+            return null;
+        }
+        return Executors.newFixedThreadPool(nombreDeThreads, new ThreadFactory() {
+            private final AtomicInteger numero = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable tache) {
+                Thread thread = new Thread(tache, "Mesure-" + numero.incrementAndGet());
+
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public ListeDeMesures mesurer() {
+        Future<Long> nombreDEvenements;
+        Future<DateTime> dateDernierEvenement;
+        Future<Map<String, Long>> status;
+        Future<Map<String, Long>> evenements;
+        Future<?>[] taches;
+
+        if (executeur == null) {
+            return new ListeDeMesures(collection, debugMode);
+        }
+        nombreDEvenements = executeur.submit(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return collection.compter();
+            }
+        });
+        dateDernierEvenement = executeur.submit(new Callable<DateTime>() {
+            @Override
+            public DateTime call() {
+                return ListeDeMesures.rechercherDateDernierEvenement(collection);
+            }
+        });
+        status = executeur.submit(regroupement("status"));
+        evenements = executeur.submit(regroupement("eventType"));
+        taches = new Future<?>[]{nombreDEvenements, dateDernierEvenement, status, evenements};
+        return new ListeDeMesures(attendre(nombreDEvenements, taches), attendre(dateDernierEvenement, taches),
+                attendre(status, taches), attendre(evenements, taches), debugMode);
+    }
+
+    /**
+     * @param champ champ de regroupement
+     * @return la tâche comptant les événements selon la valeur du champ
+     */
+    private Callable<Map<String, Long>> regroupement(final String champ) {
+        return new Callable<Map<String, Long>>() {
+            @Override
+            public Map<String, Long> call() {
+                return ListeDeMesures.grouperPar(collection, champ);
+            }
+        };
+    }
+
+    /**
+     * Attend le résultat d'une requête. Une erreur de la requête est relancée
+     * telle quelle dans le thread de mesure, après avoir annulé les autres
+     * requêtes de la mesure : celles qui attendent encore un thread ne sont
+     * pas lancées et ne retardent pas la mesure suivante.
+     *
+     * @param <T> type du résultat
+     * @param resultat résultat à venir
+     * @param taches requêtes de la même mesure, à annuler en cas d'erreur
+     * @return le résultat de la requête
+     */
+    static <T> T attendre(Future<T> resultat, Future<?>... taches) {
+        Throwable cause;
+
+        try {
+            return resultat.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            resultat.cancel(true);
+            annuler(taches);
+            throw new IllegalStateException("Mesure interrompue", exception);
+        } catch (ExecutionException exception) {
+            annuler(taches);
+            cause = exception.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Annule des requêtes, en interrompant celles qui sont en cours.
+     *
+     * @param taches requêtes à annuler
+     */
+    static void annuler(Future<?>... taches) {
+        for (Future<?> tache : taches) {
+            tache.cancel(true);
+        }
+    }
+
+    @Override
+    public void arreter() {
+        if (executeur != null) {
+            executeur.shutdownNow();
+        }
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "MoteurComplet:{"
+                + "collection:" + collection
+                + ", parallele:" + (executeur != null)
+                + "}";
+    }
+}
@@ -0,0 +1,242 @@
+package eventsmonitor;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+/**
+ * Classe décrivant l'évaluation des règles d'alerte d'un serveur sur chaque
+ * mesure publiée par le contrôleur.
+ * <p>
+ * Les alertes en cours sont jointes à chaque mesure. Chaque déclenchement et
+ * chaque levée d'alerte est tracé par java.util.logging, ajouté en fin du
+ * fichier d'alertes s'il y en a un et transmis à la commande d'alerte s'il y
+ * en a une. La commande reçoit en arguments le serveur, le nom de la règle,
+ * declenchee ou levee et la description de l'alerte ; elle est lancée par un
+ * thread à part pour ne pas retarder les mesures. Une commande qui ne se
+ * termine pas dans la minute est arrêtée, pour ne pas bloquer les
+ * suivantes.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.02
+ */
+public class MoteurDAlertes {
+
+    /**
+     * Format des dates dans le fichier d'alertes
+     */
+    private static final DateTimeFormatter format = DateTimeFormat.forPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * Temps laissé à la commande d'alerte pour se terminer (en secondes)
+     */
+    private static final long DELAI_DE_COMMANDE = 60;
+
+    /**
+     * Nom du serveur surveillé
+     */
+    private final String serveur;
+
+    /**
+     * Règles évaluées sur chaque mesure
+     */
+    private final List<RegleDAlerte> regles;
+
+    /**
+     * Fichier où ajouter les déclenchements et levées d'alerte, null si aucun
+     */
+    private final File fichier;
+
+    /**
+     * Commande à lancer à chaque déclenchement et levée d'alerte, null si
+     * aucune
+     */
+    private final String commande;
+
+    /**
+     * Thread lançant la commande d'alerte, null s'il n'y a pas de commande
+     */
+    private final ExecutorService lanceur;
+
+    /**
+     * Alertes en cours par nom de règle
+     */
+    private final Map<String, Alerte> enCours = new LinkedHashMap<>();
+
+    /**
+     * Copie des alertes en cours jointe aux mesures
+     */
+    private List<Alerte> alertes = Collections.emptyList();
+
+    /**
+     * debugMode : fonctionnement du programme en mode debug (true/false).
+     * Valeur par défaut : false.
+     */
+    private static boolean debugMode = false;
+
+    /**
+     * Constructeur principal
+     *
+     * @param serveur nom du serveur surveillé
+     * @param regles règles à évaluer sur chaque mesure
+     * @param fichier fichier où ajouter les alertes, null si aucun
+     * @param commande commande à lancer à chaque alerte, null si aucune
+     * @param debugMode fonctionnement du programme en mode debug
+     */
+    public MoteurDAlertes(String serveur, List<RegleDAlerte> regles, File fichier, String commande,
+            boolean debugMode) {
+        this.serveur = serveur;
+        this.regles = new ArrayList<>(regles);
+        this.fichier = fichier;
+        this.commande = commande;
+        MoteurDAlertes.debugMode = debugMode;
+        if (commande == null) {
+            lanceur = null;
+        } else {
+            lanceur = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable tache) {
+                    Thread thread = new Thread(tache, "Alertes " + MoteurDAlertes.this.serveur);
+
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /**
+     * Evalue les règles sur une nouvelle mesure et lui joint les alertes en
+     * cours.
+     *
+     * @param mesure nouvelle mesure
+     */
+    public void evaluer(ListeDeMesures mesure) {
+        Alerte alerte;
+        double valeur;
+        int changement;
+        boolean modifiees = false;
+
+        for (RegleDAlerte regle : regles) {
+            valeur = regle.mesurer(mesure);
+            if (Double.isNaN(valeur)) {
+                continue;
+            }
+            changement = regle.evaluer(valeur);
+            if (changement > 0) {
+                alerte = new Alerte(regle.getNom(), regle.decrire(valeur), mesure.getDateDeLaMesure());
+                enCours.put(regle.getNom(), alerte);
+                signaler(alerte, true, alerte.getDescription(), mesure.getDateDeLaMesure());
+                modifiees = true;
+            } else if (changement < 0) {
+                alerte = enCours.remove(regle.getNom());
+                signaler(alerte, false, regle.decrire(valeur), mesure.getDateDeLaMesure());
+                modifiees = true;
+            }
+        }
+        if (modifiees) {
+            alertes = Collections.unmodifiableList(new ArrayList<>(enCours.values()));
+        }
+        mesure.setAlertes(alertes);
+    }
+
+    /**
+     * Trace, écrit et transmet un déclenchement ou une levée d'alerte.
+     *
+     * @param alerte alerte concernée
+     * @param declenchee vrai si l'alerte se déclenche, faux si elle est levée
+     * @param description description de l'alerte à cet instant
+     * @param date date de la mesure ayant déclenché ou levé l'alerte
+     */
+    private void signaler(Alerte alerte, boolean declenchee, String description, DateTime date) {
+        final String etat = declenchee ? "declenchee" : "levee";
+        final String[] arguments;
+
+        Logger.getLogger(MoteurDAlertes.class.getName()).log(declenchee ? Level.WARNING : Level.INFO,
+                "Alerte " + etat + " sur " + serveur + ", " + description);
+        if (fichier != null) {
+            try (Writer ecrivain = new OutputStreamWriter(new FileOutputStream(fichier, true),
+                    StandardCharsets.UTF_8)) {
+                ecrivain.write(format.print(date) + "\t" + serveur + "\t"
+                        + alerte.getNom() + "\t" + etat + "\t" + description + System.lineSeparator());
+            } catch (IOException exception) {
+                Logger.getLogger(MoteurDAlertes.class.getName()).log(Level.WARNING,
+                        "Ecriture impossible dans le fichier d'alertes " + fichier, exception);
+            }
+        }
+        if (lanceur != null) {
+            arguments = new String[]{commande, serveur, alerte.getNom(), etat, description};
+            lanceur.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Process processus = null;
+
+                    try {
+                        processus = new ProcessBuilder(arguments).inheritIO().start();
+                        if (!processus.waitFor(DELAI_DE_COMMANDE, TimeUnit.SECONDS)) {
+                            processus.destroyForcibly();
+                            Logger.getLogger(MoteurDAlertes.class.getName()).log(Level.WARNING,
+                                    "Commande d'alerte arrêtée après " + DELAI_DE_COMMANDE + " s : " + commande);
+                        }
+                    } catch (IOException exception) {
+                        Logger.getLogger(MoteurDAlertes.class.getName()).log(Level.WARNING,
+                                "Commande d'alerte impossible à lancer : " + commande, exception);
+                    } catch (InterruptedException exception) {
+                        processus.destroyForcibly();
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        if (debugMode) {
+            System.out.println("Alerte " + etat + " : " + alerte);
+        }
+    }
+
+    /**
+     * @return les alertes en cours
+     */
+    public List<Alerte> getAlertes() {
+        return alertes;
+    }
+
+    /**
+     * @return les règles évaluées sur chaque mesure
+     */
+    public List<RegleDAlerte> getRegles() {
+        return Collections.unmodifiableList(regles);
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "MoteurDAlertes:{"
+                + "serveur:" + serveur
+                + ", regles:" + regles
+                + ", fichier:" + fichier
+                + ", commande:" + commande
+                + ", alertes:" + alertes
+                + "}";
+    }
+}
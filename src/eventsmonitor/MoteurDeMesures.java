@@ -0,0 +1,20 @@
+package eventsmonitor;
+
+/**
+ * Interface décrivant un moteur produisant les listes de mesures.
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public interface MoteurDeMesures {
+
+    /**
+     * @return une nouvelle liste de mesures faites à l'instant t
+     */
+    public ListeDeMesures mesurer();
+
+    /**
+     * Libère les ressources utilisées par le moteur.
+     */
+    public void arreter();
+}
@@ -0,0 +1,242 @@
+package eventsmonitor;
+
+import java.util.Arrays;
+import java.util.List;
+import org.bson.Document;
+
+/**
+ * Classe décrivant un moteur qui n'agrège à chaque mesure que les événements
+ * arrivés depuis la mesure précédente. Il convient aux serveurs autonomes qui
+ * n'ont pas d'oplog.
+ * <p>
+ * Le moteur retient une marque haute, la plus grande valeur d'un champ
+ * croissant (_id ou sentDate) déjà comptée. A chaque mesure, un seul $group
+ * sur le couple (status, eventType) des documents au-delà de la marque met à
+ * jour les comptages. Un document inséré avec une valeur inférieure à la
+ * marque, ou modifié, ou supprimé, échappe aux comptages : une réconciliation
+ * complète est faite périodiquement pour corriger cette dérive.</p>
+ * <p>
+ * La réconciliation lit d'abord la plus grande valeur du champ de marque,
+ * puis compte jusqu'à cette valeur incluse les comptages tenus par delta
+ * d'une part et toute la collection d'autre part : la dérive est l'écart
+ * entre les deux à la même marque. Les événements arrivés pendant la
+ * réconciliation sont comptés à la mesure suivante. Les documents sans champ
+ * de marque ne sont jamais comptés.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.02
+ */
+public class MoteurDelta implements MoteurDeMesures {
+
+    /**
+     * Collection des événements
+     */
+    private final CollectionDEvenements collection;
+
+    /**
+     * Champ croissant servant de marque haute : _id ou sentDate
+     */
+    private final String champDeMarque;
+
+    /**
+     * Nombre de mesures entre deux réconciliations complètes
+     */
+    private final int periodeDeReconciliation;
+
+    /**
+     * Comptages tenus à jour
+     */
+    private final Comptages comptages = new Comptages();
+
+    /**
+     * Marque haute : plus grande valeur du champ de marque déjà comptée
+     */
+    private Object marqueHaute = null;
+
+    /**
+     * Nombre de mesures faites depuis la dernière réconciliation
+     */
+    private int mesuresDepuisReconciliation = 0;
+
+    /**
+     * Indique si une réconciliation complète doit être faite
+     */
+    private boolean aReconcilier = true;
+
+    /**
+     * Indique si les comptages ont déjà été chargés une fois
+     */
+    private boolean charge = false;
+
+    /**
+     * Dérive constatée sur le nombre d'événements lors de la dernière
+     * réconciliation
+     */
+    private long derive = 0;
+
+    /**
+     * debugMode : fonctionnement du programme en mode debug (true/false).
+     * Valeur par défaut : false.
+     */
+    private static boolean debugMode = false;
+
+    /**
+     * Constructeur principal
+     *
+     * @param collection collection des événements
+     * @param champDeMarque champ croissant servant de marque haute
+     * @param periodeDeReconciliation nombre de mesures entre deux
+     * réconciliations complètes
+     * @param debugMode fonctionnement du programme en mode debug
+     */
+    public MoteurDelta(CollectionDEvenements collection, String champDeMarque,
+            int periodeDeReconciliation, boolean debugMode) {
+        this.collection = collection;
+        this.champDeMarque = champDeMarque;
+        this.periodeDeReconciliation = periodeDeReconciliation;
+        MoteurDelta.debugMode = debugMode;
+    }
+
+    @Override
+    public synchronized ListeDeMesures mesurer() {
+        if (aReconcilier || mesuresDepuisReconciliation >= periodeDeReconciliation) {
+            reconcilier();
+        } else {
+            ajouterNouveautes();
+        }
+        mesuresDepuisReconciliation++;
+        return comptages.versListeDeMesures(debugMode);
+    }
+
+    /**
+     * Recalcule tous les comptages sur la collection jusqu'à la plus grande
+     * valeur du champ de marque, qui devient la marque haute.
+     */
+    private void reconcilier() {
+        Document dernier;
+        Object marque;
+        long nombreTenu;
+
+        dernier = collection.premier(null, new Document(champDeMarque, 1), new Document(champDeMarque, -1));
+        marque = (dernier == null) ? null : dernier.get(champDeMarque);
+        if (charge && marque != null) {
+            ajouter(filtreDeMarque(marqueHaute, marque));
+        }
+        nombreTenu = comptages.getNombreDEvenements();
+        comptages.vider();
+        marqueHaute = null;
+        if (marque != null) {
+            ajouter(filtreDeMarque(null, marque));
+        }
+        marqueHaute = marque;
+        if (charge) {
+            derive = comptages.getNombreDEvenements() - nombreTenu;
+        }
+        charge = true;
+        if (debugMode) {
+            System.out.println("Réconciliation : marqueHaute=" + marqueHaute + ", derive=" + derive);
+        }
+        aReconcilier = false;
+        mesuresDepuisReconciliation = 0;
+    }
+
+    /**
+     * Ajoute aux comptages les événements au-delà de la marque haute.
+     */
+    private void ajouterNouveautes() {
+        ajouter(filtreDeMarque(marqueHaute, null));
+        if (debugMode) {
+            System.out.println("Delta : marqueHaute=" + marqueHaute);
+        }
+    }
+
+    /**
+     * Construit le filtre des événements entre deux valeurs du champ de
+     * marque.
+     *
+     * @param depuis valeur exclue au-dessous de laquelle les événements sont
+     * ignorés, null pour partir du début
+     * @param jusqua valeur incluse au-dessus de laquelle les événements sont
+     * ignorés, null pour aller jusqu'à la fin
+     * @return le filtre
+     */
+    private Document filtreDeMarque(Object depuis, Object jusqua) {
+        Document operateurs = new Document();
+
+        if (depuis != null) {
+            operateurs.append("$gt", depuis);
+        }
+        if (jusqua != null) {
+            operateurs.append("$lte", jusqua);
+        }
+        return operateurs.isEmpty() ? new Document() : new Document(champDeMarque, operateurs);
+    }
+
+    /**
+     * Ajoute aux comptages les événements d'un filtre et avance la marque
+     * haute.
+     * <p>
+     * Requête à construire : db.events.aggregate({$match:filtre},
+     * {$group:{"_id":{status:"$status", eventType:"$eventType"}, count:
+     * {$sum:1}, marque:{$max:"$marque"}, sentDate:{$max:"$sentDate"}}})</p>
+     *
+     * @param filtre filtre des événements à ajouter
+     */
+    private void ajouter(Document filtre) {
+        List<Document> pipeline;
+        Document cle;
+        Object marque;
+
+        pipeline = Arrays.asList(
+                new Document("$match", filtre),
+                new Document("$group", new Document("_id",
+                        new Document("status", "$status").append("eventType", "$eventType"))
+                        .append("count", new Document("$sum", 1))
+                        .append("marque", new Document("$max", "$" + champDeMarque))
+                        .append("sentDate", new Document("$max", "$sentDate")))
+        );
+        for (Document doc : collection.agreger(pipeline)) {
+            cle = (Document) doc.get("_id");
+            comptages.ajouter(String.valueOf(cle.get("status")), String.valueOf(cle.get("eventType")),
+                    ((Number) doc.get("count")).longValue(), ListeDeMesures.convertirDate(doc.get("sentDate")));
+            marque = doc.get("marque");
+            if (marque != null && (marqueHaute == null || CollectionEnMemoire.comparer(marque, marqueHaute) > 0)) {
+                marqueHaute = marque;
+            }
+        }
+    }
+
+    /**
+     * Demande une réconciliation complète à la prochaine mesure.
+     */
+    public synchronized void demanderReconciliation() {
+        aReconcilier = true;
+    }
+
+    /**
+     * @return la dérive constatée sur le nombre d'événements lors de la
+     * dernière réconciliation
+     */
+    public synchronized long getDerive() {
+        return derive;
+    }
+
+    @Override
+    public void arreter() {
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public synchronized String toString() {
+        return "MoteurDelta:{"
+                + "champDeMarque:" + champDeMarque
+                + ", periodeDeReconciliation:" + periodeDeReconciliation
+                + ", marqueHaute:" + marqueHaute
+                + ", derive:" + derive
+                + "}";
+    }
+}
@@ -0,0 +1,401 @@
+package eventsmonitor;
+
+import com.mongodb.MongoCommandException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.Document;
+import org.joda.time.DateTime;
+
+/**
+ * Classe décrivant un moteur qui estime les regroupements par status et par
+ * type d'événement sur un échantillon aléatoire de la collection, pour les
+ * collections où même un regroupement indexé prend plusieurs secondes.
+ * <p>
+ * L'étape $sample (MongoDb 3.2 ou supérieur) tire l'échantillon sans lire
+ * toute la collection tant qu'il en représente moins de 5 % ; un seul
+ * regroupement sur le couple (status, type d'événement) donne les deux
+ * répartitions du même échantillon. La part de chaque valeur est appliquée au
+ * nombre total d'événements et la mesure porte les intervalles de confiance
+ * (voir RepartitionEstimee). Les regroupements exacts sont faits à la
+ * première mesure puis toutes les n mesures, et à chaque mesure si
+ * l'échantillon n'est pas assez petit devant la collection ou si le serveur
+ * ne connaît pas $sample. Les valeurs vues au dernier regroupement exact
+ * restent affichées, à zéro, quand l'échantillon ne les contient pas.</p>
+ * <p>
+ * Le nombre d'événements et la date du dernier événement sont mesurés comme
+ * par le moteur complet, en parallèle de l'échantillon.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.02
+ */
+public class MoteurEchantillon implements MoteurDeMesures {
+
+    /**
+     * Part maximum de la collection que peut représenter l'échantillon pour
+     * que $sample le tire sans lire toute la collection
+     */
+    public static final double FRACTION_MAX = 0.05;
+
+    /**
+     * Code d'erreur du serveur pour une étape d'agrégation inconnue
+     */
+    private static final int ETAPE_INCONNUE = 16436;
+
+    /**
+     * Collection des événements
+     */
+    private final CollectionDEvenements collection;
+
+    /**
+     * Exécuteur des requêtes, null pour les lancer l'une après l'autre
+     */
+    private final ExecutorService executeur;
+
+    /**
+     * Nombre d'événements tirés au hasard à chaque mesure
+     */
+    private final int tailleDEchantillon;
+
+    /**
+     * Nombre de mesures entre deux regroupements exacts
+     */
+    private final int periode;
+
+    /**
+     * Pipeline d'agrégation de l'échantillon, construit une fois pour toutes
+     */
+    private final List<Document> pipeline;
+
+    /**
+     * Nombre de mesures faites
+     */
+    private long nombreDeMesures = 0;
+
+    /**
+     * Nombre d'événements lors de la mesure précédente
+     */
+    private long nombreDEvenementsPrecedent = 0;
+
+    /**
+     * Vrai si le serveur ne connaît pas l'étape $sample
+     */
+    private boolean echantillonnageImpossible = false;
+
+    /**
+     * Status vus lors du dernier regroupement exact
+     */
+    private Set<String> statusConnus = Collections.emptySet();
+
+    /**
+     * Types d'événement vus lors du dernier regroupement exact
+     */
+    private Set<String> evenementsConnus = Collections.emptySet();
+
+    /**
+     * Date du dernier regroupement exact, null s'il n'y en a pas encore eu
+     */
+    private DateTime dateDuDernierRegroupementExact = null;
+
+    /**
+     * debugMode : fonctionnement du programme en mode debug (true/false).
+     * Valeur par défaut : false.
+     */
+    private static boolean debugMode = false;
+
+    /**
+     * Constructeur principal
+     *
+     * @param collection collection des événements
+     * @param executeur exécuteur des requêtes, null pour les lancer l'une
+     * après l'autre
+     * @param tailleDEchantillon nombre d'événements tirés au hasard à chaque
+     * mesure
+     * @param periode nombre de mesures entre deux regroupements exacts
+     * @param debugMode fonctionnement du programme en mode debug
+     */
+    public MoteurEchantillon(CollectionDEvenements collection, ExecutorService executeur,
+            int tailleDEchantillon, int periode, boolean debugMode) {
+        this.collection = collection;
+        this.executeur = executeur;
+        this.tailleDEchantillon = Math.max(1, tailleDEchantillon);
+        this.periode = Math.max(1, periode);
+        this.pipeline = construirePipeline(this.tailleDEchantillon);
+        MoteurEchantillon.debugMode = debugMode;
+    }
+
+    /**
+     * Requête à construire : db.events.aggregate({$sample:{size:n}},
+     * {$group:{"_id":{status:"$status", eventType:"$eventType"},
+     * count:{$sum:1}}})
+     *
+     * @param tailleDEchantillon nombre d'événements tirés au hasard
+     * @return le pipeline d'agrégation
+     */
+    private static List<Document> construirePipeline(int tailleDEchantillon) {
+        return Collections.unmodifiableList(Arrays.asList(
+                new Document("$sample", new Document("size", tailleDEchantillon)),
+                new Document("$group", new Document("_id",
+                        new Document("status", "$status").append("eventType", "$eventType"))
+                        .append("count", new Document("$sum", 1)))));
+    }
+
+    @Override
+    public synchronized ListeDeMesures mesurer() {
+        Future<Long> nombreDEvenements;
+        Future<DateTime> dateDernierEvenement;
+        Future<List<Document>> echantillon;
+        List<Document> groupes;
+
+        nombreDEvenements = lancer(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return collection.compter();
+            }
+        });
+        dateDernierEvenement = lancer(new Callable<DateTime>() {
+            @Override
+            public DateTime call() {
+                return ListeDeMesures.rechercherDateDernierEvenement(collection);
+            }
+        });
+        if (echantillonnageImpossible || nombreDeMesures++ % periode == 0
+                || tailleDEchantillon >= FRACTION_MAX * nombreDEvenementsPrecedent) {
+            return regrouper(nombreDEvenements, dateDernierEvenement);
+        }
+        echantillon = lancer(new Callable<List<Document>>() {
+            @Override
+            public List<Document> call() {
+                return collection.agreger(pipeline);
+            }
+        });
+        try {
+            groupes = MoteurComplet.attendre(echantillon);
+        } catch (MongoCommandException exception) {
+            if (exception.getErrorCode() != ETAPE_INCONNUE) {
+                MoteurComplet.annuler(nombreDEvenements, dateDernierEvenement);
+                throw exception;
+            }
+            Logger.getLogger(MoteurEchantillon.class.getName()).log(Level.WARNING,
+                    "Etape $sample inconnue du serveur (MongoDb 3.2 ou supérieur),"
+                    + " regroupements exacts à chaque mesure", exception);
+            echantillonnageImpossible = true;
+            return regrouper(nombreDEvenements, dateDernierEvenement);
+        } catch (RuntimeException | Error exception) {
+            MoteurComplet.annuler(nombreDEvenements, dateDernierEvenement);
+            throw exception;
+        }
+        return estimer(MoteurComplet.attendre(nombreDEvenements, dateDernierEvenement),
+                MoteurComplet.attendre(dateDernierEvenement, nombreDEvenements), groupes);
+    }
+
+    /**
+     * Fait une mesure avec les regroupements exacts et retient les valeurs
+     * vues.
+     *
+     * @param nombreDEvenements nombre d'événements à venir
+     * @param dateDernierEvenement date du dernier événement à venir
+     * @return la mesure
+     */
+    private ListeDeMesures regrouper(Future<Long> nombreDEvenements, Future<DateTime> dateDernierEvenement) {
+        Future<Map<String, Long>> status;
+        Future<Map<String, Long>> evenements;
+        Future<?>[] taches;
+        ListeDeMesures mesure;
+
+        status = lancer(regroupement("status"));
+        evenements = lancer(regroupement("eventType"));
+        taches = new Future<?>[]{nombreDEvenements, dateDernierEvenement, status, evenements};
+        mesure = new ListeDeMesures(MoteurComplet.attendre(nombreDEvenements, taches),
+                MoteurComplet.attendre(dateDernierEvenement, taches),
+                MoteurComplet.attendre(status, taches), MoteurComplet.attendre(evenements, taches), debugMode);
+        statusConnus = cles(mesure.getStatus());
+        evenementsConnus = cles(mesure.getEvenements());
+        dateDuDernierRegroupementExact = mesure.getDateDeLaMesure();
+        nombreDEvenementsPrecedent = mesure.getNombreDEvenements();
+        if (debugMode) {
+            System.out.println("Regroupements exacts : " + mesure);
+        }
+        return mesure;
+    }
+
+    /**
+     * Fait une mesure avec les regroupements estimés sur l'échantillon.
+     *
+     * @param nombreDEvenements nombre d'événements
+     * @param dateDernierEvenement date du dernier événement
+     * @param groupes nombre d'événements de l'échantillon par couple (status,
+     * type d'événement)
+     * @return la mesure
+     */
+    private ListeDeMesures estimer(long nombreDEvenements, DateTime dateDernierEvenement, List<Document> groupes) {
+        Map<String, Long> echantillonStatus = new HashMap<>();
+        Map<String, Long> echantillonEvenements = new HashMap<>();
+        TableDeComptages status;
+        TableDeComptages evenements;
+        Document cle;
+        long quantite;
+        long taille = 0;
+        long[][] bornesStatus;
+        long[][] bornesEvenements;
+        ListeDeMesures mesure;
+
+        for (Document groupe : groupes) {
+            cle = (Document) groupe.get("_id");
+            quantite = ((Number) groupe.get("count")).longValue();
+            ajouter(echantillonStatus, String.valueOf(cle.get("status")), quantite);
+            ajouter(echantillonEvenements, String.valueOf(cle.get("eventType")), quantite);
+            taille += quantite;
+        }
+        status = extrapoler(echantillonStatus, statusConnus, taille, nombreDEvenements);
+        evenements = extrapoler(echantillonEvenements, evenementsConnus, taille, nombreDEvenements);
+        bornesStatus = bornes(status, echantillonStatus, taille, nombreDEvenements);
+        bornesEvenements = bornes(evenements, echantillonEvenements, taille, nombreDEvenements);
+        mesure = new ListeDeMesures(nombreDEvenements, dateDernierEvenement, status, evenements, debugMode);
+        mesure.setRepartitionEstimee(new RepartitionEstimee((int) taille, dateDuDernierRegroupementExact,
+                bornesStatus[0], bornesStatus[1], bornesEvenements[0], bornesEvenements[1]));
+        nombreDEvenementsPrecedent = nombreDEvenements;
+        if (debugMode) {
+            System.out.println("Regroupements estimés sur " + taille + " événement(s) : "
+                    + mesure.getRepartitionEstimee());
+        }
+        return mesure;
+    }
+
+    /**
+     * @param comptages nombre d'événements par valeur, complété
+     * @param cle valeur
+     * @param quantite nombre d'événements à ajouter à la valeur
+     */
+    private static void ajouter(Map<String, Long> comptages, String cle, long quantite) {
+        Long courant = comptages.get(cle);
+
+        comptages.put(cle, (courant == null) ? quantite : courant + quantite);
+    }
+
+    /**
+     * Applique la part de chaque valeur dans l'échantillon au nombre total
+     * d'événements.
+     *
+     * @param echantillon nombre d'événements de l'échantillon par valeur
+     * @param connues valeurs vues lors du dernier regroupement exact
+     * @param taille nombre d'événements de l'échantillon
+     * @param population nombre total d'événements
+     * @return le nombre estimé d'événements par valeur
+     */
+    private static TableDeComptages extrapoler(Map<String, Long> echantillon, Set<String> connues,
+            long taille, long population) {
+        Map<String, Long> estimations = new HashMap<>();
+
+        for (Map.Entry<String, Long> valeur : echantillon.entrySet()) {
+            estimations.put(valeur.getKey(), Math.round((double) valeur.getValue() * population / taille));
+        }
+        for (String valeur : connues) {
+            if (!estimations.containsKey(valeur)) {
+                estimations.put(valeur, 0L);
+            }
+        }
+        return TableDeComptages.depuis(estimations);
+    }
+
+    /**
+     * @param comptages nombre estimé d'événements par valeur
+     * @param echantillon nombre d'événements de l'échantillon par valeur
+     * @param taille nombre d'événements de l'échantillon
+     * @param population nombre total d'événements
+     * @return les bornes basses et hautes des quantités, au rang de chaque
+     * valeur dans la table
+     */
+    private static long[][] bornes(TableDeComptages comptages, Map<String, Long> echantillon,
+            long taille, long population) {
+        long[][] bornes = new long[2][comptages.getTaille()];
+        Long observes;
+        long[] intervalle;
+        int i;
+
+        for (i = 0; i < comptages.getTaille(); i++) {
+            observes = echantillon.get(comptages.getCle(i));
+            intervalle = RepartitionEstimee.intervalle((observes == null) ? 0 : observes, taille, population);
+            bornes[0][i] = intervalle[0];
+            bornes[1][i] = intervalle[1];
+        }
+        return bornes;
+    }
+
+    /**
+     * @param comptages table de comptages
+     * @return les valeurs de la table
+     */
+    private static Set<String> cles(TableDeComptages comptages) {
+        Set<String> cles = new HashSet<>();
+        int i;
+
+        for (i = 0; i < comptages.getTaille(); i++) {
+            cles.add(comptages.getCle(i));
+        }
+        return cles;
+    }
+
+    /**
+     * @param champ champ de regroupement
+     * @return la tâche comptant les événements selon la valeur du champ
+     */
+    private Callable<Map<String, Long>> regroupement(final String champ) {
+        return new Callable<Map<String, Long>>() {
+            @Override
+            public Map<String, Long> call() {
+                return ListeDeMesures.grouperPar(collection, champ);
+            }
+        };
+    }
+
+    /**
+     * Lance une requête sur l'exécuteur, ou tout de suite s'il n'y en a pas.
+     *
+     * @param <T> type du résultat
+     * @param tache requête à lancer
+     * @return le résultat à venir
+     */
+    private <T> Future<T> lancer(Callable<T> tache) {
+        FutureTask<T> resultat;
+
+        if (executeur != null) {
+            return executeur.submit(tache);
+        }
+        resultat = new FutureTask<>(tache);
+        resultat.run();
+        return resultat;
+    }
+
+    @Override
+    public void arreter() {
+        if (executeur != null) {
+            executeur.shutdownNow();
+        }
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "MoteurEchantillon:{"
+                + "collection:" + collection
+                + ", tailleDEchantillon:" + tailleDEchantillon
+                + ", periode:" + periode
+                + ", parallele:" + (executeur != null)
+                + "}";
+    }
+}
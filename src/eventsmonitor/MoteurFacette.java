@@ -0,0 +1,131 @@
+package eventsmonitor;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.bson.Document;
+import org.joda.time.DateTime;
+
+/**
+ * Classe décrivant un moteur qui fait toutes les mesures en un seul aller-retour
+ * avec le serveur grâce à l'étape $facet (MongoDb 3.4 ou supérieur) : une seule
+ * lecture de la collection fournit le nombre total, la date du dernier
+ * événement et les regroupements par status et par type d'événement.
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class MoteurFacette implements MoteurDeMesures {
+
+    /**
+     * Collection des événements
+     */
+    private final CollectionDEvenements collection;
+
+    /**
+     * Pipeline d'agrégation, construit une fois pour toutes
+     */
+    private final List<Document> pipeline;
+
+    /**
+     * debugMode : fonctionnement du programme en mode debug (true/false).
+     * Valeur par défaut : false.
+     */
+    private static boolean debugMode = false;
+
+    /**
+     * Constructeur principal
+     *
+     * @param collection collection des événements
+     * @param debugMode fonctionnement du programme en mode debug
+     */
+    public MoteurFacette(CollectionDEvenements collection, boolean debugMode) {
+        this.collection = collection;
+        this.pipeline = construirePipeline();
+        MoteurFacette.debugMode = debugMode;
+    }
+
+    /**
+     * Requête à construire : db.events.aggregate({$facet:{
+     * total:[{$group:{"_id":null, count:{$sum:1}, sentDate:{$max:"$sentDate"}}}],
+     * status:[{$group:{"_id":"$status", count:{$sum:1}}},{$sort:{count:-1}}],
+     * evenements:[{$group:{"_id":"$eventType", count:{$sum:1}}},{$sort:{count:-1}}]}})
+     *
+     * @return le pipeline d'agrégation
+     */
+    private static List<Document> construirePipeline() {
+        return Arrays.asList(new Document("$facet", new Document()
+                .append("total", Arrays.asList(
+                        new Document("$group", new Document("_id", null)
+                                .append("count", new Document("$sum", 1))
+                                .append("sentDate", new Document("$max", "$sentDate")))))
+                .append("status", regroupement("status"))
+                .append("evenements", regroupement("eventType"))));
+    }
+
+    /**
+     * @param champ champ de regroupement
+     * @return les étapes comptant les événements selon la valeur du champ
+     */
+    private static List<Document> regroupement(String champ) {
+        return Arrays.asList(
+                new Document("$group", new Document("_id", "$" + champ).append("count", new Document("$sum", 1))),
+                new Document("$sort", new Document("count", -1)));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ListeDeMesures mesurer() {
+        List<Document> resultat;
+        Document facettes;
+        List<Document> total;
+        long nombreDEvenements = 0;
+        DateTime dateDernierEvenement = null;
+
+        resultat = collection.agreger(pipeline);
+        facettes = resultat.isEmpty() ? new Document() : resultat.get(0);
+        if (debugMode) {
+            System.out.println("Facettes : " + facettes);
+        }
+        total = (List<Document>) facettes.get("total");
+        if (total != null && !total.isEmpty()) {
+            nombreDEvenements = ((Number) total.get(0).get("count")).longValue();
+            dateDernierEvenement = ListeDeMesures.convertirDate(total.get(0).get("sentDate"));
+        }
+        return new ListeDeMesures(nombreDEvenements, dateDernierEvenement,
+                versComptages((List<Document>) facettes.get("status")),
+                versComptages((List<Document>) facettes.get("evenements")), debugMode);
+    }
+
+    /**
+     * @param groupes résultat d'un regroupement
+     * @return le nombre d'événements par valeur
+     */
+    private static Map<String, Long> versComptages(List<Document> groupes) {
+        Map<String, Long> comptages = new LinkedHashMap<>();
+
+        if (groupes != null) {
+            for (Document doc : groupes) {
+                comptages.put(String.valueOf(doc.get("_id")), ((Number) doc.get("count")).longValue());
+            }
+        }
+        return comptages;
+    }
+
+    @Override
+    public void arreter() {
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "MoteurFacette:{"
+                + "collection:" + collection
+                + "}";
+    }
+}
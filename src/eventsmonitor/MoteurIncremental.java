@@ -0,0 +1,199 @@
+package eventsmonitor;
+
+import org.bson.Document;
+
+/**
+ * Classe décrivant un moteur qui charge les comptages une seule fois puis les
+ * tient à jour à partir d'une source de changements (oplog MongoDb, collection
+ * en mémoire).
+ * <p>
+ * Les comptages sont rechargés entièrement au démarrage et à chaque fois que
+ * la source signale un changement qu'elle ne sait pas suivre. La position de
+ * la source est relevée au début du rechargement : les insertions reçues
+ * ensuite mais faites avant cette position sont déjà dans les comptages et
+ * sont ignorées. Seul un document inséré pendant le rechargement lui-même
+ * peut être compté deux fois jusqu'au rechargement suivant.</p>
+ * <p>
+ * Les mises à jour et suppressions ne disent pas quel status ou quel type
+ * d'événement elles retirent : elles demandent un rechargement, fait au plus
+ * une fois toutes les n mesures. Entre les deux, les insertions continuent
+ * d'être comptées.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.02
+ */
+public class MoteurIncremental implements MoteurDeMesures, EcouteurDeChangements {
+
+    /**
+     * Nombre de mesures par défaut entre deux rechargements dus à des mises à
+     * jour ou des suppressions
+     */
+    public static final int PERIODE_DE_RESYNCHRONISATION = 60;
+
+    /**
+     * Collection des événements
+     */
+    private final CollectionDEvenements collection;
+
+    /**
+     * Source des changements sur la collection
+     */
+    private final SourceDeChangements source;
+
+    /**
+     * Nombre minimum de mesures entre deux rechargements dus à des mises à
+     * jour ou des suppressions
+     */
+    private final int periodeDeResynchronisation;
+
+    /**
+     * Comptages tenus à jour
+     */
+    private final Comptages comptages = new Comptages();
+
+    /**
+     * Indique si les comptages doivent être rechargés à la prochaine mesure
+     */
+    private boolean aResynchroniser = true;
+
+    /**
+     * Indique si des documents ont été modifiés ou supprimés depuis le
+     * dernier rechargement
+     */
+    private boolean documentsModifies = false;
+
+    /**
+     * Position de la source au début du dernier rechargement
+     */
+    private long positionDuChargement = Long.MIN_VALUE;
+
+    /**
+     * Nombre de mesures faites depuis le dernier rechargement
+     */
+    private long mesuresDepuisLeChargement = 0;
+
+    /**
+     * Indique si la source de changements a été démarrée
+     */
+    private boolean demarre = false;
+
+    /**
+     * Nombre de rechargements complets effectués
+     */
+    private long nombreDeResynchronisations = 0;
+
+    /**
+     * debugMode : fonctionnement du programme en mode debug (true/false).
+     * Valeur par défaut : false.
+     */
+    private static boolean debugMode = false;
+
+    /**
+     * Constructeur principal
+     *
+     * @param collection collection des événements
+     * @param source source des changements sur la collection
+     * @param periodeDeResynchronisation nombre minimum de mesures entre deux
+     * rechargements dus à des mises à jour ou des suppressions
+     * @param debugMode fonctionnement du programme en mode debug
+     */
+    public MoteurIncremental(CollectionDEvenements collection, SourceDeChangements source,
+            int periodeDeResynchronisation, boolean debugMode) {
+        this.collection = collection;
+        this.source = source;
+        this.periodeDeResynchronisation = Math.max(1, periodeDeResynchronisation);
+        MoteurIncremental.debugMode = debugMode;
+    }
+
+    /**
+     * Constructeur secondaire, avec la période de rechargement par défaut
+     *
+     * @param collection collection des événements
+     * @param source source des changements sur la collection
+     * @param debugMode fonctionnement du programme en mode debug
+     */
+    public MoteurIncremental(CollectionDEvenements collection, SourceDeChangements source, boolean debugMode) {
+        this(collection, source, PERIODE_DE_RESYNCHRONISATION, debugMode);
+    }
+
+    @Override
+    public synchronized ListeDeMesures mesurer() {
+        if (!demarre) {
+            demarre = true;
+            source.demarrer(this);
+        }
+        mesuresDepuisLeChargement++;
+        if (aResynchroniser || (documentsModifies && mesuresDepuisLeChargement >= periodeDeResynchronisation)) {
+            charger();
+        }
+        return comptages.versListeDeMesures(debugMode);
+    }
+
+    /**
+     * Recharge tous les comptages depuis la collection. Si le rechargement
+     * échoue, il est refait à la mesure suivante.
+     */
+    private void charger() {
+        aResynchroniser = true;
+        nombreDeResynchronisations++;
+        if (debugMode) {
+            System.out.println("Rechargement no " + nombreDeResynchronisations + " des comptages");
+        }
+        positionDuChargement = source.position();
+        documentsModifies = false;
+        comptages.charger(collection);
+        mesuresDepuisLeChargement = 0;
+        aResynchroniser = false;
+    }
+
+    @Override
+    public synchronized void documentInsere(Document document, long position) {
+        if (aResynchroniser || position <= positionDuChargement) {
+            return;
+        }
+        comptages.ajouter(String.valueOf(document.get("status")), String.valueOf(document.get("eventType")),
+                1L, ListeDeMesures.convertirDate(document.get("sentDate")));
+    }
+
+    @Override
+    public synchronized void documentModifie(long position) {
+        if (position > positionDuChargement) {
+            documentsModifies = true;
+        }
+    }
+
+    @Override
+    public synchronized void resynchronisationNecessaire() {
+        aResynchroniser = true;
+    }
+
+    @Override
+    public synchronized void arreter() {
+        if (demarre) {
+            source.arreter();
+            demarre = false;
+        }
+    }
+
+    /**
+     * @return le nombre de rechargements complets effectués
+     */
+    public synchronized long getNombreDeResynchronisations() {
+        return nombreDeResynchronisations;
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public synchronized String toString() {
+        return "MoteurIncremental:{"
+                + "source:" + source
+                + ", nombreDEvenements:" + comptages.getNombreDEvenements()
+                + ", nombreDeResynchronisations:" + nombreDeResynchronisations
+                + ", documentsModifies:" + documentsModifies
+                + "}";
+    }
+}
@@ -0,0 +1,345 @@
+package eventsmonitor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Classe décrivant l'ordonnanceur des mesures.
+ * <p>
+ * Un top est donné toutes les périodes de base (paramètre tempo). Une mesure
+ * n'est lancée que si la précédente est terminée, sinon le top est sauté. Si
+ * une mesure dure plus de la moitié de la période courante, la période est
+ * doublée (jusqu'à FACTEUR_MAX fois la période de base) ; elle est divisée par
+ * deux dès que les mesures redeviennent rapides. Ainsi le suivi n'ajoute pas
+ * de charge à un serveur déjà ralenti.</p>
+ * <p>
+ * Plusieurs ordonnanceurs peuvent partager la même horloge et le même groupe
+ * de threads de mesure. Comme chacun n'a jamais plus d'une mesure en cours,
+ * un groupe d'autant de threads que d'ordonnanceurs garantit qu'une mesure
+ * lente ne retarde pas celles des autres.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.02
+ */
+public class Ordonnanceur {
+
+    /**
+     * Facteur maximum appliqué à la période de base
+     */
+    public static final int FACTEUR_MAX = 8;
+
+    /**
+     * Tâche à exécuter à chaque top
+     */
+    private final Runnable mesure;
+
+    /**
+     * Période de base en millisecondes
+     */
+    private final long periodeDeBase;
+
+    /**
+     * Horloge donnant les tops
+     */
+    private final ScheduledExecutorService horloge;
+
+    /**
+     * Thread(s) exécutant les mesures
+     */
+    private final ExecutorService executant;
+
+    /**
+     * Indique si l'horloge et les threads de mesure sont partagés avec
+     * d'autres ordonnanceurs : ils ne sont alors pas arrêtés par celui-ci
+     */
+    private final boolean partage;
+
+    /**
+     * Tops programmés sur l'horloge, null avant le démarrage
+     */
+    private ScheduledFuture<?> tops;
+
+    /**
+     * Facteur courant appliqué à la période de base
+     */
+    private volatile int facteur = 1;
+
+    /**
+     * Instant (System.nanoTime) avant lequel aucune mesure n'est lancée
+     */
+    private volatile long prochaineMesure = 0;
+
+    /**
+     * Indique si une mesure est en cours
+     */
+    private volatile boolean enCours = false;
+
+    /**
+     * Indique si les mesures sont suspendues
+     */
+    private volatile boolean enPause = false;
+
+    /**
+     * Indique si l'ordonnanceur est arrêté
+     */
+    private volatile boolean arrete = false;
+
+    /**
+     * Durée de la dernière mesure en millisecondes
+     */
+    private volatile long dureeDerniereMesure = 0;
+
+    /**
+     * Nombre de tops sautés parce que la mesure précédente était en cours
+     */
+    private volatile long nombreDeTopsSautes = 0;
+
+    /**
+     * debugMode : fonctionnement du programme en mode debug (true/false).
+     * Valeur par défaut : false.
+     */
+    private static boolean debugMode = false;
+
+    /**
+     * Constructeur principal
+     *
+     * @param mesure tâche à exécuter à chaque top
+     * @param tempo période de base en secondes
+     * @param debugMode fonctionnement du programme en mode debug
+     */
+    public Ordonnanceur(Runnable mesure, int tempo, boolean debugMode) {
+        this(mesure, tempo, creerHorloge(), Executors.newSingleThreadExecutor(fabrique("FaireDesMesures", false)),
+                false, debugMode);
+    }
+
+    /**
+     * Constructeur utilisant une horloge et des threads de mesure partagés
+     *
+     * @param mesure tâche à exécuter à chaque top
+     * @param tempo période de base en secondes
+     * @param horloge horloge partagée, voir creerHorloge()
+     * @param executant threads de mesure partagés, voir creerExecutant()
+     * @param debugMode fonctionnement du programme en mode debug
+     */
+    public Ordonnanceur(Runnable mesure, int tempo, ScheduledExecutorService horloge, ExecutorService executant,
+            boolean debugMode) {
+        this(mesure, tempo, horloge, executant, true, debugMode);
+    }
+
+    /**
+     * @param mesure tâche à exécuter à chaque top
+     * @param tempo période de base en secondes
+     * @param horloge horloge donnant les tops
+     * @param executant thread(s) exécutant les mesures
+     * @param partage true si l'horloge et les threads sont partagés
+     * @param debugMode fonctionnement du programme en mode debug
+     */
+    private Ordonnanceur(Runnable mesure, int tempo, ScheduledExecutorService horloge, ExecutorService executant,
+            boolean partage, boolean debugMode) {
+        this.mesure = mesure;
+        this.periodeDeBase = TimeUnit.SECONDS.toMillis(tempo);
+        this.horloge = horloge;
+        this.executant = executant;
+        this.partage = partage;
+        Ordonnanceur.debugMode = debugMode;
+    }
+
+    /**
+     * @return une horloge pouvant être partagée entre ordonnanceurs
+     */
+    public static ScheduledExecutorService creerHorloge() {
+        return Executors.newSingleThreadScheduledExecutor(fabrique("Horloge", false));
+    }
+
+    /**
+     * @param nombreDeThreads nombre de threads, au moins égal au nombre
+     * d'ordonnanceurs pour qu'ils ne s'attendent pas les uns les autres
+     * @return des threads de mesure pouvant être partagés entre ordonnanceurs
+     */
+    public static ExecutorService creerExecutant(int nombreDeThreads) {
+        return Executors.newFixedThreadPool(Math.max(1, nombreDeThreads), fabrique("FaireDesMesures", true));
+    }
+
+    /**
+     * @param nom nom des threads
+     * @param numerote true pour ajouter un numéro au nom de chaque thread
+     * @return une fabrique de threads nommés
+     */
+    private static ThreadFactory fabrique(final String nom, final boolean numerote) {
+        final AtomicInteger numero = new AtomicInteger();
+
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable tache) {
+                Thread thread = new Thread(tache, numerote ? nom + "-" + numero.incrementAndGet() : nom);
+
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Démarre les mesures, la première est lancée immédiatement.
+     */
+    public void demarrer() {
+        tops = horloge.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                top();
+            }
+        }, 0, periodeDeBase, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Traite un top de l'horloge.
+     */
+    private void top() {
+        if (arrete || enPause || System.nanoTime() < prochaineMesure) {
+            return;
+        }
+        if (enCours) {
+            nombreDeTopsSautes++;
+            if (debugMode) {
+                System.out.println("Top sauté, mesure précédente en cours (" + nombreDeTopsSautes + ")");
+            }
+            return;
+        }
+        enCours = true;
+        executant.execute(new Runnable() {
+            @Override
+            public void run() {
+                executer();
+            }
+        });
+    }
+
+    /**
+     * Exécute une mesure et adapte la période à sa durée.
+     */
+    private void executer() {
+        long debut;
+        long periode;
+
+        debut = System.nanoTime();
+        try {
+            mesure.run();
+        } catch (RuntimeException exception) {
+            Logger.getLogger(Ordonnanceur.class.getName()).log(Level.SEVERE, "Mesure en échec", exception);
+        } finally {
+            dureeDerniereMesure = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - debut);
+            periode = getPeriode();
+            if (dureeDerniereMesure > periode / 2 && facteur < FACTEUR_MAX) {
+                facteur *= 2;
+            } else if (dureeDerniereMesure < periodeDeBase / 4 && facteur > 1) {
+                facteur /= 2;
+            }
+            if (debugMode && periode != getPeriode()) {
+                System.out.println("Mesure en " + dureeDerniereMesure + " ms, période : " + getPeriode() + " ms");
+            }
+            prochaineMesure = debut + TimeUnit.MILLISECONDS.toNanos(getPeriode() - periodeDeBase / 2);
+            enCours = false;
+        }
+    }
+
+    /**
+     * Suspend les mesures, la mesure en cours se termine normalement.
+     */
+    public void suspendre() {
+        enPause = true;
+    }
+
+    /**
+     * Reprend les mesures au prochain top.
+     */
+    public void reprendre() {
+        enPause = false;
+    }
+
+    /**
+     * Arrête définitivement les mesures en attendant la fin de la mesure en
+     * cours. Une horloge et des threads partagés restent à arrêter par leur
+     * propriétaire.
+     */
+    public void arreter() {
+        long limite;
+
+        arrete = true;
+        if (tops != null) {
+            tops.cancel(false);
+        }
+        if (partage) {
+            limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(periodeDeBase);
+            try {
+                while (enCours && System.nanoTime() < limite) {
+                    Thread.sleep(50);
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+        horloge.shutdownNow();
+        executant.shutdown();
+        try {
+            if (!executant.awaitTermination(periodeDeBase, TimeUnit.MILLISECONDS)) {
+                executant.shutdownNow();
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            executant.shutdownNow();
+        }
+    }
+
+    /**
+     * @return la période courante entre deux mesures en millisecondes
+     */
+    public long getPeriode() {
+        return periodeDeBase * facteur;
+    }
+
+    /**
+     * @return true si les mesures sont suspendues
+     */
+    public boolean isEnPause() {
+        return enPause;
+    }
+
+    /**
+     * @return la durée de la dernière mesure en millisecondes
+     */
+    public long getDureeDerniereMesure() {
+        return dureeDerniereMesure;
+    }
+
+    /**
+     * @return le nombre de tops sautés parce que la mesure précédente était
+     * en cours
+     */
+    public long getNombreDeTopsSautes() {
+        return nombreDeTopsSautes;
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "Ordonnanceur:{"
+                + "periodeDeBase:" + periodeDeBase
+                + ", periode:" + getPeriode()
+                + ", enPause:" + enPause
+                + ", dureeDerniereMesure:" + dureeDerniereMesure
+                + ", nombreDeTopsSautes:" + nombreDeTopsSautes
+                + "}";
+    }
+}
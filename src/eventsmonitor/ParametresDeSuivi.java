@@ -0,0 +1,856 @@
+package eventsmonitor;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import utils.ApplicationProperties;
+
+/**
+ * Classe décrivant les paramètres de suivi d'un serveur de base de données lus
+ * dans le fichier EventsMonitor.prop. Les clés sont préfixées par le type de
+ * serveur, par exemple prod.dbserver.moteur.
+ *
+ * @author Thierry Baribaud
+ * @version 0.10
+ */
+public class ParametresDeSuivi {
+
+    /**
+     * Moteur recalculant toutes les mesures à chaque fois
+     */
+    public final static String MOTEUR_COMPLET = "complet";
+
+    /**
+     * Moteur tenant les mesures à jour à partir de l'oplog
+     */
+    public final static String MOTEUR_INCREMENTAL = "incremental";
+
+    /**
+     * Moteur n'agrégeant que les événements au-delà d'une marque haute
+     */
+    public final static String MOTEUR_DELTA = "delta";
+
+    /**
+     * Moteur faisant toutes les mesures en une seule agrégation $facet
+     */
+    public final static String MOTEUR_FACETTE = "facette";
+
+    /**
+     * Moteur estimant les regroupements sur un échantillon aléatoire
+     */
+    public final static String MOTEUR_ECHANTILLON = "echantillon";
+
+    /**
+     * Nombre total de connexions par défaut, partagé entre tous les serveurs
+     * suivis
+     */
+    public final static int BUDGET_DE_CONNEXIONS = 20;
+
+    /**
+     * collection : collection des événements. Valeur par défaut : events.
+     */
+    private String collection = EventsMonitor.COLLECTION_EVENEMENTS;
+
+    /**
+     * indicateurs : indicateurs du catalogue mesurés en plus des événements.
+     * Valeur par défaut : aucun.
+     */
+    private List<Indicateur> indicateurs = new ArrayList<>();
+
+    /**
+     * moteur : moteur de mesures à utiliser. Valeur par défaut : complet.
+     */
+    private String moteur = MOTEUR_COMPLET;
+
+    /**
+     * tempo : période de base entre deux mesures en secondes. Valeur par
+     * défaut : 5.
+     */
+    private int tempo = 5;
+
+    /**
+     * capaciteHistorique : nombre de mesures gardées dans l'historique.
+     * Valeur par défaut : 17280, soit 24 heures à raison d'une mesure toutes
+     * les 5 secondes.
+     */
+    private int capaciteHistorique = Controleur.CAPACITE_HISTORIQUE;
+
+    /**
+     * nombreDeThreads : nombre de requêtes lancées en même temps pour une
+     * mesure. Valeur par défaut : 1.
+     */
+    private int nombreDeThreads = 1;
+
+    /**
+     * minutesDArrivees : nombre de minutes d'arrivées d'événements affichées.
+     * Valeur par défaut : 240, soit 4 heures.
+     */
+    private int minutesDArrivees = ArriveesParMinute.MINUTES_PAR_DEFAUT;
+
+    /**
+     * minutesDeRetards : durée en minutes de la fenêtre sur laquelle les
+     * retards des événements sont mesurés. Valeur par défaut : 5.
+     */
+    private int minutesDeRetards = SuiviDesLatences.MINUTES_PAR_DEFAUT;
+
+    /**
+     * periodeDeComptageExact : nombre de mesures entre deux comptages exacts,
+     * le nombre d'événements étant estimé entre les deux ; 0 pour toujours
+     * compter exactement. Valeur par défaut : 0.
+     */
+    private int periodeDeComptageExact = 0;
+
+    /**
+     * repertoireDuJournal : répertoire du journal des mesures, un
+     * sous-répertoire par serveur. Valeur par défaut : aucun, les mesures ne
+     * sont pas journalisées.
+     */
+    private String repertoireDuJournal = "";
+
+    /**
+     * tailleSegment : taille d'un segment du journal en Mo. Valeur par
+     * défaut : 4.
+     */
+    private int tailleSegment = 4;
+
+    /**
+     * heuresParSegment : durée en heures au bout de laquelle un nouveau
+     * segment du journal est commencé. Valeur par défaut : 168, soit une
+     * semaine.
+     */
+    private int heuresParSegment = 168;
+
+    /**
+     * regles : règles d'alerte évaluées sur chaque mesure. Valeur par
+     * défaut : aucune.
+     */
+    private List<RegleDAlerte> regles = new ArrayList<>();
+
+    /**
+     * fichierDAlertes : fichier où ajouter les déclenchements et levées
+     * d'alerte. Valeur par défaut : aucun.
+     */
+    private String fichierDAlertes = "";
+
+    /**
+     * commandeDAlerte : commande lancée à chaque déclenchement et levée
+     * d'alerte. Valeur par défaut : aucune.
+     */
+    private String commandeDAlerte = "";
+
+    /**
+     * fichierDesSaisons : fichier où enregistrer les débits habituels des
+     * types d'événement. Valeur par défaut : aucun, ils ne sont pas appris.
+     */
+    private String fichierDesSaisons = "";
+
+    /**
+     * minutesParTranche : durée en minutes d'une tranche de la semaine pour
+     * les débits habituels, diviseur de 1440. Valeur par défaut : 30.
+     */
+    private int minutesParTranche = 30;
+
+    /**
+     * seuilDAnomalie : écart au débit habituel, en écarts-types, au-delà
+     * duquel un débit est anormal. Valeur par défaut : 4.
+     */
+    private int seuilDAnomalie = 4;
+
+    /**
+     * semainesDApprentissage : nombre d'observations d'une tranche, soit de
+     * semaines, avant de comparer les débits à son débit habituel. Valeur par
+     * défaut : 3.
+     */
+    private int semainesDApprentissage = 3;
+
+    /**
+     * lecture : préférence de lecture de la connexion (primary,
+     * primaryPreferred, secondary, secondaryPreferred ou nearest). Valeur par
+     * défaut : primary.
+     */
+    private String lecture = "primary";
+
+    /**
+     * delaiDeSocket : délai maximum d'attente d'une réponse du serveur en
+     * millisecondes. Valeur par défaut : 60000.
+     */
+    private int delaiDeSocket = 60000;
+
+    /**
+     * delaiDeSelection : délai maximum de recherche d'un serveur répondant à
+     * la préférence de lecture en millisecondes. Valeur par défaut : 10000.
+     */
+    private int delaiDeSelection = 10000;
+
+    /**
+     * delaiDeRequete : délai maximum d'une requête en millisecondes, transmis
+     * au serveur (maxTimeMS). Valeur par défaut : 30000.
+     */
+    private int delaiDeRequete = 30000;
+
+    /**
+     * budgetDuTop : temps accordé à un top de mesure en millisecondes. Valeur
+     * par défaut : 0, soit la période maximum de l'ordonnanceur.
+     */
+    private int budgetDuTop = 0;
+
+    /**
+     * portHttp : port du serveur HTTP publiant les mesures en mode sans
+     * interface graphique. Valeur par défaut : 9464.
+     */
+    private int portHttp = 9464;
+
+    /**
+     * champDeMarque : champ croissant servant de marque haute au moteur delta,
+     * _id ou sentDate. Valeur par défaut : _id.
+     */
+    private String champDeMarque = "_id";
+
+    /**
+     * periodeDeReconciliation : nombre de mesures entre deux réconciliations
+     * complètes du moteur delta. Valeur par défaut : 120.
+     */
+    private int periodeDeReconciliation = 120;
+
+    /**
+     * periodeDeResynchronisation : nombre minimum de mesures entre deux
+     * rechargements du moteur incrémental dus à des mises à jour ou des
+     * suppressions. Valeur par défaut : 60.
+     */
+    private int periodeDeResynchronisation = MoteurIncremental.PERIODE_DE_RESYNCHRONISATION;
+
+    /**
+     * tailleDEchantillon : nombre d'événements tirés au hasard par le moteur
+     * echantillon pour estimer les regroupements. Valeur par défaut : 10000.
+     */
+    private int tailleDEchantillon = 10000;
+
+    /**
+     * periodeDeRepartitionExacte : nombre de mesures entre deux regroupements
+     * exacts du moteur echantillon. Valeur par défaut : 60.
+     */
+    private int periodeDeRepartitionExacte = 60;
+
+    /**
+     * Constructeur principal
+     *
+     * @param dbServerType type de serveur de base de données
+     * @param applicationProperties paramètres de l'application
+     */
+    public ParametresDeSuivi(String dbServerType, ApplicationProperties applicationProperties) {
+        String prefixe = dbServerType + ".dbserver.";
+
+        setMoteur(applicationProperties.getProperty(prefixe + "moteur", MOTEUR_COMPLET).trim());
+        setLecture(applicationProperties.getProperty(prefixe + "lecture", lecture).trim());
+        setDelaiDeSocket(lireEntier(applicationProperties, prefixe + "connexion.socket", delaiDeSocket));
+        setDelaiDeSelection(lireEntier(applicationProperties, prefixe + "connexion.selection", delaiDeSelection));
+        setDelaiDeRequete(lireEntier(applicationProperties, prefixe + "requete.delai", delaiDeRequete));
+        setBudgetDuTop(lireEntier(applicationProperties, prefixe + "top.budget", budgetDuTop));
+        setTempo(lireEntier(applicationProperties, prefixe + "tempo", tempo));
+        setCapaciteHistorique(lireEntier(applicationProperties, prefixe + "historique", capaciteHistorique));
+        setNombreDeThreads(lireEntier(applicationProperties, prefixe + "nb.thread", nombreDeThreads));
+        setMinutesDArrivees(lireEntier(applicationProperties, prefixe + "arrivees", minutesDArrivees));
+        setMinutesDeRetards(lireEntier(applicationProperties, prefixe + "retards", minutesDeRetards));
+        setPeriodeDeComptageExact(lireEntier(applicationProperties, prefixe + "comptage.exact",
+                periodeDeComptageExact, 0));
+        setRepertoireDuJournal(applicationProperties.getProperty(prefixe + "journal.repertoire",
+                repertoireDuJournal).trim());
+        setTailleSegment(lireEntier(applicationProperties, prefixe + "journal.segment", tailleSegment));
+        setHeuresParSegment(lireEntier(applicationProperties, prefixe + "journal.age", heuresParSegment));
+        setRegles(RegleDAlerte.lire(applicationProperties, prefixe));
+        setFichierDAlertes(applicationProperties.getProperty(prefixe + "alertes.fichier", fichierDAlertes).trim());
+        setCommandeDAlerte(applicationProperties.getProperty(prefixe + "alertes.commande", commandeDAlerte).trim());
+        setFichierDesSaisons(applicationProperties.getProperty(prefixe + "saisons.fichier", fichierDesSaisons).trim());
+        setMinutesParTranche(lireEntier(applicationProperties, prefixe + "saisons.tranche", minutesParTranche));
+        setSeuilDAnomalie(lireEntier(applicationProperties, prefixe + "saisons.seuil", seuilDAnomalie));
+        setSemainesDApprentissage(lireEntier(applicationProperties, prefixe + "saisons.apprentissage",
+                semainesDApprentissage));
+        setPortHttp(lireEntier(applicationProperties, prefixe + "http.port", portHttp));
+        setChampDeMarque(applicationProperties.getProperty(prefixe + "delta.marque", champDeMarque).trim());
+        setPeriodeDeReconciliation(lireEntier(applicationProperties, prefixe + "delta.reconciliation",
+                periodeDeReconciliation));
+        setPeriodeDeResynchronisation(lireEntier(applicationProperties, prefixe + "incremental.resynchronisation",
+                periodeDeResynchronisation));
+        setTailleDEchantillon(lireEntier(applicationProperties, prefixe + "echantillon.taille", tailleDEchantillon));
+        setPeriodeDeRepartitionExacte(lireEntier(applicationProperties, prefixe + "echantillon.exact",
+                periodeDeRepartitionExacte));
+        setCollection(applicationProperties.getProperty(prefixe + "collection", collection).trim());
+        setIndicateurs(lireCatalogue(applicationProperties, prefixe));
+    }
+
+    /**
+     * Lit les indicateurs du catalogue, dans le fichier désigné par le
+     * paramètre catalogue.fichier s'il est défini (clés sans préfixe), sinon
+     * dans les paramètres de l'application.
+     *
+     * @param applicationProperties paramètres de l'application
+     * @param prefixe préfixe des clés du serveur
+     * @return les indicateurs du catalogue
+     */
+    private List<Indicateur> lireCatalogue(ApplicationProperties applicationProperties, String prefixe) {
+        String fichier;
+        Properties catalogue;
+
+        fichier = applicationProperties.getProperty(prefixe + "catalogue.fichier");
+        if (fichier == null || fichier.trim().isEmpty()) {
+            return Indicateur.lire(applicationProperties, prefixe, collection);
+        }
+        catalogue = new Properties();
+        try (Reader lecteur = new InputStreamReader(new FileInputStream(fichier.trim()), StandardCharsets.UTF_8)) {
+            catalogue.load(lecteur);
+        } catch (IOException exception) {
+            throw new IllegalArgumentException("Catalogue illisible : " + fichier, exception);
+        }
+        return Indicateur.lire(catalogue, "", collection);
+    }
+
+    /**
+     * Lit le nombre total de connexions, partagé entre tous les serveurs
+     * suivis (clé connexions.max, sans préfixe).
+     *
+     * @param applicationProperties paramètres de l'application
+     * @return le nombre total de connexions
+     */
+    public static int lireBudgetDeConnexions(ApplicationProperties applicationProperties) {
+        return lireEntier(applicationProperties, "connexions.max", BUDGET_DE_CONNEXIONS);
+    }
+
+    /**
+     * Lit un paramètre entier strictement positif.
+     *
+     * @param applicationProperties paramètres de l'application
+     * @param cle clé du paramètre
+     * @param valeurParDefaut valeur si le paramètre est absent ou invalide
+     * @return la valeur du paramètre
+     */
+    private static int lireEntier(ApplicationProperties applicationProperties, String cle, int valeurParDefaut) {
+        return lireEntier(applicationProperties, cle, valeurParDefaut, 1);
+    }
+
+    /**
+     * Lit un paramètre entier au moins égal à un minimum.
+     *
+     * @param applicationProperties paramètres de l'application
+     * @param cle clé du paramètre
+     * @param valeurParDefaut valeur si le paramètre est absent ou invalide
+     * @param minimum plus petite valeur acceptée
+     * @return la valeur du paramètre
+     */
+    private static int lireEntier(ApplicationProperties applicationProperties, String cle, int valeurParDefaut,
+            int minimum) {
+        String valeur;
+        int resultat;
+
+        valeur = applicationProperties.getProperty(cle);
+        if (valeur == null) {
+            return valeurParDefaut;
+        }
+        try {
+            resultat = Integer.parseInt(valeur.trim());
+        } catch (NumberFormatException exception) {
+            resultat = minimum - 1;
+        }
+        if (resultat < minimum) {
+            System.out.println("Paramètre " + cle + " invalide : " + valeur + ", valeur par défaut : " + valeurParDefaut);
+            return valeurParDefaut;
+        }
+        return resultat;
+    }
+
+    /**
+     * @return la collection des événements
+     */
+    public String getCollection() {
+        return collection;
+    }
+
+    /**
+     * @param collection définit la collection des événements
+     */
+    public void setCollection(String collection) {
+        this.collection = collection;
+    }
+
+    /**
+     * @return les indicateurs du catalogue
+     */
+    public List<Indicateur> getIndicateurs() {
+        return indicateurs;
+    }
+
+    /**
+     * @param indicateurs définit les indicateurs du catalogue
+     */
+    public void setIndicateurs(List<Indicateur> indicateurs) {
+        this.indicateurs = indicateurs;
+    }
+
+    /**
+     * @return le nombre de minutes d'arrivées d'événements affichées
+     */
+    public int getMinutesDArrivees() {
+        return minutesDArrivees;
+    }
+
+    /**
+     * @param minutesDArrivees définit le nombre de minutes d'arrivées
+     * d'événements affichées
+     */
+    public void setMinutesDArrivees(int minutesDArrivees) {
+        this.minutesDArrivees = minutesDArrivees;
+    }
+
+    /**
+     * @return la durée en minutes de la fenêtre des retards
+     */
+    public int getMinutesDeRetards() {
+        return minutesDeRetards;
+    }
+
+    /**
+     * @param minutesDeRetards définit la durée en minutes de la fenêtre des
+     * retards
+     */
+    public void setMinutesDeRetards(int minutesDeRetards) {
+        this.minutesDeRetards = minutesDeRetards;
+    }
+
+    /**
+     * @return le nombre de mesures entre deux comptages exacts, 0 pour
+     * toujours compter exactement
+     */
+    public int getPeriodeDeComptageExact() {
+        return periodeDeComptageExact;
+    }
+
+    /**
+     * @param periodeDeComptageExact définit le nombre de mesures entre deux
+     * comptages exacts
+     */
+    public void setPeriodeDeComptageExact(int periodeDeComptageExact) {
+        this.periodeDeComptageExact = periodeDeComptageExact;
+    }
+
+    /**
+     * @return le répertoire du journal des mesures, vide si les mesures ne
+     * sont pas journalisées
+     */
+    public String getRepertoireDuJournal() {
+        return repertoireDuJournal;
+    }
+
+    /**
+     * @param repertoireDuJournal définit le répertoire du journal des mesures
+     */
+    public void setRepertoireDuJournal(String repertoireDuJournal) {
+        this.repertoireDuJournal = repertoireDuJournal;
+    }
+
+    /**
+     * @return la taille d'un segment du journal en Mo
+     */
+    public int getTailleSegment() {
+        return tailleSegment;
+    }
+
+    /**
+     * @param tailleSegment définit la taille d'un segment du journal en Mo
+     */
+    public void setTailleSegment(int tailleSegment) {
+        this.tailleSegment = tailleSegment;
+    }
+
+    /**
+     * @return la durée en heures d'un segment du journal
+     */
+    public int getHeuresParSegment() {
+        return heuresParSegment;
+    }
+
+    /**
+     * @param heuresParSegment définit la durée en heures d'un segment du
+     * journal
+     */
+    public void setHeuresParSegment(int heuresParSegment) {
+        this.heuresParSegment = heuresParSegment;
+    }
+
+    /**
+     * @return les règles d'alerte évaluées sur chaque mesure
+     */
+    public List<RegleDAlerte> getRegles() {
+        return regles;
+    }
+
+    /**
+     * @param regles définit les règles d'alerte évaluées sur chaque mesure
+     */
+    public void setRegles(List<RegleDAlerte> regles) {
+        this.regles = regles;
+    }
+
+    /**
+     * @return le fichier où ajouter les alertes, vide si aucun
+     */
+    public String getFichierDAlertes() {
+        return fichierDAlertes;
+    }
+
+    /**
+     * @param fichierDAlertes définit le fichier où ajouter les alertes
+     */
+    public void setFichierDAlertes(String fichierDAlertes) {
+        this.fichierDAlertes = fichierDAlertes;
+    }
+
+    /**
+     * @return la commande lancée à chaque alerte, vide si aucune
+     */
+    public String getCommandeDAlerte() {
+        return commandeDAlerte;
+    }
+
+    /**
+     * @param commandeDAlerte définit la commande lancée à chaque alerte
+     */
+    public void setCommandeDAlerte(String commandeDAlerte) {
+        this.commandeDAlerte = commandeDAlerte;
+    }
+
+    /**
+     * @return le fichier où enregistrer les débits habituels, vide s'ils ne
+     * sont pas appris
+     */
+    public String getFichierDesSaisons() {
+        return fichierDesSaisons;
+    }
+
+    /**
+     * @param fichierDesSaisons définit le fichier où enregistrer les débits
+     * habituels
+     */
+    public void setFichierDesSaisons(String fichierDesSaisons) {
+        this.fichierDesSaisons = fichierDesSaisons;
+    }
+
+    /**
+     * @return la durée en minutes d'une tranche de la semaine
+     */
+    public int getMinutesParTranche() {
+        return minutesParTranche;
+    }
+
+    /**
+     * @param minutesParTranche définit la durée en minutes d'une tranche de
+     * la semaine
+     */
+    public void setMinutesParTranche(int minutesParTranche) {
+        this.minutesParTranche = minutesParTranche;
+    }
+
+    /**
+     * @return l'écart au débit habituel, en écarts-types, au-delà duquel un
+     * débit est anormal
+     */
+    public int getSeuilDAnomalie() {
+        return seuilDAnomalie;
+    }
+
+    /**
+     * @param seuilDAnomalie définit l'écart au débit habituel au-delà duquel
+     * un débit est anormal
+     */
+    public void setSeuilDAnomalie(int seuilDAnomalie) {
+        this.seuilDAnomalie = seuilDAnomalie;
+    }
+
+    /**
+     * @return le nombre de semaines d'observation d'une tranche avant de
+     * comparer les débits à son débit habituel
+     */
+    public int getSemainesDApprentissage() {
+        return semainesDApprentissage;
+    }
+
+    /**
+     * @param semainesDApprentissage définit le nombre de semaines
+     * d'observation d'une tranche avant de comparer les débits
+     */
+    public void setSemainesDApprentissage(int semainesDApprentissage) {
+        this.semainesDApprentissage = semainesDApprentissage;
+    }
+
+    /**
+     * @return la préférence de lecture de la connexion
+     */
+    public String getLecture() {
+        return lecture;
+    }
+
+    /**
+     * @param lecture définit la préférence de lecture de la connexion
+     */
+    public void setLecture(String lecture) {
+        this.lecture = lecture;
+    }
+
+    /**
+     * @return le délai maximum d'attente d'une réponse du serveur en
+     * millisecondes
+     */
+    public int getDelaiDeSocket() {
+        return delaiDeSocket;
+    }
+
+    /**
+     * @param delaiDeSocket définit le délai maximum d'attente d'une réponse du
+     * serveur en millisecondes
+     */
+    public void setDelaiDeSocket(int delaiDeSocket) {
+        this.delaiDeSocket = delaiDeSocket;
+    }
+
+    /**
+     * @return le délai maximum de recherche d'un serveur en millisecondes
+     */
+    public int getDelaiDeSelection() {
+        return delaiDeSelection;
+    }
+
+    /**
+     * @param delaiDeSelection définit le délai maximum de recherche d'un
+     * serveur en millisecondes
+     */
+    public void setDelaiDeSelection(int delaiDeSelection) {
+        this.delaiDeSelection = delaiDeSelection;
+    }
+
+    /**
+     * @return le délai maximum d'une requête en millisecondes
+     */
+    public int getDelaiDeRequete() {
+        return delaiDeRequete;
+    }
+
+    /**
+     * @param delaiDeRequete définit le délai maximum d'une requête en
+     * millisecondes
+     */
+    public void setDelaiDeRequete(int delaiDeRequete) {
+        this.delaiDeRequete = delaiDeRequete;
+    }
+
+    /**
+     * @return le temps accordé à un top de mesure en millisecondes : celui
+     * donné par le paramètre top.budget, à défaut la période maximum de
+     * l'ordonnanceur
+     */
+    public int getBudgetDuTop() {
+        return (budgetDuTop > 0) ? budgetDuTop : Ordonnanceur.FACTEUR_MAX * tempo * 1000;
+    }
+
+    /**
+     * @param budgetDuTop définit le temps accordé à un top de mesure en
+     * millisecondes, 0 pour la période maximum de l'ordonnanceur
+     */
+    public void setBudgetDuTop(int budgetDuTop) {
+        this.budgetDuTop = budgetDuTop;
+    }
+
+    /**
+     * @return le moteur de mesures à utiliser
+     */
+    public String getMoteur() {
+        return moteur;
+    }
+
+    /**
+     * @param moteur définit le moteur de mesures à utiliser
+     */
+    public void setMoteur(String moteur) {
+        this.moteur = moteur;
+    }
+
+    /**
+     * @return la période de base entre deux mesures en secondes
+     */
+    public int getTempo() {
+        return tempo;
+    }
+
+    /**
+     * @param tempo définit la période de base entre deux mesures en secondes
+     */
+    public void setTempo(int tempo) {
+        this.tempo = tempo;
+    }
+
+    /**
+     * @return le nombre de mesures gardées dans l'historique
+     */
+    public int getCapaciteHistorique() {
+        return capaciteHistorique;
+    }
+
+    /**
+     * @param capaciteHistorique définit le nombre de mesures gardées dans
+     * l'historique
+     */
+    public void setCapaciteHistorique(int capaciteHistorique) {
+        this.capaciteHistorique = capaciteHistorique;
+    }
+
+    /**
+     * @return le nombre de requêtes lancées en même temps pour une mesure
+     */
+    public int getNombreDeThreads() {
+        return nombreDeThreads;
+    }
+
+    /**
+     * @param nombreDeThreads définit le nombre de requêtes lancées en même
+     * temps pour une mesure
+     */
+    public void setNombreDeThreads(int nombreDeThreads) {
+        this.nombreDeThreads = nombreDeThreads;
+    }
+
+    /**
+     * @return le port du serveur HTTP publiant les mesures
+     */
+    public int getPortHttp() {
+        return portHttp;
+    }
+
+    /**
+     * @param portHttp définit le port du serveur HTTP publiant les mesures
+     */
+    public void setPortHttp(int portHttp) {
+        this.portHttp = portHttp;
+    }
+
+    /**
+     * @return le champ croissant servant de marque haute au moteur delta
+     */
+    public String getChampDeMarque() {
+        return champDeMarque;
+    }
+
+    /**
+     * @param champDeMarque définit le champ croissant servant de marque haute
+     * au moteur delta
+     */
+    public void setChampDeMarque(String champDeMarque) {
+        this.champDeMarque = champDeMarque;
+    }
+
+    /**
+     * @return le nombre de mesures entre deux réconciliations complètes
+     */
+    public int getPeriodeDeReconciliation() {
+        return periodeDeReconciliation;
+    }
+
+    /**
+     * @param periodeDeReconciliation définit le nombre de mesures entre deux
+     * réconciliations complètes
+     */
+    public void setPeriodeDeReconciliation(int periodeDeReconciliation) {
+        this.periodeDeReconciliation = periodeDeReconciliation;
+    }
+
+    /**
+     * @return le nombre minimum de mesures entre deux rechargements du moteur
+     * incrémental dus à des mises à jour ou des suppressions
+     */
+    public int getPeriodeDeResynchronisation() {
+        return periodeDeResynchronisation;
+    }
+
+    /**
+     * @param periodeDeResynchronisation définit le nombre minimum de mesures
+     * entre deux rechargements du moteur incrémental dus à des mises à jour
+     * ou des suppressions
+     */
+    public void setPeriodeDeResynchronisation(int periodeDeResynchronisation) {
+        this.periodeDeResynchronisation = periodeDeResynchronisation;
+    }
+
+    /**
+     * @return le nombre d'événements tirés au hasard par le moteur
+     * echantillon
+     */
+    public int getTailleDEchantillon() {
+        return tailleDEchantillon;
+    }
+
+    /**
+     * @param tailleDEchantillon définit le nombre d'événements tirés au
+     * hasard par le moteur echantillon
+     */
+    public void setTailleDEchantillon(int tailleDEchantillon) {
+        this.tailleDEchantillon = tailleDEchantillon;
+    }
+
+    /**
+     * @return le nombre de mesures entre deux regroupements exacts du moteur
+     * echantillon
+     */
+    public int getPeriodeDeRepartitionExacte() {
+        return periodeDeRepartitionExacte;
+    }
+
+    /**
+     * @param periodeDeRepartitionExacte définit le nombre de mesures entre
+     * deux regroupements exacts du moteur echantillon
+     */
+    public void setPeriodeDeRepartitionExacte(int periodeDeRepartitionExacte) {
+        this.periodeDeRepartitionExacte = periodeDeRepartitionExacte;
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "ParametresDeSuivi:{"
+                + "moteur:" + getMoteur()
+                + ", lecture:" + getLecture()
+                + ", delaiDeSocket:" + getDelaiDeSocket()
+                + ", delaiDeSelection:" + getDelaiDeSelection()
+                + ", delaiDeRequete:" + getDelaiDeRequete()
+                + ", budgetDuTop:" + getBudgetDuTop()
+                + ", tempo:" + getTempo()
+                + ", capaciteHistorique:" + getCapaciteHistorique()
+                + ", nombreDeThreads:" + getNombreDeThreads()
+                + ", minutesDArrivees:" + getMinutesDArrivees()
+                + ", minutesDeRetards:" + getMinutesDeRetards()
+                + ", periodeDeComptageExact:" + getPeriodeDeComptageExact()
+                + ", repertoireDuJournal:" + getRepertoireDuJournal()
+                + ", tailleSegment:" + getTailleSegment()
+                + ", heuresParSegment:" + getHeuresParSegment()
+                + ", regles:" + getRegles()
+                + ", fichierDAlertes:" + getFichierDAlertes()
+                + ", commandeDAlerte:" + getCommandeDAlerte()
+                + ", fichierDesSaisons:" + getFichierDesSaisons()
+                + ", minutesParTranche:" + getMinutesParTranche()
+                + ", seuilDAnomalie:" + getSeuilDAnomalie()
+                + ", semainesDApprentissage:" + getSemainesDApprentissage()
+                + ", portHttp:" + getPortHttp()
+                + ", champDeMarque:" + getChampDeMarque()
+                + ", periodeDeReconciliation:" + getPeriodeDeReconciliation()
+                + ", periodeDeResynchronisation:" + getPeriodeDeResynchronisation()
+                + ", tailleDEchantillon:" + getTailleDEchantillon()
+                + ", periodeDeRepartitionExacte:" + getPeriodeDeRepartitionExacte()
+                + ", collection:" + getCollection()
+                + ", indicateurs:" + getIndicateurs()
+                + "}";
+    }
+}
@@ -0,0 +1,471 @@
+package eventsmonitor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.joda.time.DateTime;
+
+/**
+ * Classe décrivant le débit habituel de chaque type d'événement selon le
+ * moment de la semaine, appris au fil des mesures, et signalant les débits
+ * qui s'en écartent.
+ * <p>
+ * La semaine est découpée en tranches (30 minutes par défaut). Les arrivées de
+ * chaque type d'événement sont tirées de l'écart entre deux mesures
+ * successives et cumulées sur la tranche en cours ; à la fin de la tranche,
+ * le débit moyen de la tranche met à jour la moyenne et la variance de cette
+ * tranche, lissées exponentiellement d'une semaine sur l'autre. Moyennes,
+ * variances et nombres d'observations sont rangés dans des tableaux de
+ * doubles et d'entiers, un jeu par type d'événement.</p>
+ * <p>
+ * A chaque mesure, le débit sur 5 minutes de chaque type d'événement est
+ * comparé au débit habituel de la tranche, dès que celle-ci a été observée
+ * assez de fois : il est signalé comme anormal s'il s'en écarte de plus de
+ * seuil écarts-types. L'écart-type tient compte du bruit d'un comptage sur 5
+ * minutes, pour qu'un type rare ne soit pas signalé pour un seul événement.
+ * </p>
+ * <p>
+ * Les mesures dont les regroupements sont estimés sur un échantillon sont
+ * ignorées : une estimation qui monte ou qui perd un type d'événement n'est
+ * pas une arrivée. Les arrivées sont comptées d'un regroupement exact au
+ * suivant.</p>
+ * <p>
+ * La référence est enregistrée à la fin de chaque tranche et à l'arrêt du
+ * programme, et relue au démarrage.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.02
+ */
+public class ReferenceSaisonniere {
+
+    /**
+     * Identifiant du fichier de la référence : EVMS
+     */
+    private static final int MAGIQUE = 0x45564D53;
+
+    /**
+     * Version du format du fichier
+     */
+    private static final short VERSION = 1;
+
+    /**
+     * Poids d'une nouvelle observation d'une tranche une fois la tranche
+     * observée 4 fois ; avant, chaque observation a le même poids
+     */
+    private static final double LISSAGE = 0.25;
+
+    /**
+     * Variance minimum d'un débit sur 5 minutes en (événements par minute)²,
+     * soit un événement en 5 minutes
+     */
+    private static final double VARIANCE_MINIMUM = 0.2;
+
+    /**
+     * Ecart maximum entre deux mesures en millisecondes, au-delà duquel les
+     * arrivées entre les deux ne sont pas comptées
+     */
+    private static final long ECART_MAX = 600000;
+
+    /**
+     * Nombre de minutes dans une journée
+     */
+    private static final int MINUTES_PAR_JOUR = 1440;
+
+    /**
+     * Fichier où la référence est enregistrée
+     */
+    private final File fichier;
+
+    /**
+     * Durée d'une tranche en minutes
+     */
+    private final int minutesParTranche;
+
+    /**
+     * Nombre de tranches dans une semaine
+     */
+    private final int nombreDeTranches;
+
+    /**
+     * Ecart au débit habituel, en écarts-types, au-delà duquel un débit est
+     * anormal
+     */
+    private final double seuil;
+
+    /**
+     * Nombre d'observations d'une tranche à partir duquel son débit habituel
+     * est utilisé
+     */
+    private final int observationsMinimum;
+
+    /**
+     * Référence de chaque type d'événement
+     */
+    private final Map<String, Profil> profils = new HashMap<>();
+
+    /**
+     * Tranche en cours, -1 avant la première mesure
+     */
+    private int tranche = -1;
+
+    /**
+     * Date de la mesure précédente en millisecondes
+     */
+    private long datePrecedente = 0;
+
+    /**
+     * Durée observée de la tranche en cours en millisecondes
+     */
+    private long dureeObservee = 0;
+
+    /**
+     * Numéro de la mesure en cours, pour repérer les types d'événement
+     * absents de la mesure
+     */
+    private long numero = 0;
+
+    /**
+     * debugMode : fonctionnement du programme en mode debug (true/false).
+     * Valeur par défaut : false.
+     */
+    private static boolean debugMode = false;
+
+    /**
+     * Référence d'un type d'événement
+     */
+    private static class Profil {
+
+        /**
+         * Série des débits du type d'événement (voir HistoriqueDeMesures)
+         */
+        private final String serie;
+
+        /**
+         * Débit moyen de chaque tranche en événements par minute
+         */
+        private final double[] moyennes;
+
+        /**
+         * Variance du débit de chaque tranche
+         */
+        private final double[] variances;
+
+        /**
+         * Nombre d'observations de chaque tranche
+         */
+        private final int[] observations;
+
+        /**
+         * Nombre d'événements de ce type à la mesure précédente
+         */
+        private long quantitePrecedente = 0;
+
+        /**
+         * Arrivées cumulées sur la tranche en cours
+         */
+        private long arrivees = 0;
+
+        /**
+         * Numéro de la dernière mesure où le type d'événement a été vu
+         */
+        private long numero = 0;
+
+        /**
+         * @param typeDEvenement type d'événement
+         * @param nombreDeTranches nombre de tranches dans une semaine
+         */
+        private Profil(String typeDEvenement, int nombreDeTranches) {
+            serie = HistoriqueDeMesures.serieEvenement(typeDEvenement);
+            moyennes = new double[nombreDeTranches];
+            variances = new double[nombreDeTranches];
+            observations = new int[nombreDeTranches];
+        }
+
+        /**
+         * Ajoute le débit d'une tranche terminée à sa référence.
+         *
+         * @param tranche tranche terminée
+         * @param debit débit de la tranche en événements par minute
+         */
+        private void observer(int tranche, double debit) {
+            double poids;
+            double ecart;
+
+            observations[tranche]++;
+            poids = Math.max(LISSAGE, 1.0 / observations[tranche]);
+            ecart = debit - moyennes[tranche];
+            moyennes[tranche] += poids * ecart;
+            variances[tranche] = (1 - poids) * (variances[tranche] + poids * ecart * ecart);
+        }
+    }
+
+    /**
+     * Constructeur principal. La référence est relue dans le fichier s'il
+     * existe et qu'il a été écrit avec la même durée de tranche.
+     *
+     * @param fichier fichier où la référence est enregistrée
+     * @param minutesParTranche durée d'une tranche en minutes, diviseur de
+     * 1440
+     * @param seuil écart au débit habituel, en écarts-types, au-delà duquel un
+     * débit est anormal
+     * @param observationsMinimum nombre d'observations d'une tranche à partir
+     * duquel son débit habituel est utilisé
+     * @param debugMode fonctionnement du programme en mode debug
+     */
+    public ReferenceSaisonniere(File fichier, int minutesParTranche, double seuil, int observationsMinimum,
+            boolean debugMode) {
+        if (minutesParTranche <= 0 || MINUTES_PAR_JOUR % minutesParTranche != 0) {
+            throw new IllegalArgumentException("Durée de tranche " + minutesParTranche
+                    + " min invalide, diviseur de 1440 attendu");
+        }
+        this.fichier = fichier;
+        this.minutesParTranche = minutesParTranche;
+        this.nombreDeTranches = 7 * MINUTES_PAR_JOUR / minutesParTranche;
+        this.seuil = seuil;
+        this.observationsMinimum = observationsMinimum;
+        ReferenceSaisonniere.debugMode = debugMode;
+        if (fichier.isFile()) {
+            try {
+                lire();
+            } catch (IOException exception) {
+                profils.clear();
+                Logger.getLogger(ReferenceSaisonniere.class.getName()).log(Level.WARNING,
+                        "Référence saisonnière illisible, elle est réapprise : " + fichier, exception);
+            }
+        }
+    }
+
+    /**
+     * Tient la référence à jour avec une nouvelle mesure, dont les débits ont
+     * déjà été calculés, et lui joint les débits anormaux.
+     *
+     * @param mesure nouvelle mesure
+     */
+    public synchronized void mettreAJour(ListeDeMesures mesure) {
+        TableDeComptages evenements;
+        DateTime date;
+        Profil profil;
+        List<Anomalie> anomalies = null;
+        Anomalie anomalie;
+        boolean compter;
+        long quantite;
+        int nouvelleTranche;
+        int i;
+
+        if (mesure.getRepartitionEstimee() != null) {
+            mesure.setAnomalies(Collections.<Anomalie>emptyList());
+            return;
+        }
+        date = mesure.getDateDeLaMesure();
+        nouvelleTranche = (date.getDayOfWeek() - 1) * (MINUTES_PAR_JOUR / minutesParTranche)
+                + date.getMinuteOfDay() / minutesParTranche;
+        if (tranche >= 0 && nouvelleTranche != tranche) {
+            clore();
+        }
+        compter = tranche >= 0 && date.getMillis() > datePrecedente
+                && date.getMillis() - datePrecedente <= ECART_MAX;
+        if (compter) {
+            dureeObservee += date.getMillis() - datePrecedente;
+        }
+        tranche = nouvelleTranche;
+        datePrecedente = date.getMillis();
+
+        numero++;
+        evenements = mesure.getEvenements();
+        for (i = 0; i < evenements.getTaille(); i++) {
+            profil = profils.get(evenements.getCle(i));
+            quantite = evenements.getQuantite(i);
+            if (profil == null) {
+                profil = new Profil(evenements.getCle(i), nombreDeTranches);
+                profils.put(evenements.getCle(i), profil);
+            } else if (compter && quantite > profil.quantitePrecedente) {
+                profil.arrivees += quantite - profil.quantitePrecedente;
+            }
+            profil.quantitePrecedente = quantite;
+            profil.numero = numero;
+            anomalie = comparer(evenements.getCle(i), profil, mesure.getDebit(profil.serie));
+            if (anomalie != null) {
+                if (anomalies == null) {
+                    anomalies = new ArrayList<>();
+                }
+                anomalies.add(anomalie);
+            }
+        }
+        for (Profil absent : profils.values()) {
+            if (absent.numero != numero) {
+                absent.quantitePrecedente = 0;
+            }
+        }
+        mesure.setAnomalies((anomalies == null) ? Collections.<Anomalie>emptyList() : anomalies);
+    }
+
+    /**
+     * Compare le débit sur 5 minutes d'un type d'événement à son débit
+     * habituel dans la tranche en cours.
+     *
+     * @param typeDEvenement type d'événement
+     * @param profil référence du type d'événement
+     * @param debits débits du type d'événement en événements par seconde,
+     * null s'ils ne sont pas encore connus
+     * @return l'anomalie, null si le débit est normal ou si la tranche n'a pas
+     * été assez observée
+     */
+    private Anomalie comparer(String typeDEvenement, Profil profil, double[] debits) {
+        double debit;
+        double attendu;
+        double score;
+
+        if (debits == null || profil.observations[tranche] < observationsMinimum) {
+            return null;
+        }
+        debit = debits[1] * 60;
+        attendu = profil.moyennes[tranche];
+        score = (debit - attendu) / Math.sqrt(profil.variances[tranche] + Math.max(VARIANCE_MINIMUM, attendu / 5));
+        return (Math.abs(score) > seuil) ? new Anomalie(typeDEvenement, debit, attendu, score) : null;
+    }
+
+    /**
+     * Termine la tranche en cours : son débit moyen est ajouté à la référence
+     * de chaque type d'événement si elle a été observée au moins à moitié,
+     * puis la référence est enregistrée.
+     */
+    private void clore() {
+        double minutes;
+
+        minutes = dureeObservee / 60000.0;
+        if (2 * minutes >= minutesParTranche) {
+            for (Profil profil : profils.values()) {
+                profil.observer(tranche, profil.arrivees / minutes);
+            }
+            try {
+                enregistrer();
+            } catch (IOException exception) {
+                Logger.getLogger(ReferenceSaisonniere.class.getName()).log(Level.WARNING,
+                        "Enregistrement impossible de la référence saisonnière dans " + fichier, exception);
+            }
+        }
+        for (Profil profil : profils.values()) {
+            profil.arrivees = 0;
+        }
+        dureeObservee = 0;
+    }
+
+    /**
+     * Enregistre la référence dans son fichier, en remplaçant celui-ci d'un
+     * seul coup pour ne jamais laisser un fichier à moitié écrit.
+     *
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public synchronized void enregistrer() throws IOException {
+        File provisoire = new File(fichier.getPath() + ".tmp");
+        int i;
+
+        if (fichier.getAbsoluteFile().getParentFile() != null) {
+            fichier.getAbsoluteFile().getParentFile().mkdirs();
+        }
+        try (DataOutputStream sortie = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(provisoire)))) {
+            sortie.writeInt(MAGIQUE);
+            sortie.writeShort(VERSION);
+            sortie.writeInt(minutesParTranche);
+            sortie.writeInt(profils.size());
+            for (Map.Entry<String, Profil> profil : profils.entrySet()) {
+                sortie.writeUTF(profil.getKey());
+                for (i = 0; i < nombreDeTranches; i++) {
+                    sortie.writeInt(profil.getValue().observations[i]);
+                    sortie.writeDouble(profil.getValue().moyennes[i]);
+                    sortie.writeDouble(profil.getValue().variances[i]);
+                }
+            }
+        }
+        Files.move(provisoire.toPath(), fichier.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        if (debugMode) {
+            System.out.println("Référence saisonnière enregistrée dans " + fichier + ", "
+                    + profils.size() + " type(s) d'événement");
+        }
+    }
+
+    /**
+     * Relit la référence dans son fichier.
+     *
+     * @throws IOException si le fichier est illisible ou écrit avec une autre
+     * durée de tranche
+     */
+    private void lire() throws IOException {
+        Profil profil;
+        String typeDEvenement;
+        int nombreDeProfils;
+        int i;
+
+        try (DataInputStream entree = new DataInputStream(new BufferedInputStream(new FileInputStream(fichier)))) {
+            if (entree.readInt() != MAGIQUE || entree.readShort() != VERSION) {
+                throw new IOException("Fichier de référence saisonnière inconnu");
+            }
+            if (entree.readInt() != minutesParTranche) {
+                throw new IOException("Durée de tranche différente de " + minutesParTranche + " min");
+            }
+            nombreDeProfils = entree.readInt();
+            while (nombreDeProfils-- > 0) {
+                typeDEvenement = entree.readUTF().intern();
+                profil = new Profil(typeDEvenement, nombreDeTranches);
+                for (i = 0; i < nombreDeTranches; i++) {
+                    profil.observations[i] = entree.readInt();
+                    profil.moyennes[i] = entree.readDouble();
+                    profil.variances[i] = entree.readDouble();
+                }
+                profils.put(typeDEvenement, profil);
+            }
+        }
+        System.out.println("Référence saisonnière relue dans " + fichier + ", " + profils.size()
+                + " type(s) d'événement");
+    }
+
+    /**
+     * @param typeDEvenement type d'événement
+     * @param date date
+     * @return le débit habituel du type d'événement à cette date en
+     * événements par minute, NaN si la tranche n'a pas été assez observée
+     */
+    public synchronized double getDebitAttendu(String typeDEvenement, DateTime date) {
+        Profil profil = profils.get(typeDEvenement);
+        int numeroDeTranche;
+
+        numeroDeTranche = (date.getDayOfWeek() - 1) * (MINUTES_PAR_JOUR / minutesParTranche)
+                + date.getMinuteOfDay() / minutesParTranche;
+        if (profil == null || profil.observations[numeroDeTranche] < observationsMinimum) {
+            return Double.NaN;
+        }
+        return profil.moyennes[numeroDeTranche];
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "ReferenceSaisonniere:{"
+                + "fichier:" + fichier
+                + ", minutesParTranche:" + minutesParTranche
+                + ", seuil:" + seuil
+                + ", observationsMinimum:" + observationsMinimum
+                + ", typesDEvenement:" + profils.size()
+                + "}";
+    }
+}
@@ -0,0 +1,346 @@
+package eventsmonitor;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Classe décrivant une règle d'alerte évaluée sur chaque mesure, sans requête
+ * supplémentaire :
+ * <ul>
+ * <li>seuil : nombre d'événements, au total ou pour une valeur de status ou
+ * de type d'événement, supérieur au seuil ;</li>
+ * <li>inactivite : dernier événement reçu il y a plus de seuil minutes ;</li>
+ * <li>croissance : débit sur 1 minute d'une valeur de status ou de type
+ * d'événement (ou du total) supérieur à seuil événements par minute ;</li>
+ * <li>absence : nombre d'événements d'une valeur de status ou de type
+ * d'événement inchangé depuis plus de seuil minutes.</li>
+ * </ul>
+ * <p>
+ * Les règles sont déclarées dans EventsMonitor.prop, par exemple :</p>
+ * <pre>
+ * prod.dbserver.alertes=silence,erreurs
+ * prod.dbserver.alerte.silence.type=inactivite
+ * prod.dbserver.alerte.silence.seuil=10
+ * prod.dbserver.alerte.erreurs.type=croissance
+ * prod.dbserver.alerte.erreurs.champ=status
+ * prod.dbserver.alerte.erreurs.valeur=error
+ * prod.dbserver.alerte.erreurs.seuil=50
+ * </pre>
+ * <p>
+ * Une alerte se déclenche quand la valeur mesurée dépasse le seuil et n'est
+ * levée que quand elle redescend au niveau de retour (80 % du seuil par
+ * défaut), pour ne pas clignoter autour du seuil. Tout ce qui peut l'être est
+ * calculé à la création de la règle ; son évaluation ne fait ni recherche ni
+ * allocation. Une règle garde son état entre deux mesures et n'est évaluée
+ * que par le thread des mesures.</p>
+ * <p>
+ * Les règles d'absence sur un status ou un type d'événement ne sont pas
+ * évaluées sur les mesures dont les regroupements sont estimés : une
+ * estimation qui varie d'une mesure à l'autre ne dit rien de l'arrivée
+ * d'événements.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.03
+ */
+public class RegleDAlerte {
+
+    /**
+     * Règle sur un nombre d'événements
+     */
+    public static final String SEUIL = "seuil";
+
+    /**
+     * Règle sur l'âge du dernier événement
+     */
+    public static final String INACTIVITE = "inactivite";
+
+    /**
+     * Règle sur un débit d'événements
+     */
+    public static final String CROISSANCE = "croissance";
+
+    /**
+     * Règle sur l'absence d'événements d'une valeur
+     */
+    public static final String ABSENCE = "absence";
+
+    /**
+     * Niveau de retour par défaut, en fraction du seuil
+     */
+    public static final double RETOUR_PAR_DEFAUT = 0.8;
+
+    /**
+     * Pour afficher les valeurs mesurées
+     */
+    private static final DecimalFormat format = new DecimalFormat("#,##0.#");
+
+    /**
+     * Nom de la règle
+     */
+    private final String nom;
+
+    /**
+     * Type de la règle : SEUIL, INACTIVITE, CROISSANCE ou ABSENCE
+     */
+    private final String type;
+
+    /**
+     * Champ surveillé, status ou eventType, null pour le total
+     */
+    private final String champ;
+
+    /**
+     * Valeur surveillée du champ, internée, null pour le total
+     */
+    private final String valeur;
+
+    /**
+     * Série des débits de la valeur surveillée (voir HistoriqueDeMesures)
+     */
+    private final String serie;
+
+    /**
+     * Seuil de déclenchement
+     */
+    private final double seuil;
+
+    /**
+     * Niveau de retour, à atteindre pour lever l'alerte
+     */
+    private final double retour;
+
+    /**
+     * Vrai si l'alerte est déclenchée
+     */
+    private boolean active = false;
+
+    /**
+     * Rang de la valeur surveillée dans la table de comptages précédente
+     */
+    private int rang = 0;
+
+    /**
+     * Nombre d'événements de la valeur surveillée à la mesure précédente, -1
+     * avant la première mesure
+     */
+    private long quantitePrecedente = -1;
+
+    /**
+     * Date de la dernière hausse du nombre d'événements de la valeur
+     * surveillée en millisecondes
+     */
+    private long dateDerniereHausse = 0;
+
+    /**
+     * Constructeur principal
+     *
+     * @param nom nom de la règle
+     * @param type type de la règle : seuil, inactivite, croissance ou absence
+     * @param champ champ surveillé, status ou eventType, null pour le total
+     * @param valeur valeur surveillée du champ, null pour le total
+     * @param seuil seuil de déclenchement
+     * @param retour niveau de retour, au plus égal au seuil
+     * @throws IllegalArgumentException si la règle est incohérente
+     */
+    public RegleDAlerte(String nom, String type, String champ, String valeur, double seuil, double retour) {
+        if (!SEUIL.equals(type) && !INACTIVITE.equals(type) && !CROISSANCE.equals(type) && !ABSENCE.equals(type)) {
+            throw new IllegalArgumentException("Type de règle inconnu : " + type);
+        }
+        if (champ != null && !Chronometrage.STATUS.equals(champ) && !Chronometrage.EVENT_TYPE.equals(champ)) {
+            throw new IllegalArgumentException("Champ inconnu : " + champ + ", status ou eventType attendu");
+        }
+        if ((champ == null) != (valeur == null)) {
+            throw new IllegalArgumentException("Le champ et la valeur doivent être donnés ensemble");
+        }
+        if (ABSENCE.equals(type) && champ == null) {
+            throw new IllegalArgumentException("Une règle d'absence porte sur une valeur d'un champ");
+        }
+        if (retour > seuil) {
+            throw new IllegalArgumentException("Niveau de retour " + retour + " supérieur au seuil " + seuil);
+        }
+        this.nom = nom;
+        this.type = type;
+        this.champ = champ;
+        this.valeur = (valeur == null) ? null : valeur.intern();
+        this.seuil = seuil;
+        this.retour = retour;
+        if (champ == null) {
+            this.serie = HistoriqueDeMesures.SERIE_TOTAL;
+        } else if (Chronometrage.STATUS.equals(champ)) {
+            this.serie = HistoriqueDeMesures.serieStatus(valeur);
+        } else {
+            this.serie = HistoriqueDeMesures.serieEvenement(valeur);
+        }
+    }
+
+    /**
+     * Lit les règles déclarées pour un serveur de base de données.
+     *
+     * @param proprietes paramètres où chercher les règles
+     * @param prefixe préfixe des clés, par exemple prod.dbserver.
+     * @return les règles, dans l'ordre de déclaration
+     * @throws IllegalArgumentException si une règle est mal décrite
+     */
+    public static List<RegleDAlerte> lire(Properties proprietes, String prefixe) {
+        List<RegleDAlerte> regles = new ArrayList<>();
+        String noms;
+        String cle;
+        String champ;
+        String valeur;
+        String retour;
+        double seuil;
+
+        noms = proprietes.getProperty(prefixe + "alertes");
+        if (noms == null || noms.trim().isEmpty()) {
+            return regles;
+        }
+        for (String nom : noms.split(",")) {
+            nom = nom.trim();
+            cle = prefixe + "alerte." + nom + ".";
+            champ = proprietes.getProperty(cle + "champ");
+            valeur = proprietes.getProperty(cle + "valeur");
+            retour = proprietes.getProperty(cle + "retour");
+            try {
+                seuil = Double.parseDouble(proprietes.getProperty(cle + "seuil", "").trim());
+                regles.add(new RegleDAlerte(nom,
+                        proprietes.getProperty(cle + "type", "").trim(),
+                        (champ == null || champ.trim().isEmpty()) ? null : champ.trim(),
+                        (valeur == null || valeur.trim().isEmpty()) ? null : valeur.trim(),
+                        seuil,
+                        (retour == null) ? seuil * RETOUR_PAR_DEFAUT : Double.parseDouble(retour.trim())));
+            } catch (RuntimeException exception) {
+                throw new IllegalArgumentException("Règle d'alerte " + nom + " mal décrite : "
+                        + exception.getMessage(), exception);
+            }
+        }
+        return regles;
+    }
+
+    /**
+     * Calcule la valeur surveillée par la règle sur une mesure.
+     *
+     * @param mesure nouvelle mesure
+     * @return la valeur surveillée, NaN si elle n'est pas encore connue ou
+     * ne peut être tirée de la mesure
+     */
+    public double mesurer(ListeDeMesures mesure) {
+        double[] debits;
+        long quantite;
+        long date;
+
+        if (SEUIL.equals(type)) {
+            return quantite(mesure);
+        } else if (INACTIVITE.equals(type)) {
+            if (mesure.getDateDernierEvenement() == null) {
+                return Double.NaN;
+            }
+            return (mesure.getDateDeLaMesure().getMillis() - mesure.getDateDernierEvenement().getMillis()) / 60000.0;
+        } else if (CROISSANCE.equals(type)) {
+            debits = mesure.getDebit(serie);
+            return (debits == null) ? Double.NaN : debits[0] * 60;
+        } else if (champ != null && mesure.getRepartitionEstimee() != null) {
+            return Double.NaN;
+        }
+        quantite = quantite(mesure);
+        date = mesure.getDateDeLaMesure().getMillis();
+        if (quantitePrecedente < 0 || quantite > quantitePrecedente) {
+            dateDerniereHausse = date;
+        }
+        quantitePrecedente = quantite;
+        return (date - dateDerniereHausse) / 60000.0;
+    }
+
+    /**
+     * @param mesure mesure
+     * @return le nombre d'événements de la valeur surveillée, ou le total
+     */
+    private long quantite(ListeDeMesures mesure) {
+        TableDeComptages comptages;
+        int i;
+
+        if (champ == null) {
+            return mesure.getNombreDEvenements();
+        }
+        comptages = Chronometrage.STATUS.equals(champ) ? mesure.getStatus() : mesure.getEvenements();
+        if (rang < comptages.getTaille() && comptages.getCle(rang) == valeur) {
+            return comptages.getQuantite(rang);
+        }
+        for (i = 0; i < comptages.getTaille(); i++) {
+            if (comptages.getCle(i).equals(valeur)) {
+                rang = i;
+                return comptages.getQuantite(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Compare une valeur mesurée au seuil et au niveau de retour.
+     *
+     * @param valeurMesuree valeur surveillée
+     * @return 1 si l'alerte se déclenche, -1 si elle est levée, 0 si son état
+     * ne change pas
+     */
+    public int evaluer(double valeurMesuree) {
+        if (!active && valeurMesuree > seuil) {
+            active = true;
+            return 1;
+        } else if (active && valeurMesuree <= retour) {
+            active = false;
+            return -1;
+        }
+        return 0;
+    }
+
+    /**
+     * @param valeurMesuree valeur surveillée
+     * @return la description de l'alerte pour cette valeur
+     */
+    public String decrire(double valeurMesuree) {
+        String sujet = (champ == null) ? "événements" : champ + " " + valeur;
+
+        if (SEUIL.equals(type)) {
+            return nom + " : " + format.format(valeurMesuree) + " " + sujet + " (seuil " + format.format(seuil) + ")";
+        } else if (INACTIVITE.equals(type)) {
+            return nom + " : dernier événement il y a " + format.format(valeurMesuree) + " min (seuil "
+                    + format.format(seuil) + " min)";
+        } else if (CROISSANCE.equals(type)) {
+            return nom + " : " + sujet + " en hausse de " + format.format(valeurMesuree) + " /min (seuil "
+                    + format.format(seuil) + " /min)";
+        }
+        return nom + " : aucun " + sujet + " depuis " + format.format(valeurMesuree) + " min (seuil "
+                + format.format(seuil) + " min)";
+    }
+
+    /**
+     * @return le nom de la règle
+     */
+    public String getNom() {
+        return nom;
+    }
+
+    /**
+     * @return true si l'alerte est déclenchée
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "RegleDAlerte:{"
+                + "nom:" + nom
+                + ", type:" + type
+                + ((champ == null) ? "" : ", champ:" + champ + ", valeur:" + valeur)
+                + ", seuil:" + seuil
+                + ", retour:" + retour
+                + "}";
+    }
+}
@@ -0,0 +1,146 @@
+package eventsmonitor;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Classe décrivant le rejeu d'un journal de mesures : les mesures sont relues
+ * une à une et publiées par un contrôleur, comme si elles venaient d'être
+ * faites, sans connexion à une base de données.
+ * <p>
+ * Le rejeu suit les dates des mesures, accélérées d'un facteur donné, ou va
+ * aussi vite que possible si la vitesse est nulle ; il permet alors de voir
+ * combien de mesures par seconde le tableau de suivi peut absorber. Les
+ * interruptions de l'enregistrement de plus d'une minute sont sautées. Le
+ * journal étant lu au fil de l'eau, la mémoire utilisée ne dépend pas de sa
+ * longueur.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class Rejeu implements Runnable {
+
+    /**
+     * Ecart maximum entre deux mesures en millisecondes, au-delà duquel
+     * l'enregistrement est considéré comme interrompu
+     */
+    private static final long ECART_MAX = 60000;
+
+    /**
+     * Lecture du journal
+     */
+    private final LecteurDeJournal lecteur;
+
+    /**
+     * Contrôleur publiant les mesures
+     */
+    private final Controleur controleur;
+
+    /**
+     * Facteur d'accélération, 0 pour aller aussi vite que possible
+     */
+    private final double vitesse;
+
+    /**
+     * Indique si le rejeu est arrêté
+     */
+    private volatile boolean arrete = false;
+
+    /**
+     * Nombre de mesures rejouées
+     */
+    private volatile long nombreDeMesures = 0;
+
+    /**
+     * debugMode : fonctionnement du programme en mode debug (true/false).
+     * Valeur par défaut : false.
+     */
+    private static boolean debugMode = false;
+
+    /**
+     * Constructeur principal
+     *
+     * @param lecteur lecture du journal
+     * @param controleur contrôleur publiant les mesures
+     * @param vitesse facteur d'accélération, 1 pour le temps réel, 0 pour
+     * aller aussi vite que possible
+     * @param debugMode fonctionnement du programme en mode debug
+     */
+    public Rejeu(LecteurDeJournal lecteur, Controleur controleur, double vitesse, boolean debugMode) {
+        this.lecteur = lecteur;
+        this.controleur = controleur;
+        this.vitesse = Math.max(0, vitesse);
+        Rejeu.debugMode = debugMode;
+    }
+
+    /**
+     * Rejoue le journal jusqu'à sa fin ou jusqu'à l'arrêt du rejeu.
+     */
+    @Override
+    public void run() {
+        ListeDeMesures mesure;
+        long debut;
+        long date;
+        long datePrecedente = 0;
+        long ecoule = 0;
+        long attente;
+        long duree;
+
+        debut = System.nanoTime();
+        try {
+            while (!arrete && (mesure = lecteur.suivante()) != null) {
+                date = mesure.getDateDeLaMesure().getMillis();
+                if (vitesse > 0 && nombreDeMesures > 0) {
+                    ecoule += Math.min(ECART_MAX, Math.max(0, date - datePrecedente));
+                    attente = (long) (ecoule / vitesse) - (System.nanoTime() - debut) / 1000000;
+                    if (attente > 0) {
+                        Thread.sleep(attente);
+                    }
+                }
+                datePrecedente = date;
+                controleur.publier(mesure);
+                nombreDeMesures++;
+            }
+        } catch (IOException exception) {
+            Logger.getLogger(Rejeu.class.getName()).log(Level.SEVERE, "Journal illisible", exception);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        duree = Math.max(1, (System.nanoTime() - debut) / 1000000);
+        System.out.println(String.format(Locale.ROOT, "%d mesure(s) rejouée(s) en %.1f s, soit %.0f par seconde",
+                nombreDeMesures, duree / 1000.0, nombreDeMesures * 1000.0 / duree));
+        if (debugMode) {
+            System.out.println(controleur.getChronometrage());
+        }
+    }
+
+    /**
+     * Arrête le rejeu après la mesure en cours.
+     */
+    public void arreter() {
+        arrete = true;
+    }
+
+    /**
+     * @return le nombre de mesures rejouées
+     */
+    public long getNombreDeMesures() {
+        return nombreDeMesures;
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "Rejeu:{"
+                + "lecteur:" + lecteur
+                + ", vitesse:" + vitesse
+                + ", nombreDeMesures:" + nombreDeMesures
+                + "}";
+    }
+}
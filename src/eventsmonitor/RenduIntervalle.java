@@ -0,0 +1,44 @@
+package eventsmonitor;
+
+import java.text.DecimalFormat;
+import javax.swing.SwingConstants;
+import javax.swing.table.DefaultTableCellRenderer;
+
+/**
+ * Classe décrivant le rendu d'un intervalle dans un tableau : les bornes,
+ * données par un tableau {basse, haute}, sont formatées au moment où la
+ * cellule est dessinée, dans le thread de l'interface graphique, et alignées
+ * à droite.
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class RenduIntervalle extends DefaultTableCellRenderer {
+
+    /**
+     * Pour formater les bornes
+     */
+    private final DecimalFormat decimalFormat;
+
+    /**
+     * Constructeur principal
+     *
+     * @param motif motif de formatage des bornes, voir DecimalFormat
+     */
+    public RenduIntervalle(String motif) {
+        this.decimalFormat = new DecimalFormat(motif);
+        setHorizontalAlignment(SwingConstants.RIGHT);
+    }
+
+    @Override
+    protected void setValue(Object valeur) {
+        long[] bornes;
+
+        if (valeur instanceof long[]) {
+            bornes = (long[]) valeur;
+            setText(decimalFormat.format(bornes[0]) + " – " + decimalFormat.format(bornes[1]));
+        } else {
+            setText("");
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package eventsmonitor;
+
+import java.text.DecimalFormat;
+import javax.swing.SwingConstants;
+import javax.swing.table.DefaultTableCellRenderer;
+
+/**
+ * Classe décrivant le rendu des nombres dans un tableau : les nombres sont
+ * formatés au moment où la cellule est dessinée, dans le thread de l'interface
+ * graphique, et alignés à droite.
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class RenduNombre extends DefaultTableCellRenderer {
+
+    /**
+     * Pour formater les nombres
+     */
+    private final DecimalFormat decimalFormat;
+
+    /**
+     * Constructeur principal
+     *
+     * @param motif motif de formatage, voir DecimalFormat
+     */
+    public RenduNombre(String motif) {
+        this.decimalFormat = new DecimalFormat(motif);
+        setHorizontalAlignment(SwingConstants.RIGHT);
+    }
+
+    @Override
+    protected void setValue(Object valeur) {
+        setText((valeur instanceof Number) ? decimalFormat.format(valeur) : "");
+    }
+}
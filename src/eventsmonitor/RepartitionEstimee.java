@@ -0,0 +1,161 @@
+package eventsmonitor;
+
+import org.joda.time.DateTime;
+
+/**
+ * Classe décrivant des regroupements par status et par type d'événement
+ * estimés sur un échantillon aléatoire : la part de chaque valeur dans
+ * l'échantillon est appliquée au nombre total d'événements. Chaque quantité
+ * estimée est accompagnée de son intervalle de confiance à 95 %, rangé au
+ * même rang que la valeur dans la table de comptages de la mesure. Les objets
+ * de cette classe ne changent pas une fois construits.
+ * <p>
+ * L'intervalle est celui de Wilson, qui reste juste pour les valeurs rares ou
+ * absentes de l'échantillon, avec la correction de population finie. Il est
+ * resserré par ce que l'échantillon prouve : une valeur tirée k fois compte
+ * au moins k événements.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class RepartitionEstimee {
+
+    /**
+     * Quantile de la loi normale pour un niveau de confiance de 95 %
+     */
+    public static final double Z = 1.96;
+
+    /**
+     * Nombre d'événements de l'échantillon
+     */
+    private final int tailleDeLEchantillon;
+
+    /**
+     * Date du dernier regroupement exact, null s'il n'y en a pas encore eu
+     */
+    private final DateTime dateDuDernierRegroupementExact;
+
+    /**
+     * Bornes basses des quantités par status
+     */
+    private final long[] basStatus;
+
+    /**
+     * Bornes hautes des quantités par status
+     */
+    private final long[] hautStatus;
+
+    /**
+     * Bornes basses des quantités par type d'événement
+     */
+    private final long[] basEvenements;
+
+    /**
+     * Bornes hautes des quantités par type d'événement
+     */
+    private final long[] hautEvenements;
+
+    /**
+     * Constructeur principal
+     *
+     * @param tailleDeLEchantillon nombre d'événements de l'échantillon
+     * @param dateDuDernierRegroupementExact date du dernier regroupement
+     * exact, null s'il n'y en a pas encore eu
+     * @param basStatus bornes basses des quantités par status
+     * @param hautStatus bornes hautes des quantités par status
+     * @param basEvenements bornes basses des quantités par type d'événement
+     * @param hautEvenements bornes hautes des quantités par type d'événement
+     */
+    public RepartitionEstimee(int tailleDeLEchantillon, DateTime dateDuDernierRegroupementExact,
+            long[] basStatus, long[] hautStatus, long[] basEvenements, long[] hautEvenements) {
+        this.tailleDeLEchantillon = tailleDeLEchantillon;
+        this.dateDuDernierRegroupementExact = dateDuDernierRegroupementExact;
+        this.basStatus = basStatus;
+        this.hautStatus = hautStatus;
+        this.basEvenements = basEvenements;
+        this.hautEvenements = hautEvenements;
+    }
+
+    /**
+     * Calcule l'intervalle de confiance à 95 % du nombre d'événements d'une
+     * valeur.
+     *
+     * @param observes nombre d'événements de la valeur dans l'échantillon
+     * @param tailleDeLEchantillon nombre d'événements de l'échantillon
+     * @param population nombre total d'événements
+     * @return les bornes basse et haute du nombre d'événements de la valeur
+     */
+    static long[] intervalle(long observes, long tailleDeLEchantillon, long population) {
+        double proportion;
+        double effectif;
+        double z2;
+        double denominateur;
+        double centre;
+        double demiLargeur;
+
+        if (tailleDeLEchantillon <= 0) {
+            return new long[]{0, population};
+        } else if (tailleDeLEchantillon >= population) {
+            return new long[]{observes, observes};
+        }
+        proportion = (double) observes / tailleDeLEchantillon;
+        effectif = (double) tailleDeLEchantillon * (population - 1) / (population - tailleDeLEchantillon);
+        z2 = Z * Z;
+        denominateur = 1 + z2 / effectif;
+        centre = (proportion + z2 / (2 * effectif)) / denominateur;
+        demiLargeur = Z / denominateur
+                * Math.sqrt(proportion * (1 - proportion) / effectif + z2 / (4 * effectif * effectif));
+        return new long[]{
+            Math.max(observes, (long) Math.floor((centre - demiLargeur) * population)),
+            Math.min(population - (tailleDeLEchantillon - observes),
+            (long) Math.ceil((centre + demiLargeur) * population))};
+    }
+
+    /**
+     * @return le nombre d'événements de l'échantillon
+     */
+    public int getTailleDeLEchantillon() {
+        return tailleDeLEchantillon;
+    }
+
+    /**
+     * @return la date du dernier regroupement exact, null s'il n'y en a pas
+     * encore eu
+     */
+    public DateTime getDateDuDernierRegroupementExact() {
+        return dateDuDernierRegroupementExact;
+    }
+
+    /**
+     * @param status true pour les status, false pour les types d'événement
+     * @param rang rang de la valeur dans la table de comptages de la mesure
+     * @return la borne basse du nombre d'événements de la valeur
+     */
+    public long getBorneBasse(boolean status, int rang) {
+        return status ? basStatus[rang] : basEvenements[rang];
+    }
+
+    /**
+     * @param status true pour les status, false pour les types d'événement
+     * @param rang rang de la valeur dans la table de comptages de la mesure
+     * @return la borne haute du nombre d'événements de la valeur
+     */
+    public long getBorneHaute(boolean status, int rang) {
+        return status ? hautStatus[rang] : hautEvenements[rang];
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "RepartitionEstimee:{"
+                + "tailleDeLEchantillon:" + tailleDeLEchantillon
+                + ", dateDuDernierRegroupementExact:" + dateDuDernierRegroupementExact
+                + ", nombreDeStatus:" + basStatus.length
+                + ", nombreDeTypes:" + basEvenements.length
+                + "}";
+    }
+}
@@ -0,0 +1,453 @@
+package eventsmonitor;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Classe décrivant un serveur HTTP publiant les dernières mesures au format
+ * texte de Prometheus sur /metrics, pour le fonctionnement sans interface
+ * graphique.
+ * <p>
+ * La page est construite une seule fois à chaque nouvelle mesure, dans le
+ * thread de mesure. Une lecture par Prometheus ne fait que renvoyer cette page
+ * figée : elle ne déclenche jamais de requête sur la base de données.</p>
+ * <p>
+ * Un seul serveur publie les mesures de tous les serveurs de base de données
+ * suivis, chaque valeur portant l'étiquette dbserver.</p>
+ * <p>
+ * Les centiles des retards et des durées d'étapes portent sur une fenêtre
+ * glissante et non sur tout le fonctionnement : ils sont publiés comme des
+ * jauges avec l'étiquette percentile, et leur maximum comme une jauge à part,
+ * et non comme un résumé Prometheus dont _sum et _count devraient croître
+ * sans cesse.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.11
+ */
+public class ServeurDeMetriques implements PropertyChangeListener {
+
+    /**
+     * Type de contenu du format texte de Prometheus
+     */
+    private static final String TYPE_DE_CONTENU = "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * Serveur HTTP
+     */
+    private final HttpServer serveur;
+
+    /**
+     * Contrôleurs des serveurs suivis, par type de serveur
+     */
+    private final Map<String, Controleur> cibles = new TreeMap<>();
+
+    /**
+     * Dernière page construite
+     */
+    private volatile byte[] page = "# Aucune mesure\n".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * debugMode : fonctionnement du programme en mode debug (true/false).
+     * Valeur par défaut : false.
+     */
+    private static boolean debugMode = false;
+
+    /**
+     * Constructeur principal
+     *
+     * @param port port d'écoute du serveur HTTP
+     * @param debugMode fonctionnement du programme en mode debug
+     * @throws IOException si le port ne peut être ouvert
+     */
+    public ServeurDeMetriques(int port, boolean debugMode) throws IOException {
+        ServeurDeMetriques.debugMode = debugMode;
+        serveur = HttpServer.create(new InetSocketAddress(port), 0);
+        serveur.createContext("/metrics", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange echange) throws IOException {
+                repondre(echange);
+            }
+        });
+    }
+
+    /**
+     * Publie les mesures d'un serveur de base de données suivi.
+     *
+     * @param nom type de serveur de base de données
+     * @param controleur contrôleur des mesures de ce serveur
+     */
+    public void ajouter(String nom, Controleur controleur) {
+        synchronized (cibles) {
+            cibles.put(nom, controleur);
+        }
+        controleur.addPropertyChangeListener(this);
+    }
+
+    /**
+     * Démarre le serveur HTTP.
+     */
+    public void demarrer() {
+        serveur.start();
+    }
+
+    /**
+     * Arrête le serveur HTTP.
+     */
+    public void arreter() {
+        serveur.stop(0);
+    }
+
+    /**
+     * Renvoie la dernière page construite.
+     *
+     * @param echange requête HTTP
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    private void repondre(HttpExchange echange) throws IOException {
+        byte[] contenu = page;
+
+        try {
+            echange.getResponseHeaders().set("Content-Type", TYPE_DE_CONTENU);
+            echange.sendResponseHeaders(200, contenu.length);
+            try (OutputStream sortie = echange.getResponseBody()) {
+                sortie.write(contenu);
+            }
+        } finally {
+            echange.close();
+        }
+    }
+
+    @Override
+    public void propertyChange(PropertyChangeEvent propertyChangeEvent) {
+        if (propertyChangeEvent.getSource() instanceof Controleur
+                && propertyChangeEvent.getNewValue() instanceof ListeDeMesures) {
+            synchronized (cibles) {
+                page = construirePage(cibles).getBytes(StandardCharsets.UTF_8);
+            }
+            if (debugMode) {
+                Logger.getLogger(ServeurDeMetriques.class.getName()).log(Level.INFO, "Page /metrics mise à jour");
+            }
+        }
+    }
+
+    /**
+     * Construit la page au format texte de Prometheus.
+     *
+     * @param cibles contrôleurs des serveurs suivis, par type de serveur
+     * @return la page
+     */
+    static String construirePage(Map<String, Controleur> cibles) {
+        StringBuilder texte = new StringBuilder(4096);
+        Map<String, ListeDeMesures> mesures = new LinkedHashMap<>();
+        ListeDeMesures listeDeMesures;
+        TableDeComptages comptages;
+        double[] debits;
+        Latences latences;
+        Map<String, Map<String, Latences>> resumes;
+        EtatDuComptage etatDuComptage;
+        int i;
+
+        for (Map.Entry<String, Controleur> cible : cibles.entrySet()) {
+            if (cible.getValue().getListeDeMesures() != null) {
+                mesures.put(cible.getKey(), cible.getValue().getListeDeMesures());
+            }
+        }
+
+        entete(texte, "eventsmonitor_events", "gauge", "Nombre d'événements dans la collection");
+        for (Map.Entry<String, ListeDeMesures> mesure : mesures.entrySet()) {
+            valeur(texte, "eventsmonitor_events", mesure.getKey(), null, null, mesure.getValue().getNombreDEvenements());
+        }
+
+        entete(texte, "eventsmonitor_events_estimated", "gauge",
+                "1 si le nombre d'événements est estimé, 0 s'il est exact");
+        for (Map.Entry<String, ListeDeMesures> mesure : mesures.entrySet()) {
+            etatDuComptage = mesure.getValue().getEtatDuComptage();
+            valeur(texte, "eventsmonitor_events_estimated", mesure.getKey(), null, null,
+                    (etatDuComptage == null || etatDuComptage.isExact()) ? 0 : 1);
+        }
+        entete(texte, "eventsmonitor_events_estimate_drift", "gauge",
+                "Ecart entre le nombre estimé et le nombre exact d'événements lors de leur dernière comparaison");
+        for (Map.Entry<String, ListeDeMesures> mesure : mesures.entrySet()) {
+            etatDuComptage = mesure.getValue().getEtatDuComptage();
+            if (etatDuComptage != null && etatDuComptage.getDateDeComparaison() != null) {
+                valeur(texte, "eventsmonitor_events_estimate_drift", mesure.getKey(), null, null,
+                        etatDuComptage.getDerive());
+            }
+        }
+
+        entete(texte, "eventsmonitor_breakdown_estimated", "gauge",
+                "1 si les nombres d'événements par status et par type sont estimés sur un échantillon, 0 s'ils sont exacts");
+        for (Map.Entry<String, ListeDeMesures> mesure : mesures.entrySet()) {
+            valeur(texte, "eventsmonitor_breakdown_estimated", mesure.getKey(), null, null,
+                    (mesure.getValue().getRepartitionEstimee() == null) ? 0 : 1);
+        }
+        entete(texte, "eventsmonitor_breakdown_sample_size", "gauge",
+                "Nombre d'événements de l'échantillon des regroupements estimés");
+        for (Map.Entry<String, ListeDeMesures> mesure : mesures.entrySet()) {
+            if (mesure.getValue().getRepartitionEstimee() != null) {
+                valeur(texte, "eventsmonitor_breakdown_sample_size", mesure.getKey(), null, null,
+                        mesure.getValue().getRepartitionEstimee().getTailleDeLEchantillon());
+            }
+        }
+
+        entete(texte, "eventsmonitor_events_by_status", "gauge", "Nombre d'événements par status");
+        for (Map.Entry<String, ListeDeMesures> mesure : mesures.entrySet()) {
+            comptages = mesure.getValue().getStatus();
+            for (i = 0; i < comptages.getTaille(); i++) {
+                valeur(texte, "eventsmonitor_events_by_status", mesure.getKey(),
+                        "status", comptages.getCle(i), comptages.getQuantite(i));
+            }
+        }
+
+        entete(texte, "eventsmonitor_events_by_type", "gauge", "Nombre d'événements par type d'événement");
+        for (Map.Entry<String, ListeDeMesures> mesure : mesures.entrySet()) {
+            comptages = mesure.getValue().getEvenements();
+            for (i = 0; i < comptages.getTaille(); i++) {
+                valeur(texte, "eventsmonitor_events_by_type", mesure.getKey(),
+                        "event_type", comptages.getCle(i), comptages.getQuantite(i));
+            }
+        }
+
+        entete(texte, "eventsmonitor_indicator", "gauge", "Nombre de documents par valeur, indicateurs du catalogue");
+        for (Map.Entry<String, ListeDeMesures> mesure : mesures.entrySet()) {
+            for (Map.Entry<String, TableDeComptages> indicateur : mesure.getValue().getIndicateurs().entrySet()) {
+                comptages = indicateur.getValue();
+                for (i = 0; i < comptages.getTaille(); i++) {
+                    ligne(texte, "eventsmonitor_indicator", mesure.getKey(),
+                            "indicator", indicateur.getKey(), "value", comptages.getCle(i))
+                            .append(comptages.getQuantite(i)).append('\n');
+                }
+            }
+        }
+
+        entete(texte, "eventsmonitor_event_rate", "gauge", "Débit d'arrivée lissé des événements (/s)");
+        for (Map.Entry<String, ListeDeMesures> mesure : mesures.entrySet()) {
+            debits = mesure.getValue().getDebit(HistoriqueDeMesures.SERIE_TOTAL);
+            for (i = 0; debits != null && i < debits.length; i++) {
+                ligne(texte, "eventsmonitor_event_rate", mesure.getKey(),
+                        "window", DebitsDEvenements.CONSTANTES_DE_TEMPS[i] / 60 + "m")
+                        .append(String.format(Locale.ROOT, "%.6f", debits[i])).append('\n');
+            }
+        }
+
+        entete(texte, "eventsmonitor_last_event_timestamp_seconds", "gauge", "Date du dernier événement");
+        for (Map.Entry<String, ListeDeMesures> mesure : mesures.entrySet()) {
+            listeDeMesures = mesure.getValue();
+            if (listeDeMesures.getDateDernierEvenement() != null) {
+                valeur(texte, "eventsmonitor_last_event_timestamp_seconds", mesure.getKey(), null, null,
+                        listeDeMesures.getDateDernierEvenement().getMillis() / 1000.0);
+            }
+        }
+        entete(texte, "eventsmonitor_last_event_age_seconds", "gauge", "Age du dernier événement lors de la mesure");
+        for (Map.Entry<String, ListeDeMesures> mesure : mesures.entrySet()) {
+            listeDeMesures = mesure.getValue();
+            if (listeDeMesures.getDateDernierEvenement() != null) {
+                valeur(texte, "eventsmonitor_last_event_age_seconds", mesure.getKey(), null, null,
+                        (listeDeMesures.getDateDeLaMesure().getMillis()
+                        - listeDeMesures.getDateDernierEvenement().getMillis()) / 1000.0);
+            }
+        }
+
+        entete(texte, "eventsmonitor_event_lag_seconds", "gauge",
+                "Retard des événements reçus récemment sur leur sentDate, par centile");
+        for (Map.Entry<String, ListeDeMesures> mesure : mesures.entrySet()) {
+            latences = mesure.getValue().getLatences();
+            if (latences != null && latences.getNombre() > 0) {
+                for (i = 0; i < Latences.QUANTILES.length; i++) {
+                    valeur(texte, "eventsmonitor_event_lag_seconds", mesure.getKey(),
+                            "percentile", String.valueOf(Latences.QUANTILES[i]), latences.getQuantile(i) / 1000.0);
+                }
+            }
+        }
+        entete(texte, "eventsmonitor_event_lag_max_seconds", "gauge",
+                "Plus grand retard des événements reçus récemment sur leur sentDate");
+        for (Map.Entry<String, ListeDeMesures> mesure : mesures.entrySet()) {
+            latences = mesure.getValue().getLatences();
+            if (latences != null && latences.getNombre() > 0) {
+                valeur(texte, "eventsmonitor_event_lag_max_seconds", mesure.getKey(), null, null,
+                        latences.getMax() / 1000.0);
+            }
+        }
+        entete(texte, "eventsmonitor_event_lag_events", "gauge",
+                "Nombre d'événements reçus récemment dont le retard est mesuré");
+        for (Map.Entry<String, ListeDeMesures> mesure : mesures.entrySet()) {
+            latences = mesure.getValue().getLatences();
+            if (latences != null) {
+                valeur(texte, "eventsmonitor_event_lag_events", mesure.getKey(), null, null, latences.getNombre());
+            }
+        }
+
+        entete(texte, "eventsmonitor_alert_active", "gauge", "1 par règle d'alerte déclenchée");
+        for (Map.Entry<String, ListeDeMesures> mesure : mesures.entrySet()) {
+            for (Alerte alerte : mesure.getValue().getAlertes()) {
+                valeur(texte, "eventsmonitor_alert_active", mesure.getKey(), "rule", alerte.getNom(), 1);
+            }
+        }
+
+        entete(texte, "eventsmonitor_event_type_anomaly_score", "gauge",
+                "Ecart du débit d'un type d'événement à son débit habituel, en écarts-types, débits inhabituels");
+        for (Map.Entry<String, ListeDeMesures> mesure : mesures.entrySet()) {
+            for (Anomalie anomalie : mesure.getValue().getAnomalies()) {
+                ligne(texte, "eventsmonitor_event_type_anomaly_score", mesure.getKey(),
+                        "event_type", anomalie.getTypeDEvenement())
+                        .append(String.format(Locale.ROOT, "%.2f", anomalie.getScore())).append('\n');
+            }
+        }
+        entete(texte, "eventsmonitor_event_type_expected_rate", "gauge",
+                "Débit habituel d'un type d'événement à ce moment de la semaine (/min), débits inhabituels");
+        for (Map.Entry<String, ListeDeMesures> mesure : mesures.entrySet()) {
+            for (Anomalie anomalie : mesure.getValue().getAnomalies()) {
+                ligne(texte, "eventsmonitor_event_type_expected_rate", mesure.getKey(),
+                        "event_type", anomalie.getTypeDEvenement())
+                        .append(String.format(Locale.ROOT, "%.6f", anomalie.getDebitAttendu())).append('\n');
+            }
+        }
+
+        entete(texte, "eventsmonitor_measurement_timestamp_seconds", "gauge", "Date de la dernière mesure");
+        for (Map.Entry<String, ListeDeMesures> mesure : mesures.entrySet()) {
+            valeur(texte, "eventsmonitor_measurement_timestamp_seconds", mesure.getKey(), null, null,
+                    mesure.getValue().getDateDeLaMesure().getMillis() / 1000.0);
+        }
+        entete(texte, "eventsmonitor_measurement_stale", "gauge",
+                "1 si le dernier top a été abandonné et la mesure précédente republiée, 0 sinon");
+        for (Map.Entry<String, ListeDeMesures> mesure : mesures.entrySet()) {
+            valeur(texte, "eventsmonitor_measurement_stale", mesure.getKey(), null, null,
+                    mesure.getValue().isPerimee() ? 1 : 0);
+        }
+        entete(texte, "eventsmonitor_measurement_duration_seconds", "gauge", "Durée de la dernière mesure");
+        for (Map.Entry<String, ListeDeMesures> mesure : mesures.entrySet()) {
+            valeur(texte, "eventsmonitor_measurement_duration_seconds", mesure.getKey(), null, null,
+                    mesure.getValue().getDureeDeLaMesure() / 1000.0);
+        }
+        resumes = new TreeMap<>();
+        for (Map.Entry<String, Controleur> cible : cibles.entrySet()) {
+            resumes.put(cible.getKey(), cible.getValue().getChronometrage().resumer());
+        }
+        entete(texte, "eventsmonitor_stage_duration_seconds", "gauge",
+                "Durée des étapes des mesures sur les 5 dernières minutes, par centile");
+        for (Map.Entry<String, Map<String, Latences>> resume : resumes.entrySet()) {
+            for (Map.Entry<String, Latences> etape : resume.getValue().entrySet()) {
+                latences = etape.getValue();
+                for (i = 0; i < Latences.QUANTILES.length; i++) {
+                    ligne(texte, "eventsmonitor_stage_duration_seconds", resume.getKey(),
+                            "stage", etape.getKey(), "percentile", String.valueOf(Latences.QUANTILES[i]))
+                            .append(String.format(Locale.ROOT, "%.6f", latences.getQuantile(i) / 1000000.0))
+                            .append('\n');
+                }
+            }
+        }
+        entete(texte, "eventsmonitor_stage_duration_max_seconds", "gauge",
+                "Plus longue durée des étapes des mesures sur les 5 dernières minutes");
+        for (Map.Entry<String, Map<String, Latences>> resume : resumes.entrySet()) {
+            for (Map.Entry<String, Latences> etape : resume.getValue().entrySet()) {
+                ligne(texte, "eventsmonitor_stage_duration_max_seconds", resume.getKey(), "stage", etape.getKey())
+                        .append(String.format(Locale.ROOT, "%.6f", etape.getValue().getMax() / 1000000.0))
+                        .append('\n');
+            }
+        }
+        entete(texte, "eventsmonitor_measurements_total", "counter", "Nombre de mesures faites");
+        for (Map.Entry<String, Controleur> cible : cibles.entrySet()) {
+            if (mesures.containsKey(cible.getKey())) {
+                valeur(texte, "eventsmonitor_measurements_total", cible.getKey(), null, null,
+                        cible.getValue().getNombreDeMesures());
+            }
+        }
+        entete(texte, "eventsmonitor_ticks_abandoned_total", "counter", "Nombre de tops abandonnés faute de temps");
+        for (Map.Entry<String, Controleur> cible : cibles.entrySet()) {
+            valeur(texte, "eventsmonitor_ticks_abandoned_total", cible.getKey(), null, null,
+                    cible.getValue().getNombreDeTopsAbandonnes());
+        }
+        return texte.toString();
+    }
+
+    /**
+     * @param texte page en construction
+     * @param nom nom de la métrique
+     * @param type type de la métrique
+     * @param aide description de la métrique
+     */
+    private static void entete(StringBuilder texte, String nom, String type, String aide) {
+        texte.append("# HELP ").append(nom).append(' ').append(aide).append('\n');
+        texte.append("# TYPE ").append(nom).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * @param texte page en construction
+     * @param nom nom de la métrique
+     * @param cible type de serveur de base de données
+     * @param etiquette nom de l'étiquette, null si aucune
+     * @param valeurEtiquette valeur de l'étiquette
+     * @param valeur valeur de la métrique
+     */
+    private static void valeur(StringBuilder texte, String nom, String cible,
+            String etiquette, String valeurEtiquette, long valeur) {
+        ligne(texte, nom, cible, etiquette, valeurEtiquette).append(valeur).append('\n');
+    }
+
+    /**
+     * @param texte page en construction
+     * @param nom nom de la métrique
+     * @param cible type de serveur de base de données
+     * @param etiquette nom de l'étiquette, null si aucune
+     * @param valeurEtiquette valeur de l'étiquette
+     * @param valeur valeur de la métrique
+     */
+    private static void valeur(StringBuilder texte, String nom, String cible,
+            String etiquette, String valeurEtiquette, double valeur) {
+        ligne(texte, nom, cible, etiquette, valeurEtiquette)
+                .append(String.format(Locale.ROOT, "%.3f", valeur)).append('\n');
+    }
+
+    /**
+     * @param texte page en construction
+     * @param nom nom de la métrique
+     * @param cible type de serveur de base de données
+     * @param etiquettes noms et valeurs des autres étiquettes, en alternance ;
+     * une étiquette de nom null est ignorée
+     * @return la page, prête à recevoir la valeur
+     */
+    private static StringBuilder ligne(StringBuilder texte, String nom, String cible, String... etiquettes) {
+        int i;
+
+        texte.append(nom).append("{dbserver=\"").append(echapper(cible)).append('"');
+        for (i = 0; i + 1 < etiquettes.length; i += 2) {
+            if (etiquettes[i] != null) {
+                texte.append(',').append(etiquettes[i]).append("=\"").append(echapper(etiquettes[i + 1])).append('"');
+            }
+        }
+        return texte.append("} ");
+    }
+
+    /**
+     * @param valeur valeur d'une étiquette
+     * @return la valeur avec les caractères \, " et fin de ligne échappés
+     */
+    static String echapper(String valeur) {
+        return valeur.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "ServeurDeMetriques:{"
+                + "adresse:" + serveur.getAddress()
+                + "}";
+    }
+}
@@ -0,0 +1,105 @@
+package eventsmonitor;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.Document;
+import org.joda.time.DateTime;
+
+/**
+ * Classe décrivant une sonde recherchant la date de réception du dernier
+ * événement. Seul le champ sentDate du premier document dans l'ordre des
+ * dates décroissantes est lu : avec un index sur sentDate, la requête
+ * n'examine qu'une seule clé et aucun document n'est décodé en objet Java.
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class SondeDernierEvenement {
+
+    /**
+     * Champ portant la date de réception d'un événement
+     */
+    public static final String CHAMP_DATE = "sentDate";
+
+    /**
+     * Projection réduite à la date de réception
+     */
+    private static final Document PROJECTION = new Document(CHAMP_DATE, 1).append("_id", 0);
+
+    /**
+     * Tri par date de réception décroissante
+     */
+    private static final Document TRI = new Document(CHAMP_DATE, -1);
+
+    /**
+     * Collection des événements
+     */
+    private final CollectionDEvenements collection;
+
+    /**
+     * Constructeur principal
+     *
+     * @param collection collection des événements
+     */
+    public SondeDernierEvenement(CollectionDEvenements collection) {
+        this.collection = collection;
+    }
+
+    /**
+     * Requête à construire : db.events.find({}, {sentDate:1,
+     * _id:0}).sort({sentDate:-1}).limit(1)
+     *
+     * @return la date de réception du dernier événement, null si la
+     * collection est vide
+     */
+    public DateTime rechercher() {
+        return ListeDeMesures.convertirDate(rechercherValeur());
+    }
+
+    /**
+     * @return la valeur brute du champ sentDate du dernier événement (chaîne
+     * au format ISO 8601 ou date), null si la collection est vide
+     */
+    public Object rechercherValeur() {
+        Document dernier;
+
+        dernier = collection.premier(null, PROJECTION, TRI);
+        return (dernier == null) ? null : dernier.get(CHAMP_DATE);
+    }
+
+    /**
+     * Vérifie qu'un index commence par sentDate. Sans lui, chaque recherche
+     * trie toute la collection.
+     *
+     * @return true si un index permet la recherche
+     */
+    public boolean verifierIndex() {
+        List<Document> index;
+        Document cle;
+
+        index = collection.listerIndex();
+        for (Document unIndex : index) {
+            cle = (Document) unIndex.get("key");
+            if (cle != null && !cle.isEmpty() && CHAMP_DATE.equals(cle.keySet().iterator().next())) {
+                return true;
+            }
+        }
+        Logger.getLogger(SondeDernierEvenement.class.getName()).log(Level.WARNING,
+                "Aucun index sur " + CHAMP_DATE + ", la recherche du dernier événement trie toute la collection."
+                + " Index conseillé : db.events.createIndex({" + CHAMP_DATE + ":-1})");
+        return false;
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        return "SondeDernierEvenement:{"
+                + "collection:" + collection
+                + "}";
+    }
+}
@@ -0,0 +1,33 @@
+package eventsmonitor;
+
+/**
+ * Interface décrivant une source de changements sur la collection des
+ * événements (oplog MongoDb, collection en mémoire, ...).
+ *
+ * @author Thierry Baribaud
+ * @version 0.02
+ */
+public interface SourceDeChangements {
+
+    /**
+     * Démarre la diffusion des changements.
+     *
+     * @param ecouteur écouteur à prévenir de chaque changement
+     */
+    public void demarrer(EcouteurDeChangements ecouteur);
+
+    /**
+     * Donne la position du dernier changement fait sur la collection, qu'il
+     * ait été diffusé ou non. Les positions croissent avec les changements :
+     * un rechargement fait après avoir lu cette position contient tous les
+     * changements de position inférieure ou égale.
+     *
+     * @return la position du dernier changement
+     */
+    public long position();
+
+    /**
+     * Arrête la diffusion des changements.
+     */
+    public void arreter();
+}
@@ -0,0 +1,183 @@
+package eventsmonitor;
+
+import static eventsmonitor.SondeDernierEvenement.CHAMP_DATE;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.Document;
+import org.joda.time.DateTime;
+
+/**
+ * Classe décrivant le suivi des retards des événements : à chaque mesure,
+ * seuls les événements arrivés depuis la mesure précédente sont lus et leur
+ * retard (date de la mesure moins sentDate) est ajouté à un histogramme de
+ * taille fixe portant sur les dernières minutes.
+ * <p>
+ * Les nouveaux événements sont repérés par leur _id, croissant à l'insertion :
+ * un événement inséré en retard, avec une sentDate ancienne, est bien vu
+ * comme nouveau. Chaque lecture est limitée ; s'il reste des événements, la
+ * mesure suivante reprend où la précédente s'est arrêtée.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class SuiviDesLatences {
+
+    /**
+     * Champ repérant les nouveaux événements
+     */
+    private static final String CHAMP_MARQUE = "_id";
+
+    /**
+     * Nombre maximum d'événements lus par mesure
+     */
+    public static final int LIMITE_PAR_MESURE = 10000;
+
+    /**
+     * Nombre de tranches d'une minute de la fenêtre par défaut : 5 minutes
+     */
+    public static final int MINUTES_PAR_DEFAUT = 5;
+
+    /**
+     * Recherche du dernier événement inséré
+     */
+    private static final Document PROJECTION_MARQUE = new Document(CHAMP_MARQUE, 1);
+
+    /**
+     * Tri par ordre d'insertion décroissant
+     */
+    private static final Document TRI_DECROISSANT = new Document(CHAMP_MARQUE, -1);
+
+    /**
+     * Collection des événements
+     */
+    private final CollectionDEvenements collection;
+
+    /**
+     * Histogramme des retards
+     */
+    private final HistogrammeDeLatences histogramme;
+
+    /**
+     * Valeur de _id du dernier événement lu, null si aucun
+     */
+    private Object marque = null;
+
+    /**
+     * Indique si la marque a été initialisée
+     */
+    private boolean initialise = false;
+
+    /**
+     * Retards lus à la dernière mesure
+     */
+    private final long[] quantiles = new long[Latences.QUANTILES.length];
+
+    /**
+     * debugMode : fonctionnement du programme en mode debug (true/false).
+     * Valeur par défaut : false.
+     */
+    private static boolean debugMode = false;
+
+    /**
+     * Constructeur principal
+     *
+     * @param collection collection des événements
+     * @param minutes durée de la fenêtre en minutes
+     * @param debugMode fonctionnement du programme en mode debug
+     */
+    public SuiviDesLatences(CollectionDEvenements collection, int minutes, boolean debugMode) {
+        this.collection = collection;
+        this.histogramme = new HistogrammeDeLatences(minutes, 60000);
+        SuiviDesLatences.debugMode = debugMode;
+    }
+
+    /**
+     * Prend en compte une nouvelle mesure : lit les événements arrivés depuis
+     * la précédente et attache la répartition des retards à la mesure.
+     *
+     * @param listeDeMesures nouvelle mesure
+     */
+    public synchronized void mettreAJour(ListeDeMesures listeDeMesures) {
+        long instant;
+        int lus = 0;
+
+        instant = listeDeMesures.getDateDeLaMesure().getMillis();
+        try {
+            if (!initialise) {
+                initialiser();
+            } else {
+                lus = lire(instant);
+            }
+        } catch (RuntimeException exception) {
+            Logger.getLogger(SuiviDesLatences.class.getName()).log(Level.WARNING,
+                    "Retards des événements non mesurés", exception);
+        }
+        histogramme.quantiles(Latences.QUANTILES, instant, quantiles);
+        listeDeMesures.setLatences(new Latences(histogramme.getNombre(instant), quantiles,
+                histogramme.getMax(instant)));
+        if (debugMode) {
+            System.out.println("Retards : " + lus + " nouvel(s) événement(s), " + listeDeMesures.getLatences());
+        }
+    }
+
+    /**
+     * Place la marque sur le dernier événement inséré : les événements déjà
+     * présents au démarrage ne sont pas pris en compte.
+     * <p>
+     * Requête à construire : db.events.find({}, {_id:1}).sort({_id:-1}).limit(1)</p>
+     */
+    private void initialiser() {
+        Document dernier;
+
+        dernier = collection.premier(null, PROJECTION_MARQUE, TRI_DECROISSANT);
+        marque = (dernier == null) ? null : dernier.get(CHAMP_MARQUE);
+        initialise = true;
+    }
+
+    /**
+     * Lit les événements arrivés depuis la marque et ajoute leurs retards.
+     * <p>
+     * Requête à construire : db.events.aggregate({$match:{_id:{$gt:marque}}},
+     * {$sort:{_id:1}}, {$limit:10000}, {$project:{sentDate:1}})</p>
+     *
+     * @param instant date de la mesure en millisecondes
+     * @return le nombre d'événements lus
+     */
+    private int lire(long instant) {
+        List<Document> pipeline = new ArrayList<>(4);
+        List<Document> nouveaux;
+        DateTime date;
+
+        if (marque != null) {
+            pipeline.add(new Document("$match", new Document(CHAMP_MARQUE, new Document("$gt", marque))));
+        }
+        pipeline.add(new Document("$sort", new Document(CHAMP_MARQUE, 1)));
+        pipeline.add(new Document("$limit", LIMITE_PAR_MESURE));
+        pipeline.add(new Document("$project", new Document(CHAMP_DATE, 1)));
+        nouveaux = collection.agreger(pipeline);
+        for (Document nouveau : nouveaux) {
+            date = ListeDeMesures.convertirDate(nouveau.get(CHAMP_DATE));
+            if (date != null) {
+                histogramme.ajouter(instant - date.getMillis(), instant);
+            }
+        }
+        if (!nouveaux.isEmpty()) {
+            marque = nouveaux.get(nouveaux.size() - 1).get(CHAMP_MARQUE);
+        }
+        return nouveaux.size();
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public synchronized String toString() {
+        return "SuiviDesLatences:{"
+                + "marque:" + marque
+                + "}";
+    }
+}
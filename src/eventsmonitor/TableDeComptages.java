@@ -0,0 +1,151 @@
+package eventsmonitor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Classe décrivant des comptages d'événements par valeur d'un champ, triés par
+ * quantité décroissante. Les valeurs sont internées et les quantités gardées
+ * sous forme de long : aucune mise en forme n'est faite ici, elle est laissée
+ * à l'affichage.
+ * <p>
+ * Une table n'est jamais modifiée après sa construction et peut donc être
+ * partagée entre threads.</p>
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public final class TableDeComptages implements Serializable {
+
+    /**
+     * Table sans comptage
+     */
+    public static final TableDeComptages VIDE = new TableDeComptages(new String[0], new long[0]);
+
+    /**
+     * Valeurs du champ
+     */
+    private final String[] cles;
+
+    /**
+     * Nombre d'événements pour chaque valeur
+     */
+    private final long[] quantites;
+
+    /**
+     * Constructeur privé, voir depuis()
+     *
+     * @param cles valeurs du champ, internées
+     * @param quantites nombre d'événements pour chaque valeur
+     */
+    private TableDeComptages(String[] cles, long[] quantites) {
+        this.cles = cles;
+        this.quantites = quantites;
+    }
+
+    /**
+     * Construit une table à partir de comptages.
+     *
+     * @param comptages nombre d'événements par valeur
+     * @return la table triée par quantité décroissante
+     */
+    public static TableDeComptages depuis(Map<String, Long> comptages) {
+        List<Map.Entry<String, Long>> rangees;
+        String[] cles;
+        long[] quantites;
+        int i;
+
+        if (comptages.isEmpty()) {
+            return VIDE;
+        }
+        rangees = new ArrayList<>(comptages.entrySet());
+        Collections.sort(rangees, new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare(Map.Entry<String, Long> rangee1, Map.Entry<String, Long> rangee2) {
+                return Long.compare(rangee2.getValue(), rangee1.getValue());
+            }
+        });
+        cles = new String[rangees.size()];
+        quantites = new long[rangees.size()];
+        for (i = 0; i < cles.length; i++) {
+            cles[i] = rangees.get(i).getKey().intern();
+            quantites[i] = rangees.get(i).getValue();
+        }
+        return new TableDeComptages(cles, quantites);
+    }
+
+    /**
+     * @return le nombre de valeurs
+     */
+    public int getTaille() {
+        return cles.length;
+    }
+
+    /**
+     * @param i rang de la valeur, 0 pour la plus fréquente
+     * @return la valeur
+     */
+    public String getCle(int i) {
+        return cles[i];
+    }
+
+    /**
+     * @param i rang de la valeur, 0 pour la plus fréquente
+     * @return le nombre d'événements pour cette valeur
+     */
+    public long getQuantite(int i) {
+        return quantites[i];
+    }
+
+    /**
+     * @param cle valeur recherchée
+     * @return le nombre d'événements pour cette valeur, 0 si elle est absente
+     */
+    public long quantite(String cle) {
+        int i;
+
+        for (i = 0; i < cles.length; i++) {
+            if (cles[i].equals(cle)) {
+                return quantites[i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return les valeurs, à ne pas modifier
+     */
+    String[] cles() {
+        return cles;
+    }
+
+    /**
+     * @return les quantités, à ne pas modifier
+     */
+    long[] quantites() {
+        return quantites;
+    }
+
+    /**
+     * Retourne l'objet sous forme textuelle
+     *
+     * @return retourne l'objet sous forme textuelle
+     */
+    @Override
+    public String toString() {
+        StringBuilder texte = new StringBuilder("{");
+        int i;
+
+        for (i = 0; i < cles.length; i++) {
+            if (i > 0) {
+                texte.append(", ");
+            }
+            texte.append(cles[i]).append(':').append(quantites[i]);
+        }
+        return texte.append('}').toString();
+    }
+}
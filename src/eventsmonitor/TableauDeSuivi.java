@@ -1,13 +1,29 @@
 package eventsmonitor;
 
-import static eventsmonitor.EventsMonitor.MAX_EVENTS;
-import static eventsmonitor.EventsMonitor.MAX_STATUS;
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
 import java.awt.Toolkit;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.text.DecimalFormat;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTabbedPane;
+import javax.swing.JTable;
+import javax.swing.JToggleButton;
 import javax.swing.table.TableColumn;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
@@ -16,12 +32,22 @@ import org.joda.time.format.DateTimeFormatter;
  * Classe décrivant le tableau de suivi
  *
  * @author Thierry Baribaud
- * @version 0.05
+ * @version 0.17
  */
 public class TableauDeSuivi extends javax.swing.JFrame implements PropertyChangeListener {
 
     private static final DateTimeFormatter format3 = DateTimeFormat.forPattern("'le 'dd-MM-yy' à 'HH:mm:ss");
     private static final DecimalFormat decimalFormat = new DecimalFormat("#,##0");
+    private static final DecimalFormat debitFormat = new DecimalFormat("#,##0.00");
+    private static final DecimalFormat retardFormat = new DecimalFormat("#,##0.0");
+    private static final DecimalFormat deriveFormat = new DecimalFormat("+#,##0;-#,##0");
+    private static final DecimalFormat pourcentageFormat = new DecimalFormat("+0.000 %;-0.000 %");
+    private static final DecimalFormat scoreFormat = new DecimalFormat("+0.0;-0.0");
+
+    /**
+     * Couleur des débits inhabituels
+     */
+    private static final Color COULEUR_ANOMALIE = new Color(200, 100, 0);
 
     /**
      * Creates new form TableauDeSuivi
@@ -29,8 +55,270 @@ public class TableauDeSuivi extends javax.swing.JFrame implements PropertyChange
     public TableauDeSuivi(boolean debugMode) {
         TableauDeSuivi.debugMode = debugMode;
         initComponents();
+        initComplements();
+    }
+
+    /**
+     * Ajoute au formulaire les composants qui ne sont pas gérés par l'éditeur
+     * de formulaires : la barre d'état en bas de la fenêtre.
+     */
+    private void initComplements() {
+        JPanel barreDEtat;
+        JPanel haut;
+        JPanel signaux;
+
+        getContentPane().removeAll();
+        getContentPane().setLayout(new BorderLayout());
+        getContentPane().add(jPanel1, BorderLayout.CENTER);
+
+        tableauStatus.setDefaultRenderer(Long.class, new RenduNombre("#,##0"));
+        tableauStatus.setDefaultRenderer(Double.class, new RenduNombre("#,##0.00"));
+        tableauStatus.setDefaultRenderer(long[].class, new RenduIntervalle("#,##0"));
+        tableauEvenements.setDefaultRenderer(Long.class, new RenduNombre("#,##0"));
+        tableauEvenements.setDefaultRenderer(Double.class, new RenduNombre("#,##0.00"));
+        tableauEvenements.setDefaultRenderer(long[].class, new RenduIntervalle("#,##0"));
+
+        barreDEtat = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        pause = new JToggleButton("Pause");
+        pause.setEnabled(false);
+        pause.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                pauseActionPerformed(evt);
+            }
+        });
+        barreDEtat.add(pause);
+        etatOrdonnanceur = new JLabel(" ");
+        barreDEtat.add(etatOrdonnanceur);
+        compter = new JButton("Compter");
+        compter.setToolTipText("Compter exactement les événements à la prochaine mesure");
+        compter.setVisible(false);
+        compter.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                comptageEstime.demanderComptageExact();
+            }
+        });
+        barreDEtat.add(compter);
+        comparaison = new JLabel(" ");
+        comparaison.setVisible(false);
+        barreDEtat.add(comparaison);
+        getContentPane().add(barreDEtat, BorderLayout.SOUTH);
+
+        haut = new JPanel(new BorderLayout());
+        retards = new JLabel(" ");
+        retards.setVisible(false);
+        haut.add(retards, BorderLayout.NORTH);
+        histogrammeDArrivees = new HistogrammeDArrivees();
+        histogrammeDArrivees.setVisible(false);
+        haut.add(histogrammeDArrivees, BorderLayout.CENTER);
+        signaux = new JPanel(new BorderLayout());
+        alertes = new JLabel(" ");
+        alertes.setForeground(Color.RED);
+        alertes.setVisible(false);
+        signaux.add(alertes, BorderLayout.NORTH);
+        repartition = new JLabel(" ");
+        repartition.setVisible(false);
+        signaux.add(repartition, BorderLayout.CENTER);
+        anomalies = new JLabel(" ");
+        anomalies.setForeground(COULEUR_ANOMALIE);
+        anomalies.setVisible(false);
+        signaux.add(anomalies, BorderLayout.SOUTH);
+        haut.add(signaux, BorderLayout.SOUTH);
+        getContentPane().add(haut, BorderLayout.NORTH);
+
+        onglets = new JTabbedPane();
+        onglets.setPreferredSize(new Dimension(360, 0));
+
+        pack();
+    }
+
+    /**
+     * @param arrivees définit les arrivées d'événements par minute à afficher
+     */
+    public void setArrivees(ArriveesParMinute arrivees) {
+        this.arrivees = arrivees;
+        histogrammeDArrivees.setVisible(arrivees != null);
+        pack();
+    }
+
+    /**
+     * @param chronometrage définit le chronométrage des étapes des mesures à
+     * afficher dans l'onglet des diagnostics
+     */
+    public void setChronometrage(Chronometrage chronometrage) {
+        JTable tableau;
+
+        this.chronometrage = chronometrage;
+        tableau = new JTable(modeleDiagnostics);
+        tableau.setDefaultRenderer(Long.class, new RenduNombre("#,##0"));
+        tableau.setDefaultRenderer(Double.class, new RenduNombre("#,##0.00"));
+        onglets.addTab("Diagnostics", new JScrollPane(tableau));
+        ajouterOnglets();
+    }
+
+    /**
+     * @param comptageEstime définit le comptage estimé des événements, null
+     * s'ils sont toujours comptés exactement
+     */
+    public void setComptageEstime(ComptageEstime comptageEstime) {
+        this.comptageEstime = comptageEstime;
+        compter.setVisible(comptageEstime != null);
+        comparaison.setVisible(comptageEstime != null);
+    }
+
+    /**
+     * Affiche les onglets à droite du tableau s'ils ne le sont pas déjà.
+     */
+    private void ajouterOnglets() {
+        if (onglets.getParent() == null) {
+            getContentPane().add(onglets, BorderLayout.EAST);
+            getContentPane().revalidate();
+        }
+    }
+
+    /**
+     * @return le contenu de la fenêtre, pour l'afficher dans un onglet
+     */
+    public Container getPanneau() {
+        return getContentPane();
+    }
+
+    /**
+     * @param ordonnanceur définit l'ordonnanceur des mesures à piloter
+     */
+    public void setOrdonnanceur(Ordonnanceur ordonnanceur) {
+        this.ordonnanceur = ordonnanceur;
+        pause.setEnabled(ordonnanceur != null);
+    }
+
+    /**
+     * Suspend ou reprend les mesures.
+     *
+     * @param evt événement sur le bouton pause
+     */
+    private void pauseActionPerformed(java.awt.event.ActionEvent evt) {
+        if (ordonnanceur == null) {
+            return;
+        }
+        if (pause.isSelected()) {
+            ordonnanceur.suspendre();
+            etatOrdonnanceur.setText("Mesures suspendues");
+        } else {
+            ordonnanceur.reprendre();
+            etatOrdonnanceur.setText("Reprise des mesures");
+        }
     }
 
+    /**
+     * Modèle du tableau des status
+     */
+    private final ModeleDeComptages modeleStatus = new ModeleDeComptages("Status");
+
+    /**
+     * Modèle du tableau des événements
+     */
+    private final ModeleDeComptages modeleEvenements = new ModeleDeComptages("Evénement");
+
+    /**
+     * Dernière mesure reçue et pas encore affichée
+     */
+    private final AtomicReference<Affichage> affichageEnAttente = new AtomicReference<>();
+
+    /**
+     * Nombre de mesures reçues remplacées par une plus récente avant d'avoir
+     * été affichées
+     */
+    private final AtomicLong nombreDAffichagesAbandonnes = new AtomicLong();
+
+    /**
+     * Ordonnanceur des mesures, null si les mesures ne sont pas pilotables
+     */
+    private Ordonnanceur ordonnanceur = null;
+
+    /**
+     * Bouton suspendant ou reprenant les mesures
+     */
+    private JToggleButton pause;
+
+    /**
+     * Etat de l'ordonnanceur : période courante et tops sautés
+     */
+    private JLabel etatOrdonnanceur;
+
+    /**
+     * Comptage estimé des événements, null s'ils sont toujours comptés
+     * exactement
+     */
+    private ComptageEstime comptageEstime = null;
+
+    /**
+     * Bouton demandant un comptage exact des événements
+     */
+    private JButton compter;
+
+    /**
+     * Ecart entre les nombres estimé et exact d'événements lors de leur
+     * dernière comparaison
+     */
+    private JLabel comparaison;
+
+    /**
+     * Arrivées d'événements par minute, null si elles ne sont pas suivies
+     */
+    private ArriveesParMinute arrivees = null;
+
+    /**
+     * Panneau affichant les arrivées d'événements par minute
+     */
+    private HistogrammeDArrivees histogrammeDArrivees;
+
+    /**
+     * Répartition des retards des événements reçus récemment
+     */
+    private JLabel retards;
+
+    /**
+     * Alertes en cours
+     */
+    private JLabel alertes;
+
+    /**
+     * Alertes en cours affichées, la liste ne changeant qu'au déclenchement ou
+     * à la levée d'une alerte
+     */
+    private List<Alerte> alertesAffichees = Collections.emptyList();
+
+    /**
+     * Types d'événement dont le débit s'écarte de leur débit habituel
+     */
+    private JLabel anomalies;
+
+    /**
+     * Nature des regroupements par status et par type d'événement quand ils
+     * sont estimés sur un échantillon
+     */
+    private JLabel repartition;
+
+    /**
+     * Onglets à droite du tableau : diagnostics et indicateurs du catalogue,
+     * affichés dès qu'ils ont un contenu
+     */
+    private JTabbedPane onglets;
+
+    /**
+     * Chronométrage des étapes des mesures, null s'il n'est pas affiché
+     */
+    private Chronometrage chronometrage = null;
+
+    /**
+     * Modèle du tableau de diagnostics
+     */
+    private final ModeleDeDiagnostics modeleDiagnostics = new ModeleDeDiagnostics();
+
+    /**
+     * Modèles des tableaux des indicateurs du catalogue, par indicateur
+     */
+    private final Map<String, ModeleDeComptages> modelesIndicateurs = new HashMap<>();
+
     /**
      * debugMode : fonctionnement du programme en mode debug (true/false).
      * Valeur par défaut : false.
@@ -83,87 +371,10 @@ public class TableauDeSuivi extends javax.swing.JFrame implements PropertyChange
         jLabel4.setMinimumSize(new java.awt.Dimension(128, 14));
         jLabel4.setPreferredSize(new java.awt.Dimension(128, 14));
 
-        tableauStatus.setModel(new javax.swing.table.DefaultTableModel(
-            new Object [][] {
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null}
-            },
-            new String [] {
-                "Status", "Quantité"
-            }
-        ) {
-            Class[] types = new Class [] {
-                java.lang.String.class, java.lang.String.class
-            };
-            boolean[] canEdit = new boolean [] {
-                false, false
-            };
-
-            public Class getColumnClass(int columnIndex) {
-                return types [columnIndex];
-            }
-
-            public boolean isCellEditable(int rowIndex, int columnIndex) {
-                return canEdit [columnIndex];
-            }
-        });
+        tableauStatus.setModel(modeleStatus);
         jScrollPane1.setViewportView(tableauStatus);
 
-        tableauEvenements.setModel(new javax.swing.table.DefaultTableModel(
-            new Object [][] {
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null},
-                {null, null}
-            },
-            new String [] {
-                "Evénement", "Quantité"
-            }
-        ) {
-            Class[] types = new Class [] {
-                java.lang.String.class, java.lang.String.class
-            };
-            boolean[] canEdit = new boolean [] {
-                false, false
-            };
-
-            public Class getColumnClass(int columnIndex) {
-                return types [columnIndex];
-            }
-
-            public boolean isCellEditable(int rowIndex, int columnIndex) {
-                return canEdit [columnIndex];
-            }
-        });
+        tableauEvenements.setModel(modeleEvenements);
         TableColumn col1;
         TableColumn col2;
         int width;
@@ -175,7 +386,7 @@ public class TableauDeSuivi extends javax.swing.JFrame implements PropertyChange
         col2 = tableauEvenements.getColumnModel().getColumn(1);
         //System.out.println("col#2.with="+col.getWidth());
         width+= col2.getWidth();
-        w1 = (int) (90*width/100);
+        w1 = (int) (60*width/100);
         w2 = width - w1;
 
         tableauEvenements.getColumnModel().getColumn(0).setPreferredWidth(w1);
@@ -194,7 +405,7 @@ public class TableauDeSuivi extends javax.swing.JFrame implements PropertyChange
                         .addComponent(quitter))
                     .addGroup(jPanel1Layout.createSequentialGroup()
                         .addGap(55, 55, 55)
-                        .addComponent(jScrollPane1, javax.swing.GroupLayout.PREFERRED_SIZE, 167, javax.swing.GroupLayout.PREFERRED_SIZE))
+                        .addComponent(jScrollPane1, javax.swing.GroupLayout.PREFERRED_SIZE, 400, javax.swing.GroupLayout.PREFERRED_SIZE))
                     .addGroup(jPanel1Layout.createSequentialGroup()
                         .addGroup(jPanel1Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                             .addGroup(jPanel1Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.TRAILING, false)
@@ -209,7 +420,7 @@ public class TableauDeSuivi extends javax.swing.JFrame implements PropertyChange
                             .addComponent(dateDerniereMesure, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                             .addComponent(nombreDeMesures, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))))
                 .addGap(6, 6, 6)
-                .addComponent(jScrollPane2, javax.swing.GroupLayout.PREFERRED_SIZE, 290, javax.swing.GroupLayout.PREFERRED_SIZE)
+                .addComponent(jScrollPane2, javax.swing.GroupLayout.PREFERRED_SIZE, 560, javax.swing.GroupLayout.PREFERRED_SIZE)
                 .addContainerGap(20, Short.MAX_VALUE))
         );
         jPanel1Layout.setVerticalGroup(
@@ -323,8 +534,6 @@ public class TableauDeSuivi extends javax.swing.JFrame implements PropertyChange
         String message;
         Controleur controleur;
         ListeDeMesures listeDeMesures;
-        int i;
-        int j;
 
         message = "reçu " + propertyChangeEvent;
         if (debugMode) {
@@ -334,20 +543,338 @@ public class TableauDeSuivi extends javax.swing.JFrame implements PropertyChange
         if (source instanceof Controleur) {
             controleur = (Controleur) source;
             listeDeMesures = controleur.getListeDeMesures();
-            nombreDEvenements.setText(decimalFormat.format(listeDeMesures.getNombreDEvenements()));
-            dateDernierEvenement.setText(listeDeMesures.getDateDernierEvenement().toString(format3));
-            dateDerniereMesure.setText(listeDeMesures.getDateDeLaMesure().toString(format3));
-            nombreDeMesures.setText(decimalFormat.format(controleur.getNombreDeMesures()));
-            for (i = 0; i < MAX_STATUS; i++) {
-                for (j = 0; j < 2; j++) {
-//                    System.out.println("i="+i+", j="+j);
-                    tableauStatus.getModel().setValueAt(listeDeMesures.getTableauStatus(i, j), i, j);
-                }
+            if (affichageEnAttente.getAndSet(new Affichage(controleur.getNombreDeMesures(), listeDeMesures)) == null) {
+                java.awt.EventQueue.invokeLater(new Runnable() {
+                    public void run() {
+                        afficher();
+                    }
+                });
+            } else {
+                nombreDAffichagesAbandonnes.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Affiche la dernière mesure reçue. Appelée dans le thread de l'interface
+     * graphique ; les mesures reçues entre deux affichages ne sont pas
+     * affichées.
+     */
+    private void afficher() {
+        Affichage affichage;
+        ListeDeMesures listeDeMesures;
+        long debut;
+
+        debut = System.nanoTime();
+        affichage = affichageEnAttente.getAndSet(null);
+        if (affichage == null) {
+            return;
+        }
+        listeDeMesures = affichage.listeDeMesures;
+        nombreDEvenements.setText(decimalFormat.format(listeDeMesures.getNombreDEvenements())
+                + formaterNature(listeDeMesures.getEtatDuComptage())
+                + formaterDebit(listeDeMesures.getDebit(HistoriqueDeMesures.SERIE_TOTAL)));
+        afficherComparaison(listeDeMesures.getEtatDuComptage());
+        dateDernierEvenement.setText((listeDeMesures.getDateDernierEvenement() == null) ? ""
+                : listeDeMesures.getDateDernierEvenement().toString(format3));
+        dateDerniereMesure.setText(listeDeMesures.getDateDeLaMesure().toString(format3)
+                + (listeDeMesures.isPerimee() ? " (périmée, top abandonné)" : ""));
+        nombreDeMesures.setText(decimalFormat.format(affichage.nombreDeMesures));
+        if (ordonnanceur != null && !ordonnanceur.isEnPause()) {
+            etatOrdonnanceur.setText("Période : " + ordonnanceur.getPeriode() / 1000 + " s"
+                    + ", dernière mesure : " + decimalFormat.format(ordonnanceur.getDureeDerniereMesure()) + " ms"
+                    + ", tops sautés : " + decimalFormat.format(ordonnanceur.getNombreDeTopsSautes())
+                    + ", affichages abandonnés : " + decimalFormat.format(nombreDAffichagesAbandonnes.get()));
+        } else if (ordonnanceur == null) {
+            etatOrdonnanceur.setText("Mesures reçues : " + decimalFormat.format(affichage.nombreDeMesures)
+                    + ", affichages abandonnés : " + decimalFormat.format(nombreDAffichagesAbandonnes.get()));
+        }
+        modeleStatus.remplacer(affichage.status.cles, affichage.status.quantites, affichage.status.debits,
+                affichage.status.intervalles);
+        modeleEvenements.remplacer(affichage.evenements.cles, affichage.evenements.quantites,
+                affichage.evenements.debits, affichage.evenements.intervalles);
+        afficherRepartition(listeDeMesures.getRepartitionEstimee());
+        if (arrivees != null) {
+            histogrammeDArrivees.mettreAJour(arrivees);
+        }
+        afficherRetards(listeDeMesures.getLatences());
+        afficherAlertes(listeDeMesures.getAlertes());
+        afficherAnomalies(listeDeMesures.getAnomalies());
+        afficherIndicateurs(listeDeMesures.getIndicateurs());
+        if (chronometrage != null) {
+            modeleDiagnostics.remplacer(chronometrage.resumer());
+            chronometrage.enregistrer(Chronometrage.AFFICHAGE, debut);
+        }
+    }
+
+    /**
+     * @param etatDuComptage nature du nombre d'événements, null s'il est
+     * toujours compté exactement
+     * @return la nature du nombre d'événements à afficher après lui
+     */
+    private static String formaterNature(EtatDuComptage etatDuComptage) {
+        if (etatDuComptage == null) {
+            return "";
+        }
+        return etatDuComptage.isExact() ? " exact" : " estimé";
+    }
+
+    /**
+     * Affiche l'écart entre les nombres estimé et exact d'événements lors de
+     * leur dernière comparaison.
+     *
+     * @param etatDuComptage nature du nombre d'événements, null s'il est
+     * toujours compté exactement
+     */
+    private void afficherComparaison(EtatDuComptage etatDuComptage) {
+        if (etatDuComptage == null || etatDuComptage.getDateDeComparaison() == null) {
+            return;
+        }
+        comparaison.setText("Dernier comptage exact "
+                + etatDuComptage.getDateDeComparaison().toString(format3)
+                + ", écart de l'estimation : " + deriveFormat.format(etatDuComptage.getDerive())
+                + ((etatDuComptage.getNombreExact() == 0) ? ""
+                : " (" + pourcentageFormat.format((double) etatDuComptage.getDerive()
+                        / etatDuComptage.getNombreExact()) + ")"));
+    }
+
+    /**
+     * Signale que les regroupements par status et par type d'événement sont
+     * estimés sur un échantillon.
+     *
+     * @param repartitionEstimee intervalles de confiance des regroupements,
+     * null s'ils sont exacts
+     */
+    private void afficherRepartition(RepartitionEstimee repartitionEstimee) {
+        if (repartitionEstimee != null) {
+            repartition.setText("Répartitions estimées sur un échantillon de "
+                    + decimalFormat.format(repartitionEstimee.getTailleDeLEchantillon())
+                    + " événement(s), intervalles de confiance à 95 %"
+                    + ((repartitionEstimee.getDateDuDernierRegroupementExact() == null) ? ""
+                    : ", dernier regroupement exact "
+                    + repartitionEstimee.getDateDuDernierRegroupementExact().toString(format3)));
+        }
+        if (repartition.isVisible() == (repartitionEstimee == null)) {
+            repartition.setVisible(repartitionEstimee != null);
+            getContentPane().revalidate();
+        }
+    }
+
+    /**
+     * Affiche la répartition des retards des événements reçus récemment.
+     *
+     * @param latences répartition des retards, null si elle n'est pas suivie
+     */
+    private void afficherRetards(Latences latences) {
+        if (latences == null) {
+            return;
+        }
+        if (!retards.isVisible()) {
+            retards.setVisible(true);
+            getContentPane().revalidate();
+        }
+        retards.setText("Retard des événements reçus : médiane " + formaterRetard(latences.getP50())
+                + ", p95 " + formaterRetard(latences.getP95())
+                + ", p99 " + formaterRetard(latences.getP99())
+                + ", max " + formaterRetard(latences.getMax())
+                + " (" + decimalFormat.format(latences.getNombre()) + " événement(s))");
+    }
+
+    /**
+     * Affiche les alertes en cours, une par ligne, si elles ont changé.
+     *
+     * @param enCours alertes en cours
+     */
+    private void afficherAlertes(List<Alerte> enCours) {
+        StringBuilder texte;
+
+        if (enCours == alertesAffichees) {
+            return;
+        }
+        alertesAffichees = enCours;
+        if (!enCours.isEmpty()) {
+            texte = new StringBuilder("<html>");
+            for (Alerte alerte : enCours) {
+                texte.append("Alerte ").append(alerte.getDescription().replace("&", "&amp;").replace("<", "&lt;"))
+                        .append(" depuis ").append(alerte.getDateDeDeclenchement().toString(format3))
+                        .append("<br>");
+            }
+            alertes.setText(texte.append("</html>").toString());
+        }
+        if (alertes.isVisible() == enCours.isEmpty()) {
+            alertes.setVisible(!enCours.isEmpty());
+            getContentPane().revalidate();
+        }
+    }
+
+    /**
+     * Affiche les types d'événement dont le débit s'écarte de leur débit
+     * habituel à ce moment de la semaine.
+     *
+     * @param ecarts débits inhabituels
+     */
+    private void afficherAnomalies(List<Anomalie> ecarts) {
+        StringBuilder texte;
+
+        if (!ecarts.isEmpty()) {
+            texte = new StringBuilder("Débits inhabituels :");
+            for (Anomalie anomalie : ecarts) {
+                texte.append(' ').append(anomalie.getTypeDEvenement())
+                        .append(' ').append(debitFormat.format(anomalie.getDebit())).append(" /min au lieu de ")
+                        .append(debitFormat.format(anomalie.getDebitAttendu())).append(" /min (")
+                        .append(scoreFormat.format(anomalie.getScore())).append(" écarts-types)");
+            }
+            anomalies.setText(texte.toString());
+        }
+        if (anomalies.isVisible() == ecarts.isEmpty()) {
+            anomalies.setVisible(!ecarts.isEmpty());
+            getContentPane().revalidate();
+        }
+    }
+
+    /**
+     * @param retard retard en millisecondes
+     * @return le retard dans l'unité la plus lisible
+     */
+    static String formaterRetard(long retard) {
+        if (retard < 1000) {
+            return retard + " ms";
+        } else if (retard < 60000) {
+            return retardFormat.format(retard / 1000.0) + " s";
+        } else if (retard < 3600000) {
+            return retard / 60000 + " min " + retard / 1000 % 60 + " s";
+        }
+        return retard / 3600000 + " h " + retard / 60000 % 60 + " min";
+    }
+
+    /**
+     * Affiche les indicateurs du catalogue, un onglet par indicateur.
+     *
+     * @param indicateurs nombre de documents par valeur, par indicateur
+     */
+    private void afficherIndicateurs(Map<String, TableDeComptages> indicateurs) {
+        ModeleDeComptages modele;
+        JTable tableau;
+        TableDeComptages comptages;
+
+        for (Map.Entry<String, TableDeComptages> indicateur : indicateurs.entrySet()) {
+            modele = modelesIndicateurs.get(indicateur.getKey());
+            if (modele == null) {
+                modele = new ModeleDeComptages(indicateur.getKey());
+                modelesIndicateurs.put(indicateur.getKey(), modele);
+                tableau = new JTable(modele);
+                tableau.setDefaultRenderer(Long.class, new RenduNombre("#,##0"));
+                tableau.setDefaultRenderer(Double.class, new RenduNombre("#,##0.00"));
+                onglets.addTab(indicateur.getKey(), new JScrollPane(tableau));
+                ajouterOnglets();
+            }
+            comptages = indicateur.getValue();
+            modele.remplacer(comptages.cles(), comptages.quantites(), new double[comptages.getTaille()][]);
+        }
+    }
+
+    /**
+     * @param debits débits sur 1, 5 et 15 minutes, null si inconnus
+     * @return le débit sur 1 minute à afficher après un nombre d'événements
+     */
+    private static String formaterDebit(double[] debits) {
+        return (debits == null) ? "" : " (" + debitFormat.format(debits[0]) + " /s)";
+    }
+
+    /**
+     * Classe décrivant une mesure prête à être affichée. Elle est préparée
+     * dans le thread de mesure pour alléger le thread de l'interface
+     * graphique.
+     */
+    private static class Affichage {
+
+        /**
+         * Nombre de mesures faites
+         */
+        private final long nombreDeMesures;
+
+        /**
+         * Mesure à afficher
+         */
+        private final ListeDeMesures listeDeMesures;
+
+        /**
+         * Rangées du tableau des status
+         */
+        private final Rangees status;
+
+        /**
+         * Rangées du tableau des événements
+         */
+        private final Rangees evenements;
+
+        /**
+         * Constructeur principal
+         *
+         * @param nombreDeMesures nombre de mesures faites
+         * @param listeDeMesures mesure à afficher
+         */
+        private Affichage(long nombreDeMesures, ListeDeMesures listeDeMesures) {
+            this.nombreDeMesures = nombreDeMesures;
+            this.listeDeMesures = listeDeMesures;
+            this.status = new Rangees(listeDeMesures.getStatus(), true, listeDeMesures);
+            this.evenements = new Rangees(listeDeMesures.getEvenements(), false, listeDeMesures);
+        }
+    }
+
+    /**
+     * Classe décrivant les rangées d'un tableau de comptages, triées par
+     * quantité décroissante.
+     */
+    private static class Rangees {
+
+        /**
+         * Valeur de chaque rangée
+         */
+        private final String[] cles;
+
+        /**
+         * Quantité de chaque rangée
+         */
+        private final long[] quantites;
+
+        /**
+         * Débits lissés de chaque rangée
+         */
+        private final double[][] debits;
+
+        /**
+         * Bornes basse et haute de l'intervalle de confiance à 95 % de chaque
+         * rangée, null si les quantités sont exactes
+         */
+        private final long[][] intervalles;
+
+        /**
+         * Constructeur principal
+         *
+         * @param comptages nombre d'événements par valeur
+         * @param status true pour des status, false pour des types d'événement
+         * @param listeDeMesures mesure portant les débits
+         */
+        private Rangees(TableDeComptages comptages, boolean status, ListeDeMesures listeDeMesures) {
+            RepartitionEstimee repartitionEstimee;
+            int i;
+
+            cles = comptages.cles();
+            quantites = comptages.quantites();
+            debits = new double[cles.length][];
+            for (i = 0; i < cles.length; i++) {
+                debits[i] = listeDeMesures.getDebit(status
+                        ? HistoriqueDeMesures.serieStatus(cles[i]) : HistoriqueDeMesures.serieEvenement(cles[i]));
             }
-            for (i = 0; i < MAX_EVENTS; i++) {
-                for (j = 0; j < 2; j++) {
-//                    System.out.println("i="+i+", j="+j);
-                    tableauEvenements.getModel().setValueAt(listeDeMesures.getTableauEvenements(i, j), i, j);
+            repartitionEstimee = listeDeMesures.getRepartitionEstimee();
+            if (repartitionEstimee == null) {
+                intervalles = null;
+            } else {
+                intervalles = new long[cles.length][];
+                for (i = 0; i < cles.length; i++) {
+                    intervalles[i] = new long[]{repartitionEstimee.getBorneBasse(status, i),
+                        repartitionEstimee.getBorneHaute(status, i)};
                 }
             }
         }
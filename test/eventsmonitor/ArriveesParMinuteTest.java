@@ -0,0 +1,84 @@
+package eventsmonitor;
+
+import java.util.HashMap;
+import static eventsmonitor.MoteurDeltaTest.evenement;
+import org.bson.Document;
+import org.joda.time.DateTime;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Tests du nombre d'événements arrivés par minute.
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class ArriveesParMinuteTest {
+
+    /**
+     * Minute de 2026-10-18T10:00Z, en minutes depuis le 1er janvier 1970
+     */
+    private static final long DIX_HEURES = new DateTime("2026-10-18T10:00:00.000Z").getMillis() / 60000;
+
+    /**
+     * @param date date de la mesure au format ISO 8601
+     * @param nombre nombre total d'événements
+     * @return une mesure
+     */
+    private static ListeDeMesures mesure(String date, long nombre) {
+        ListeDeMesures mesure;
+
+        mesure = new ListeDeMesures(nombre, null, new HashMap<String, Long>(), new HashMap<String, Long>(), false);
+        mesure.setDateDeLaMesure(new DateTime(date));
+        return mesure;
+    }
+
+    /**
+     * L'historique est lu à la première mesure, puis chaque mesure ajoute à
+     * sa minute l'augmentation du nombre d'événements, les minutes sautées
+     * étant à zéro.
+     */
+    @Test
+    public void litLHistoriquePuisSuitLesMesures() {
+        CollectionEnMemoire collection = new CollectionEnMemoire();
+        ArriveesParMinute arrivees = new ArriveesParMinute(collection, 5, false);
+        long[] comptes = new long[5];
+        int id;
+
+        for (id = 0; id < 130; id++) {
+            collection.inserer(evenement(id));
+        }
+        arrivees.mettreAJour(mesure("2026-10-18T10:02:30.000Z", 130));
+        assertEquals(DIX_HEURES + 2, arrivees.copier(comptes));
+        assertArrayEquals(new long[]{0, 0, 60, 60, 10}, comptes);
+        arrivees.mettreAJour(mesure("2026-10-18T10:02:50.000Z", 134));
+        arrivees.mettreAJour(mesure("2026-10-18T10:03:10.000Z", 141));
+        assertEquals(DIX_HEURES + 3, arrivees.copier(comptes));
+        assertArrayEquals(new long[]{0, 60, 60, 14, 7}, comptes);
+        arrivees.mettreAJour(mesure("2026-10-18T10:05:10.000Z", 140));
+        assertEquals(DIX_HEURES + 5, arrivees.copier(comptes));
+        assertArrayEquals(new long[]{60, 14, 7, 0, 0}, comptes);
+        arrivees.mettreAJour(mesure("2026-10-18T10:20:00.000Z", 143));
+        assertEquals(DIX_HEURES + 20, arrivees.copier(comptes));
+        assertArrayEquals(new long[]{0, 0, 0, 0, 3}, comptes);
+    }
+
+    /**
+     * Les minutes de sentDate sont lues dans le fuseau horaire du dernier
+     * événement.
+     */
+    @Test
+    public void litLesMinutesDansLeFuseauDesEvenements() {
+        CollectionEnMemoire collection = new CollectionEnMemoire();
+        ArriveesParMinute arrivees = new ArriveesParMinute(collection, 3, false);
+        long[] comptes = new long[3];
+
+        collection.inserer(new Document("_id", 1).append("sentDate", "2026-10-18T12:00:10.000+02:00"));
+        collection.inserer(new Document("_id", 2).append("sentDate", "2026-10-18T12:01:10.000+02:00"));
+        collection.inserer(new Document("_id", 3).append("sentDate", "2026-10-18T12:01:20.000+02:00"));
+        arrivees.mettreAJour(mesure("2026-10-18T10:01:30.000Z", 3));
+        assertEquals(DIX_HEURES + 1, arrivees.copier(comptes));
+        assertArrayEquals(new long[]{0, 1, 2}, comptes);
+    }
+}
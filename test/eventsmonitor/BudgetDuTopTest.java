@@ -0,0 +1,116 @@
+package eventsmonitor;
+
+import static eventsmonitor.MoteurDeltaTest.evenement;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Tests du budget d'un top et de l'abandon des mesures trop longues.
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class BudgetDuTopTest {
+
+    /**
+     * @param budget budget à interroger
+     * @param message partie attendue du message du refus
+     */
+    private static void verifierRefus(BudgetDuTop budget, String message) {
+        try {
+            budget.accorder(1000);
+            fail("Requête acceptée hors budget");
+        } catch (DepassementDeBudgetException exception) {
+            assertTrue(exception.getMessage(), exception.getMessage().contains(message));
+        }
+    }
+
+    /**
+     * Une requête reçoit le plus petit de son délai et du temps restant,
+     * avant le premier top son seul délai, et elle est refusée une fois le
+     * budget épuisé ou le top terminé.
+     *
+     * @throws InterruptedException si l'attente est interrompue
+     */
+    @Test
+    public void accordeLeTempsRestantDuTop() throws InterruptedException {
+        BudgetDuTop budget = new BudgetDuTop(200);
+        long accorde;
+
+        assertEquals(5000, budget.accorder(5000));
+        assertEquals(0, budget.accorder(0));
+        budget.ouvrir();
+        assertEquals(50, budget.accorder(50));
+        accorde = budget.accorder(5000);
+        assertTrue(String.valueOf(accorde), accorde > 0 && accorde <= 200);
+        accorde = budget.accorder(0);
+        assertTrue(String.valueOf(accorde), accorde > 0 && accorde <= 200);
+        Thread.sleep(250);
+        verifierRefus(budget, "épuisé");
+        budget.ouvrir();
+        budget.fermer();
+        verifierRefus(budget, "terminé");
+        budget.ouvrir();
+        assertEquals(50, budget.accorder(50));
+    }
+
+    /**
+     * Un top qui dépasse son budget est abandonné : la mesure précédente est
+     * republiée une seule fois, marquée périmée, sans compter de nouvelle
+     * mesure.
+     */
+    @Test
+    public void abandonneLesTopsHorsBudget() {
+        final CollectionEnMemoire collection = new CollectionEnMemoire();
+        final BudgetDuTop budget = new BudgetDuTop(200);
+        final boolean[] lent = {false};
+        MoteurDeMesures moteur = new MoteurDeMesures() {
+            private final MoteurComplet complet = new MoteurComplet(collection, false);
+
+            @Override
+            public ListeDeMesures mesurer() {
+                if (lent[0]) {
+                    try {
+                        Thread.sleep(250);
+                    } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                    }
+                    budget.accorder(1000);
+                }
+                return complet.mesurer();
+            }
+
+            @Override
+            public void arreter() {
+            }
+        };
+        Controleur controleur = new Controleur(moteur, false);
+        ListeDeMesures premiere;
+        ListeDeMesures perimee;
+
+        collection.inserer(evenement(1));
+        controleur.setBudget(budget);
+        controleur.run();
+        premiere = controleur.getListeDeMesures();
+        assertFalse(premiere.isPerimee());
+        lent[0] = true;
+        controleur.run();
+        perimee = controleur.getListeDeMesures();
+        assertTrue(perimee.isPerimee());
+        assertEquals(premiere.getNombreDEvenements(), perimee.getNombreDEvenements());
+        controleur.run();
+        assertSame(perimee, controleur.getListeDeMesures());
+        assertEquals(2, controleur.getNombreDeTopsAbandonnes());
+        assertEquals(1, controleur.getNombreDeMesures());
+        lent[0] = false;
+        collection.inserer(evenement(2));
+        controleur.run();
+        assertFalse(controleur.getListeDeMesures().isPerimee());
+        assertEquals(2, controleur.getListeDeMesures().getNombreDEvenements());
+        assertEquals(2, controleur.getNombreDeMesures());
+    }
+}
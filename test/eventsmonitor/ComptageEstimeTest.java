@@ -0,0 +1,117 @@
+package eventsmonitor;
+
+import java.util.List;
+import static eventsmonitor.MoteurDeltaTest.evenement;
+import org.bson.Document;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests du comptage estimé avec comparaison périodique au nombre exact.
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class ComptageEstimeTest {
+
+    /**
+     * Collection des événements
+     */
+    private CollectionEnMemoire collection;
+
+    /**
+     * Ecart entre le nombre estimé et le nombre exact
+     */
+    private long ecart;
+
+    /**
+     * Collection dont le nombre estimé s'écarte du nombre exact
+     */
+    private CollectionDEvenements estimee;
+
+    /**
+     * Prépare une collection de 100 événements dont le nombre estimé est
+     * faux de 20.
+     */
+    @Before
+    public void preparer() {
+        int id;
+
+        collection = new CollectionEnMemoire();
+        for (id = 0; id < 100; id++) {
+            collection.inserer(evenement(id));
+        }
+        ecart = 20;
+        estimee = new CollectionDEvenements() {
+            @Override
+            public long compter() {
+                return collection.compter();
+            }
+
+            @Override
+            public long estimer() {
+                return collection.compter() + ecart;
+            }
+
+            @Override
+            public Document premier(Document filtre, Document projection, Document tri) {
+                return collection.premier(filtre, projection, tri);
+            }
+
+            @Override
+            public List<Document> agreger(List<Document> pipeline) {
+                return collection.agreger(pipeline);
+            }
+
+            @Override
+            public List<Document> listerIndex() {
+                return collection.listerIndex();
+            }
+        };
+    }
+
+    /**
+     * Le premier comptage est exact, les suivants suivent le nombre estimé
+     * corrigé de l'écart, sans saut, et le comptage exact revient toutes les
+     * n mesures.
+     */
+    @Test
+    public void corrigeLeNombreEstimeDeLEcartMesure() {
+        ComptageEstime comptage = new ComptageEstime(estimee, 3, false);
+
+        assertEquals(100, comptage.compter());
+        assertTrue(comptage.getEtat().isExact());
+        assertEquals(20, comptage.getEtat().getDerive());
+        collection.inserer(evenement(100));
+        assertEquals(101, comptage.compter());
+        assertFalse(comptage.getEtat().isExact());
+        assertEquals(20, comptage.getEtat().getDerive());
+        ecart = 25;
+        assertEquals(106, comptage.compter());
+        assertEquals(101, comptage.compter());
+        assertTrue(comptage.getEtat().isExact());
+        assertEquals(25, comptage.getEtat().getDerive());
+        assertEquals(101, comptage.compter());
+    }
+
+    /**
+     * Un comptage exact demandé est fait à la mesure suivante.
+     */
+    @Test
+    public void compteExactementALaDemande() {
+        ComptageEstime comptage = new ComptageEstime(estimee, 100, false);
+
+        comptage.compter();
+        ecart = -10;
+        assertEquals(70, comptage.compter());
+        comptage.demanderComptageExact();
+        assertEquals(100, comptage.compter());
+        assertTrue(comptage.getEtat().isExact());
+        assertEquals(-10, comptage.getEtat().getDerive());
+        assertEquals(100, comptage.compter());
+        assertFalse(comptage.getEtat().isExact());
+    }
+}
@@ -0,0 +1,132 @@
+package eventsmonitor;
+
+import java.util.HashMap;
+import java.util.Map;
+import static eventsmonitor.HistoriqueDeMesures.SERIE_TOTAL;
+import static eventsmonitor.HistoriqueDeMesures.serieEvenement;
+import org.joda.time.DateTime;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests des débits lissés des événements.
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class DebitsDEvenementsTest {
+
+    /**
+     * Tolérance sur les débits (/s)
+     */
+    private static final double TOLERANCE = 1e-9;
+
+    /**
+     * @param instant date de la mesure en millisecondes
+     * @param total nombre total d'événements, tous du type "a"
+     * @return une mesure
+     */
+    private static ListeDeMesures mesure(long instant, long total) {
+        Map<String, Long> evenements = new HashMap<>();
+        ListeDeMesures mesure;
+
+        if (total > 0) {
+            evenements.put("a", total);
+        }
+        mesure = new ListeDeMesures(total, new DateTime(instant), new HashMap<String, Long>(), evenements, false);
+        mesure.setDateDeLaMesure(new DateTime(instant));
+        return mesure;
+    }
+
+    /**
+     * Un débit constant donne le même débit sur les trois fenêtres, dès la
+     * deuxième mesure.
+     */
+    @Test
+    public void donneUnDebitConstant() {
+        DebitsDEvenements debits = new DebitsDEvenements();
+        ListeDeMesures mesure;
+        int i;
+
+        mesure = mesure(0, 1000);
+        debits.mettreAJour(mesure);
+        assertNull(mesure.getDebit(SERIE_TOTAL));
+        for (i = 1; i <= 100; i++) {
+            mesure = mesure(i * 5000L, 1000 + i * 50L);
+            debits.mettreAJour(mesure);
+            assertArrayEquals(new double[]{10, 10, 10}, mesure.getDebit(SERIE_TOTAL), TOLERANCE);
+            assertArrayEquals(new double[]{10, 10, 10}, mesure.getDebit(serieEvenement("a")), TOLERANCE);
+        }
+    }
+
+    /**
+     * Après un arrêt des arrivées, la moyenne sur 1 minute baisse plus vite
+     * que celles sur 5 et 15 minutes, et une baisse du comptage compte pour
+     * un débit nul.
+     */
+    @Test
+    public void lisseSurTroisConstantesDeTemps() {
+        DebitsDEvenements debits = new DebitsDEvenements();
+        ListeDeMesures mesure;
+        double[] debit;
+
+        debits.mettreAJour(mesure(0, 0));
+        debits.mettreAJour(mesure(60000, 600));
+        mesure = mesure(120000, 300);
+        debits.mettreAJour(mesure);
+        debit = mesure.getDebit(SERIE_TOTAL);
+        assertEquals(10 * Math.exp(-1), debit[0], TOLERANCE);
+        assertEquals(10 * Math.exp(-0.2), debit[1], TOLERANCE);
+        assertEquals(10 * Math.exp(-60.0 / 900), debit[2], TOLERANCE);
+    }
+
+    /**
+     * Une mesure aux regroupements estimés reprend les débits par type du
+     * dernier regroupement exact, mais calcule le débit total.
+     */
+    @Test
+    public void reprendLesDebitsExactsPendantLesEstimations() {
+        DebitsDEvenements debits = new DebitsDEvenements();
+        ListeDeMesures mesure;
+        double[] exact;
+
+        debits.mettreAJour(mesure(0, 10));
+        mesure = mesure(10000, 100);
+        debits.mettreAJour(mesure);
+        exact = mesure.getDebit(serieEvenement("a"));
+        mesure = mesure(20000, 1000);
+        mesure.setRepartitionEstimee(new RepartitionEstimee(10, null, new long[0], new long[0],
+                new long[]{0}, new long[]{2000}));
+        debits.mettreAJour(mesure);
+        assertArrayEquals(exact, mesure.getDebit(serieEvenement("a")), TOLERANCE);
+        assertTrue(mesure.getDebit(SERIE_TOTAL)[0] > exact[0]);
+    }
+
+    /**
+     * Une série absente pendant trois fois 15 minutes est oubliée : à son
+     * retour, elle n'a de débit qu'à partir de la mesure suivante.
+     */
+    @Test
+    public void oublieLesSeriesDisparues() {
+        DebitsDEvenements debits = new DebitsDEvenements();
+        ListeDeMesures mesure;
+        long instant;
+
+        debits.mettreAJour(mesure(0, 10));
+        debits.mettreAJour(mesure(60000, 20));
+        for (instant = 120000; instant <= 60000 + 2700000 + 60000; instant += 60000) {
+            debits.mettreAJour(mesure(instant, 0));
+        }
+        mesure = mesure(instant, 5);
+        debits.mettreAJour(mesure);
+        assertNull(mesure.getDebit(serieEvenement("a")));
+        mesure = mesure(instant + 60000, 65);
+        debits.mettreAJour(mesure);
+        assertNotNull(mesure.getDebit(serieEvenement("a")));
+        assertArrayEquals(new double[]{1, 1, 1}, mesure.getDebit(serieEvenement("a")), TOLERANCE);
+    }
+}
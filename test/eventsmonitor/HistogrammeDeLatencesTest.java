@@ -0,0 +1,88 @@
+package eventsmonitor;
+
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests des quantiles de l'histogramme de latences.
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class HistogrammeDeLatencesTest {
+
+    /**
+     * Précision relative de l'histogramme : 32 cases par puissance de 2
+     */
+    private static final double PRECISION = 1.0 / 32;
+
+    /**
+     * Les quantiles sont justes à la précision d'une case près, par excès,
+     * et le maximum est exact.
+     */
+    @Test
+    public void donneLesQuantilesALaPrecisionDUneCase() {
+        HistogrammeDeLatences histogramme = new HistogrammeDeLatences(5, 60000);
+        double[] quantiles = {0.5, 0.95, 0.99};
+        long[] resultats = new long[quantiles.length];
+        long[] valeurs = new long[100000];
+        Random hasard = new Random(1);
+        long instant = 1000000000L;
+        long exact;
+        int i;
+
+        for (i = 0; i < valeurs.length; i++) {
+            valeurs[i] = (long) Math.exp(hasard.nextGaussian() * 2 + 8);
+            histogramme.ajouter(valeurs[i], instant);
+        }
+        Arrays.sort(valeurs);
+        histogramme.quantiles(quantiles, instant, resultats);
+        for (i = 0; i < quantiles.length; i++) {
+            exact = valeurs[(int) Math.ceil(quantiles[i] * valeurs.length) - 1];
+            assertTrue(quantiles[i] + " : " + resultats[i] + " < " + exact, resultats[i] >= exact);
+            assertTrue(quantiles[i] + " : " + resultats[i] + " >> " + exact,
+                    resultats[i] <= exact * (1 + PRECISION) + 1);
+        }
+        assertEquals(valeurs[valeurs.length - 1], histogramme.getMax(instant));
+        assertEquals(valeurs.length, histogramme.getNombre(instant));
+    }
+
+    /**
+     * Les petites valeurs sont exactes.
+     */
+    @Test
+    public void donneLesPetitesValeursExactement() {
+        HistogrammeDeLatences histogramme = new HistogrammeDeLatences(1, 60000);
+        long[] resultats = new long[1];
+        long valeur;
+
+        for (valeur = 1; valeur <= 20; valeur++) {
+            histogramme.ajouter(valeur, 0);
+        }
+        histogramme.quantiles(new double[]{0.5}, 0, resultats);
+        assertEquals(10, resultats[0]);
+    }
+
+    /**
+     * Les tranches sorties de la fenêtre glissante ne comptent plus.
+     */
+    @Test
+    public void oublieLesTranchesSortiesDeLaFenetre() {
+        HistogrammeDeLatences histogramme = new HistogrammeDeLatences(5, 60000);
+        long[] resultats = new long[1];
+
+        histogramme.ajouter(100000, 0);
+        histogramme.ajouter(10, 240000);
+        assertEquals(2, histogramme.getNombre(240000));
+        assertEquals(1, histogramme.getNombre(300000));
+        assertEquals(10, histogramme.getMax(300000));
+        histogramme.quantiles(new double[]{0.99}, 300000, resultats);
+        assertEquals(10, resultats[0]);
+        assertEquals(0, histogramme.getNombre(600000));
+        histogramme.quantiles(new double[]{0.99}, 600000, resultats);
+        assertEquals(0, resultats[0]);
+    }
+}
@@ -0,0 +1,143 @@
+package eventsmonitor;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import static eventsmonitor.HistoriqueDeMesures.INCONNU;
+import static eventsmonitor.HistoriqueDeMesures.SERIE_TOTAL;
+import static eventsmonitor.HistoriqueDeMesures.serieEvenement;
+import org.joda.time.DateTime;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests de l'historique des mesures.
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class HistoriqueDeMesuresTest {
+
+    /**
+     * @param instant date de la mesure en millisecondes
+     * @param total nombre total d'événements
+     * @param evenements nombre d'événements par type
+     * @return une mesure sans status
+     */
+    private static ListeDeMesures mesure(long instant, long total, Map<String, Long> evenements) {
+        ListeDeMesures mesure;
+
+        mesure = new ListeDeMesures(total, new DateTime(instant), new HashMap<String, Long>(), evenements, false);
+        mesure.setDateDeLaMesure(new DateTime(instant));
+        return mesure;
+    }
+
+    /**
+     * @param type type d'événement
+     * @param quantite nombre d'événements de ce type
+     * @return le nombre d'événements par type
+     */
+    private static Map<String, Long> type(String type, long quantite) {
+        Map<String, Long> evenements = new HashMap<>();
+
+        evenements.put(type, quantite);
+        return evenements;
+    }
+
+    /**
+     * Une série absente d'une mesure prend la dernière valeur présente avant
+     * elle, et une valeur antérieure à l'historique est inconnue.
+     */
+    @Test
+    public void litLaDerniereValeurPresente() {
+        HistoriqueDeMesures historique = new HistoriqueDeMesures(10);
+        Map<String, Long> aucun = new HashMap<>();
+
+        historique.ajouter(mesure(1000, 10, type("a", 4)));
+        historique.ajouter(mesure(2000, 12, aucun));
+        historique.ajouter(mesure(3000, 15, type("a", 7)));
+        assertEquals(4, historique.valeurA(serieEvenement("a"), 2500));
+        assertEquals(7, historique.valeurA(serieEvenement("a"), 3000));
+        assertEquals(12, historique.valeurA(SERIE_TOTAL, 2999));
+        assertEquals(INCONNU, historique.valeurA(serieEvenement("a"), 999));
+        assertEquals(INCONNU, historique.valeurA(serieEvenement("b"), 3000));
+    }
+
+    /**
+     * La variation sur une fenêtre suit le tampon une fois qu'il a fait le
+     * tour, et une variation négative se distingue d'une valeur inconnue.
+     */
+    @Test
+    public void calculeLaVariationApresLeTourDuTampon() {
+        HistoriqueDeMesures historique = new HistoriqueDeMesures(5);
+        int i;
+
+        for (i = 1; i <= 12; i++) {
+            historique.ajouter(mesure(i * 1000, i * 10, type("a", i)));
+        }
+        assertEquals(5, historique.getTaille());
+        assertEquals(8000, historique.getPremierHorodatage());
+        assertEquals(12000, historique.getDernierHorodatage());
+        assertEquals(20, historique.deltaSur(SERIE_TOTAL, 2000));
+        assertEquals(40, historique.deltaSur(SERIE_TOTAL, 60000));
+        assertEquals(4, historique.deltaSur(serieEvenement("a"), 60000));
+        assertEquals(INCONNU, historique.valeurA(SERIE_TOTAL, 7999));
+        historique.ajouter(mesure(13000, 119, type("a", 11)));
+        assertEquals(-1, historique.deltaSur(SERIE_TOTAL, 1000));
+        assertEquals(-1, historique.deltaSur(serieEvenement("a"), 1000));
+        assertEquals(INCONNU, historique.deltaSur(serieEvenement("b"), 1000));
+    }
+
+    /**
+     * La variation d'une série absente des dernières mesures s'arrête à sa
+     * dernière valeur présente, et est inconnue si la série est absente de
+     * toute la fenêtre.
+     */
+    @Test
+    public void calculeLaVariationSurLesMesuresOuLaSerieEstPresente() {
+        HistoriqueDeMesures historique = new HistoriqueDeMesures(10);
+        Map<String, Long> aucun = new HashMap<>();
+
+        historique.ajouter(mesure(1000, 10, aucun));
+        historique.ajouter(mesure(2000, 11, type("a", 3)));
+        historique.ajouter(mesure(3000, 12, type("a", 5)));
+        historique.ajouter(mesure(4000, 13, aucun));
+        assertEquals(2, historique.deltaSur(serieEvenement("a"), 3000));
+        historique.ajouter(mesure(5000, 14, aucun));
+        assertEquals(INCONNU, historique.deltaSur(serieEvenement("a"), 1000));
+    }
+
+    /**
+     * Quand tous les numéros sont pris, une nouvelle série reprend celui
+     * d'une série absente de toutes les mesures gardées, et est ignorée s'il
+     * n'y en a pas.
+     */
+    @Test
+    public void reprendLesNumerosDesSeriesDisparues() {
+        HistoriqueDeMesures historique = new HistoriqueDeMesures(3);
+        Map<String, Long> anciens = new HashMap<>();
+        Map<String, Long> aucun = new HashMap<>();
+        int nombreDAnciens = 0;
+        int i;
+
+        for (i = 1; i < HistoriqueDeMesures.MAX_SERIES; i++) {
+            anciens.put("ancien-" + i, (long) i);
+        }
+        historique.ajouter(mesure(1000, 10, anciens));
+        historique.ajouter(mesure(2000, 10, type("nouveau", 1)));
+        assertEquals(INCONNU, historique.valeurA(serieEvenement("nouveau"), 2000));
+        historique.ajouter(mesure(3000, 10, aucun));
+        historique.ajouter(mesure(4000, 10, type("nouveau", 2)));
+        assertEquals(2, historique.valeurA(serieEvenement("nouveau"), 4000));
+        assertEquals(INCONNU, historique.valeurA(serieEvenement("ancien-1"), 4000));
+        assertEquals(HistoriqueDeMesures.MAX_SERIES, historique.getSeries().length);
+        assertTrue(Arrays.asList(historique.getSeries()).contains(serieEvenement("nouveau")));
+        for (String serie : historique.getSeries()) {
+            if (serie.startsWith(serieEvenement("ancien-"))) {
+                nombreDAnciens++;
+            }
+        }
+        assertEquals(HistoriqueDeMesures.MAX_SERIES - 2, nombreDAnciens);
+    }
+}
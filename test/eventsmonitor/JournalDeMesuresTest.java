@@ -0,0 +1,128 @@
+package eventsmonitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.joda.time.DateTime;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests de l'écriture et de la relecture du journal des mesures.
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class JournalDeMesuresTest {
+
+    /**
+     * Répertoire temporaire des segments
+     */
+    @Rule
+    public TemporaryFolder dossier = new TemporaryFolder();
+
+    /**
+     * Ecrit des mesures, en changeant de segment à chaque heure.
+     *
+     * @param repertoire répertoire du journal
+     * @param nombre nombre de mesures à écrire
+     * @param intervalle intervalle entre deux mesures en millisecondes
+     * @param tailleSegment taille d'un segment en octets
+     * @return les mesures écrites
+     * @throws IOException en cas d'erreur sur un segment
+     */
+    static List<ListeDeMesures> ecrire(File repertoire, int nombre, long intervalle, int tailleSegment)
+            throws IOException {
+        JournalDeMesures journal;
+        List<ListeDeMesures> mesures = new ArrayList<>();
+        Map<String, Long> status = new HashMap<>();
+        Map<String, Long> evenements = new HashMap<>();
+        Random hasard = new Random(1);
+        ListeDeMesures mesure;
+        long debut = 1760000000000L;
+        long nombreDEvenements = 0;
+        String cle;
+        int i;
+
+        journal = new JournalDeMesures(repertoire, tailleSegment, 3600000L, false);
+        for (i = 0; i < nombre; i++) {
+            cle = "status-" + hasard.nextInt(8);
+            status.put(cle, (status.containsKey(cle) ? status.get(cle) : 0) + 1);
+            cle = "type-" + hasard.nextInt(40);
+            evenements.put(cle, (evenements.containsKey(cle) ? evenements.get(cle) : 0) + 1);
+            nombreDEvenements++;
+            mesure = new ListeDeMesures(nombreDEvenements, new DateTime(debut + i * intervalle - hasard.nextInt(3000)),
+                    status, evenements, false);
+            mesure.setDateDeLaMesure(new DateTime(debut + i * intervalle));
+            mesure.setDureeDeLaMesure(hasard.nextInt(300));
+            journal.ecrire(mesure);
+            mesures.add(mesure);
+        }
+        journal.fermer();
+        return mesures;
+    }
+
+    /**
+     * Relit tout le journal et le compare aux mesures écrites.
+     *
+     * @param repertoire répertoire du journal
+     * @param mesures mesures écrites
+     * @throws IOException si un segment est illisible
+     */
+    static void relire(File repertoire, List<ListeDeMesures> mesures) throws IOException {
+        LecteurDeJournal lecteur;
+        ListeDeMesures lue;
+
+        lecteur = new LecteurDeJournal(repertoire, false);
+        for (ListeDeMesures ecrite : mesures) {
+            lue = lecteur.suivante();
+            assertEquals(ecrite.getDateDeLaMesure().getMillis(), lue.getDateDeLaMesure().getMillis());
+            assertEquals(ecrite.getNombreDEvenements(), lue.getNombreDEvenements());
+            assertEquals(ecrite.getDateDernierEvenement().getMillis(), lue.getDateDernierEvenement().getMillis());
+            assertEquals(ecrite.getDureeDeLaMesure(), lue.getDureeDeLaMesure());
+            MoteurDeltaTest.verifier(lue.getStatus(), ecrite.getStatus());
+            MoteurDeltaTest.verifier(lue.getEvenements(), ecrite.getEvenements());
+        }
+        assertNull(lecteur.suivante());
+    }
+
+    /**
+     * Les mesures relues sont celles qui ont été écrites, d'un segment à
+     * l'autre quand le segment courant devient trop ancien.
+     *
+     * @throws IOException en cas d'erreur sur un segment
+     */
+    @Test
+    public void relitLesMesuresApresChangementDeSegmentParAge() throws IOException {
+        File repertoire = dossier.newFolder("age");
+        List<ListeDeMesures> mesures;
+
+        mesures = ecrire(repertoire, 3 * 720, 5000, 1 << 20);
+        assertEquals(3, repertoire.list().length);
+        relire(repertoire, mesures);
+    }
+
+    /**
+     * Les mesures relues sont celles qui ont été écrites, d'un segment à
+     * l'autre quand le segment courant est plein.
+     *
+     * @throws IOException en cas d'erreur sur un segment
+     */
+    @Test
+    public void relitLesMesuresApresChangementDeSegmentParTaille() throws IOException {
+        File repertoire = dossier.newFolder("taille");
+        List<ListeDeMesures> mesures;
+
+        mesures = ecrire(repertoire, 2000, 1000, 0);
+        assertTrue(repertoire.list().length > 1);
+        relire(repertoire, mesures);
+    }
+}
@@ -0,0 +1,94 @@
+package eventsmonitor;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests de la relecture et du rejeu du journal des mesures.
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class LecteurDeJournalTest {
+
+    /**
+     * Répertoire temporaire des segments
+     */
+    @Rule
+    public TemporaryFolder dossier = new TemporaryFolder();
+
+    /**
+     * Les segments pleins créés dans la même seconde sont relus dans l'ordre
+     * d'écriture, bien que leurs noms ne se trient pas dans cet ordre.
+     *
+     * @throws IOException en cas d'erreur sur un segment
+     */
+    @Test
+    public void relitDansLOrdreLesSegmentsCreesDansLaMemeSeconde() throws IOException {
+        File repertoire = dossier.newFolder("taille");
+        List<ListeDeMesures> mesures;
+
+        mesures = JournalDeMesuresTest.ecrire(repertoire, 4000, 0, 0);
+        assertTrue(repertoire.list().length > 10);
+        JournalDeMesuresTest.relire(repertoire, mesures);
+    }
+
+    /**
+     * Le numéro d'un segment est celui ajouté à son nom, 0 sans numéro.
+     */
+    @Test
+    public void numeroteLesSegments() {
+        assertEquals(0, LecteurDeJournal.numero(new File("mesures-20261018-100000.journal")));
+        assertEquals(2, LecteurDeJournal.numero(new File("mesures-20261018-100000-2.journal")));
+        assertEquals(10, LecteurDeJournal.numero(new File("mesures-20261018-100000-10.journal")));
+    }
+
+    /**
+     * Le rejeu à vitesse nulle publie toutes les mesures, dans l'ordre, sans
+     * attendre.
+     *
+     * @throws IOException en cas d'erreur sur un segment
+     */
+    @Test
+    public void rejoueToutLeJournalDansLOrdre() throws IOException {
+        File repertoire = dossier.newFolder("rejeu");
+        final List<ListeDeMesures> publiees = new ArrayList<>();
+        List<ListeDeMesures> mesures;
+        Controleur controleur;
+        Rejeu rejeu;
+        long debut;
+        int i;
+
+        mesures = JournalDeMesuresTest.ecrire(repertoire, 3 * 720, 5000, 1 << 20);
+        controleur = new Controleur(new HistoriqueDeMesures(100), false);
+        controleur.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evenement) {
+                if ("listeDeMesures".equals(evenement.getPropertyName())) {
+                    publiees.add((ListeDeMesures) evenement.getNewValue());
+                }
+            }
+        });
+        rejeu = new Rejeu(new LecteurDeJournal(repertoire, false), controleur, 0, false);
+        debut = System.nanoTime();
+        rejeu.run();
+        assertTrue((System.nanoTime() - debut) / 1000000 < 60000);
+        assertEquals(mesures.size(), rejeu.getNombreDeMesures());
+        assertEquals(mesures.size(), controleur.getNombreDeMesures());
+        assertEquals(100, controleur.getHistorique().getTaille());
+        assertEquals(mesures.size(), publiees.size());
+        for (i = 0; i < mesures.size(); i++) {
+            assertEquals(mesures.get(i).getDateDeLaMesure().getMillis(),
+                    publiees.get(i).getDateDeLaMesure().getMillis());
+        }
+    }
+}
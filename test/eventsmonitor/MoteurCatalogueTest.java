@@ -0,0 +1,129 @@
+package eventsmonitor;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import static eventsmonitor.MoteurDeltaTest.evenement;
+import org.bson.Document;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Tests des indicateurs du catalogue.
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class MoteurCatalogueTest {
+
+    /**
+     * Les indicateurs sont lus dans l'ordre de déclaration, avec la
+     * collection et le nombre de valeurs par défaut.
+     */
+    @Test
+    public void litLesIndicateursDeclares() {
+        Properties proprietes = new Properties();
+        List<Indicateur> indicateurs;
+
+        proprietes.setProperty("prod.dbserver.catalogue", "ouverts, types");
+        proprietes.setProperty("prod.dbserver.catalogue.ouverts.collection", "tickets");
+        proprietes.setProperty("prod.dbserver.catalogue.ouverts.champ", "status");
+        proprietes.setProperty("prod.dbserver.catalogue.ouverts.filtre", "{\"closed\": false}");
+        proprietes.setProperty("prod.dbserver.catalogue.ouverts.max", " 3 ");
+        proprietes.setProperty("prod.dbserver.catalogue.types.champ", " eventType ");
+        indicateurs = Indicateur.lire(proprietes, "prod.dbserver.", "events");
+        assertEquals(2, indicateurs.size());
+        assertEquals("ouverts", indicateurs.get(0).getNom());
+        assertEquals("tickets", indicateurs.get(0).getCollection());
+        assertEquals(new Document("closed", false), indicateurs.get(0).getFiltre());
+        assertEquals(3, indicateurs.get(0).getMax());
+        assertEquals(4, indicateurs.get(0).getEtapes().size());
+        assertEquals("types", indicateurs.get(1).getNom());
+        assertEquals("events", indicateurs.get(1).getCollection());
+        assertEquals("eventType", indicateurs.get(1).getChamp());
+        assertTrue(indicateurs.get(1).getFiltre().isEmpty());
+        assertEquals(Indicateur.MAX_PAR_DEFAUT, indicateurs.get(1).getMax());
+        assertEquals(3, indicateurs.get(1).getEtapes().size());
+        assertTrue(Indicateur.lire(new Properties(), "prod.dbserver.", "events").isEmpty());
+    }
+
+    /**
+     * Un indicateur sans champ, avec un filtre ou un nombre de valeurs
+     * illisible, est refusé avec son nom.
+     */
+    @Test
+    public void refuseLesIndicateursMalDecrits() {
+        Properties proprietes = new Properties();
+
+        proprietes.setProperty("catalogue", "x");
+        verifierRefus(proprietes, "catalogue.x.champ");
+        proprietes.setProperty("catalogue.x.champ", "status");
+        proprietes.setProperty("catalogue.x.max", "dix");
+        verifierRefus(proprietes, "Indicateur x");
+        proprietes.remove("catalogue.x.max");
+        proprietes.setProperty("catalogue.x.filtre", "{closed:");
+        verifierRefus(proprietes, "Indicateur x");
+    }
+
+    /**
+     * @param proprietes paramètres mal décrits
+     * @param message partie attendue du message d'erreur
+     */
+    private static void verifierRefus(Properties proprietes, String message) {
+        try {
+            Indicateur.lire(proprietes, "", "events");
+            fail("Indicateur mal décrit accepté");
+        } catch (IllegalArgumentException exception) {
+            assertTrue(exception.getMessage(), exception.getMessage().contains(message));
+        }
+    }
+
+    /**
+     * Les indicateurs sont calculés par collection, en une agrégation $facet
+     * quand ils sont plusieurs sur la même, et un indicateur en échec
+     * n'empêche pas la mesure des autres.
+     */
+    @Test
+    public void mesureLesIndicateursParCollection() {
+        CollectionEnMemoire evenements = new CollectionEnMemoire();
+        CollectionEnMemoire tickets = new CollectionEnMemoire();
+        Map<String, CollectionDEvenements> collections = new HashMap<>();
+        Map<String, TableDeComptages> indicateurs;
+        List<Indicateur> catalogue;
+        Properties proprietes = new Properties();
+        MoteurCatalogue moteur;
+        int i;
+
+        for (i = 0; i < 70; i++) {
+            evenements.inserer(evenement(i));
+            tickets.inserer(new Document("_id", i).append("agence", "agence-" + (i % 5)).append("closed", i % 2 == 0));
+        }
+        collections.put("events", evenements);
+        collections.put("tickets", tickets);
+        proprietes.setProperty("catalogue", "ouverts,agences,types,absents");
+        proprietes.setProperty("catalogue.ouverts.collection", "tickets");
+        proprietes.setProperty("catalogue.ouverts.champ", "agence");
+        proprietes.setProperty("catalogue.ouverts.filtre", "{\"closed\": false}");
+        proprietes.setProperty("catalogue.agences.collection", "tickets");
+        proprietes.setProperty("catalogue.agences.champ", "agence");
+        proprietes.setProperty("catalogue.agences.max", "2");
+        proprietes.setProperty("catalogue.types.champ", "eventType");
+        proprietes.setProperty("catalogue.absents.collection", "inconnue");
+        proprietes.setProperty("catalogue.absents.champ", "x");
+        catalogue = Indicateur.lire(proprietes, "", "events");
+        moteur = new MoteurCatalogue(new MoteurComplet(evenements, false), catalogue, collections, false);
+        indicateurs = moteur.mesurer().getIndicateurs();
+        assertEquals(3, indicateurs.size());
+        assertFalse(indicateurs.containsKey("absents"));
+        assertEquals(5, indicateurs.get("ouverts").getTaille());
+        assertEquals(7, indicateurs.get("ouverts").quantite("agence-1"));
+        assertEquals(2, indicateurs.get("agences").getTaille());
+        assertEquals(14, indicateurs.get("agences").getQuantite(0));
+        assertEquals(7, indicateurs.get("types").getTaille());
+        assertEquals(10, indicateurs.get("types").quantite("type-3"));
+    }
+}
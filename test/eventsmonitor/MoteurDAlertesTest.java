@@ -0,0 +1,134 @@
+package eventsmonitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import org.joda.time.DateTime;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests des règles d'alerte et de leur évaluation sur chaque mesure.
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class MoteurDAlertesTest {
+
+    /**
+     * Répertoire temporaire du fichier d'alertes
+     */
+    @Rule
+    public TemporaryFolder dossier = new TemporaryFolder();
+
+    /**
+     * @param minute minute de la mesure, après 10:00
+     * @param total nombre total d'événements
+     * @param typeA nombre d'événements de type "a"
+     * @return une mesure
+     */
+    private static ListeDeMesures mesure(int minute, long total, long typeA) {
+        Map<String, Long> evenements = new HashMap<>();
+        ListeDeMesures mesure;
+
+        evenements.put("a", typeA);
+        evenements.put("b", total - typeA);
+        mesure = new ListeDeMesures(total, new DateTime(2026, 10, 18, 10, 0).plusMinutes(minute),
+                new HashMap<String, Long>(), evenements, false);
+        mesure.setDateDeLaMesure(new DateTime(2026, 10, 18, 10, 0).plusMinutes(minute));
+        return mesure;
+    }
+
+    /**
+     * Une alerte se déclenche au-dessus du seuil et n'est levée qu'au niveau
+     * de retour ; chaque changement est écrit dans le fichier d'alertes.
+     *
+     * @throws IOException si le fichier d'alertes est illisible
+     */
+    @Test
+    public void neLeveLAlerteQuAuNiveauDeRetour() throws IOException {
+        File fichier = new File(dossier.getRoot(), "alertes.txt");
+        MoteurDAlertes moteur;
+        ListeDeMesures mesure;
+        List<String> lignes;
+        long[] totaux = {90, 101, 95, 81, 80, 85};
+        int[] alertes = {0, 1, 1, 1, 0, 0};
+        int i;
+
+        moteur = new MoteurDAlertes("test", Arrays.asList(
+                new RegleDAlerte("volume", RegleDAlerte.SEUIL, null, null, 100, 80)), fichier, null, false);
+        for (i = 0; i < totaux.length; i++) {
+            mesure = mesure(i, totaux[i], 0);
+            moteur.evaluer(mesure);
+            assertEquals("mesure " + i, alertes[i], mesure.getAlertes().size());
+        }
+        lignes = Files.readAllLines(fichier.toPath(), StandardCharsets.UTF_8);
+        assertEquals(2, lignes.size());
+        assertTrue(lignes.get(0), lignes.get(0).contains("\ttest\tvolume\tdeclenchee\tvolume : 101 événements"));
+        assertTrue(lignes.get(1), lignes.get(1).contains("\ttest\tvolume\tlevee\tvolume : 80 événements"));
+    }
+
+    /**
+     * Une règle d'absence se déclenche quand le nombre d'événements d'une
+     * valeur ne croît plus depuis plus de seuil minutes, et n'est pas
+     * évaluée sur des regroupements estimés.
+     */
+    @Test
+    public void signaleLAbsenceDEvenementsDUneValeur() {
+        RegleDAlerte regle = new RegleDAlerte("silence a", RegleDAlerte.ABSENCE, "eventType", "a", 10, 0);
+        ListeDeMesures estimee;
+
+        assertEquals(0, regle.mesurer(mesure(0, 100, 10)), 0);
+        assertEquals(5, regle.mesurer(mesure(5, 120, 10)), 0);
+        assertEquals(0, regle.evaluer(5));
+        assertEquals(11, regle.mesurer(mesure(11, 130, 10)), 0);
+        assertEquals(1, regle.evaluer(11));
+        estimee = mesure(12, 140, 12);
+        estimee.setRepartitionEstimee(new RepartitionEstimee(10, null, new long[0], new long[0],
+                new long[]{0, 0}, new long[]{140, 140}));
+        assertTrue(Double.isNaN(regle.mesurer(estimee)));
+        assertEquals(0, regle.mesurer(mesure(13, 150, 11)), 0);
+        assertEquals(-1, regle.evaluer(0));
+    }
+
+    /**
+     * Les règles sont lues dans l'ordre de déclaration, avec le niveau de
+     * retour par défaut, et une règle incohérente est refusée avec son nom.
+     */
+    @Test
+    public void litLesReglesDeclarees() {
+        Properties proprietes = new Properties();
+        List<RegleDAlerte> regles;
+
+        proprietes.setProperty("prod.dbserver.alertes", "silence, erreurs");
+        proprietes.setProperty("prod.dbserver.alerte.silence.type", "inactivite");
+        proprietes.setProperty("prod.dbserver.alerte.silence.seuil", "10");
+        proprietes.setProperty("prod.dbserver.alerte.erreurs.type", "croissance");
+        proprietes.setProperty("prod.dbserver.alerte.erreurs.champ", "status");
+        proprietes.setProperty("prod.dbserver.alerte.erreurs.valeur", "error");
+        proprietes.setProperty("prod.dbserver.alerte.erreurs.seuil", "50");
+        proprietes.setProperty("prod.dbserver.alerte.erreurs.retour", "20");
+        regles = RegleDAlerte.lire(proprietes, "prod.dbserver.");
+        assertEquals(2, regles.size());
+        assertEquals("silence", regles.get(0).getNom());
+        assertTrue(regles.get(0).toString(), regles.get(0).toString().contains("retour:8.0"));
+        assertTrue(regles.get(1).toString(), regles.get(1).toString().contains("champ:status, valeur:error"));
+        proprietes.setProperty("prod.dbserver.alerte.erreurs.retour", "60");
+        try {
+            RegleDAlerte.lire(proprietes, "prod.dbserver.");
+            fail("Niveau de retour supérieur au seuil accepté");
+        } catch (IllegalArgumentException exception) {
+            assertTrue(exception.getMessage(), exception.getMessage().startsWith("Règle d'alerte erreurs"));
+        }
+    }
+}
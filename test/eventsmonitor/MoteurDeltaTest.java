@@ -0,0 +1,167 @@
+package eventsmonitor;
+
+import java.util.List;
+import org.bson.Document;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests du moteur delta, comparé au moteur complet sur une collection en
+ * mémoire.
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class MoteurDeltaTest {
+
+    /**
+     * Collection des événements
+     */
+    private CollectionEnMemoire collection;
+
+    /**
+     * Moteur de référence
+     */
+    private MoteurComplet reference;
+
+    /**
+     * Prépare une collection de 100 événements.
+     */
+    @Before
+    public void preparer() {
+        int id;
+
+        collection = new CollectionEnMemoire();
+        reference = new MoteurComplet(collection, false);
+        for (id = 0; id < 100; id++) {
+            collection.inserer(evenement(id));
+        }
+    }
+
+    /**
+     * @param id _id de l'événement
+     * @return un événement dont les status, type et date dépendent du _id
+     */
+    static Document evenement(long id) {
+        return new Document("_id", id)
+                .append("status", "status-" + (id % 3))
+                .append("eventType", "type-" + (id % 7))
+                .append("sentDate", String.format("2026-10-18T10:%02d:%02d.000Z", (id / 60) % 60, id % 60));
+    }
+
+    /**
+     * Vérifie qu'une mesure est identique à celle du moteur complet.
+     *
+     * @param mesure mesure à vérifier
+     * @param attendue mesure du moteur complet
+     */
+    static void verifier(ListeDeMesures mesure, ListeDeMesures attendue) {
+        assertEquals(attendue.getNombreDEvenements(), mesure.getNombreDEvenements());
+        assertEquals(attendue.getDateDernierEvenement(), mesure.getDateDernierEvenement());
+        verifier(mesure.getStatus(), attendue.getStatus());
+        verifier(mesure.getEvenements(), attendue.getEvenements());
+    }
+
+    /**
+     * Vérifie qu'une table de comptages a les mêmes quantités qu'une autre,
+     * quel que soit l'ordre des valeurs de même quantité.
+     *
+     * @param table table à vérifier
+     * @param attendue table attendue
+     */
+    static void verifier(TableDeComptages table, TableDeComptages attendue) {
+        int i;
+
+        assertEquals(attendue.toString(), attendue.getTaille(), table.getTaille());
+        for (i = 0; i < attendue.getTaille(); i++) {
+            assertEquals(attendue.getCle(i), attendue.getQuantite(i), table.quantite(attendue.getCle(i)));
+        }
+    }
+
+    /**
+     * Les nouveaux événements sont ajoutés aux comptages mesure après mesure.
+     */
+    @Test
+    public void suitLesNouveauxEvenements() {
+        MoteurDelta moteur = new MoteurDelta(collection, "_id", 100, false);
+        long id;
+
+        verifier(moteur.mesurer(), reference.mesurer());
+        for (id = 100; id < 130; id++) {
+            collection.inserer(evenement(id));
+            if (id % 4 == 0) {
+                verifier(moteur.mesurer(), reference.mesurer());
+            }
+        }
+        verifier(moteur.mesurer(), reference.mesurer());
+        assertEquals(0, moteur.getDerive());
+    }
+
+    /**
+     * Un événement inséré sous la marque haute échappe aux comptages jusqu'à
+     * la réconciliation, qui le compte comme dérive.
+     */
+    @Test
+    public void corrigeLaDeriveALaReconciliation() {
+        MoteurDelta moteur = new MoteurDelta(collection, "_id", 3, false);
+
+        moteur.mesurer();
+        collection.inserer(evenement(200));
+        collection.inserer(evenement(50));
+        assertEquals(101, moteur.mesurer().getNombreDEvenements());
+        moteur.mesurer();
+        verifier(moteur.mesurer(), reference.mesurer());
+        assertEquals(1, moteur.getDerive());
+    }
+
+    /**
+     * Un événement inséré pendant la réconciliation, après la lecture de la
+     * marque, n'est pas compté comme dérive et est ajouté à la mesure
+     * suivante.
+     */
+    @Test
+    public void ignoreLesInsertionsPendantLaReconciliation() {
+        final boolean[] inserer = {false};
+        CollectionDEvenements glissante = new CollectionDEvenements() {
+            @Override
+            public long compter() {
+                return collection.compter();
+            }
+
+            @Override
+            public long estimer() {
+                return collection.estimer();
+            }
+
+            @Override
+            public Document premier(Document filtre, Document projection, Document tri) {
+                Document premier = collection.premier(filtre, projection, tri);
+
+                if (inserer[0]) {
+                    collection.inserer(evenement(300));
+                    inserer[0] = false;
+                }
+                return premier;
+            }
+
+            @Override
+            public List<Document> agreger(List<Document> pipeline) {
+                return collection.agreger(pipeline);
+            }
+
+            @Override
+            public List<Document> listerIndex() {
+                return collection.listerIndex();
+            }
+        };
+        MoteurDelta moteur = new MoteurDelta(glissante, "_id", 2, false);
+
+        moteur.mesurer();
+        moteur.mesurer();
+        inserer[0] = true;
+        assertEquals(100, moteur.mesurer().getNombreDEvenements());
+        assertEquals(0, moteur.getDerive());
+        verifier(moteur.mesurer(), reference.mesurer());
+    }
+}
@@ -0,0 +1,136 @@
+package eventsmonitor;
+
+import java.util.Random;
+import javax.swing.JLabel;
+import javax.swing.JTable;
+import static eventsmonitor.MoteurDeltaTest.evenement;
+import static eventsmonitor.MoteurDeltaTest.verifier;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests des regroupements estimés sur un échantillon et de leurs intervalles
+ * de confiance.
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class MoteurEchantillonTest {
+
+    /**
+     * Un échantillon vide ne dit rien, un échantillon de toute la population
+     * donne la quantité exacte, et une valeur tirée k fois compte au moins k
+     * événements.
+     */
+    @Test
+    public void donneLesBornesDesCasLimites() {
+        assertArrayEquals(new long[]{0, 5000}, RepartitionEstimee.intervalle(0, 0, 5000));
+        assertArrayEquals(new long[]{42, 42}, RepartitionEstimee.intervalle(42, 100, 100));
+        assertEquals(0, RepartitionEstimee.intervalle(0, 200, 100000)[0]);
+        assertEquals(100000, RepartitionEstimee.intervalle(200, 200, 100000)[1]);
+        assertTrue(RepartitionEstimee.intervalle(3, 200, 100000)[0] >= 3);
+        assertTrue(RepartitionEstimee.intervalle(197, 200, 100000)[1] <= 100000 - 3);
+    }
+
+    /**
+     * Sur des tirages sans remise répétés, l'intervalle contient la quantité
+     * réelle environ 95 fois sur 100.
+     */
+    @Test
+    public void contientLaQuantiteReelleAuNiveauAnnonce() {
+        Random hasard = new Random(1);
+        int population = 10000;
+        int marques = 700;
+        int taille = 300;
+        int essais = 2000;
+        int contenues = 0;
+        boolean[] individus = new boolean[population];
+        boolean echange;
+        long observes;
+        long[] intervalle;
+        int essai;
+        int i;
+        int j;
+
+        for (i = 0; i < marques; i++) {
+            individus[i] = true;
+        }
+        for (essai = 0; essai < essais; essai++) {
+            observes = 0;
+            for (i = 0; i < taille; i++) {
+                j = i + hasard.nextInt(population - i);
+                echange = individus[i];
+                individus[i] = individus[j];
+                individus[j] = echange;
+                if (individus[i]) {
+                    observes++;
+                }
+            }
+            intervalle = RepartitionEstimee.intervalle(observes, taille, population);
+            if (intervalle[0] <= marques && marques <= intervalle[1]) {
+                contenues++;
+            }
+        }
+        assertTrue(contenues + " / " + essais, contenues >= 0.93 * essais);
+    }
+
+    /**
+     * Le moteur fait les regroupements exacts à la première mesure et toutes
+     * les n mesures, et entre deux estime chaque quantité dans ses bornes.
+     */
+    @Test
+    public void estimeEntreDeuxRegroupementsExacts() {
+        CollectionEnMemoire collection = new CollectionEnMemoire();
+        MoteurComplet reference = new MoteurComplet(collection, false);
+        MoteurEchantillon moteur = new MoteurEchantillon(collection, null, 200, 5, false);
+        ListeDeMesures mesure;
+        RepartitionEstimee repartition;
+        TableDeComptages evenements;
+        int i;
+        int j;
+
+        for (i = 0; i < 10000; i++) {
+            collection.inserer(evenement(i));
+        }
+        mesure = moteur.mesurer();
+        assertNull(mesure.getRepartitionEstimee());
+        verifier(mesure, reference.mesurer());
+        for (i = 1; i < 5; i++) {
+            mesure = moteur.mesurer();
+            repartition = mesure.getRepartitionEstimee();
+            assertNotNull(repartition);
+            assertEquals(200, repartition.getTailleDeLEchantillon());
+            assertEquals(10000, mesure.getNombreDEvenements());
+            evenements = mesure.getEvenements();
+            assertEquals(7, evenements.getTaille());
+            for (j = 0; j < evenements.getTaille(); j++) {
+                assertTrue(repartition.getBorneBasse(false, j) <= evenements.getQuantite(j));
+                assertTrue(evenements.getQuantite(j) <= repartition.getBorneHaute(false, j));
+            }
+        }
+        mesure = moteur.mesurer();
+        assertNull(mesure.getRepartitionEstimee());
+        verifier(mesure, reference.mesurer());
+    }
+
+    /**
+     * Les bornes gardées par le modèle sont formatées par le rendu de la
+     * colonne d'intervalle.
+     */
+    @Test
+    public void formateLesBornesAuRendu() {
+        ModeleDeComptages modele = new ModeleDeComptages("Status");
+        JTable tableau = new JTable(modele);
+        JLabel cellule;
+
+        modele.remplacer(new String[]{"a"}, new long[]{100}, new double[1][], new long[][]{{12, 345}});
+        assertEquals(long[].class, modele.getColumnClass(2));
+        cellule = (JLabel) new RenduIntervalle("#,##0").getTableCellRendererComponent(tableau,
+                modele.getValueAt(0, 2), false, false, 0, 2);
+        assertEquals("12 – 345", cellule.getText());
+    }
+}
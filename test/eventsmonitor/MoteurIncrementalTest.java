@@ -0,0 +1,181 @@
+package eventsmonitor;
+
+import static eventsmonitor.MoteurDeltaTest.evenement;
+import static eventsmonitor.MoteurDeltaTest.verifier;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests du moteur incrémental, comparé au moteur complet sur une collection
+ * en mémoire qui lui sert aussi de source de changements.
+ *
+ * @author Thierry Baribaud
+ * @version 0.02
+ */
+public class MoteurIncrementalTest {
+
+    /**
+     * Collection des événements
+     */
+    private CollectionEnMemoire collection;
+
+    /**
+     * Moteur de référence
+     */
+    private MoteurComplet reference;
+
+    /**
+     * Prépare une collection de 100 événements.
+     */
+    @Before
+    public void preparer() {
+        int id;
+
+        collection = new CollectionEnMemoire();
+        reference = new MoteurComplet(collection, false);
+        for (id = 0; id < 100; id++) {
+            collection.inserer(evenement(id));
+        }
+    }
+
+    /**
+     * Les insertions sont comptées sans rechargement.
+     */
+    @Test
+    public void suitLesInsertions() {
+        MoteurIncremental moteur = new MoteurIncremental(collection, collection, false);
+        long id;
+
+        verifier(moteur.mesurer(), reference.mesurer());
+        for (id = 100; id < 130; id++) {
+            collection.inserer(evenement(id));
+            if (id % 4 == 0) {
+                verifier(moteur.mesurer(), reference.mesurer());
+            }
+        }
+        verifier(moteur.mesurer(), reference.mesurer());
+        assertEquals(1, moteur.getNombreDeResynchronisations());
+        moteur.arreter();
+    }
+
+    /**
+     * Une collection vidée fait recharger les comptages aussitôt.
+     */
+    @Test
+    public void rechargeQuandLaCollectionEstVidee() {
+        MoteurIncremental moteur = new MoteurIncremental(collection, collection, false);
+
+        moteur.mesurer();
+        collection.vider();
+        collection.inserer(evenement(1000));
+        verifier(moteur.mesurer(), reference.mesurer());
+        assertEquals(2, moteur.getNombreDeResynchronisations());
+        moteur.arreter();
+    }
+
+    /**
+     * Les insertions signalées après le rechargement mais déjà présentes lors
+     * de celui-ci ne sont pas comptées deux fois.
+     */
+    @Test
+    public void neCompteQuUneFoisLesInsertionsSignaleesEnRetard() {
+        final EcouteurDeChangements[] ecouteur = new EcouteurDeChangements[1];
+        SourceDeChangements enRetard = new SourceDeChangements() {
+            @Override
+            public void demarrer(EcouteurDeChangements ecouteurDeChangements) {
+                ecouteur[0] = ecouteurDeChangements;
+            }
+
+            @Override
+            public long position() {
+                return collection.position();
+            }
+
+            @Override
+            public void arreter() {
+            }
+        };
+        MoteurIncremental moteur = new MoteurIncremental(collection, enRetard, false);
+
+        moteur.mesurer();
+        ecouteur[0].documentInsere(evenement(98), 99);
+        ecouteur[0].documentInsere(evenement(99), 100);
+        collection.inserer(evenement(100));
+        ecouteur[0].documentInsere(evenement(100), 101);
+        verifier(moteur.mesurer(), reference.mesurer());
+    }
+
+    /**
+     * Les mises à jour et suppressions ne font recharger les comptages qu'au
+     * bout de la période de rechargement.
+     */
+    @Test
+    public void regroupeLesRechargementsDusAuxModifications() {
+        MoteurIncremental moteur = new MoteurIncremental(collection, collection, 3, false);
+
+        moteur.mesurer();
+        moteur.documentModifie(collection.position() + 1);
+        moteur.mesurer();
+        moteur.documentModifie(collection.position() + 2);
+        moteur.mesurer();
+        assertEquals(1, moteur.getNombreDeResynchronisations());
+        moteur.mesurer();
+        assertEquals(2, moteur.getNombreDeResynchronisations());
+        moteur.mesurer();
+        assertEquals(2, moteur.getNombreDeResynchronisations());
+        moteur.arreter();
+    }
+
+    /**
+     * @param commande commande journalisée
+     * @return une entrée de l'oplog de la commande sur la base "test"
+     */
+    private static Document commande(Document commande) {
+        return new Document("ts", new BsonTimestamp(1792310400, 1))
+                .append("op", "c")
+                .append("ns", "test.$cmd")
+                .append("o", commande);
+    }
+
+    /**
+     * Seules les commandes de l'oplog visant la collection suivie font
+     * recharger les comptages.
+     */
+    @Test
+    public void rechargeSurLesCommandesDeLOplogVisantLaCollection() {
+        MoteurIncremental moteur = new MoteurIncremental(collection, collection, false);
+
+        moteur.mesurer();
+        FluxOplog.traiter(commande(new Document("create", "autres")), "test.events", moteur);
+        FluxOplog.traiter(commande(new Document("drop", "autres")), "test.events", moteur);
+        moteur.mesurer();
+        assertEquals(1, moteur.getNombreDeResynchronisations());
+        FluxOplog.traiter(commande(new Document("drop", "events")), "test.events", moteur);
+        verifier(moteur.mesurer(), reference.mesurer());
+        assertEquals(2, moteur.getNombreDeResynchronisations());
+        moteur.arreter();
+    }
+
+    /**
+     * Commandes de l'oplog visant ou non la collection suivie.
+     */
+    @Test
+    public void reconnaitLesCommandesVisantLaCollection() {
+        assertTrue(FluxOplog.concerne(new Document("drop", "events"), "test.events"));
+        assertTrue(FluxOplog.concerne(new Document("dropDatabase", 1), "test.events"));
+        assertTrue(FluxOplog.concerne(new Document("convertToCapped", "events").append("size", 4096), "test.events"));
+        assertTrue(FluxOplog.concerne(new Document("renameCollection", "test.events").append("to", "test.archives"),
+                "test.events"));
+        assertTrue(FluxOplog.concerne(new Document("renameCollection", "test.nouveaux").append("to", "test.events"),
+                "test.events"));
+        assertFalse(FluxOplog.concerne(new Document("renameCollection", "test.a").append("to", "test.b"),
+                "test.events"));
+        assertFalse(FluxOplog.concerne(new Document("create", "events"), "test.events"));
+        assertFalse(FluxOplog.concerne(new Document("drop", "autres"), "test.events"));
+    }
+}
@@ -0,0 +1,104 @@
+package eventsmonitor;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests de la référence saisonnière des débits par type d'événement.
+ *
+ * @author Thierry Baribaud
+ * @version 0.01
+ */
+public class ReferenceSaisonniereTest {
+
+    /**
+     * Lundi 12 octobre 2026 à 10:00 UTC
+     */
+    private static final DateTime LUNDI = new DateTime(2026, 10, 12, 10, 0, DateTimeZone.UTC);
+
+    /**
+     * Répertoire temporaire du fichier de la référence
+     */
+    @Rule
+    public TemporaryFolder dossier = new TemporaryFolder();
+
+    /**
+     * Fait une mesure par minute, les débits étant calculés avant la
+     * référence comme par le contrôleur.
+     *
+     * @param reference référence à tenir à jour
+     * @param debut date de la première mesure
+     * @param minutes nombre de minutes mesurées
+     * @param parMinute événements de type "a" arrivés par minute
+     * @return la dernière mesure
+     */
+    private static ListeDeMesures mesurer(ReferenceSaisonniere reference, DateTime debut, int minutes,
+            long parMinute) {
+        DebitsDEvenements debits = new DebitsDEvenements();
+        Map<String, Long> evenements = new HashMap<>();
+        ListeDeMesures mesure = null;
+        int i;
+
+        for (i = 0; i <= minutes; i++) {
+            evenements.put("a", 1000 + i * parMinute);
+            mesure = new ListeDeMesures(1000 + i * parMinute, debut.plusMinutes(i),
+                    new HashMap<String, Long>(), evenements, false);
+            mesure.setDateDeLaMesure(debut.plusMinutes(i));
+            debits.mettreAJour(mesure);
+            reference.mettreAJour(mesure);
+        }
+        return mesure;
+    }
+
+    /**
+     * Le débit moyen d'une tranche terminée devient le débit habituel de
+     * cette tranche, enregistré et relu au démarrage suivant.
+     */
+    @Test
+    public void apprendEnregistreEtRelitLeDebitHabituel() {
+        File fichier = new File(dossier.getRoot(), "saisons.bin");
+        ReferenceSaisonniere reference;
+
+        reference = new ReferenceSaisonniere(fichier, 60, 3, 1, false);
+        assertTrue(Double.isNaN(reference.getDebitAttendu("a", LUNDI)));
+        mesurer(reference, LUNDI, 60, 10);
+        assertEquals(10, reference.getDebitAttendu("a", LUNDI.plusMinutes(30)), 1e-9);
+        assertTrue(Double.isNaN(reference.getDebitAttendu("a", LUNDI.plusHours(1))));
+        assertTrue(fichier.isFile());
+        reference = new ReferenceSaisonniere(fichier, 60, 3, 1, false);
+        assertEquals(10, reference.getDebitAttendu("a", LUNDI.plusWeeks(1)), 1e-9);
+        reference = new ReferenceSaisonniere(fichier, 30, 3, 1, false);
+        assertTrue(Double.isNaN(reference.getDebitAttendu("a", LUNDI)));
+    }
+
+    /**
+     * La semaine suivante, un débit au-delà du seuil est signalé, un débit
+     * habituel ne l'est pas.
+     */
+    @Test
+    public void signaleLesDebitsInhabituels() {
+        File fichier = new File(dossier.getRoot(), "saisons.bin");
+        ReferenceSaisonniere reference;
+        ListeDeMesures mesure;
+        Anomalie anomalie;
+
+        mesurer(new ReferenceSaisonniere(fichier, 60, 3, 1, false), LUNDI, 60, 10);
+        reference = new ReferenceSaisonniere(fichier, 60, 3, 1, false);
+        mesure = mesurer(reference, LUNDI.plusWeeks(1), 10, 10);
+        assertTrue(mesure.getAnomalies().isEmpty());
+        mesure = mesurer(reference, LUNDI.plusWeeks(1).plusMinutes(20), 10, 100);
+        assertEquals(1, mesure.getAnomalies().size());
+        anomalie = mesure.getAnomalies().get(0);
+        assertEquals("a", anomalie.getTypeDEvenement());
+        assertEquals(10, anomalie.getDebitAttendu(), 1e-9);
+        assertTrue(anomalie.toString(), anomalie.getScore() > 3);
+    }
+}
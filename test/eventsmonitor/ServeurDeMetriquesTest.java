@@ -0,0 +1,153 @@
+package eventsmonitor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.TreeMap;
+import org.joda.time.DateTime;
+import static eventsmonitor.MoteurDeltaTest.evenement;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests de la page publiée au format texte de Prometheus.
+ *
+ * @author Thierry Baribaud
+ * @version 0.02
+ */
+public class ServeurDeMetriquesTest {
+
+    /**
+     * @param mesure mesure à publier
+     * @return les contrôleurs d'un seul serveur suivi, nommé "test", après
+     * publication de la mesure
+     */
+    static Map<String, Controleur> cibles(ListeDeMesures mesure) {
+        Map<String, Controleur> cibles = new TreeMap<>();
+        Controleur controleur;
+
+        controleur = new Controleur(new HistoriqueDeMesures(10), false);
+        controleur.publier(mesure);
+        cibles.put("test", controleur);
+        return cibles;
+    }
+
+    /**
+     * @param page page au format texte de Prometheus
+     * @param nom nom de la métrique
+     * @return le type déclaré de la métrique, null si elle n'est pas déclarée
+     */
+    static String type(String page, String nom) {
+        for (String ligne : page.split("\n")) {
+            if (ligne.startsWith("# TYPE " + nom + " ")) {
+                return ligne.substring(("# TYPE " + nom + " ").length());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Chaque serveur suivi a ses valeurs, étiquetées dbserver, et les valeurs
+     * d'étiquettes sont échappées.
+     */
+    @Test
+    public void publieLesComptagesDeChaqueServeur() {
+        Map<String, Controleur> cibles = new TreeMap<>();
+        Map<String, Long> status = new HashMap<>();
+        Map<String, Long> evenements = new HashMap<>();
+        ListeDeMesures mesure;
+        String page;
+
+        status.put("ok", 3L);
+        evenements.put("type \"cité\"\\n", 3L);
+        mesure = new ListeDeMesures(3, new DateTime(1792310400000L), status, evenements, false);
+        mesure.setDateDeLaMesure(new DateTime(1792310402000L));
+        cibles.putAll(cibles(mesure));
+        mesure = new ListeDeMesures(7, null, new HashMap<String, Long>(), new HashMap<String, Long>(), false);
+        cibles.put("autre", cibles(mesure).get("test"));
+        page = ServeurDeMetriques.construirePage(cibles);
+        assertEquals("gauge", type(page, "eventsmonitor_events"));
+        assertEquals("counter", type(page, "eventsmonitor_measurements_total"));
+        assertTrue(page, page.contains("eventsmonitor_events{dbserver=\"test\"} 3\n"));
+        assertTrue(page, page.contains("eventsmonitor_events{dbserver=\"autre\"} 7\n"));
+        assertTrue(page, page.contains("eventsmonitor_events_by_status{dbserver=\"test\",status=\"ok\"} 3\n"));
+        assertTrue(page, page.contains(
+                "eventsmonitor_events_by_type{dbserver=\"test\",event_type=\"type \\\"cité\\\"\\\\n\"} 3\n"));
+        assertTrue(page, page.contains("eventsmonitor_last_event_age_seconds{dbserver=\"test\"} 2.000\n"));
+        assertFalse(page, page.contains("eventsmonitor_last_event_age_seconds{dbserver=\"autre\"}"));
+        assertTrue(page, page.contains("eventsmonitor_measurements_total{dbserver=\"autre\"} 1\n"));
+    }
+
+    /**
+     * La page est construite à chaque mesure publiée et renvoyée telle quelle
+     * sur /metrics.
+     *
+     * @throws IOException en cas d'erreur de connexion
+     */
+    @Test
+    public void repondSurMetrics() throws IOException {
+        ServeurDeMetriques serveur;
+        Controleur controleur;
+        HttpURLConnection connexion;
+        ListeDeMesures mesure;
+        String page;
+        int port;
+
+        try (ServerSocket libre = new ServerSocket(0)) {
+            port = libre.getLocalPort();
+        }
+        serveur = new ServeurDeMetriques(port, false);
+        controleur = new Controleur(new HistoriqueDeMesures(10), false);
+        serveur.ajouter("test", controleur);
+        serveur.demarrer();
+        try {
+            mesure = new ListeDeMesures(42, null, new HashMap<String, Long>(), new HashMap<String, Long>(), false);
+            controleur.publier(mesure);
+            connexion = (HttpURLConnection) new URL("http://localhost:" + port + "/metrics").openConnection();
+            assertEquals(200, connexion.getResponseCode());
+            assertTrue(connexion.getContentType().startsWith("text/plain; version=0.0.4"));
+            try (InputStream entree = connexion.getInputStream();
+                    Scanner lecture = new Scanner(entree, StandardCharsets.UTF_8.name())) {
+                page = lecture.useDelimiter("\\A").next();
+            }
+            assertTrue(page, page.contains("eventsmonitor_events{dbserver=\"test\"} 42\n"));
+        } finally {
+            serveur.arreter();
+        }
+    }
+
+    /**
+     * Les centiles des retards, calculés sur une fenêtre glissante, sont des
+     * jauges étiquetées percentile, et le maximum est une jauge à part.
+     */
+    @Test
+    public void publieLesCentilesDesRetardsEtLeurMaximum() {
+        CollectionEnMemoire collection = new CollectionEnMemoire();
+        ListeDeMesures mesure;
+        String page;
+
+        collection.inserer(evenement(1));
+        mesure = new MoteurComplet(collection, false).mesurer();
+        mesure.setLatences(new Latences(100, new long[]{1500, 4000, 9000}, 12000));
+        page = ServeurDeMetriques.construirePage(cibles(mesure));
+        assertFalse(page, page.contains("quantile="));
+        assertEquals("gauge", type(page, "eventsmonitor_event_lag_seconds"));
+        assertTrue(page, page.contains("eventsmonitor_event_lag_seconds{dbserver=\"test\",percentile=\"0.5\"} 1.500\n"));
+        assertTrue(page, page.contains("eventsmonitor_event_lag_seconds{dbserver=\"test\",percentile=\"0.99\"} 9.000\n"));
+        assertEquals("gauge", type(page, "eventsmonitor_event_lag_max_seconds"));
+        assertTrue(page, page.contains("eventsmonitor_event_lag_max_seconds{dbserver=\"test\"} 12.000\n"));
+        assertEquals("gauge", type(page, "eventsmonitor_stage_duration_seconds"));
+        assertEquals("gauge", type(page, "eventsmonitor_stage_duration_max_seconds"));
+        assertTrue(page, page.contains("eventsmonitor_stage_duration_seconds{dbserver=\"test\",stage=\"publication\","
+                + "percentile=\"0.95\"} "));
+        assertTrue(page, page.contains("eventsmonitor_stage_duration_max_seconds{dbserver=\"test\",stage=\"publication\"} "));
+    }
+}